@@ -0,0 +1,32 @@
+package net.xeona.sampled.benchmark;
+
+import net.xeona.sampled.KeyedSeriesSample;
+
+final class BenchmarkSample implements KeyedSeriesSample<Integer, Integer, Integer> {
+
+	private final Integer key;
+	private final Integer value;
+	private final Integer source;
+
+	BenchmarkSample(Integer key, Integer value, Integer source) {
+		this.key = key;
+		this.value = value;
+		this.source = source;
+	}
+
+	@Override
+	public Integer getKey() {
+		return key;
+	}
+
+	@Override
+	public Integer getValue() {
+		return value;
+	}
+
+	@Override
+	public Integer getSource() {
+		return source;
+	}
+
+}
@@ -0,0 +1,83 @@
+package net.xeona.sampled.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.xeona.sampled.MultiSampledSeriesReconstructor;
+import net.xeona.sampled.SampledStepSeriesReconstructor;
+import net.xeona.sampled.value.EqualityValueUpdatePredicate;
+import net.xeona.series.index.CounterSeriesIndex;
+import net.xeona.series.index.MonotonicSourceIndexRegistry;
+import net.xeona.series.index.SourceIndexRegistry;
+import net.xeona.series.index.SourceIndexTracker;
+
+/**
+ * Measures the cost of offering one source's samples for every series key to a {@link MultiSampledSeriesReconstructor},
+ * as a poller would after each polling cycle. Each operation is a whole batch of <code>keyCount</code> samples.
+ * <p />
+ * Enough cycles are generated for the lagging source of {@link Scenario#LAGGING_SOURCE} to lag its full number of
+ * cycles behind the others, so that the series retain as many data points as they would in that scenario.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class MultiSampledSeriesReconstructorBenchmark {
+
+	private static final int CYCLE_COUNT = 64;
+
+	@Param
+	private Scenario scenario;
+
+	@Param({ "4", "16" })
+	private int sourceCount;
+
+	@Param({ "1000", "50000" })
+	private int keyCount;
+
+	@Param({ "SORTED", "MONOTONIC" })
+	private String registry;
+
+	private SampleScenario sampleScenario;
+	private MultiSampledSeriesReconstructor<Integer, Integer, Integer, CounterSeriesIndex> reconstructor;
+	private int nextCycle;
+	private int nextSource;
+
+	@Setup
+	public void setUp() {
+		sampleScenario = scenario.generate(CYCLE_COUNT, sourceCount, keyCount);
+		SourceIndexTracker<Integer, CounterSeriesIndex> sourceIndexRegistry = "SORTED".equals(registry)
+				? new SourceIndexRegistry<>(CounterSeriesIndex.Operations.instance())
+				: new MonotonicSourceIndexRegistry<>(CounterSeriesIndex.Operations.instance());
+		reconstructor = new MultiSampledSeriesReconstructor<>(sourceIndexRegistry,
+				registry -> new SampledStepSeriesReconstructor<>(EqualityValueUpdatePredicate.instance(),
+						CounterSeriesIndex.Operations.instance(), registry));
+		nextCycle = 0;
+		nextSource = 0;
+	}
+
+	@Benchmark
+	public void notifySamples() {
+		List<BenchmarkSample> samples = sampleScenario.getSamples(nextCycle, nextSource);
+		if (++nextSource == sourceCount) {
+			nextSource = 0;
+			nextCycle = nextCycle + 1 == CYCLE_COUNT ? 0 : nextCycle + 1;
+		}
+		reconstructor.notifySamples(samples);
+	}
+
+}
@@ -0,0 +1,59 @@
+package net.xeona.sampled.benchmark;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A deterministic, pre-generated set of samples taken by a population of sources polling the same set of step series.
+ * <p />
+ * Each series changes value between polling cycles with a fixed probability. Every source observes every series once
+ * per cycle; all sources observe the current value except the first, which may be configured to lag a number of
+ * cycles behind the others. The cycles wrap around, so a benchmark may replay them indefinitely.
+ * <p />
+ * Wrapping around returns each series to the value it held in the first cycle, which is one more change of value. So
+ * that these changes do not all fall in the same cycle, each series begins its sequence of values at a different cycle,
+ * staggered by key. As values only increase between wraps, a lagging source can be aligned unambiguously as long as
+ * its lag is at most half the number of cycles.
+ */
+final class SampleScenario {
+
+	private static final long SEED = 0x5eed;
+
+	private final List<BenchmarkSample>[][] samplesByCycleAndSource;
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	SampleScenario(int cycleCount, int sourceCount, int keyCount, int laggingSourceLag,
+			double changeProbability) {
+		Random random = new Random(SEED);
+		Integer[][] valuesByCycleAndKey = new Integer[cycleCount][keyCount];
+		for (int key = 0; key < keyCount; key++) {
+			int value = random.nextInt();
+			for (int step = 0; step < cycleCount; step++) {
+				if (random.nextDouble() < changeProbability) {
+					value++;
+				}
+				valuesByCycleAndKey[(key + step) % cycleCount][key] = value;
+			}
+		}
+
+		Integer[] keys = new Integer[keyCount];
+		Arrays.setAll(keys, Integer::valueOf);
+		samplesByCycleAndSource = new List[cycleCount][sourceCount];
+		for (int cycle = 0; cycle < cycleCount; cycle++) {
+			for (int source = 0; source < sourceCount; source++) {
+				int observedCycle = source == 0 ? Math.floorMod(cycle - laggingSourceLag, cycleCount) : cycle;
+				BenchmarkSample[] samples = new BenchmarkSample[keyCount];
+				for (int key = 0; key < keyCount; key++) {
+					samples[key] = new BenchmarkSample(keys[key], valuesByCycleAndKey[observedCycle][key], source);
+				}
+				samplesByCycleAndSource[cycle][source] = Arrays.asList(samples);
+			}
+		}
+	}
+
+	List<BenchmarkSample> getSamples(int cycle, int source) {
+		return samplesByCycleAndSource[cycle][source];
+	}
+
+}
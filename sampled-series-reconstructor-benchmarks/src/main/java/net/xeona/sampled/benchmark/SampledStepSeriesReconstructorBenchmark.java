@@ -0,0 +1,117 @@
+package net.xeona.sampled.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.xeona.sampled.LongIndexedSampledStepSeriesReconstructor;
+import net.xeona.sampled.SampledStepSeriesReconstructor;
+import net.xeona.sampled.value.EqualityValueUpdatePredicate;
+import net.xeona.series.index.CounterSeriesIndex;
+import net.xeona.series.index.LongSourceIndexRegistry;
+import net.xeona.series.index.MonotonicSourceIndexRegistry;
+import net.xeona.series.index.SourceIndexRegistry;
+
+/**
+ * Measures the cost of offering a single sample to the reconstructor of a single series.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SampledStepSeriesReconstructorBenchmark {
+
+	private static final int CYCLE_COUNT = 256;
+
+	@Param
+	private Scenario scenario;
+
+	@Param({ "2", "16" })
+	private int sourceCount;
+
+	@Param
+	private Implementation implementation;
+
+	private BenchmarkSample[] samples;
+	private SampleConsumer reconstructor;
+	private int nextSample;
+
+	@Setup
+	public void setUp() {
+		SampleScenario sampleScenario = scenario.generate(CYCLE_COUNT, sourceCount, 1);
+		samples = new BenchmarkSample[CYCLE_COUNT * sourceCount];
+		for (int cycle = 0; cycle < CYCLE_COUNT; cycle++) {
+			for (int source = 0; source < sourceCount; source++) {
+				samples[cycle * sourceCount + source] = sampleScenario.getSamples(cycle, source).get(0);
+			}
+		}
+		reconstructor = implementation.build();
+		nextSample = 0;
+	}
+
+	@Benchmark
+	public boolean notifySample() {
+		BenchmarkSample sample = samples[nextSample];
+		nextSample = nextSample + 1 == samples.length ? 0 : nextSample + 1;
+		return reconstructor.notifySample(sample);
+	}
+
+	public enum Implementation {
+
+		SORTED_REGISTRY {
+			@Override
+			SampleConsumer build() {
+				return new SampledStepSeriesReconstructor<Integer, Integer, CounterSeriesIndex>(
+						EqualityValueUpdatePredicate.instance(), CounterSeriesIndex.Operations.instance(),
+						new SourceIndexRegistry<>(CounterSeriesIndex.Operations.instance()))::notifySample;
+			}
+		},
+		MONOTONIC_REGISTRY {
+			@Override
+			SampleConsumer build() {
+				return new SampledStepSeriesReconstructor<Integer, Integer, CounterSeriesIndex>(
+						EqualityValueUpdatePredicate.instance(), CounterSeriesIndex.Operations.instance(),
+						new MonotonicSourceIndexRegistry<>(CounterSeriesIndex.Operations.instance()))::notifySample;
+			}
+		},
+		VALUE_INDEXED {
+			@Override
+			SampleConsumer build() {
+				return SampledStepSeriesReconstructor
+						.<Integer, Integer, CounterSeriesIndex> builder(EqualityValueUpdatePredicate.instance(),
+								CounterSeriesIndex.Operations.instance(),
+								new MonotonicSourceIndexRegistry<>(CounterSeriesIndex.Operations.instance()))
+						.valueIndexed(true).build()::notifySample;
+			}
+		},
+		LONG_INDEXED {
+			@Override
+			SampleConsumer build() {
+				return new LongIndexedSampledStepSeriesReconstructor<Integer, Integer>(
+						EqualityValueUpdatePredicate.instance(), new LongSourceIndexRegistry<>())::notifySample;
+			}
+		};
+
+		abstract SampleConsumer build();
+
+	}
+
+	interface SampleConsumer {
+
+		boolean notifySample(BenchmarkSample sample);
+
+	}
+
+}
@@ -0,0 +1,32 @@
+package net.xeona.sampled.benchmark;
+
+/**
+ * The sample populations against which reconstruction is benchmarked.
+ */
+public enum Scenario {
+
+	/** All sources poll in step, with occasional changes of value */
+	SYNCHRONISED(0, 0.1),
+	/** One source lags behind the others, preventing old data points being cleared */
+	LAGGING_SOURCE(32, 0.1),
+	/** All sources poll in step, but every series changes value on every cycle */
+	HIGH_CHURN(0, 1.0);
+
+	private final int laggingSourceLag;
+	private final double changeProbability;
+
+	private Scenario(int laggingSourceLag, double changeProbability) {
+		this.laggingSourceLag = laggingSourceLag;
+		this.changeProbability = changeProbability;
+	}
+
+	/**
+	 * Generate the samples of this scenario, limiting the lag of the lagging source to half the number of cycles, beyond
+	 * which its samples could no longer be aligned unambiguously as the cycles wrap around
+	 */
+	SampleScenario generate(int cycleCount, int sourceCount, int keyCount) {
+		return new SampleScenario(cycleCount, sourceCount, keyCount, Math.min(laggingSourceLag, cycleCount / 2),
+				changeProbability);
+	}
+
+}
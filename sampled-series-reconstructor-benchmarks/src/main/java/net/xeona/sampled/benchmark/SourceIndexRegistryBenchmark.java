@@ -0,0 +1,178 @@
+package net.xeona.sampled.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.xeona.series.index.ConcurrentSourceIndexRegistry;
+import net.xeona.series.index.CounterSeriesIndex;
+import net.xeona.series.index.LongSourceIndexRegistry;
+import net.xeona.series.index.MonotonicSourceIndexRegistry;
+import net.xeona.series.index.SourceIndexRegistry;
+import net.xeona.series.index.SourceIndexTracker;
+
+/**
+ * Measures the cost of the source index bookkeeping performed for every sample: reading a source's index, advancing
+ * it, and querying the least current index. Sources advance in round-robin order, as synchronised pollers would.
+ * <p />
+ * The shared benchmark advances disjoint sources of a single concurrent registry from several threads at once, so that
+ * a registry with a single lock stripe can be compared with one whose sources are spread across many stripes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SourceIndexRegistryBenchmark {
+
+	@Benchmark
+	public CounterSeriesIndex advanceSource(TrackerState state) {
+		Integer source = state.nextSource();
+		SourceIndexTracker<Integer, CounterSeriesIndex> sourceIndexRegistry = state.sourceIndexRegistry;
+		CounterSeriesIndex currentIndex = sourceIndexRegistry.getCurrentIndexForSource(source);
+		sourceIndexRegistry.setCurrentIndexForSource(source,
+				CounterSeriesIndex.Operations.instance().increment(currentIndex));
+		return sourceIndexRegistry.getLeastCurrentIndex();
+	}
+
+	@Benchmark
+	public long advanceLongSource(LongRegistryState state) {
+		Integer source = state.nextSource();
+		LongSourceIndexRegistry<Integer> sourceIndexRegistry = state.sourceIndexRegistry;
+		long currentIndex = sourceIndexRegistry.getCurrentIndexForSource(source);
+		sourceIndexRegistry.setCurrentIndexForSource(source, currentIndex + 1);
+		return sourceIndexRegistry.getLeastCurrentIndex();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public CounterSeriesIndex advanceSharedSource(SharedRegistryState registryState, ThreadSourceState sourceState) {
+		Integer source = sourceState.nextSource();
+		ConcurrentSourceIndexRegistry<Integer, CounterSeriesIndex> sourceIndexRegistry = registryState.sourceIndexRegistry;
+		CounterSeriesIndex currentIndex = sourceIndexRegistry.getCurrentIndexForSource(source);
+		sourceIndexRegistry.setCurrentIndexForSource(source,
+				CounterSeriesIndex.Operations.instance().increment(currentIndex));
+		return sourceIndexRegistry.getLeastCurrentIndex();
+	}
+
+	@State(Scope.Thread)
+	public static class SourceState {
+
+		@Param({ "16", "1024" })
+		private int sourceCount;
+
+		private Integer[] sources;
+		private int nextSource;
+
+		@Setup
+		public void setUpSources() {
+			sources = new Integer[sourceCount];
+			for (int i = 0; i < sourceCount; i++) {
+				sources[i] = Integer.valueOf(i);
+			}
+			nextSource = 0;
+		}
+
+		Integer nextSource() {
+			Integer source = sources[nextSource];
+			nextSource = nextSource + 1 == sources.length ? 0 : nextSource + 1;
+			return source;
+		}
+
+	}
+
+	public static class TrackerState extends SourceState {
+
+		@Param({ "SORTED", "MONOTONIC", "CONCURRENT" })
+		private String registry;
+
+		private SourceIndexTracker<Integer, CounterSeriesIndex> sourceIndexRegistry;
+
+		@Setup
+		public void setUpRegistry() {
+			switch (registry) {
+			case "SORTED":
+				sourceIndexRegistry = new SourceIndexRegistry<>(CounterSeriesIndex.Operations.instance());
+				break;
+			case "MONOTONIC":
+				sourceIndexRegistry = new MonotonicSourceIndexRegistry<>(CounterSeriesIndex.Operations.instance());
+				break;
+			case "CONCURRENT":
+				sourceIndexRegistry = new ConcurrentSourceIndexRegistry<>(CounterSeriesIndex.Operations.instance());
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown registry: " + registry);
+			}
+		}
+
+	}
+
+	@State(Scope.Benchmark)
+	public static class SharedRegistryState {
+
+		@Param({ "1", "16" })
+		private int stripeCount;
+
+		private final AtomicInteger nextFirstSource = new AtomicInteger();
+
+		private ConcurrentSourceIndexRegistry<Integer, CounterSeriesIndex> sourceIndexRegistry;
+
+		@Setup
+		public void setUpRegistry() {
+			sourceIndexRegistry = new ConcurrentSourceIndexRegistry<>(CounterSeriesIndex.Operations.instance(),
+					stripeCount);
+			nextFirstSource.set(0);
+		}
+
+	}
+
+	@State(Scope.Thread)
+	public static class ThreadSourceState {
+
+		private static final int SOURCES_PER_THREAD = 64;
+
+		private Integer[] sources;
+		private int nextSource;
+
+		@Setup
+		public void setUpSources(SharedRegistryState registryState) {
+			int firstSource = registryState.nextFirstSource.getAndAdd(SOURCES_PER_THREAD);
+			sources = new Integer[SOURCES_PER_THREAD];
+			for (int i = 0; i < SOURCES_PER_THREAD; i++) {
+				sources[i] = Integer.valueOf(firstSource + i);
+			}
+			nextSource = 0;
+		}
+
+		Integer nextSource() {
+			Integer source = sources[nextSource];
+			nextSource = nextSource + 1 == sources.length ? 0 : nextSource + 1;
+			return source;
+		}
+
+	}
+
+	public static class LongRegistryState extends SourceState {
+
+		private LongSourceIndexRegistry<Integer> sourceIndexRegistry;
+
+		@Setup
+		public void setUpRegistry() {
+			sourceIndexRegistry = new LongSourceIndexRegistry<>();
+		}
+
+	}
+
+}
@@ -0,0 +1,70 @@
+package net.xeona.sampled.harness;
+
+import java.util.Random;
+
+/**
+ * The true values of a set of step series, advanced one cycle at a time, with enough history retained to answer what
+ * any series held up to a fixed number of cycles ago.
+ * <p />
+ * Each series starts at zero and increments whenever it changes, so values never repeat within a series. Series change
+ * with probabilities following a Zipf distribution over their keys, so that a few series change often and most rarely.
+ */
+final class GroundTruth {
+
+	private final double[] changeProbabilities;
+	private final int[][] valuesByCycle;
+
+	private long cycle;
+
+	GroundTruth(int keyCount, double changeProbability, double keySkew, int historyCycles) {
+		this.changeProbabilities = new double[keyCount];
+		for (int key = 0; key < keyCount; key++) {
+			changeProbabilities[key] = changeProbability / Math.pow(key + 1, keySkew);
+		}
+		this.valuesByCycle = new int[historyCycles + 1][keyCount];
+	}
+
+	/**
+	 * Move on to the next cycle, changing each series with its own probability
+	 */
+	void advance(Random random) {
+		int[] previousValues = valuesByCycle[slot(cycle)];
+		int[] values = valuesByCycle[slot(++cycle)];
+		for (int key = 0; key < values.length; key++) {
+			values[key] = random.nextDouble() < changeProbabilities[key] ? previousValues[key] + 1
+					: previousValues[key];
+		}
+	}
+
+	long getCycle() {
+		return cycle;
+	}
+
+	/**
+	 * @return The value held by the given series the given number of cycles ago, or its initial value if that precedes
+	 *         the first cycle
+	 */
+	int valueBefore(int cyclesAgo, int key) {
+		if (cyclesAgo >= valuesByCycle.length) {
+			throw new IllegalArgumentException("History only extends " + (valuesByCycle.length - 1) + " cycles");
+		}
+		return valuesByCycle[slot(Math.max(cycle - cyclesAgo, 0))][key];
+	}
+
+	/**
+	 * @return The number of distinct values the given series has held up to the current cycle, which, as each change
+	 *         increments its value, is one more than its current value
+	 */
+	int getHeldValueCount(int key) {
+		return valueBefore(0, key) + 1;
+	}
+
+	int getKeyCount() {
+		return changeProbabilities.length;
+	}
+
+	private int slot(long cycle) {
+		return (int) (cycle % valuesByCycle.length);
+	}
+
+}
@@ -0,0 +1,18 @@
+package net.xeona.sampled.harness;
+
+/**
+ * Entry point for the harness jar, running a single simulation configured from arguments of the form
+ * <code>--name=value</code>, as described by {@link SimulationConfiguration#fromArguments(String...)}. Exits with a
+ * non-zero status if any sample was reconstructed in disagreement with the ground truth, so that soak runs may gate a
+ * build.
+ */
+public class HarnessRunner {
+
+	public static void main(String[] args) {
+		long violationCount = new SoakHarness(SimulationConfiguration.fromArguments(args), System.out).run();
+		if (violationCount > 0) {
+			System.exit(1);
+		}
+	}
+
+}
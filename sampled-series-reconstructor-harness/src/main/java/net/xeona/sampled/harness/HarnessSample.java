@@ -0,0 +1,39 @@
+package net.xeona.sampled.harness;
+
+import net.xeona.sampled.KeyedSeriesSample;
+
+/**
+ * A sample whose value and source are overwritten for each poll, so that generating load allocates as little as
+ * possible outside the reconstructor being measured
+ */
+final class HarnessSample implements KeyedSeriesSample<Integer, Integer, Integer> {
+
+	private final Integer key;
+	private Integer value;
+	private Integer source;
+
+	HarnessSample(Integer key) {
+		this.key = key;
+	}
+
+	void set(Integer value, Integer source) {
+		this.value = value;
+		this.source = source;
+	}
+
+	@Override
+	public Integer getKey() {
+		return key;
+	}
+
+	@Override
+	public Integer getValue() {
+		return value;
+	}
+
+	@Override
+	public Integer getSource() {
+		return source;
+	}
+
+}
@@ -0,0 +1,118 @@
+package net.xeona.sampled.harness;
+
+import java.util.BitSet;
+
+/**
+ * The values of each series observed by any source and accepted into the reconstructed series, tracked only over a
+ * sliding window of the latest values of each series, so that memory is bounded however long a simulation runs.
+ * <p />
+ * As each series changes at most once per cycle and no source lags by more than a given number of cycles, the values
+ * observed in any cycle span no more than that number plus one. A value is only accepted in the cycle in which it is
+ * observed, so once it falls behind the window of its series it can no longer be accepted. It is then retired, and
+ * counted as missing if it was observed but never accepted.
+ */
+final class ObservedValueWindows {
+
+	private final int windowLength;
+	private final int windowMask;
+	private final BitSet observedValues;
+	private final BitSet acceptedValues;
+	private final int[] leastWindowValues;
+	private final MissingValueListener missingValueListener;
+
+	private long observedValueCount;
+	private long missingValueCount;
+
+	ObservedValueWindows(int keyCount, int maxLag, MissingValueListener missingValueListener) {
+		this.windowLength = Integer.highestOneBit(maxLag + 1) << 1;
+		this.windowMask = windowLength - 1;
+		this.observedValues = new BitSet(keyCount * windowLength);
+		this.acceptedValues = new BitSet(keyCount * windowLength);
+		this.leastWindowValues = new int[keyCount];
+		this.missingValueListener = missingValueListener;
+	}
+
+	/**
+	 * Record that a source has observed the given value of the given series, sliding the window of the series forward
+	 * if the value is beyond it
+	 */
+	void observe(int key, int value) {
+		int leastWindowValue = value - windowMask;
+		if (leastWindowValue > leastWindowValues[key]) {
+			int retiredValuesEnd = Math.min(leastWindowValue, leastWindowValues[key] + windowLength);
+			for (int retiredValue = leastWindowValues[key]; retiredValue < retiredValuesEnd; retiredValue++) {
+				retire(key, retiredValue);
+			}
+			leastWindowValues[key] = leastWindowValue;
+		}
+
+		int position = position(key, value);
+		if (!observedValues.get(position)) {
+			observedValues.set(position);
+			observedValueCount++;
+		}
+	}
+
+	boolean isObserved(int key, int value) {
+		return isInWindow(key, value) && observedValues.get(position(key, value));
+	}
+
+	boolean isAccepted(int key, int value) {
+		return isInWindow(key, value) && acceptedValues.get(position(key, value));
+	}
+
+	/**
+	 * Record that the given value, which must have been observed, has been accepted into the given series
+	 */
+	void accept(int key, int value) {
+		acceptedValues.set(position(key, value));
+	}
+
+	/**
+	 * Retire every value still in the window of each series, as at the end of a simulation
+	 */
+	void retireAll() {
+		for (int key = 0; key < leastWindowValues.length; key++) {
+			for (int value = leastWindowValues[key]; value < leastWindowValues[key] + windowLength; value++) {
+				retire(key, value);
+			}
+		}
+	}
+
+	long getObservedValueCount() {
+		return observedValueCount;
+	}
+
+	long getMissingValueCount() {
+		return missingValueCount;
+	}
+
+	private void retire(int key, int value) {
+		int position = position(key, value);
+		if (observedValues.get(position) && !acceptedValues.get(position)) {
+			missingValueCount++;
+			missingValueListener.onMissingValue(key, value);
+		}
+		observedValues.clear(position);
+		acceptedValues.clear(position);
+	}
+
+	private boolean isInWindow(int key, int value) {
+		return value >= leastWindowValues[key] && value - leastWindowValues[key] < windowLength;
+	}
+
+	private int position(int key, int value) {
+		return key * windowLength + (value & windowMask);
+	}
+
+	/**
+	 * A listener notified of each value which was observed but retired without ever being accepted
+	 */
+	@FunctionalInterface
+	interface MissingValueListener {
+
+		void onMissingValue(int key, int value);
+
+	}
+
+}
@@ -0,0 +1,367 @@
+package net.xeona.sampled.harness;
+
+import java.time.Duration;
+
+/**
+ * The parameters of a simulated population of sources polling a set of step series.
+ * <p />
+ * Every parameter has a default, so a configuration may be built overriding only those of interest, either through a
+ * {@link Builder} or from command line arguments of the form <code>--name=value</code> naming any of the builder's
+ * methods. Two runs with the same configuration offer the reconstructor exactly the same samples in the same order,
+ * however fast each runs.
+ *
+ * @author Wesley Marsh
+ */
+public final class SimulationConfiguration {
+
+	private final long seed;
+	private final int keyCount;
+	private final double changeProbability;
+	private final double keySkew;
+	private final int sourceCount;
+	private final int pollPeriod;
+	private final int pollJitter;
+	private final double laggingSourceFraction;
+	private final int maxLag;
+	private final double dropoutProbability;
+	private final int maxDropout;
+	private final double churnProbability;
+	private final long maxCycles;
+	private final Duration duration;
+	private final Duration reportInterval;
+
+	private SimulationConfiguration(Builder builder) {
+		this.seed = builder.seed;
+		this.keyCount = builder.keyCount;
+		this.changeProbability = builder.changeProbability;
+		this.keySkew = builder.keySkew;
+		this.sourceCount = builder.sourceCount;
+		this.pollPeriod = builder.pollPeriod;
+		this.pollJitter = builder.pollJitter;
+		this.laggingSourceFraction = builder.laggingSourceFraction;
+		this.maxLag = builder.maxLag;
+		this.dropoutProbability = builder.dropoutProbability;
+		this.maxDropout = builder.maxDropout;
+		this.churnProbability = builder.churnProbability;
+		this.maxCycles = builder.maxCycles;
+		this.duration = builder.duration;
+		this.reportInterval = builder.reportInterval;
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * @param arguments
+	 *            Arguments of the form <code>--name=value</code>, where each name is that of a method of
+	 *            {@link Builder} and durations are given in ISO-8601 form, such as <code>PT2H</code>
+	 */
+	public static SimulationConfiguration fromArguments(String... arguments) {
+		Builder builder = builder();
+		for (String argument : arguments) {
+			int separator = argument.indexOf('=');
+			if (!argument.startsWith("--") || separator < 0) {
+				throw new IllegalArgumentException("Expected an argument of the form --name=value: " + argument);
+			}
+			String name = argument.substring(2, separator);
+			String value = argument.substring(separator + 1);
+			switch (name) {
+			case "seed":
+				builder.seed(Long.parseLong(value));
+				break;
+			case "keyCount":
+				builder.keyCount(Integer.parseInt(value));
+				break;
+			case "changeProbability":
+				builder.changeProbability(Double.parseDouble(value));
+				break;
+			case "keySkew":
+				builder.keySkew(Double.parseDouble(value));
+				break;
+			case "sourceCount":
+				builder.sourceCount(Integer.parseInt(value));
+				break;
+			case "pollPeriod":
+				builder.pollPeriod(Integer.parseInt(value));
+				break;
+			case "pollJitter":
+				builder.pollJitter(Integer.parseInt(value));
+				break;
+			case "laggingSourceFraction":
+				builder.laggingSourceFraction(Double.parseDouble(value));
+				break;
+			case "maxLag":
+				builder.maxLag(Integer.parseInt(value));
+				break;
+			case "dropoutProbability":
+				builder.dropoutProbability(Double.parseDouble(value));
+				break;
+			case "maxDropout":
+				builder.maxDropout(Integer.parseInt(value));
+				break;
+			case "churnProbability":
+				builder.churnProbability(Double.parseDouble(value));
+				break;
+			case "maxCycles":
+				builder.maxCycles(Long.parseLong(value));
+				break;
+			case "duration":
+				builder.duration(Duration.parse(value));
+				break;
+			case "reportInterval":
+				builder.reportInterval(Duration.parse(value));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown argument: " + name);
+			}
+		}
+		return builder.build();
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public int getKeyCount() {
+		return keyCount;
+	}
+
+	public double getChangeProbability() {
+		return changeProbability;
+	}
+
+	public double getKeySkew() {
+		return keySkew;
+	}
+
+	public int getSourceCount() {
+		return sourceCount;
+	}
+
+	public int getPollPeriod() {
+		return pollPeriod;
+	}
+
+	public int getPollJitter() {
+		return pollJitter;
+	}
+
+	public double getLaggingSourceFraction() {
+		return laggingSourceFraction;
+	}
+
+	public int getMaxLag() {
+		return maxLag;
+	}
+
+	public double getDropoutProbability() {
+		return dropoutProbability;
+	}
+
+	public int getMaxDropout() {
+		return maxDropout;
+	}
+
+	public double getChurnProbability() {
+		return churnProbability;
+	}
+
+	public long getMaxCycles() {
+		return maxCycles;
+	}
+
+	public Duration getDuration() {
+		return duration;
+	}
+
+	public Duration getReportInterval() {
+		return reportInterval;
+	}
+
+	@Override
+	public String toString() {
+		return "seed=" + seed + " keyCount=" + keyCount + " changeProbability=" + changeProbability + " keySkew="
+				+ keySkew + " sourceCount=" + sourceCount + " pollPeriod=" + pollPeriod + " pollJitter=" + pollJitter
+				+ " laggingSourceFraction=" + laggingSourceFraction + " maxLag=" + maxLag + " dropoutProbability="
+				+ dropoutProbability + " maxDropout=" + maxDropout + " churnProbability=" + churnProbability
+				+ " maxCycles=" + maxCycles + " duration=" + duration + " reportInterval=" + reportInterval;
+	}
+
+	public static class Builder {
+
+		private long seed = 0x5eed;
+		private int keyCount = 1000;
+		private double changeProbability = 0.5;
+		private double keySkew = 1.0;
+		private int sourceCount = 16;
+		private int pollPeriod = 4;
+		private int pollJitter = 2;
+		private double laggingSourceFraction = 0.1;
+		private int maxLag = 32;
+		private double dropoutProbability = 0.001;
+		private int maxDropout = 256;
+		private double churnProbability = 0.0005;
+		private long maxCycles = Long.MAX_VALUE;
+		private Duration duration = Duration.ofMinutes(1);
+		private Duration reportInterval = Duration.ofSeconds(10);
+
+		private Builder() {
+		}
+
+		/**
+		 * Set the seed from which every random choice of the simulation is derived
+		 */
+		public Builder seed(long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		/**
+		 * Set the number of step series, each of which every source observes on every poll
+		 */
+		public Builder keyCount(int keyCount) {
+			this.keyCount = requirePositive("Key count", keyCount);
+			return this;
+		}
+
+		/**
+		 * Set the probability that the most frequently changing series changes value in any one cycle
+		 */
+		public Builder changeProbability(double changeProbability) {
+			this.changeProbability = requireProbability("Change probability", changeProbability);
+			return this;
+		}
+
+		/**
+		 * Set the exponent of the Zipf distribution of change probabilities across series, so that the series of rank
+		 * <code>r</code> changes with the probability of the first divided by <code>r<sup>keySkew</sup></code>. Zero
+		 * gives every series the same probability, while larger values concentrate changes in fewer series.
+		 */
+		public Builder keySkew(double keySkew) {
+			if (keySkew < 0) {
+				throw new IllegalArgumentException("Key skew must not be negative: " + keySkew);
+			}
+			this.keySkew = keySkew;
+			return this;
+		}
+
+		/**
+		 * Set the number of sources polling at any one time
+		 */
+		public Builder sourceCount(int sourceCount) {
+			this.sourceCount = requirePositive("Source count", sourceCount);
+			return this;
+		}
+
+		/**
+		 * Set the least number of cycles between consecutive polls by a source
+		 */
+		public Builder pollPeriod(int pollPeriod) {
+			this.pollPeriod = requirePositive("Poll period", pollPeriod);
+			return this;
+		}
+
+		/**
+		 * Set the greatest number of cycles by which a poll may be delayed beyond the poll period
+		 */
+		public Builder pollJitter(int pollJitter) {
+			this.pollJitter = requireNonNegative("Poll jitter", pollJitter);
+			return this;
+		}
+
+		/**
+		 * Set the fraction of sources which observe the series some number of cycles after they change
+		 */
+		public Builder laggingSourceFraction(double laggingSourceFraction) {
+			this.laggingSourceFraction = requireProbability("Lagging source fraction", laggingSourceFraction);
+			return this;
+		}
+
+		/**
+		 * Set the greatest number of cycles by which a lagging source may lag
+		 */
+		public Builder maxLag(int maxLag) {
+			this.maxLag = requirePositive("Maximum lag", maxLag);
+			return this;
+		}
+
+		/**
+		 * Set the probability that a source falls silent after any one poll, while remaining registered
+		 */
+		public Builder dropoutProbability(double dropoutProbability) {
+			this.dropoutProbability = requireProbability("Dropout probability", dropoutProbability);
+			return this;
+		}
+
+		/**
+		 * Set the greatest number of cycles for which a source which has dropped out remains silent
+		 */
+		public Builder maxDropout(int maxDropout) {
+			this.maxDropout = requirePositive("Maximum dropout", maxDropout);
+			return this;
+		}
+
+		/**
+		 * Set the probability that, in any one cycle, a source leaves the population and is replaced by a new one
+		 */
+		public Builder churnProbability(double churnProbability) {
+			this.churnProbability = requireProbability("Churn probability", churnProbability);
+			return this;
+		}
+
+		/**
+		 * Set the number of cycles after which to stop, even if the duration has not elapsed
+		 */
+		public Builder maxCycles(long maxCycles) {
+			if (maxCycles < 1) {
+				throw new IllegalArgumentException("Maximum cycles must be positive: " + maxCycles);
+			}
+			this.maxCycles = maxCycles;
+			return this;
+		}
+
+		/**
+		 * Set the wall clock time after which to stop, even if the maximum number of cycles has not been reached
+		 */
+		public Builder duration(Duration duration) {
+			this.duration = duration;
+			return this;
+		}
+
+		/**
+		 * Set the wall clock time between reports
+		 */
+		public Builder reportInterval(Duration reportInterval) {
+			this.reportInterval = reportInterval;
+			return this;
+		}
+
+		public SimulationConfiguration build() {
+			return new SimulationConfiguration(this);
+		}
+
+		private static int requirePositive(String name, int value) {
+			if (value < 1) {
+				throw new IllegalArgumentException(name + " must be positive: " + value);
+			}
+			return value;
+		}
+
+		private static int requireNonNegative(String name, int value) {
+			if (value < 0) {
+				throw new IllegalArgumentException(name + " must not be negative: " + value);
+			}
+			return value;
+		}
+
+		private static double requireProbability(String name, double value) {
+			if (!(value >= 0 && value <= 1)) {
+				throw new IllegalArgumentException(name + " must be between 0 and 1: " + value);
+			}
+			return value;
+		}
+
+	}
+
+}
@@ -0,0 +1,360 @@
+package net.xeona.sampled.harness;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+
+import net.xeona.sampled.MultiSampledSeriesReconstructor;
+import net.xeona.sampled.SampledStepSeriesReconstructor;
+import net.xeona.sampled.harness.SourcePopulation.SimulatedSource;
+import net.xeona.sampled.metrics.ReconstructionMetrics.SampleOutcome;
+import net.xeona.sampled.metrics.StripedReconstructionMetrics;
+import net.xeona.sampled.value.EqualityValueUpdatePredicate;
+import net.xeona.series.index.CounterSeriesIndex;
+import net.xeona.series.index.SourceIndexRegistry;
+
+/**
+ * Drives a {@link MultiSampledSeriesReconstructor} with the samples of a simulated population of sources, verifying
+ * every sample against the ground truth and periodically reporting throughput, latency, retained data points and
+ * allocation.
+ * <p />
+ * Simulated time advances in cycles, independently of the wall clock, so every run of the same configuration offers
+ * the same samples in the same order and reconstructs the same data points, of which a digest is reported. Only wall
+ * clock measurements differ between runs.
+ * <p />
+ * After each poll, the value the reconstructor holds for each series at the index the polling source has reached must
+ * be the value the source observed, as the source index of a sample's source always identifies the data point which the
+ * sample was aligned with. Any difference is reported as a violation. A sample is unverifiable, rather than in
+ * violation, when its series retains no data point at or before its source's index, as happens when the data point a
+ * lagging source was aligned with has been cleared and the source fails to align. Latency and allocation are measured
+ * around each call to {@link MultiSampledSeriesReconstructor#notifySamples(java.util.Collection)} alone, excluding the
+ * generation and verification of samples, and the verification of the data points accepted, which are only buffered
+ * while the call is measured.
+ * <p />
+ * The data points accepted into each series are also compared against the history of its values in the ground truth.
+ * As values only ever increase, every value observed by any source should be accepted exactly once, in increasing
+ * order, and no value which no source has observed may be accepted. Accepting an unobserved value is always a
+ * violation. Duplicated, misordered and missing data points are counted, and are violations unless sources lag. A
+ * lagging source may observe a value older than any its series retains, which is then appended as the newest data
+ * point, and as the index of a source is shared between series, this may in turn misalign it with other series, so
+ * these deviations are tolerated, though still reported, whenever sources lag. The values observed and accepted are
+ * tracked in {@link ObservedValueWindows} sized by the maximum lag, so a missing value is counted once no source can
+ * observe it any longer.
+ * <p />
+ * A harness runs a single simulation, and is not thread-safe.
+ *
+ * @author Wesley Marsh
+ */
+public final class SoakHarness {
+
+	private static final long HIGHEST_TRACKABLE_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+	private static final int MAX_REPORTED_VIOLATIONS = 10;
+
+	private final SimulationConfiguration configuration;
+	private final PrintStream reportStream;
+
+	private final Random random;
+	private final GroundTruth groundTruth;
+	private final SourcePopulation sourcePopulation;
+	private final SourceIndexRegistry<Integer, CounterSeriesIndex> sourceIndexRegistry;
+	private final StripedReconstructionMetrics metrics = new StripedReconstructionMetrics();
+	private final MultiSampledSeriesReconstructor<Integer, Integer, Integer, CounterSeriesIndex> reconstructor;
+
+	private final HarnessSample[] samples;
+	private final List<HarnessSample> sampleBatch;
+
+	private final int[] acceptedDataPointKeys;
+	private final long[] acceptedDataPointIndices;
+	private final int[] acceptedDataPointValues;
+	private int acceptedDataPointCount;
+
+	private final boolean sequenceDeviationTolerated;
+	private final ObservedValueWindows observedValueWindows;
+	private final int[] greatestAcceptedValues;
+	private final BitSet deviatingKeys = new BitSet();
+
+	private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+	private final List<GarbageCollectorMXBean> garbageCollectorMXBeans = ManagementFactory
+			.getGarbageCollectorMXBeans();
+	private final boolean allocationMeasured;
+
+	private final Histogram intervalLatencies = new Histogram(HIGHEST_TRACKABLE_LATENCY_NANOS, 3);
+	private final Histogram totalLatencies = new Histogram(HIGHEST_TRACKABLE_LATENCY_NANOS, 3);
+	private final List<String> violationDescriptions = new ArrayList<>();
+
+	private long dataPointDigest;
+	private long dataPointCount;
+	private long sampleCount;
+	private long violationCount;
+	private long unverifiableSampleCount;
+	private long duplicatedDataPointCount;
+	private long misorderedDataPointCount;
+	private long allocatedBytes;
+
+	private long intervalSampleCount;
+	private long intervalAllocatedBytes;
+	private long intervalGarbageCollections;
+	private long intervalGarbageCollectionMillis;
+
+	public SoakHarness(SimulationConfiguration configuration, PrintStream reportStream) {
+		this.configuration = requireNonNull(configuration);
+		this.reportStream = requireNonNull(reportStream);
+		this.random = new Random(configuration.getSeed());
+		this.groundTruth = new GroundTruth(configuration.getKeyCount(), configuration.getChangeProbability(),
+				configuration.getKeySkew(), configuration.getMaxLag());
+		this.sourcePopulation = new SourcePopulation(configuration, random);
+		this.sourceIndexRegistry = new SourceIndexRegistry<>(CounterSeriesIndex.Operations.instance());
+		this.reconstructor = MultiSampledSeriesReconstructor
+				.<Integer, Integer, Integer, CounterSeriesIndex> builder(sourceIndexRegistry,
+						registry -> SampledStepSeriesReconstructor.<Integer, Integer, CounterSeriesIndex> builder(
+								EqualityValueUpdatePredicate.instance(), CounterSeriesIndex.Operations.instance(),
+								registry).metrics(metrics).build())
+				.dataPointListener(this::bufferDataPoint).build();
+
+		this.samples = new HarnessSample[configuration.getKeyCount()];
+		for (int key = 0; key < samples.length; key++) {
+			samples[key] = new HarnessSample(key);
+		}
+		this.sampleBatch = Arrays.asList(samples);
+
+		this.acceptedDataPointKeys = new int[samples.length];
+		this.acceptedDataPointIndices = new long[samples.length];
+		this.acceptedDataPointValues = new int[samples.length];
+
+		this.sequenceDeviationTolerated = configuration.getLaggingSourceFraction() > 0;
+		this.observedValueWindows = new ObservedValueWindows(configuration.getKeyCount(), configuration.getMaxLag(),
+				this::onMissingValue);
+		this.greatestAcceptedValues = new int[configuration.getKeyCount()];
+		Arrays.fill(greatestAcceptedValues, -1);
+
+		this.allocationMeasured = threadMXBean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported()
+				&& ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemoryEnabled();
+	}
+
+	/**
+	 * Run the simulation until either its duration has elapsed or its maximum number of cycles has been reached,
+	 * reporting progress at each report interval and a summary on completion
+	 *
+	 * @return The number of samples whose reconstruction disagreed with the ground truth
+	 */
+	public long run() {
+		reportStream.println("Simulating " + configuration);
+		long startNanos = System.nanoTime();
+		long durationNanos = configuration.getDuration().toNanos();
+		long reportIntervalNanos = configuration.getReportInterval().toNanos();
+		long intervalStartNanos = startNanos;
+		resetInterval();
+
+		long nowNanos = startNanos;
+		while (groundTruth.getCycle() < configuration.getMaxCycles() && nowNanos - startNanos < durationNanos) {
+			groundTruth.advance(random);
+			long cycle = groundTruth.getCycle();
+			Integer departedSourceId = sourcePopulation.churn(cycle);
+			if (departedSourceId != null) {
+				sourceIndexRegistry.clearCurrentIndexForSource(departedSourceId);
+			}
+			sourcePopulation.forEachDuePoll(cycle, this::poll);
+
+			nowNanos = System.nanoTime();
+			if (nowNanos - intervalStartNanos >= reportIntervalNanos) {
+				report(startNanos, intervalStartNanos, nowNanos);
+				intervalStartNanos = nowNanos;
+				resetInterval();
+			}
+		}
+		report(startNanos, intervalStartNanos, System.nanoTime());
+		summarise(startNanos, System.nanoTime());
+		return violationCount;
+	}
+
+	private void poll(SimulatedSource source) {
+		for (int key = 0; key < samples.length; key++) {
+			int value = groundTruth.valueBefore(source.getLag(), key);
+			samples[key].set(value, source.getId());
+			observedValueWindows.observe(key, value);
+		}
+
+		long allocatedBytesBefore = threadAllocatedBytes();
+		long startNanos = System.nanoTime();
+		reconstructor.notifySamples(sampleBatch);
+		long latencyNanos = System.nanoTime() - startNanos;
+		long sampleAllocatedBytes = threadAllocatedBytes() - allocatedBytesBefore;
+
+		intervalLatencies.recordValue(Math.min(latencyNanos, HIGHEST_TRACKABLE_LATENCY_NANOS));
+		intervalSampleCount += samples.length;
+		intervalAllocatedBytes += sampleAllocatedBytes;
+
+		verify(source);
+		for (int i = 0; i < acceptedDataPointCount; i++) {
+			verifyDataPoint(acceptedDataPointKeys[i], acceptedDataPointIndices[i], acceptedDataPointValues[i]);
+		}
+		acceptedDataPointCount = 0;
+	}
+
+	private void verify(SimulatedSource source) {
+		CounterSeriesIndex sourceIndex = sourceIndexRegistry.getCurrentIndexForSource(source.getId());
+		for (HarnessSample sample : samples) {
+			Integer reconstructedValue = reconstructor.getValueAt(sample.getKey(), sourceIndex);
+			if (reconstructedValue == null) {
+				unverifiableSampleCount++;
+			} else if (!reconstructedValue.equals(sample.getValue())) {
+				reportViolation("source " + source.getId() + " observed " + sample.getValue() + " for key "
+						+ sample.getKey() + " but the reconstructed value at its index " + sourceIndex + " is "
+						+ reconstructedValue);
+			}
+		}
+	}
+
+	/**
+	 * Buffer a data point accepted by the reconstructor, to be verified once the measured call has returned. As every
+	 * batch holds a single sample for each key, no more data points than keys can be accepted from it.
+	 */
+	private void bufferDataPoint(Integer key, CounterSeriesIndex index, Integer value) {
+		acceptedDataPointKeys[acceptedDataPointCount] = key;
+		acceptedDataPointIndices[acceptedDataPointCount] = index.getCount();
+		acceptedDataPointValues[acceptedDataPointCount] = value;
+		acceptedDataPointCount++;
+	}
+
+	private void verifyDataPoint(int key, long index, int value) {
+		dataPointDigest = dataPointDigest * 0x9e3779b97f4a7c15L + (((long) key << 32) | (value & 0xffffffffL));
+		dataPointCount++;
+
+		if (!observedValueWindows.isObserved(key, value)) {
+			deviatingKeys.set(key);
+			reportViolation("key " + key + " accepted " + value + ", which no source has observed");
+		} else if (observedValueWindows.isAccepted(key, value)) {
+			deviatingKeys.set(key);
+			duplicatedDataPointCount++;
+			if (!sequenceDeviationTolerated) {
+				reportViolation("key " + key + " accepted " + value + " again at index " + index);
+			}
+		} else if (value < greatestAcceptedValues[key]) {
+			deviatingKeys.set(key);
+			misorderedDataPointCount++;
+			if (!sequenceDeviationTolerated) {
+				reportViolation("key " + key + " accepted " + value + " at index " + index + " after "
+						+ greatestAcceptedValues[key]);
+			}
+		}
+		observedValueWindows.accept(key, value);
+		greatestAcceptedValues[key] = Math.max(greatestAcceptedValues[key], value);
+	}
+
+	private void onMissingValue(int key, int value) {
+		deviatingKeys.set(key);
+		if (!sequenceDeviationTolerated) {
+			reportViolation("key " + key + " never accepted observed value " + value);
+		}
+	}
+
+	private void reportViolation(String violationDescription) {
+		violationCount++;
+		if (violationDescriptions.size() < MAX_REPORTED_VIOLATIONS) {
+			violationDescriptions.add("cycle " + groundTruth.getCycle() + ": " + violationDescription);
+		}
+	}
+
+	private void report(long startNanos, long intervalStartNanos, long nowNanos) {
+		double intervalSeconds = Math.max(nowNanos - intervalStartNanos, 1) / 1e9;
+		int[] retainedDataPoints = new int[configuration.getKeyCount()];
+		reconstructor.forEachDataPoint((key, index, value) -> retainedDataPoints[key]++);
+		long totalRetainedDataPoints = 0;
+		int maxRetainedDataPoints = 0;
+		for (int keyRetainedDataPoints : retainedDataPoints) {
+			totalRetainedDataPoints += keyRetainedDataPoints;
+			maxRetainedDataPoints = Math.max(maxRetainedDataPoints, keyRetainedDataPoints);
+		}
+		long garbageCollections = -intervalGarbageCollections;
+		long garbageCollectionMillis = -intervalGarbageCollectionMillis;
+		for (GarbageCollectorMXBean garbageCollectorMXBean : garbageCollectorMXBeans) {
+			garbageCollections += Math.max(garbageCollectorMXBean.getCollectionCount(), 0);
+			garbageCollectionMillis += Math.max(garbageCollectorMXBean.getCollectionTime(), 0);
+		}
+
+		reportStream.printf(
+				"%6ds cycle=%d sources=%d samples/s=%.0f batch-latency-us p50=%.1f p99=%.1f p99.9=%.1f max=%.1f"
+						+ " retained=%d max-per-key=%d %s gc=%d/%dms unverifiable=%d violations=%d%n",
+				TimeUnit.NANOSECONDS.toSeconds(nowNanos - startNanos), groundTruth.getCycle(), sourcePopulation.size(),
+				intervalSampleCount / intervalSeconds, micros(intervalLatencies.getValueAtPercentile(50)),
+				micros(intervalLatencies.getValueAtPercentile(99)),
+				micros(intervalLatencies.getValueAtPercentile(99.9)), micros(intervalLatencies.getMaxValue()),
+				totalRetainedDataPoints, maxRetainedDataPoints,
+				describeAllocation(intervalAllocatedBytes, intervalSampleCount, intervalSeconds), garbageCollections,
+				garbageCollectionMillis, unverifiableSampleCount, violationCount);
+
+		totalLatencies.add(intervalLatencies);
+		sampleCount += intervalSampleCount;
+		allocatedBytes += intervalAllocatedBytes;
+	}
+
+	private void summarise(long startNanos, long endNanos) {
+		long heldValueCount = 0;
+		for (int key = 0; key < samples.length; key++) {
+			heldValueCount += groundTruth.getHeldValueCount(key);
+		}
+		observedValueWindows.retireAll();
+
+		double seconds = Math.max(endNanos - startNanos, 1) / 1e9;
+		reportStream.printf("Completed %d cycles and %d samples in %.1fs: %.0f samples/s, %s%n", groundTruth.getCycle(),
+				sampleCount, seconds, sampleCount / seconds, describeAllocation(allocatedBytes, sampleCount, seconds));
+		reportStream.printf("Batch latency us: p50=%.1f p90=%.1f p99=%.1f p99.9=%.1f p99.99=%.1f max=%.1f%n",
+				micros(totalLatencies.getValueAtPercentile(50)), micros(totalLatencies.getValueAtPercentile(90)),
+				micros(totalLatencies.getValueAtPercentile(99)), micros(totalLatencies.getValueAtPercentile(99.9)),
+				micros(totalLatencies.getValueAtPercentile(99.99)), micros(totalLatencies.getMaxValue()));
+		reportStream.printf("Samples accepted=%d rejected=%d failed-alignment=%d; data points=%d digest=%016x%n",
+				metrics.getSampleOutcomeCount(SampleOutcome.ACCEPTED),
+				metrics.getSampleOutcomeCount(SampleOutcome.REJECTED),
+				metrics.getSampleOutcomeCount(SampleOutcome.FAILED_ALIGNMENT), dataPointCount, dataPointDigest);
+		reportStream.printf(
+				"Data points against ground truth: %d values held, %d observed; duplicated=%d misordered=%d"
+						+ " missing=%d across %d keys%s%n",
+				heldValueCount, observedValueWindows.getObservedValueCount(), duplicatedDataPointCount,
+				misorderedDataPointCount, observedValueWindows.getMissingValueCount(), deviatingKeys.cardinality(),
+				sequenceDeviationTolerated ? " (tolerated, as sources lag)" : "");
+		reportStream.println("Unverifiable samples: " + unverifiableSampleCount + "; violations of ground truth: "
+				+ violationCount);
+		violationDescriptions.forEach(violationDescription -> reportStream.println("  " + violationDescription));
+	}
+
+	private void resetInterval() {
+		intervalLatencies.reset();
+		intervalSampleCount = 0;
+		intervalAllocatedBytes = 0;
+		intervalGarbageCollections = 0;
+		intervalGarbageCollectionMillis = 0;
+		for (GarbageCollectorMXBean garbageCollectorMXBean : garbageCollectorMXBeans) {
+			intervalGarbageCollections += Math.max(garbageCollectorMXBean.getCollectionCount(), 0);
+			intervalGarbageCollectionMillis += Math.max(garbageCollectorMXBean.getCollectionTime(), 0);
+		}
+	}
+
+	private long threadAllocatedBytes() {
+		return allocationMeasured ? ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(
+				Thread.currentThread().getId()) : 0;
+	}
+
+	private String describeAllocation(long allocatedBytes, long sampleCount, double seconds) {
+		return allocationMeasured
+				? String.format("alloc=%.1fMB/s (%.1fB/sample)", allocatedBytes / seconds / (1 << 20),
+						allocatedBytes / (double) Math.max(sampleCount, 1))
+				: "alloc=unmeasured";
+	}
+
+	private static double micros(long nanos) {
+		return nanos / 1e3;
+	}
+
+}
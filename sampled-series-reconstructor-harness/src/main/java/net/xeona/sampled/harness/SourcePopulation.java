@@ -0,0 +1,98 @@
+package net.xeona.sampled.harness;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * The simulated sources polling the series, each of which polls on its own jittered schedule and observes the series a
+ * fixed number of cycles after they change.
+ * <p />
+ * Sources may drop out for a while after any poll, remaining registered with the reconstructor while silent, and may
+ * leave the population altogether, each leaving source being replaced by a new one with a previously unused
+ * identifier.
+ */
+final class SourcePopulation {
+
+	private final SimulationConfiguration configuration;
+	private final Random random;
+	private final List<SimulatedSource> sources = new ArrayList<>();
+
+	private int nextSourceId;
+
+	SourcePopulation(SimulationConfiguration configuration, Random random) {
+		this.configuration = configuration;
+		this.random = random;
+		for (int i = 0; i < configuration.getSourceCount(); i++) {
+			sources.add(join(0));
+		}
+	}
+
+	/**
+	 * Replace a source with a new one, with the configured probability
+	 *
+	 * @return The identifier of the source which left, or <code>null</code> if none did
+	 */
+	Integer churn(long cycle) {
+		Integer departedSourceId = null;
+		if (random.nextDouble() < configuration.getChurnProbability()) {
+			int position = random.nextInt(sources.size());
+			departedSourceId = sources.get(position).id;
+			sources.set(position, join(cycle));
+		}
+		return departedSourceId;
+	}
+
+	/**
+	 * Visit every source due to poll in the given cycle, in a fixed order, and schedule its next poll
+	 */
+	void forEachDuePoll(long cycle, Consumer<? super SimulatedSource> pollConsumer) {
+		for (SimulatedSource source : sources) {
+			if (source.nextPollCycle <= cycle) {
+				pollConsumer.accept(source);
+				source.nextPollCycle = cycle + configuration.getPollPeriod()
+						+ random.nextInt(configuration.getPollJitter() + 1);
+				if (random.nextDouble() < configuration.getDropoutProbability()) {
+					source.nextPollCycle += 1 + random.nextInt(configuration.getMaxDropout());
+				}
+			}
+		}
+	}
+
+	int size() {
+		return sources.size();
+	}
+
+	private SimulatedSource join(long cycle) {
+		int lag = random.nextDouble() < configuration.getLaggingSourceFraction()
+				? 1 + random.nextInt(configuration.getMaxLag()) : 0;
+		return new SimulatedSource(nextSourceId++, lag, cycle + random.nextInt(configuration.getPollPeriod()));
+	}
+
+	static final class SimulatedSource {
+
+		private final Integer id;
+		private final int lag;
+		private long nextPollCycle;
+
+		private SimulatedSource(Integer id, int lag, long nextPollCycle) {
+			this.id = id;
+			this.lag = lag;
+			this.nextPollCycle = nextPollCycle;
+		}
+
+		Integer getId() {
+			return id;
+		}
+
+		/**
+		 * @return The number of cycles after they change that this source observes the series
+		 */
+		int getLag() {
+			return lag;
+		}
+
+	}
+
+}
@@ -0,0 +1,111 @@
+package net.xeona.sampled;
+
+import static java.util.Objects.requireNonNull;
+
+import net.xeona.sampled.metrics.ReconstructionMetrics;
+import net.xeona.sampled.metrics.ReconstructionMetrics.SampleOutcome;
+import net.xeona.series.index.LongSourceIndexRegistry;
+
+/**
+ * The decision shared by the specialisations of {@link SampledStepSeriesReconstructor} for series indexed by plain
+ * <code>long</code> counters, whose retained data points are held in an {@link AbstractLongIndexedSeriesWindow}.
+ * <p />
+ * The decision made for each sample is identical to that of the generic reconstructor. So that values need not be
+ * boxed to pass through this class, a subclass holds the value of the sample being offered itself, and compares it
+ * with and appends it to the window on request.
+ *
+ * @param <S>
+ *            The type of source identifiers to be received as part of the samples
+ * @param <W>
+ *            The type of window holding the retained data points
+ */
+abstract class AbstractLongIndexedSampledStepSeriesReconstructor<S, W extends AbstractLongIndexedSeriesWindow> {
+
+	private final LongSourceIndexRegistry<? super S> sourceIndexRegistry;
+	private final ReconstructionMetrics metrics;
+
+	final W seriesWindow;
+
+	AbstractLongIndexedSampledStepSeriesReconstructor(LongSourceIndexRegistry<? super S> sourceIndexRegistry,
+			ReconstructionMetrics metrics, W seriesWindow) {
+		this.sourceIndexRegistry = requireNonNull(sourceIndexRegistry);
+		this.metrics = requireNonNull(metrics);
+		this.seriesWindow = seriesWindow;
+	}
+
+	/**
+	 * Decide whether the sample whose value the subclass holds, provided by the given source, represents a new data
+	 * point, accepting it into the series if so
+	 *
+	 * @return Whether the sample has been accepted into the series
+	 */
+	final boolean applySample(S sampleSource) {
+		long sourceIndex = sourceIndexRegistry.getCurrentIndexForSource(sampleSource);
+
+		boolean isNewValue;
+		long newSourceIndex;
+		SampleOutcome sampleOutcome;
+		if (seriesWindow.isEmpty()) {
+			isNewValue = true;
+			newSourceIndex = sourceIndex;
+			sampleOutcome = SampleOutcome.ACCEPTED;
+		} else {
+			int matchedPosition = findEarliestMatchingPosition(sourceIndex);
+			if (matchedPosition >= 0) {
+				isNewValue = false;
+				newSourceIndex = seriesWindow.indexAt(matchedPosition);
+				sampleOutcome = SampleOutcome.REJECTED;
+			} else if (seriesWindow.firstIndex() > sourceIndex) {
+				isNewValue = false;
+				newSourceIndex = sourceIndex;
+				sampleOutcome = SampleOutcome.FAILED_ALIGNMENT;
+			} else {
+				long latestSeriesIndex = seriesWindow.lastIndex();
+				isNewValue = true;
+				newSourceIndex = sourceIndex > latestSeriesIndex ? sourceIndex : latestSeriesIndex + 1;
+				sampleOutcome = SampleOutcome.ACCEPTED;
+			}
+		}
+		metrics.recordSampleOutcome(sampleOutcome);
+
+		if (isNewValue) {
+			acceptSample(newSourceIndex);
+		}
+		sourceIndexRegistry.setCurrentIndexForSource(sampleSource, newSourceIndex);
+		clearOldDataPoints();
+
+		return isNewValue;
+	}
+
+	/**
+	 * @return Whether the value of the data point at the given position is equivalent to that of the sample being
+	 *         offered
+	 */
+	abstract boolean isSampleEquivalentAt(int position);
+
+	/**
+	 * Append the sample being offered to the window as a new data point with the given index, notifying any listener
+	 */
+	abstract void acceptSample(long index);
+
+	private int findEarliestMatchingPosition(long sourceIndex) {
+		int walkStartPosition = Math.max(seriesWindow.floorPosition(sourceIndex), 0);
+		int matchedPosition = -1;
+		int position = walkStartPosition;
+		for (int size = seriesWindow.size(); matchedPosition < 0 && position < size; position++) {
+			if (isSampleEquivalentAt(position)) {
+				matchedPosition = position;
+			}
+		}
+		metrics.recordWalkLength(position - walkStartPosition);
+		return matchedPosition;
+	}
+
+	private void clearOldDataPoints() {
+		long leastSourceIndex = sourceIndexRegistry.getLeastCurrentIndex();
+		long greatestSeriesIndex = seriesWindow.lastIndex();
+		int prunedDataPoints = seriesWindow.clearBefore(Math.min(leastSourceIndex, greatestSeriesIndex));
+		metrics.recordPrune(prunedDataPoints, seriesWindow.size());
+	}
+
+}
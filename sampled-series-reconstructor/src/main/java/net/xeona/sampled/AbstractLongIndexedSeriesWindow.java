@@ -0,0 +1,174 @@
+package net.xeona.sampled;
+
+import java.util.Arrays;
+
+/**
+ * The retained data points of a step series whose indices are plain <code>long</code> counters, with the indices held
+ * in a ring buffer and the values held by subclasses in a parallel ring buffer of the same capacity.
+ * <p />
+ * Data points are only ever appended at the tail with an index greater than any already held, and only ever cleared
+ * from the head, so the indices within the window are always in ascending order. Positions passed to and returned from
+ * this class are logical, with position <code>0</code> being the earliest retained data point.
+ * <p />
+ * Walks start from the floor of a source's current index, which for sources keeping up with the series lies at or near
+ * the tail. The window therefore keeps a moving average of how far from the tail recent floors lay, and searches for
+ * the floor by galloping back from the tail while floors tend to lie close to it, or by bisecting the whole window
+ * otherwise. Either search finds the same position.
+ */
+abstract class AbstractLongIndexedSeriesWindow {
+
+	static final int DEFAULT_INITIAL_CAPACITY = 4;
+
+	private static final int FLOOR_DISTANCE_SMOOTHING_SHIFT = 3;
+
+	private long[] indices;
+	private int mask;
+
+	private int head;
+	private int size;
+
+	/**
+	 * A moving average of the distance of recently found floor positions from the tail, from which to choose how to
+	 * search for the next
+	 */
+	private int recentFloorDistance;
+
+	AbstractLongIndexedSeriesWindow(int initialCapacity) {
+		int capacity = Integer.highestOneBit(Math.max(1, initialCapacity - 1)) << 1;
+		this.indices = new long[capacity];
+		this.mask = capacity - 1;
+	}
+
+	final boolean isEmpty() {
+		return size == 0;
+	}
+
+	final int size() {
+		return size;
+	}
+
+	final long firstIndex() {
+		return indices[head];
+	}
+
+	final long lastIndex() {
+		return indices[slot(size - 1)];
+	}
+
+	final long indexAt(int position) {
+		return indices[slot(position)];
+	}
+
+	/**
+	 * @return The position of the greatest index less than or equal to the given index, or <code>-1</code> if every
+	 *         retained index is greater
+	 */
+	final int floorPosition(long index) {
+		int floorPosition;
+		if (size == 0 || indices[slot(size - 1)] <= index) {
+			floorPosition = size - 1;
+		} else if ((long) recentFloorDistance * recentFloorDistance < size) {
+			floorPosition = gallopFloorPositionFromTail(index);
+		} else {
+			floorPosition = bisectFloorPosition(index, 0, size - 2);
+		}
+		recentFloorDistance += (size - 1 - floorPosition - recentFloorDistance) >> FLOOR_DISTANCE_SMOOTHING_SHIFT;
+		return floorPosition;
+	}
+
+	/**
+	 * Find the floor position by probing backwards from the tail at doubling distances, then bisecting the last
+	 * interval probed. This costs about twice the logarithm of the floor's distance from the tail, rather than the
+	 * logarithm of the window size, so is cheaper whenever the square of that distance is less than the window size.
+	 */
+	private int gallopFloorPositionFromTail(long index) {
+		int upper = size - 1;
+		int distance = 1;
+		int lower = upper - distance;
+		while (lower >= 0 && indices[slot(lower)] > index) {
+			upper = lower;
+			distance <<= 1;
+			lower = upper - distance;
+		}
+		return lower < 0 ? bisectFloorPosition(index, 0, upper - 1) : bisectFloorPosition(index, lower + 1, upper - 1);
+	}
+
+	private int bisectFloorPosition(long index, int low, int high) {
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			long middleIndex = indices[slot(middle)];
+			if (middleIndex <= index) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return high;
+	}
+
+	/**
+	 * Clear every data point whose index precedes the given threshold
+	 *
+	 * @return The number of data points cleared
+	 */
+	final int clearBefore(long threshold) {
+		int cleared = 0;
+		while (size > 0 && indices[head] < threshold) {
+			clearValue(head);
+			head = (head + 1) & mask;
+			size--;
+			cleared++;
+		}
+		return cleared;
+	}
+
+	/**
+	 * @return The capacity of the ring buffers, which subclasses should use to size their values
+	 */
+	final int capacity() {
+		return indices.length;
+	}
+
+	/**
+	 * Append the given index at the tail of the window, growing the ring buffers if necessary. As growing replaces the
+	 * ring buffer of values, subclasses must only access it once this has returned.
+	 *
+	 * @return The slot at which the value of the new data point should be stored
+	 */
+	final int appendIndex(long index) {
+		if (size == indices.length) {
+			grow();
+		}
+		int tail = slot(size);
+		indices[tail] = index;
+		size++;
+		return tail;
+	}
+
+	final int slot(int position) {
+		return (head + position) & mask;
+	}
+
+	/**
+	 * Release the value held at the given slot, as its data point has been cleared
+	 */
+	abstract void clearValue(int slot);
+
+	/**
+	 * Grow the ring buffer of values to double its current capacity, moving the values before the head slot to follow
+	 * those from the head slot onwards
+	 */
+	abstract void growValues(int head);
+
+	private void grow() {
+		int capacity = indices.length;
+		long[] grownIndices = Arrays.copyOf(indices, capacity << 1);
+		if (head != 0) {
+			System.arraycopy(indices, 0, grownIndices, capacity, head);
+		}
+		growValues(head);
+		indices = grownIndices;
+		mask = (capacity << 1) - 1;
+	}
+
+}
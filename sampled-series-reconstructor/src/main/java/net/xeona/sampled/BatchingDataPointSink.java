@@ -0,0 +1,120 @@
+package net.xeona.sampled;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A {@link KeyedDataPointListener} which gathers accepted data points into fixed size chunks, handing each chunk to a
+ * downstream consumer once it is full or when the sink is {@link #flush() flushed}.
+ * <p />
+ * A single chunk is reused for the lifetime of the sink, and is cleared as soon as the downstream consumer returns, so
+ * the consumer must not retain it. This class is not thread-safe.
+ *
+ * @param <K>
+ *            The type of keys identifying each series
+ * @param <V>
+ *            The type of values of the series
+ * @param <I>
+ *            The type of index assigned to each data point
+ */
+public class BatchingDataPointSink<K, V, I> implements KeyedDataPointListener<K, V, I> {
+
+	private final Consumer<? super DataPointChunk<K, V, I>> downstream;
+	private final DataPointChunk<K, V, I> chunk;
+
+	public BatchingDataPointSink(int chunkSize, Consumer<? super DataPointChunk<K, V, I>> downstream) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+		}
+		this.downstream = requireNonNull(downstream);
+		this.chunk = new DataPointChunk<>(chunkSize);
+	}
+
+	@Override
+	public void onDataPoint(K key, I index, V value) {
+		chunk.add(key, index, value);
+		if (chunk.isFull()) {
+			flush();
+		}
+	}
+
+	/**
+	 * Hand any data points gathered since the last chunk was handed downstream to the downstream consumer
+	 */
+	public void flush() {
+		if (chunk.size() > 0) {
+			try {
+				downstream.accept(chunk);
+			} finally {
+				chunk.clear();
+			}
+		}
+	}
+
+	/**
+	 * A reusable chunk of accepted data points, held in parallel arrays
+	 */
+	public static final class DataPointChunk<K, V, I> {
+
+		private final Object[] keys;
+		private final Object[] indices;
+		private final Object[] values;
+		private int size;
+
+		private DataPointChunk(int capacity) {
+			this.keys = new Object[capacity];
+			this.indices = new Object[capacity];
+			this.values = new Object[capacity];
+		}
+
+		public int size() {
+			return size;
+		}
+
+		@SuppressWarnings("unchecked")
+		public K getKey(int position) {
+			checkPosition(position);
+			return (K) keys[position];
+		}
+
+		@SuppressWarnings("unchecked")
+		public I getIndex(int position) {
+			checkPosition(position);
+			return (I) indices[position];
+		}
+
+		@SuppressWarnings("unchecked")
+		public V getValue(int position) {
+			checkPosition(position);
+			return (V) values[position];
+		}
+
+		private void add(K key, I index, V value) {
+			keys[size] = key;
+			indices[size] = index;
+			values[size] = value;
+			size++;
+		}
+
+		private boolean isFull() {
+			return size == keys.length;
+		}
+
+		private void clear() {
+			Arrays.fill(keys, 0, size, null);
+			Arrays.fill(indices, 0, size, null);
+			Arrays.fill(values, 0, size, null);
+			size = 0;
+		}
+
+		private void checkPosition(int position) {
+			if (position < 0 || position >= size) {
+				throw new IndexOutOfBoundsException("Position " + position + " outside chunk of size " + size);
+			}
+		}
+
+	}
+
+}
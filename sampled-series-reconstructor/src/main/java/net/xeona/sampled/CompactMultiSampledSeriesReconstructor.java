@@ -0,0 +1,238 @@
+package net.xeona.sampled;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.groupingBy;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import net.xeona.sampled.value.ValueUpdatePredicate;
+import net.xeona.series.index.CounterSeriesIndex;
+import net.xeona.series.index.LongSourceIndexRegistry;
+
+/**
+ * An equivalent of {@link MultiSampledSeriesReconstructor} for series indexed by plain <code>long</code> counters,
+ * designed for very large numbers of series keys.
+ * <p />
+ * Rather than building a {@link SampledStepSeriesReconstructor} for each key, every key is interned to a dense
+ * identifier and its data points are held in columnar arrays shared by all keys. In steady state most series retain
+ * only a single data point, and so each key's window is held directly in the columns as a single index and value. Only
+ * while a lagging source requires a key to retain several data points is a {@link LongIndexedSeriesWindow} allocated for
+ * it, and that window is released again once the key has been pruned back to a single data point. Per key, this costs
+ * a handful of array slots rather than a reconstructor, a sorted map and its entries, and a map entry from key to
+ * reconstructor.
+ * <p />
+ * If the {@link ValueUpdatePredicate} is {@link ValueUpdatePredicate#isFingerprinted() fingerprinted}, a further
+ * column holds the fingerprint of each key's single data point, and windows hold the fingerprint of each of theirs, so
+ * that a sample's value is only compared with those of data points whose fingerprints match its own.
+ * <p />
+ * The decision made for each sample is identical to that of a <code>MultiSampledSeriesReconstructor</code> using
+ * {@link CounterSeriesIndex}, with all samples of each source reapplied until the index of that source stops
+ * advancing. This class is not thread-safe.
+ *
+ * @author Wesley Marsh
+ *
+ * @param <K>
+ *            The type of keys identifying each series
+ * @param <V>
+ *            The type of values to be received as part of samples from the series to be reconstructed
+ * @param <S>
+ *            The type of source identifiers to be received as part of the samples
+ */
+public class CompactMultiSampledSeriesReconstructor<K, V, S> {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final ValueUpdatePredicate<? super V> valueUpdatePredicate;
+	private final LongSourceIndexRegistry<S> sourceIndexRegistry;
+	private final KeyedDataPointListener<? super K, ? super V, ? super Long> dataPointListener;
+	private final boolean fingerprinted;
+
+	private final SeriesKeyInterner<K> seriesKeyInterner = new SeriesKeyInterner<>();
+	private final BitSet introducedSeries = new BitSet();
+
+	private long[] singleDataPointIndices = new long[INITIAL_CAPACITY];
+	private Object[] singleDataPointValues = new Object[INITIAL_CAPACITY];
+	private long[] singleDataPointFingerprints;
+	private LongIndexedSeriesWindow<V>[] seriesWindows = newSeriesWindows(INITIAL_CAPACITY);
+
+	public CompactMultiSampledSeriesReconstructor(ValueUpdatePredicate<? super V> valueUpdatePredicate,
+			LongSourceIndexRegistry<S> sourceIndexRegistry) {
+		this(valueUpdatePredicate, sourceIndexRegistry, null);
+	}
+
+	/**
+	 * @param dataPointListener
+	 *            A listener to be notified of each new data point as it is accepted into any series. May be
+	 *            <code>null</code>.
+	 */
+	public CompactMultiSampledSeriesReconstructor(ValueUpdatePredicate<? super V> valueUpdatePredicate,
+			LongSourceIndexRegistry<S> sourceIndexRegistry,
+			KeyedDataPointListener<? super K, ? super V, ? super Long> dataPointListener) {
+		this.valueUpdatePredicate = requireNonNull(valueUpdatePredicate);
+		this.sourceIndexRegistry = requireNonNull(sourceIndexRegistry);
+		this.dataPointListener = dataPointListener;
+		this.fingerprinted = valueUpdatePredicate.isFingerprinted();
+		this.singleDataPointFingerprints = fingerprinted ? new long[INITIAL_CAPACITY] : null;
+	}
+
+	public void notifySamples(Collection<? extends KeyedSeriesSample<K, V, S>> samples) {
+		Map<S, List<KeyedSeriesSample<K, V, S>>> samplesBySource = samples.stream()
+				.collect(groupingBy(KeyedSeriesSample::getSource));
+		for (Map.Entry<S, List<KeyedSeriesSample<K, V, S>>> entry : samplesBySource.entrySet()) {
+			S source = entry.getKey();
+			List<KeyedSeriesSample<K, V, S>> sourceSamples = entry.getValue();
+			int[] sampleKeyIds = new int[sourceSamples.size()];
+			for (int i = 0; i < sampleKeyIds.length; i++) {
+				sampleKeyIds[i] = seriesKeyInterner.intern(sourceSamples.get(i).getKey());
+			}
+
+			long initialSourceIndex;
+			long subsequentSourceIndex;
+			do {
+				initialSourceIndex = sourceIndexRegistry.getCurrentIndexForSource(source);
+				for (int i = 0; i < sampleKeyIds.length; i++) {
+					notifySample(sourceSamples.get(i), sampleKeyIds[i]);
+				}
+				subsequentSourceIndex = sourceIndexRegistry.getCurrentIndexForSource(source);
+			} while (subsequentSourceIndex > initialSourceIndex);
+		}
+	}
+
+	/**
+	 * @return The number of distinct series keys tracked by this reconstructor
+	 */
+	public int getSeriesCount() {
+		return seriesKeyInterner.size();
+	}
+
+	/**
+	 * Every key of a source's samples is interned before any is applied, so should applying a sample fail part way
+	 * through, the keys interned after it will not yet have been introduced. Each key's introduction is therefore
+	 * tracked by its identifier, rather than assuming that keys are introduced in the order they are interned.
+	 */
+	private void notifySample(KeyedSeriesSample<K, V, S> sample, int keyId) {
+		V sampleValue = sample.getValue();
+		S sampleSource = sample.getSource();
+		long sourceIndex = sourceIndexRegistry.getCurrentIndexForSource(sampleSource);
+		long sampleFingerprint = fingerprinted ? valueUpdatePredicate.fingerprint(sampleValue) : 0;
+
+		boolean isNewValue;
+		long newSourceIndex;
+		if (!introducedSeries.get(keyId)) {
+			ensureCapacity(keyId);
+			introducedSeries.set(keyId);
+			isNewValue = true;
+			newSourceIndex = sourceIndex;
+			sourceIndexRegistry.setCurrentIndexForSource(sampleSource, newSourceIndex);
+			setSingleDataPoint(keyId, newSourceIndex, sampleValue, sampleFingerprint);
+		} else if (seriesWindows[keyId] == null) {
+			long dataPointIndex = singleDataPointIndices[keyId];
+			@SuppressWarnings("unchecked")
+			V dataPointValue = (V) singleDataPointValues[keyId];
+			long dataPointFingerprint = fingerprinted ? singleDataPointFingerprints[keyId] : 0;
+			if (dataPointFingerprint == sampleFingerprint
+					&& valueUpdatePredicate.isValueEquivalent(dataPointValue, sampleValue)) {
+				isNewValue = false;
+				newSourceIndex = dataPointIndex;
+				sourceIndexRegistry.setCurrentIndexForSource(sampleSource, newSourceIndex);
+			} else if (dataPointIndex > sourceIndex) {
+				isNewValue = false;
+				newSourceIndex = sourceIndex;
+				sourceIndexRegistry.setCurrentIndexForSource(sampleSource, newSourceIndex);
+			} else {
+				isNewValue = true;
+				newSourceIndex = sourceIndex > dataPointIndex ? sourceIndex : dataPointIndex + 1;
+				sourceIndexRegistry.setCurrentIndexForSource(sampleSource, newSourceIndex);
+				if (dataPointIndex < Math.min(sourceIndexRegistry.getLeastCurrentIndex(), newSourceIndex)) {
+					setSingleDataPoint(keyId, newSourceIndex, sampleValue, sampleFingerprint);
+				} else {
+					LongIndexedSeriesWindow<V> seriesWindow = new LongIndexedSeriesWindow<>(fingerprinted);
+					seriesWindow.append(dataPointIndex, dataPointValue, dataPointFingerprint);
+					seriesWindow.append(newSourceIndex, sampleValue, sampleFingerprint);
+					seriesWindows[keyId] = seriesWindow;
+					singleDataPointValues[keyId] = null;
+				}
+			}
+		} else {
+			LongIndexedSeriesWindow<V> seriesWindow = seriesWindows[keyId];
+			int matchedPosition = findEarliestMatchingPosition(seriesWindow, sampleValue, sampleFingerprint,
+					sourceIndex);
+			if (matchedPosition >= 0) {
+				isNewValue = false;
+				newSourceIndex = seriesWindow.indexAt(matchedPosition);
+			} else if (seriesWindow.firstIndex() > sourceIndex) {
+				isNewValue = false;
+				newSourceIndex = sourceIndex;
+			} else {
+				long latestSeriesIndex = seriesWindow.lastIndex();
+				isNewValue = true;
+				newSourceIndex = sourceIndex > latestSeriesIndex ? sourceIndex : latestSeriesIndex + 1;
+				seriesWindow.append(newSourceIndex, sampleValue, sampleFingerprint);
+			}
+			sourceIndexRegistry.setCurrentIndexForSource(sampleSource, newSourceIndex);
+			clearOldDataPoints(keyId, seriesWindow);
+		}
+
+		if (isNewValue && dataPointListener != null) {
+			dataPointListener.onDataPoint(sample.getKey(), newSourceIndex, sampleValue);
+		}
+	}
+
+	private int findEarliestMatchingPosition(LongIndexedSeriesWindow<V> seriesWindow, V sampleValue,
+			long sampleFingerprint, long sourceIndex) {
+		int walkStartPosition = Math.max(seriesWindow.floorPosition(sourceIndex), 0);
+		int matchedPosition = -1;
+		for (int position = walkStartPosition, size = seriesWindow.size(); matchedPosition < 0
+				&& position < size; position++) {
+			if ((!fingerprinted || seriesWindow.fingerprintAt(position) == sampleFingerprint)
+					&& valueUpdatePredicate.isValueEquivalent(seriesWindow.valueAt(position), sampleValue)) {
+				matchedPosition = position;
+			}
+		}
+		return matchedPosition;
+	}
+
+	private void clearOldDataPoints(int keyId, LongIndexedSeriesWindow<V> seriesWindow) {
+		long leastSourceIndex = sourceIndexRegistry.getLeastCurrentIndex();
+		long greatestSeriesIndex = seriesWindow.lastIndex();
+		seriesWindow.clearBefore(Math.min(leastSourceIndex, greatestSeriesIndex));
+		if (seriesWindow.size() == 1) {
+			seriesWindows[keyId] = null;
+			setSingleDataPoint(keyId, seriesWindow.firstIndex(), seriesWindow.valueAt(0),
+					fingerprinted ? seriesWindow.fingerprintAt(0) : 0);
+		}
+	}
+
+	private void setSingleDataPoint(int keyId, long index, V value, long fingerprint) {
+		singleDataPointIndices[keyId] = index;
+		singleDataPointValues[keyId] = value;
+		if (fingerprinted) {
+			singleDataPointFingerprints[keyId] = fingerprint;
+		}
+	}
+
+	private void ensureCapacity(int keyId) {
+		if (keyId >= singleDataPointIndices.length) {
+			int capacity = singleDataPointIndices.length;
+			while (keyId >= capacity) {
+				capacity <<= 1;
+			}
+			singleDataPointIndices = Arrays.copyOf(singleDataPointIndices, capacity);
+			singleDataPointValues = Arrays.copyOf(singleDataPointValues, capacity);
+			if (fingerprinted) {
+				singleDataPointFingerprints = Arrays.copyOf(singleDataPointFingerprints, capacity);
+			}
+			seriesWindows = Arrays.copyOf(seriesWindows, capacity);
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static <V> LongIndexedSeriesWindow<V>[] newSeriesWindows(int capacity) {
+		return new LongIndexedSeriesWindow[capacity];
+	}
+
+}
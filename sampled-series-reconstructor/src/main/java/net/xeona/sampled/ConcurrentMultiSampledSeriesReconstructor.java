@@ -0,0 +1,145 @@
+package net.xeona.sampled;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.groupingBy;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.xeona.sampled.MultiSampledSeriesReconstructor.SampledSeriesReconstructorFactory;
+import net.xeona.series.index.ConcurrentSourceIndexRegistry;
+import net.xeona.series.index.SeriesIndex;
+
+/**
+ * A thread-safe equivalent of {@link MultiSampledSeriesReconstructor}, allowing samples to be notified from many
+ * threads at once.
+ * <p />
+ * The reconstructors for each series key are partitioned across a fixed number of lock stripes, so samples for keys in
+ * different stripes are reconstructed in parallel, while all samples for any one key are applied one at a time. Source
+ * indices are shared between all keys through a {@link ConcurrentSourceIndexRegistry}.
+ * <p />
+ * Samples from the same source should be notified from a single thread at a time, as the ordering of a source's
+ * samples is significant to the reconstruction of each series.
+ *
+ * @author Wesley Marsh
+ *
+ * @param <K>
+ *            The type of keys identifying each series
+ * @param <V>
+ *            The type of values to be received as part of samples from the series to be reconstructed
+ * @param <S>
+ *            The type of source identifiers to be received as part of the samples
+ * @param <I>
+ *            The type of <code>SeriesIndex</code> to be used to compare the relative freshness of both data points and
+ *            sources
+ */
+public class ConcurrentMultiSampledSeriesReconstructor<K, V, S, I extends SeriesIndex<? super I>> {
+
+	private static final int DEFAULT_STRIPES_PER_PROCESSOR = 4;
+
+	private final ConcurrentSourceIndexRegistry<S, I> sourceIndexRegistry;
+	private final SampledSeriesReconstructorFactory<V, S, I> seriesReconstructorFactory;
+	private final KeyedDataPointListener<? super K, ? super V, ? super I> dataPointListener;
+
+	private final Stripe<K, V, S, I>[] stripes;
+
+	public ConcurrentMultiSampledSeriesReconstructor(ConcurrentSourceIndexRegistry<S, I> sourceIndexRegistry,
+			SampledSeriesReconstructorFactory<V, S, I> seriesReconstructorFactory) {
+		this(sourceIndexRegistry, seriesReconstructorFactory,
+				Runtime.getRuntime().availableProcessors() * DEFAULT_STRIPES_PER_PROCESSOR);
+	}
+
+	public ConcurrentMultiSampledSeriesReconstructor(ConcurrentSourceIndexRegistry<S, I> sourceIndexRegistry,
+			SampledSeriesReconstructorFactory<V, S, I> seriesReconstructorFactory, int minimumStripeCount) {
+		this(sourceIndexRegistry, seriesReconstructorFactory, minimumStripeCount, null);
+	}
+
+	/**
+	 * @param dataPointListener
+	 *            A listener to be notified of each new data point as it is accepted into any series. It is notified
+	 *            while the lock for the series key is held, from whichever thread notified the sample, and so must be
+	 *            thread-safe. May be <code>null</code>.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public ConcurrentMultiSampledSeriesReconstructor(ConcurrentSourceIndexRegistry<S, I> sourceIndexRegistry,
+			SampledSeriesReconstructorFactory<V, S, I> seriesReconstructorFactory, int minimumStripeCount,
+			KeyedDataPointListener<? super K, ? super V, ? super I> dataPointListener) {
+		if (minimumStripeCount < 1) {
+			throw new IllegalArgumentException("Stripe count must be positive: " + minimumStripeCount);
+		}
+		this.sourceIndexRegistry = requireNonNull(sourceIndexRegistry);
+		this.seriesReconstructorFactory = requireNonNull(seriesReconstructorFactory);
+		this.dataPointListener = dataPointListener;
+
+		int stripeCount = 1;
+		while (stripeCount < minimumStripeCount) {
+			stripeCount <<= 1;
+		}
+		this.stripes = new Stripe[stripeCount];
+		for (int i = 0; i < stripeCount; i++) {
+			stripes[i] = new Stripe<>();
+		}
+	}
+
+	public void notifySamples(Collection<? extends KeyedSeriesSample<K, V, S>> samples) {
+		Map<S, List<KeyedSeriesSample<K, V, S>>> samplesBySource = samples.stream()
+				.collect(groupingBy(KeyedSeriesSample::getSource));
+		for (Map.Entry<S, List<KeyedSeriesSample<K, V, S>>> entry : samplesBySource.entrySet()) {
+			S source = entry.getKey();
+
+			I initialSourceIndex;
+			I subsequentSourceIndex;
+			do {
+				initialSourceIndex = sourceIndexRegistry.getCurrentIndexForSource(source);
+				for (KeyedSeriesSample<K, V, S> sample : entry.getValue()) {
+					notifySample(sample);
+				}
+				subsequentSourceIndex = sourceIndexRegistry.getCurrentIndexForSource(source);
+			} while (subsequentSourceIndex.compareTo(initialSourceIndex) > 0);
+		}
+	}
+
+	/**
+	 * Visit each data point currently retained by every series, holding the lock for each stripe of series keys in turn.
+	 * All data points of a series are visited together, in ascending index order, with series visited in no particular
+	 * order.
+	 */
+	public void forEachDataPoint(KeyedDataPointListener<? super K, ? super V, ? super I> dataPointConsumer) {
+		for (Stripe<K, V, S, I> stripe : stripes) {
+			synchronized (stripe) {
+				stripe.seriesReconstructorsByKey.forEach((seriesKey, seriesReconstructor) -> seriesReconstructor
+						.forEachDataPoint((index, value) -> dataPointConsumer.onDataPoint(seriesKey, index, value)));
+			}
+		}
+	}
+
+	private boolean notifySample(KeyedSeriesSample<K, V, S> sample) {
+		K sampleSeriesKey = sample.getKey();
+		Stripe<K, V, S, I> stripe = stripeFor(sampleSeriesKey);
+		synchronized (stripe) {
+			SampledStepSeriesReconstructor<V, S, I> seriesReconstructor = stripe.seriesReconstructorsByKey
+					.computeIfAbsent(sampleSeriesKey,
+							absentSeriesKey -> seriesReconstructorFactory.build(sourceIndexRegistry));
+			boolean isNewValue = seriesReconstructor.notifySample(sample);
+			if (isNewValue && dataPointListener != null) {
+				dataPointListener.onDataPoint(sampleSeriesKey, seriesReconstructor.getLatestSeriesIndex(),
+						sample.getValue());
+			}
+			return isNewValue;
+		}
+	}
+
+	private Stripe<K, V, S, I> stripeFor(K seriesKey) {
+		int hash = seriesKey.hashCode();
+		return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+	}
+
+	private static class Stripe<K, V, S, I extends SeriesIndex<? super I>> {
+
+		private final Map<K, SampledStepSeriesReconstructor<V, S, I>> seriesReconstructorsByKey = new HashMap<>();
+
+	}
+
+}
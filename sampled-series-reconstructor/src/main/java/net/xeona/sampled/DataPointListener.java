@@ -0,0 +1,16 @@
+package net.xeona.sampled;
+
+/**
+ * A listener notified by a {@link SampledStepSeriesReconstructor} of each new data point accepted into its series
+ *
+ * @param <V>
+ *            The type of values of the series
+ * @param <I>
+ *            The type of index assigned to each data point
+ */
+@FunctionalInterface
+public interface DataPointListener<V, I> {
+
+	void onDataPoint(I index, V value);
+
+}
@@ -0,0 +1,12 @@
+package net.xeona.sampled;
+
+/**
+ * A {@link DataPointListener} specialised for series of <code>double</code> values indexed by plain <code>long</code>
+ * counters, notified by a {@link DoubleSampledStepSeriesReconstructor} without boxing either
+ */
+@FunctionalInterface
+public interface DoubleDataPointListener {
+
+	void onDataPoint(long index, double value);
+
+}
@@ -0,0 +1,77 @@
+package net.xeona.sampled;
+
+import static java.util.Objects.requireNonNull;
+
+import net.xeona.sampled.metrics.NoOpReconstructionMetrics;
+import net.xeona.sampled.metrics.ReconstructionMetrics;
+import net.xeona.sampled.value.DoubleValueUpdatePredicate;
+import net.xeona.series.index.LongSourceIndexRegistry;
+
+/**
+ * A specialisation of {@link SampledStepSeriesReconstructor} for series of <code>double</code> values indexed by plain
+ * <code>long</code> counters.
+ * <p />
+ * This is a {@link LongSampledStepSeriesReconstructor} over the raw bit representation of each value, with the
+ * {@link DoubleValueUpdatePredicate} applied to the values those bits represent, so that a series is reconstructed
+ * without boxing any value or index.
+ *
+ * @author Wesley Marsh
+ *
+ * @param <S>
+ *            The type of source identifiers to be received as part of the samples
+ */
+public class DoubleSampledStepSeriesReconstructor<S> {
+
+	private final LongSampledStepSeriesReconstructor<S> valueBitsReconstructor;
+
+	public DoubleSampledStepSeriesReconstructor(DoubleValueUpdatePredicate valueUpdatePredicate,
+			LongSourceIndexRegistry<? super S> sourceIndexRegistry) {
+		this(valueUpdatePredicate, sourceIndexRegistry, NoOpReconstructionMetrics.instance());
+	}
+
+	public DoubleSampledStepSeriesReconstructor(DoubleValueUpdatePredicate valueUpdatePredicate,
+			LongSourceIndexRegistry<? super S> sourceIndexRegistry, ReconstructionMetrics metrics) {
+		this(valueUpdatePredicate, sourceIndexRegistry, metrics, null);
+	}
+
+	/**
+	 * @param dataPointListener
+	 *            A listener to be notified of each new data point as it is accepted into the series. May be
+	 *            <code>null</code>.
+	 */
+	public DoubleSampledStepSeriesReconstructor(DoubleValueUpdatePredicate valueUpdatePredicate,
+			LongSourceIndexRegistry<? super S> sourceIndexRegistry, ReconstructionMetrics metrics,
+			DoubleDataPointListener dataPointListener) {
+		requireNonNull(valueUpdatePredicate);
+		this.valueBitsReconstructor = new LongSampledStepSeriesReconstructor<>(
+				(previousValueBits, newValueBits) -> valueUpdatePredicate.isValueEquivalent(
+						Double.longBitsToDouble(previousValueBits), Double.longBitsToDouble(newValueBits)),
+				sourceIndexRegistry, metrics,
+				dataPointListener == null ? null
+						: (index, valueBits) -> dataPointListener.onDataPoint(index,
+								Double.longBitsToDouble(valueBits)));
+	}
+
+	/**
+	 * Offer a new sample to the series being reconstructed by this instance and decide whether the sample represents a
+	 * new data point
+	 *
+	 * @param sample
+	 *            The sample to test
+	 * @return Whether the new sample has been accepted into the series
+	 */
+	public boolean notifySample(DoubleSeriesSample<? extends S> sample) {
+		return notifySample(sample.getDoubleValue(), sample.getSource());
+	}
+
+	/**
+	 * Offer a new sample, given as its value and source, to the series being reconstructed by this instance and decide
+	 * whether the sample represents a new data point
+	 *
+	 * @return Whether the new sample has been accepted into the series
+	 */
+	public boolean notifySample(double sampleValue, S sampleSource) {
+		return valueBitsReconstructor.notifySample(Double.doubleToRawLongBits(sampleValue), sampleSource);
+	}
+
+}
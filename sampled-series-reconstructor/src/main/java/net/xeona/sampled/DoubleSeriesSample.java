@@ -0,0 +1,18 @@
+package net.xeona.sampled;
+
+/**
+ * A sample of a series of <code>double</code> values, whose value may be read without boxing
+ *
+ * @param <S>
+ *            The type of source identifier of the sample
+ */
+public interface DoubleSeriesSample<S> extends SeriesSample<Double, S> {
+
+	double getDoubleValue();
+
+	@Override
+	default Double getValue() {
+		return getDoubleValue();
+	}
+
+}
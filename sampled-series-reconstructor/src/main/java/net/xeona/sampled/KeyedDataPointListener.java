@@ -0,0 +1,19 @@
+package net.xeona.sampled;
+
+/**
+ * A listener notified by a {@link MultiSampledSeriesReconstructor} of each new data point accepted into any of its
+ * series
+ *
+ * @param <K>
+ *            The type of keys identifying each series
+ * @param <V>
+ *            The type of values of the series
+ * @param <I>
+ *            The type of index assigned to each data point
+ */
+@FunctionalInterface
+public interface KeyedDataPointListener<K, V, I> {
+
+	void onDataPoint(K key, I index, V value);
+
+}
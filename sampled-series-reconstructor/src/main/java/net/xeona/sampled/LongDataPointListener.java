@@ -0,0 +1,12 @@
+package net.xeona.sampled;
+
+/**
+ * A {@link DataPointListener} specialised for series of <code>long</code> values indexed by plain <code>long</code>
+ * counters, notified by a {@link LongSampledStepSeriesReconstructor} without boxing either
+ */
+@FunctionalInterface
+public interface LongDataPointListener {
+
+	void onDataPoint(long index, long value);
+
+}
@@ -0,0 +1,97 @@
+package net.xeona.sampled;
+
+import static java.util.Objects.requireNonNull;
+
+import net.xeona.sampled.metrics.NoOpReconstructionMetrics;
+import net.xeona.sampled.metrics.ReconstructionMetrics;
+import net.xeona.sampled.value.ValueUpdatePredicate;
+import net.xeona.series.index.CounterSeriesIndex;
+import net.xeona.series.index.LongSourceIndexRegistry;
+
+/**
+ * A specialisation of {@link SampledStepSeriesReconstructor} for series indexed by plain <code>long</code> counters,
+ * equivalent to reconstructing with {@link CounterSeriesIndex}.
+ * <p />
+ * The decision made for each sample is identical to that of the generic reconstructor. However, the retained data
+ * points are held in parallel primitive ring buffers rather than a sorted map of index objects, and source indices are
+ * tracked by a {@link LongSourceIndexRegistry}, so that once the window and registry have grown to their working size
+ * the accept/reject decision is made without any allocation.
+ * <p />
+ * If the {@link ValueUpdatePredicate} is {@link ValueUpdatePredicate#isFingerprinted() fingerprinted}, the fingerprint
+ * of each sample is computed once and that of each data point is held beside it, so that the walk only compares the
+ * values of data points whose fingerprints match the sample's.
+ *
+ * @author Wesley Marsh
+ *
+ * @param <V>
+ *            The type of values to be received as part of samples from the series to be reconstructed
+ * @param <S>
+ *            The type of source identifiers to be received as part of the samples
+ */
+public class LongIndexedSampledStepSeriesReconstructor<V, S>
+		extends AbstractLongIndexedSampledStepSeriesReconstructor<S, LongIndexedSeriesWindow<V>> {
+
+	private final ValueUpdatePredicate<? super V> valueUpdatePredicate;
+	private final DataPointListener<? super V, ? super Long> dataPointListener;
+	private final boolean fingerprinted;
+
+	private V sampleValue;
+	private long sampleFingerprint;
+
+	public LongIndexedSampledStepSeriesReconstructor(ValueUpdatePredicate<? super V> valueUpdatePredicate,
+			LongSourceIndexRegistry<? super S> sourceIndexRegistry) {
+		this(valueUpdatePredicate, sourceIndexRegistry, NoOpReconstructionMetrics.instance());
+	}
+
+	public LongIndexedSampledStepSeriesReconstructor(ValueUpdatePredicate<? super V> valueUpdatePredicate,
+			LongSourceIndexRegistry<? super S> sourceIndexRegistry, ReconstructionMetrics metrics) {
+		this(valueUpdatePredicate, sourceIndexRegistry, metrics, null);
+	}
+
+	/**
+	 * @param dataPointListener
+	 *            A listener to be notified of each new data point as it is accepted into the series, to which each
+	 *            index is boxed. May be <code>null</code>.
+	 */
+	public LongIndexedSampledStepSeriesReconstructor(ValueUpdatePredicate<? super V> valueUpdatePredicate,
+			LongSourceIndexRegistry<? super S> sourceIndexRegistry, ReconstructionMetrics metrics,
+			DataPointListener<? super V, ? super Long> dataPointListener) {
+		super(sourceIndexRegistry, metrics, new LongIndexedSeriesWindow<>(valueUpdatePredicate.isFingerprinted()));
+		this.valueUpdatePredicate = requireNonNull(valueUpdatePredicate);
+		this.dataPointListener = dataPointListener;
+		this.fingerprinted = valueUpdatePredicate.isFingerprinted();
+	}
+
+	/**
+	 * Offer a new sample to the series being reconstructed by this instance and decide whether the sample represents a
+	 * new data point
+	 *
+	 * @param sample
+	 *            The sample to test
+	 * @return Whether the new sample has been accepted into the series
+	 */
+	public boolean notifySample(SeriesSample<V, S> sample) {
+		sampleValue = sample.getValue();
+		sampleFingerprint = fingerprinted ? valueUpdatePredicate.fingerprint(sampleValue) : 0;
+		try {
+			return applySample(sample.getSource());
+		} finally {
+			sampleValue = null;
+		}
+	}
+
+	@Override
+	boolean isSampleEquivalentAt(int position) {
+		return (!fingerprinted || seriesWindow.fingerprintAt(position) == sampleFingerprint)
+				&& valueUpdatePredicate.isValueEquivalent(seriesWindow.valueAt(position), sampleValue);
+	}
+
+	@Override
+	void acceptSample(long index) {
+		seriesWindow.append(index, sampleValue, sampleFingerprint);
+		if (dataPointListener != null) {
+			dataPointListener.onDataPoint(index, sampleValue);
+		}
+	}
+
+}
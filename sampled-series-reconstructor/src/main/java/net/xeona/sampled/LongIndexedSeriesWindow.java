@@ -0,0 +1,89 @@
+package net.xeona.sampled;
+
+import java.util.Arrays;
+
+/**
+ * The retained data points of a step series whose indices are plain <code>long</code> counters, held in a pair of
+ * parallel ring buffers.
+ * <p />
+ * A window may also hold the fingerprint of each value in a third parallel ring buffer, so that a walk can compare
+ * fingerprints held contiguously before comparing any values themselves.
+ *
+ * @see AbstractLongIndexedSeriesWindow
+ *
+ * @param <V>
+ *            The type of values held in the window
+ */
+final class LongIndexedSeriesWindow<V> extends AbstractLongIndexedSeriesWindow {
+
+	private Object[] values;
+	private long[] fingerprints;
+
+	LongIndexedSeriesWindow() {
+		this(DEFAULT_INITIAL_CAPACITY, false);
+	}
+
+	/**
+	 * @param fingerprinted
+	 *            Whether to hold the fingerprint of each value, which must then be given to
+	 *            {@link #append(long, Object, long)}
+	 */
+	LongIndexedSeriesWindow(boolean fingerprinted) {
+		this(DEFAULT_INITIAL_CAPACITY, fingerprinted);
+	}
+
+	LongIndexedSeriesWindow(int initialCapacity, boolean fingerprinted) {
+		super(initialCapacity);
+		this.values = new Object[capacity()];
+		this.fingerprints = fingerprinted ? new long[capacity()] : null;
+	}
+
+	@SuppressWarnings("unchecked")
+	V valueAt(int position) {
+		return (V) values[slot(position)];
+	}
+
+	/**
+	 * @return The fingerprint of the value at the given position, which is only held if this window is fingerprinted
+	 */
+	long fingerprintAt(int position) {
+		return fingerprints[slot(position)];
+	}
+
+	void append(long index, V value) {
+		int slot = appendIndex(index);
+		values[slot] = value;
+	}
+
+	void append(long index, V value, long fingerprint) {
+		int slot = appendIndex(index);
+		values[slot] = value;
+		if (fingerprints != null) {
+			fingerprints[slot] = fingerprint;
+		}
+	}
+
+	@Override
+	void clearValue(int slot) {
+		values[slot] = null;
+	}
+
+	@Override
+	void growValues(int head) {
+		int capacity = values.length;
+		Object[] grownValues = Arrays.copyOf(values, capacity << 1);
+		if (head != 0) {
+			System.arraycopy(values, 0, grownValues, capacity, head);
+			Arrays.fill(grownValues, 0, head, null);
+		}
+		values = grownValues;
+		if (fingerprints != null) {
+			long[] grownFingerprints = Arrays.copyOf(fingerprints, capacity << 1);
+			if (head != 0) {
+				System.arraycopy(fingerprints, 0, grownFingerprints, capacity, head);
+			}
+			fingerprints = grownFingerprints;
+		}
+	}
+
+}
@@ -0,0 +1,92 @@
+package net.xeona.sampled;
+
+import static java.util.Objects.requireNonNull;
+
+import net.xeona.sampled.metrics.NoOpReconstructionMetrics;
+import net.xeona.sampled.metrics.ReconstructionMetrics;
+import net.xeona.sampled.value.LongValueUpdatePredicate;
+import net.xeona.series.index.CounterSeriesIndex;
+import net.xeona.series.index.LongSourceIndexRegistry;
+
+/**
+ * A specialisation of {@link SampledStepSeriesReconstructor} for series of <code>long</code> values indexed by plain
+ * <code>long</code> counters, equivalent to reconstructing with {@link CounterSeriesIndex}.
+ * <p />
+ * Values are read from {@link LongSeriesSample}s, compared by a {@link LongValueUpdatePredicate} and retained in
+ * primitive ring buffers, and source indices are tracked by a {@link LongSourceIndexRegistry}, so that a series is
+ * reconstructed without boxing any value or index. The decision made for each sample is that of
+ * {@link LongIndexedSampledStepSeriesReconstructor}, with which it is shared.
+ *
+ * @author Wesley Marsh
+ *
+ * @param <S>
+ *            The type of source identifiers to be received as part of the samples
+ */
+public class LongSampledStepSeriesReconstructor<S>
+		extends AbstractLongIndexedSampledStepSeriesReconstructor<S, LongValuedSeriesWindow> {
+
+	private final LongValueUpdatePredicate valueUpdatePredicate;
+	private final LongDataPointListener dataPointListener;
+
+	private long sampleValue;
+
+	public LongSampledStepSeriesReconstructor(LongValueUpdatePredicate valueUpdatePredicate,
+			LongSourceIndexRegistry<? super S> sourceIndexRegistry) {
+		this(valueUpdatePredicate, sourceIndexRegistry, NoOpReconstructionMetrics.instance());
+	}
+
+	public LongSampledStepSeriesReconstructor(LongValueUpdatePredicate valueUpdatePredicate,
+			LongSourceIndexRegistry<? super S> sourceIndexRegistry, ReconstructionMetrics metrics) {
+		this(valueUpdatePredicate, sourceIndexRegistry, metrics, null);
+	}
+
+	/**
+	 * @param dataPointListener
+	 *            A listener to be notified of each new data point as it is accepted into the series. May be
+	 *            <code>null</code>.
+	 */
+	public LongSampledStepSeriesReconstructor(LongValueUpdatePredicate valueUpdatePredicate,
+			LongSourceIndexRegistry<? super S> sourceIndexRegistry, ReconstructionMetrics metrics,
+			LongDataPointListener dataPointListener) {
+		super(sourceIndexRegistry, metrics, new LongValuedSeriesWindow());
+		this.valueUpdatePredicate = requireNonNull(valueUpdatePredicate);
+		this.dataPointListener = dataPointListener;
+	}
+
+	/**
+	 * Offer a new sample to the series being reconstructed by this instance and decide whether the sample represents a
+	 * new data point
+	 *
+	 * @param sample
+	 *            The sample to test
+	 * @return Whether the new sample has been accepted into the series
+	 */
+	public boolean notifySample(LongSeriesSample<? extends S> sample) {
+		return notifySample(sample.getLongValue(), sample.getSource());
+	}
+
+	/**
+	 * Offer a new sample, given as its value and source, to the series being reconstructed by this instance and decide
+	 * whether the sample represents a new data point
+	 *
+	 * @return Whether the new sample has been accepted into the series
+	 */
+	public boolean notifySample(long sampleValue, S sampleSource) {
+		this.sampleValue = sampleValue;
+		return applySample(sampleSource);
+	}
+
+	@Override
+	boolean isSampleEquivalentAt(int position) {
+		return valueUpdatePredicate.isValueEquivalent(seriesWindow.valueAt(position), sampleValue);
+	}
+
+	@Override
+	void acceptSample(long index) {
+		seriesWindow.append(index, sampleValue);
+		if (dataPointListener != null) {
+			dataPointListener.onDataPoint(index, sampleValue);
+		}
+	}
+
+}
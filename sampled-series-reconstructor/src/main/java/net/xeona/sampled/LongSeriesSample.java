@@ -0,0 +1,18 @@
+package net.xeona.sampled;
+
+/**
+ * A sample of a series of <code>long</code> values, whose value may be read without boxing
+ *
+ * @param <S>
+ *            The type of source identifier of the sample
+ */
+public interface LongSeriesSample<S> extends SeriesSample<Long, S> {
+
+	long getLongValue();
+
+	@Override
+	default Long getValue() {
+		return getLongValue();
+	}
+
+}
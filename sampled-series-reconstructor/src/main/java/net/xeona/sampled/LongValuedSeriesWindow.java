@@ -0,0 +1,47 @@
+package net.xeona.sampled;
+
+import java.util.Arrays;
+
+/**
+ * The retained data points of a step series whose indices and values are both plain <code>long</code>s, held in a pair
+ * of parallel primitive ring buffers. Other primitive values, such as <code>double</code>s, may be held by their
+ * <code>long</code> bit representation.
+ *
+ * @see AbstractLongIndexedSeriesWindow
+ */
+final class LongValuedSeriesWindow extends AbstractLongIndexedSeriesWindow {
+
+	private long[] values;
+
+	LongValuedSeriesWindow() {
+		this(DEFAULT_INITIAL_CAPACITY);
+	}
+
+	LongValuedSeriesWindow(int initialCapacity) {
+		super(initialCapacity);
+		this.values = new long[capacity()];
+	}
+
+	long valueAt(int position) {
+		return values[slot(position)];
+	}
+
+	void append(long index, long value) {
+		int slot = appendIndex(index);
+		values[slot] = value;
+	}
+
+	@Override
+	void clearValue(int slot) {}
+
+	@Override
+	void growValues(int head) {
+		int capacity = values.length;
+		long[] grownValues = Arrays.copyOf(values, capacity << 1);
+		if (head != 0) {
+			System.arraycopy(values, 0, grownValues, capacity, head);
+		}
+		values = grownValues;
+	}
+
+}
@@ -3,51 +3,612 @@ package net.xeona.sampled;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.groupingBy;
 
+import java.nio.ByteBuffer;
+import java.util.AbstractCollection;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
 
+import net.xeona.sampled.SampledStepSeriesReconstructor.SeriesWalk;
+import net.xeona.sampled.SampledStepSeriesReconstructor.SeriesWalkInterpretation;
 import net.xeona.series.index.SeriesIndex;
-import net.xeona.series.index.SourceIndexRegistry;
+import net.xeona.series.index.SourceIndexTracker;
 
 public class MultiSampledSeriesReconstructor<K, V, S, I extends SeriesIndex<? super I>> {
 
-	private final SourceIndexRegistry<S, I> sourceIndexRegistry;
+	private final SourceIndexTracker<S, I> sourceIndexRegistry;
 	private final SampledSeriesReconstructorFactory<V, S, I> seriesReconstructorFactory;
+	private final Executor parallelExecutor;
+	private final int parallelism;
+	private final KeyedDataPointListener<? super K, ? super V, ? super I> dataPointListener;
+	private final SampleBatchListener<K, V, S> sampleBatchListener;
+	private final boolean snapshotPublishing;
 
-	private final Map<K, SampledStepSeriesReconstructor<V, S, I>> seriesReconstructorsByKey = new HashMap<>();
+	private final Map<K, SampledStepSeriesReconstructor<V, S, I>> seriesReconstructorsByKey;
 
-	public MultiSampledSeriesReconstructor(SourceIndexRegistry<S, I> sourceIndexRegistry,
+	private final Map<S, FrameRecordOffsets> frameRecordOffsetsBySource = new HashMap<>();
+	private SampledStepSeriesReconstructor<V, S, I>[] frameSeriesReconstructors = newSeriesReconstructors(0);
+	private Object[] frameAlignedDataPointIndices = new Object[0];
+
+	public MultiSampledSeriesReconstructor(SourceIndexTracker<S, I> sourceIndexRegistry,
 			SampledSeriesReconstructorFactory<V, S, I> seriesReconstructorFactory) {
-		this.sourceIndexRegistry = requireNonNull(sourceIndexRegistry);
-		this.seriesReconstructorFactory = requireNonNull(seriesReconstructorFactory);
+		this(builder(sourceIndexRegistry, seriesReconstructorFactory));
+	}
+
+	/**
+	 * Construct a reconstructor which fans the walks for the samples of each source out across the given pool,
+	 * partitioned by series key
+	 *
+	 * @see #MultiSampledSeriesReconstructor(SourceIndexTracker, SampledSeriesReconstructorFactory, Executor, int)
+	 */
+	public MultiSampledSeriesReconstructor(SourceIndexTracker<S, I> sourceIndexRegistry,
+			SampledSeriesReconstructorFactory<V, S, I> seriesReconstructorFactory, ForkJoinPool parallelExecutor) {
+		this(MultiSampledSeriesReconstructor.<K, V, S, I> builder(sourceIndexRegistry, seriesReconstructorFactory)
+				.parallel(parallelExecutor, parallelExecutor.getParallelism()));
+	}
+
+	/**
+	 * Construct a reconstructor which fans the walks of the series for the samples of each source out across the given
+	 * executor.
+	 * <p />
+	 * On each pass over the samples provided by a source, they are partitioned by series key into at most
+	 * <code>parallelism</code> partitions, each of which walks the series for its samples as a separate task, from the
+	 * index the source had at the start of the pass, without changing anything. The samples are then offered to their
+	 * series on the calling thread, one at a time in the order in which they were provided, exactly as in serial
+	 * reconstruction. A sample reuses its walk unless the series has since changed, or the source has since advanced
+	 * such that its walk would begin elsewhere, in which case the series is walked again, so the outcome of every sample
+	 * is always identical to that of serial reconstruction. Any {@link KeyedDataPointListener} is notified on the
+	 * calling thread, in the order in which the samples were provided.
+	 * <p />
+	 * Walks are made on the threads of the executor, and so the value update predicate and any metrics of the series
+	 * reconstructors must be thread-safe.
+	 * <p />
+	 * This reconstructor is itself still not thread-safe: each call to {@link #notifySamples(Collection)} must complete
+	 * before the next begins.
+	 *
+	 * @param sourceIndexRegistry
+	 *            The registry of source indices shared by all series, which is only used on the calling thread and so
+	 *            need not be thread-safe
+	 * @param seriesReconstructorFactory
+	 *            The factory from which to build the reconstructor for each series key
+	 * @param parallelExecutor
+	 *            The executor on which to run partitions, such as a {@link ForkJoinPool} or a virtual thread executor
+	 * @param parallelism
+	 *            The maximum number of partitions into which to divide the samples of each source
+	 */
+	public MultiSampledSeriesReconstructor(SourceIndexTracker<S, I> sourceIndexRegistry,
+			SampledSeriesReconstructorFactory<V, S, I> seriesReconstructorFactory, Executor parallelExecutor,
+			int parallelism) {
+		this(MultiSampledSeriesReconstructor.<K, V, S, I> builder(sourceIndexRegistry, seriesReconstructorFactory)
+				.parallel(parallelExecutor, parallelism));
+	}
+
+	private MultiSampledSeriesReconstructor(Builder<K, V, S, I> builder) {
+		this.sourceIndexRegistry = builder.sourceIndexRegistry;
+		this.seriesReconstructorFactory = builder.seriesReconstructorFactory;
+		this.parallelExecutor = builder.parallelExecutor;
+		this.parallelism = builder.parallelism;
+		this.dataPointListener = builder.dataPointListener;
+		this.sampleBatchListener = builder.sampleBatchListener;
+		this.snapshotPublishing = builder.snapshotPublishing;
+		this.seriesReconstructorsByKey = snapshotPublishing ? new ConcurrentHashMap<>() : new HashMap<>();
+	}
+
+	public static <K, V, S, I extends SeriesIndex<? super I>> Builder<K, V, S, I> builder(
+			SourceIndexTracker<S, I> sourceIndexRegistry,
+			SampledSeriesReconstructorFactory<V, S, I> seriesReconstructorFactory) {
+		return new Builder<>(sourceIndexRegistry, seriesReconstructorFactory);
 	}
 
 	public void notifySamples(Collection<? extends KeyedSeriesSample<K, V, S>> samples) {
+		if (sampleBatchListener != null) {
+			sampleBatchListener.onSamples(samples);
+		}
 		Map<S, List<KeyedSeriesSample<K, V, S>>> samplesBySource = samples.stream()
 				.collect(groupingBy(KeyedSeriesSample::getSource));
 		for (Map.Entry<S, List<KeyedSeriesSample<K, V, S>>> entry : samplesBySource.entrySet()) {
 			S source = entry.getKey();
+			List<KeyedSeriesSample<K, V, S>> sourceSamples = entry.getValue();
+			SampledStepSeriesReconstructor<V, S, I>[] sampleSeriesReconstructors = getSeriesReconstructors(
+					sourceSamples);
+			int[][] samplePartitions = parallelExecutor == null ? null : partitionByKey(sourceSamples);
+			Object[] alignedDataPointIndices = new Object[sourceSamples.size()];
 
 			I initialSourceIndex;
 			I subsequentSourceIndex;
 			do {
 				initialSourceIndex = sourceIndexRegistry.getCurrentIndexForSource(source);
-				for (KeyedSeriesSample<K, V, S> sample : entry.getValue()) {
-					K sampleSeriesKey = sample.getKey();
-					SampledStepSeriesReconstructor<V, S, I> seriesReconstructor = seriesReconstructorsByKey.computeIfAbsent(
-							sampleSeriesKey, absentSeriesKey -> seriesReconstructorFactory.build(sourceIndexRegistry));
-					seriesReconstructor.notifySample(sample);
+				Object[] advanceWalks = samplePartitions == null ? null
+						: walkPartitionsInParallel(sourceSamples, sampleSeriesReconstructors, alignedDataPointIndices,
+								samplePartitions, initialSourceIndex);
+				for (int i = 0; i < sourceSamples.size(); i++) {
+					notifySample(sourceSamples.get(i), sampleSeriesReconstructors[i], alignedDataPointIndices, i,
+							advanceWalks);
 				}
 				subsequentSourceIndex = sourceIndexRegistry.getCurrentIndexForSource(source);
 			} while (subsequentSourceIndex.compareTo(initialSourceIndex) > 0);
 		}
 	}
 
+	/**
+	 * Reconstruct the samples encoded in the records of a frame, read in place through the given flyweight decoder
+	 * rather than from a sample object per record.
+	 * <p />
+	 * The samples are reconstructed exactly as if they had been given to {@link #notifySamples(Collection)} in the order
+	 * in which they appear in the frame, except that they are always reconstructed on the calling thread, even if this
+	 * reconstructor fans samples out in parallel. Once the sources of the frame and the series keys have been seen
+	 * before, no allocation is made for each record beyond any made by the decoder or series reconstructors themselves.
+	 * Any {@link SampleBatchListener} is notified with a view of the frame whose elements are the decoder itself, and so
+	 * must not retain them.
+	 *
+	 * @param frame
+	 *            The buffer holding the records of the frame between its position and limit, such as a region of a
+	 *            memory-mapped file
+	 * @param sampleDecoder
+	 *            The decoder through which to read the records of the frame
+	 */
+	public void notifySamples(ByteBuffer frame, SampleFrameDecoder<K, V, S> sampleDecoder) {
+		if (sampleBatchListener != null) {
+			sampleBatchListener.onSamples(new FrameSamples<>(frame, sampleDecoder));
+		}
+
+		try {
+			sampleDecoder.wrap(frame);
+			while (sampleDecoder.next()) {
+				frameRecordOffsetsBySource
+						.computeIfAbsent(sampleDecoder.getSource(), absentSource -> new FrameRecordOffsets())
+						.add(sampleDecoder.recordOffset());
+			}
+			for (Iterator<Map.Entry<S, FrameRecordOffsets>> it = frameRecordOffsetsBySource.entrySet().iterator(); it
+					.hasNext();) {
+				Map.Entry<S, FrameRecordOffsets> entry = it.next();
+				FrameRecordOffsets sourceRecordOffsets = entry.getValue();
+				if (sourceRecordOffsets.size == 0) {
+					it.remove();
+				} else {
+					notifyFrameSamples(entry.getKey(), sourceRecordOffsets, sampleDecoder);
+					sourceRecordOffsets.size = 0;
+				}
+			}
+		} finally {
+			clearFrameRecordOffsets();
+		}
+	}
+
+	/**
+	 * Forget the offsets of any records left from a frame which could not be reconstructed in full, so that they are
+	 * not mistaken for records of the next frame
+	 */
+	private void clearFrameRecordOffsets() {
+		for (FrameRecordOffsets sourceRecordOffsets : frameRecordOffsetsBySource.values()) {
+			sourceRecordOffsets.size = 0;
+		}
+	}
+
+	private void notifyFrameSamples(S source, FrameRecordOffsets sourceRecordOffsets,
+			SampleFrameDecoder<K, V, S> sampleDecoder) {
+		int sampleCount = sourceRecordOffsets.size;
+		if (frameSeriesReconstructors.length < sampleCount) {
+			frameSeriesReconstructors = Arrays.copyOf(frameSeriesReconstructors,
+					Math.max(sampleCount, frameSeriesReconstructors.length << 1));
+			frameAlignedDataPointIndices = new Object[frameSeriesReconstructors.length];
+		}
+		for (int i = 0; i < sampleCount; i++) {
+			sampleDecoder.moveTo(sourceRecordOffsets.offsets[i]);
+			frameSeriesReconstructors[i] = getSeriesReconstructor(sampleDecoder.getKey());
+			frameAlignedDataPointIndices[i] = null;
+		}
+
+		I initialSourceIndex;
+		I subsequentSourceIndex;
+		do {
+			initialSourceIndex = sourceIndexRegistry.getCurrentIndexForSource(source);
+			for (int i = 0; i < sampleCount; i++) {
+				sampleDecoder.moveTo(sourceRecordOffsets.offsets[i]);
+				notifySample(sampleDecoder, frameSeriesReconstructors[i], frameAlignedDataPointIndices, i, null);
+			}
+			subsequentSourceIndex = sourceIndexRegistry.getCurrentIndexForSource(source);
+		} while (subsequentSourceIndex.compareTo(initialSourceIndex) > 0);
+	}
+
+	/**
+	 * Visit each data point currently retained by every series. All data points of a series are visited together, in
+	 * ascending index order, with series visited in no particular order.
+	 * <p />
+	 * Must not be called concurrently with {@link #notifySamples(Collection)}.
+	 */
+	public void forEachDataPoint(KeyedDataPointListener<? super K, ? super V, ? super I> dataPointConsumer) {
+		seriesReconstructorsByKey.forEach((seriesKey, seriesReconstructor) -> seriesReconstructor
+				.forEachDataPoint((index, value) -> dataPointConsumer.onDataPoint(seriesKey, index, value)));
+	}
+
+	/**
+	 * @return The value of the latest data point of the series with the given key, or <code>null</code> if there is no
+	 *         such series
+	 */
+	public V getLatestValue(K seriesKey) {
+		SampledStepSeriesReconstructor<V, S, I> seriesReconstructor = seriesReconstructorsByKey.get(seriesKey);
+		return seriesReconstructor == null ? null : seriesReconstructor.getLatestValue();
+	}
+
+	/**
+	 * @return The value of the series with the given key as of the given index, or <code>null</code> if there is no
+	 *         such series or every retained data point follows the index
+	 * @see SampledStepSeriesReconstructor#getValueAt(SeriesIndex)
+	 */
+	public V getValueAt(K seriesKey, I index) {
+		SampledStepSeriesReconstructor<V, S, I> seriesReconstructor = seriesReconstructorsByKey.get(seriesKey);
+		return seriesReconstructor == null ? null : seriesReconstructor.getValueAt(index);
+	}
+
+	/**
+	 * Visit the data points of the series with the given key between the given indices, if there is such a series
+	 *
+	 * @see SampledStepSeriesReconstructor#forEachDataPointBetween(SeriesIndex, SeriesIndex, BiConsumer)
+	 */
+	public void forEachDataPointBetween(K seriesKey, I from, I to,
+			BiConsumer<? super I, ? super V> dataPointConsumer) {
+		SampledStepSeriesReconstructor<V, S, I> seriesReconstructor = seriesReconstructorsByKey.get(seriesKey);
+		if (seriesReconstructor != null) {
+			seriesReconstructor.forEachDataPointBetween(from, to, dataPointConsumer);
+		}
+	}
+
+	/**
+	 * Unlike the other methods for reading series, this may be called from any thread while samples are notified.
+	 *
+	 * @return The snapshot most recently published by the series with the given key, or <code>null</code> if there is
+	 *         no such series
+	 * @throws IllegalStateException
+	 *             If snapshot publishing has not been enabled
+	 * @see Builder#snapshotPublishing(boolean)
+	 */
+	public SeriesWindowSnapshot<V, I> getSnapshot(K seriesKey) {
+		if (!snapshotPublishing) {
+			throw new IllegalStateException("Snapshot publishing is not enabled");
+		}
+		SampledStepSeriesReconstructor<V, S, I> seriesReconstructor = seriesReconstructorsByKey.get(seriesKey);
+		return seriesReconstructor == null ? null : seriesReconstructor.getSnapshot();
+	}
+
+	/**
+	 * Remove from every series each data point which had already been superseded by the given horizon
+	 * <p />
+	 * Must not be called concurrently with {@link #notifySamples(Collection)}.
+	 *
+	 * @see SampledStepSeriesReconstructor#clearDataPointsBefore(SeriesIndex)
+	 */
+	public void clearDataPointsBefore(I horizon) {
+		for (SampledStepSeriesReconstructor<V, S, I> seriesReconstructor : seriesReconstructorsByKey.values()) {
+			seriesReconstructor.clearDataPointsBefore(horizon);
+		}
+	}
+
+	/**
+	 * Reinstate a data point previously visited by {@link #forEachDataPoint(KeyedDataPointListener)}, such as when
+	 * restoring from a snapshot, building the reconstructor for the series if necessary. No listener is notified.
+	 * <p />
+	 * The source indices which retained the data point should be restored to the source index registry alongside it, and
+	 * no samples should be notified until restoration is complete, as marked by {@link #completeRestore()}.
+	 */
+	public void restoreDataPoint(K seriesKey, I index, V value) {
+		getSeriesReconstructor(seriesKey).restoreDataPoint(index, value);
+	}
+
+	/**
+	 * Complete the reinstatement of data points by {@link #restoreDataPoint(Object, SeriesIndex, Object)}, publishing a
+	 * single snapshot of each series to which data points have been restored if snapshot publishing is enabled
+	 */
+	public void completeRestore() {
+		for (SampledStepSeriesReconstructor<V, S, I> seriesReconstructor : seriesReconstructorsByKey.values()) {
+			seriesReconstructor.completeRestore();
+		}
+	}
+
+	private void notifySample(KeyedSeriesSample<K, V, S> sample,
+			SampledStepSeriesReconstructor<V, S, I> seriesReconstructor, Object[] alignedDataPointIndices,
+			int samplePosition, Object[] advanceWalks) {
+		I newDataPointIndex = realignSample(sample, seriesReconstructor, alignedDataPointIndices, samplePosition,
+				advanceWalks == null ? null : advanceWalks[samplePosition]);
+		if (newDataPointIndex != null && dataPointListener != null) {
+			dataPointListener.onDataPoint(sample.getKey(), newDataPointIndex, sample.getValue());
+		}
+	}
+
+	/**
+	 * Offer a sample to its series again on a later pass over the samples of its source, unless doing so could not
+	 * change its outcome.
+	 * <p />
+	 * Each sample's entry in the given array holds the index of the data point it was aligned with when it was last
+	 * offered, or <code>null</code> if it failed alignment or has not yet been offered. If the walk for the sample would
+	 * still begin at that data point, the sample would match it again, leaving the series and the index of its source
+	 * as they are, so only the clearing of old data points is repeated in case other sources have since advanced. Only
+	 * samples which failed alignment, or whose walk start has moved as their source advanced, are offered again, and
+	 * so a pass which follows an advance by few keys costs little more than those keys.
+	 *
+	 * @param advanceWalk
+	 *            The walk made for the sample in advance of this pass, or <code>null</code> if none was made
+	 * @return The index of the new data point the sample has been accepted as, or <code>null</code> if it has not
+	 */
+	@SuppressWarnings("unchecked")
+	private I realignSample(KeyedSeriesSample<K, V, S> sample,
+			SampledStepSeriesReconstructor<V, S, I> seriesReconstructor, Object[] alignedDataPointIndices,
+			int samplePosition, Object advanceWalk) {
+		if (isRealignmentRedundant(seriesReconstructor, alignedDataPointIndices[samplePosition],
+				sourceIndexRegistry.getCurrentIndexForSource(sample.getSource()))) {
+			seriesReconstructor.clearOldDataPoints();
+			return null;
+		}
+
+		SeriesWalkInterpretation<I> seriesWalkInterpretation = seriesReconstructor.interpretSample(sample,
+				(SeriesWalk<I>) advanceWalk);
+		I newSourceIndex = seriesWalkInterpretation.getNewSourceIndex();
+		alignedDataPointIndices[samplePosition] = seriesWalkInterpretation.isAligned() ? newSourceIndex : null;
+		return seriesWalkInterpretation.isNewValue() ? newSourceIndex : null;
+	}
+
+	/**
+	 * @return Whether a sample last aligned with the data point at the given index, which may be <code>null</code>,
+	 *         would still begin its walk there from the given source index
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean isRealignmentRedundant(SampledStepSeriesReconstructor<V, S, I> seriesReconstructor,
+			Object alignedDataPointIndex, I sourceIndex) {
+		return alignedDataPointIndex != null && seriesReconstructor.isWalkStartIndex((I) alignedDataPointIndex,
+				sourceIndex);
+	}
+
+	private SampledStepSeriesReconstructor<V, S, I>[] getSeriesReconstructors(
+			List<KeyedSeriesSample<K, V, S>> samples) {
+		SampledStepSeriesReconstructor<V, S, I>[] sampleSeriesReconstructors = newSeriesReconstructors(
+				samples.size());
+		for (int i = 0; i < sampleSeriesReconstructors.length; i++) {
+			sampleSeriesReconstructors[i] = getSeriesReconstructor(samples.get(i).getKey());
+		}
+		return sampleSeriesReconstructors;
+	}
+
+	private SampledStepSeriesReconstructor<V, S, I> getSeriesReconstructor(K seriesKey) {
+		SampledStepSeriesReconstructor<V, S, I> seriesReconstructor = seriesReconstructorsByKey.get(seriesKey);
+		if (seriesReconstructor == null) {
+			seriesReconstructor = seriesReconstructorFactory.build(sourceIndexRegistry);
+			if (snapshotPublishing) {
+				seriesReconstructor.enableSnapshotPublishing();
+			}
+			seriesReconstructorsByKey.put(seriesKey, seriesReconstructor);
+		}
+		return seriesReconstructor;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static <V, S, I extends SeriesIndex<? super I>> SampledStepSeriesReconstructor<V, S, I>[] newSeriesReconstructors(
+			int length) {
+		return new SampledStepSeriesReconstructor[length];
+	}
+
+	private int[][] partitionByKey(List<KeyedSeriesSample<K, V, S>> samples) {
+		int partitionCount = Math.min(parallelism, samples.size());
+		int[] samplePartitions = new int[samples.size()];
+		int[] partitionSizes = new int[partitionCount];
+		for (int i = 0; i < samplePartitions.length; i++) {
+			int hash = samples.get(i).getKey().hashCode();
+			int partition = Math.floorMod(hash ^ (hash >>> 16), partitionCount);
+			samplePartitions[i] = partition;
+			partitionSizes[partition]++;
+		}
+
+		int[][] partitions = new int[partitionCount][];
+		for (int partition = 0; partition < partitionCount; partition++) {
+			partitions[partition] = new int[partitionSizes[partition]];
+			partitionSizes[partition] = 0;
+		}
+		for (int i = 0; i < samplePartitions.length; i++) {
+			int partition = samplePartitions[i];
+			partitions[partition][partitionSizes[partition]++] = i;
+		}
+		return partitions;
+	}
+
+	/**
+	 * Walk the series for each sample needing realignment from the given source index, partition by partition in
+	 * parallel, without changing any series or source index
+	 *
+	 * @return The advance walk for the sample at each position, or <code>null</code> where none was made
+	 */
+	private Object[] walkPartitionsInParallel(List<KeyedSeriesSample<K, V, S>> samples,
+			SampledStepSeriesReconstructor<V, S, I>[] sampleSeriesReconstructors, Object[] alignedDataPointIndices,
+			int[][] samplePartitions, I sourceIndex) {
+		Object[] advanceWalks = new Object[samples.size()];
+		CompletableFuture<?>[] partitionCompletions = new CompletableFuture<?>[samplePartitions.length];
+		for (int partition = 0; partition < samplePartitions.length; partition++) {
+			int[] partitionSamples = samplePartitions[partition];
+			partitionCompletions[partition] = CompletableFuture.runAsync(() -> {
+				for (int i : partitionSamples) {
+					SampledStepSeriesReconstructor<V, S, I> seriesReconstructor = sampleSeriesReconstructors[i];
+					if (!isRealignmentRedundant(seriesReconstructor, alignedDataPointIndices[i], sourceIndex)) {
+						advanceWalks[i] = seriesReconstructor.walkSample(samples.get(i).getValue(), sourceIndex);
+					}
+				}
+			}, parallelExecutor);
+		}
+		awaitPartitions(partitionCompletions);
+		return advanceWalks;
+	}
+
+	private static void awaitPartitions(CompletableFuture<?>[] partitionCompletions) {
+		try {
+			CompletableFuture.allOf(partitionCompletions).join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * The offsets within a frame of the records provided by a single source, reused from frame to frame
+	 */
+	private static class FrameRecordOffsets {
+
+		private int[] offsets = new int[8];
+		private int size;
+
+		private void add(int offset) {
+			if (size == offsets.length) {
+				offsets = Arrays.copyOf(offsets, size << 1);
+			}
+			offsets[size++] = offset;
+		}
+
+	}
+
+	/**
+	 * A view of the records of a frame as a collection of samples, each of which is the decoder positioned at the record
+	 */
+	private static class FrameSamples<K, V, S> extends AbstractCollection<KeyedSeriesSample<K, V, S>> {
+
+		private final ByteBuffer frame;
+		private final SampleFrameDecoder<K, V, S> sampleDecoder;
+
+		private int size = -1;
+
+		private FrameSamples(ByteBuffer frame, SampleFrameDecoder<K, V, S> sampleDecoder) {
+			this.frame = frame;
+			this.sampleDecoder = sampleDecoder;
+		}
+
+		@Override
+		public Iterator<KeyedSeriesSample<K, V, S>> iterator() {
+			sampleDecoder.wrap(frame);
+			return new Iterator<KeyedSeriesSample<K, V, S>>() {
+
+				private boolean advanced;
+				private boolean hasNext;
+
+				@Override
+				public boolean hasNext() {
+					if (!advanced) {
+						hasNext = sampleDecoder.next();
+						advanced = true;
+					}
+					return hasNext;
+				}
+
+				@Override
+				public KeyedSeriesSample<K, V, S> next() {
+					if (!hasNext()) {
+						throw new NoSuchElementException();
+					}
+					advanced = false;
+					return sampleDecoder;
+				}
+
+			};
+		}
+
+		/**
+		 * @return The number of records in the frame, counted by decoding the frame the first time only
+		 */
+		@Override
+		public int size() {
+			if (size < 0) {
+				int recordCount = 0;
+				sampleDecoder.wrap(frame);
+				while (sampleDecoder.next()) {
+					recordCount++;
+				}
+				size = recordCount;
+			}
+			return size;
+		}
+
+	}
+
+	public static class Builder<K, V, S, I extends SeriesIndex<? super I>> {
+
+		private final SourceIndexTracker<S, I> sourceIndexRegistry;
+		private final SampledSeriesReconstructorFactory<V, S, I> seriesReconstructorFactory;
+
+		private Executor parallelExecutor;
+		private int parallelism = 1;
+		private KeyedDataPointListener<? super K, ? super V, ? super I> dataPointListener;
+		private SampleBatchListener<K, V, S> sampleBatchListener;
+		private boolean snapshotPublishing;
+
+		private Builder(SourceIndexTracker<S, I> sourceIndexRegistry,
+				SampledSeriesReconstructorFactory<V, S, I> seriesReconstructorFactory) {
+			this.sourceIndexRegistry = requireNonNull(sourceIndexRegistry);
+			this.seriesReconstructorFactory = requireNonNull(seriesReconstructorFactory);
+		}
+
+		/**
+		 * Fan the walks of the series for the samples of each source out across the given executor, while still
+		 * offering the samples to their series one at a time on the calling thread
+		 *
+		 * @see MultiSampledSeriesReconstructor#MultiSampledSeriesReconstructor(SourceIndexTracker,
+		 *      SampledSeriesReconstructorFactory, Executor, int)
+		 */
+		public Builder<K, V, S, I> parallel(Executor parallelExecutor, int parallelism) {
+			if (parallelism < 1) {
+				throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+			}
+			this.parallelExecutor = requireNonNull(parallelExecutor);
+			this.parallelism = parallelism;
+			return this;
+		}
+
+		/**
+		 * Set a listener to be notified of each new data point as it is accepted into any series
+		 */
+		public Builder<K, V, S, I> dataPointListener(
+				KeyedDataPointListener<? super K, ? super V, ? super I> dataPointListener) {
+			this.dataPointListener = requireNonNull(dataPointListener);
+			return this;
+		}
+
+		/**
+		 * Set a listener to be notified of each batch of samples before it is reconstructed, such as a
+		 * {@link net.xeona.sampled.journal.SampleJournal}
+		 */
+		public Builder<K, V, S, I> sampleBatchListener(
+				SampleBatchListener<K, V, S> sampleBatchListener) {
+			this.sampleBatchListener = requireNonNull(sampleBatchListener);
+			return this;
+		}
+
+		/**
+		 * Set whether every series should publish a {@link SeriesWindowSnapshot} of its retained data points whenever
+		 * they change, so that they can be read through {@link MultiSampledSeriesReconstructor#getSnapshot} from other
+		 * threads
+		 */
+		public Builder<K, V, S, I> snapshotPublishing(boolean snapshotPublishing) {
+			this.snapshotPublishing = snapshotPublishing;
+			return this;
+		}
+
+		public MultiSampledSeriesReconstructor<K, V, S, I> build() {
+			return new MultiSampledSeriesReconstructor<>(this);
+		}
+
+	}
+
 	public interface SampledSeriesReconstructorFactory<V, S, I extends SeriesIndex<? super I>> {
 
-		SampledStepSeriesReconstructor<V, S, I> build(SourceIndexRegistry<S, I> sourceIndexRegistry);
+		SampledStepSeriesReconstructor<V, S, I> build(SourceIndexTracker<S, I> sourceIndexRegistry);
 
 	}
 
@@ -0,0 +1,21 @@
+package net.xeona.sampled;
+
+import java.util.Collection;
+
+/**
+ * A listener notified by a {@link MultiSampledSeriesReconstructor}, or by a {@link SampledStepSeriesReconstructor} for
+ * a given series key, of each batch of samples it is given, before the batch is reconstructed
+ *
+ * @param <K>
+ *            The type of keys identifying each series
+ * @param <V>
+ *            The type of values of the series
+ * @param <S>
+ *            The type of source identifiers
+ */
+@FunctionalInterface
+public interface SampleBatchListener<K, V, S> {
+
+	void onSamples(Collection<? extends KeyedSeriesSample<K, V, S>> samples);
+
+}
@@ -0,0 +1,47 @@
+package net.xeona.sampled;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A flyweight over the binary records of a frame of samples, through which a {@link MultiSampledSeriesReconstructor}
+ * reads samples directly from a {@link ByteBuffer} rather than from a sample object per record.
+ * <p />
+ * The decoder is itself the sample: once positioned at a record, the {@link #getKey()}, {@link #getValue()} and
+ * {@link #getSource()} of that record are read through it, and remain valid only until the decoder is next moved. The
+ * key, value and source objects it returns may be retained by the reconstructor, and so must not be mutated
+ * afterwards. To avoid allocating for every record, implementations may return canonical or cached instances, such as
+ * interned keys and sources.
+ *
+ * @param <K>
+ *            The type of keys identifying each series
+ * @param <V>
+ *            The type of values of the series
+ * @param <S>
+ *            The type of source identifiers
+ */
+public interface SampleFrameDecoder<K, V, S> extends KeyedSeriesSample<K, V, S> {
+
+	/**
+	 * Wrap a frame whose records lie between the position and limit of the given buffer, and position the decoder
+	 * before its first record. The buffer's position and limit must not be changed while the frame is being decoded.
+	 */
+	void wrap(ByteBuffer frame);
+
+	/**
+	 * Move the decoder to the next record of the frame
+	 *
+	 * @return <code>false</code> if no records remain
+	 */
+	boolean next();
+
+	/**
+	 * @return The offset within the frame of the record at which the decoder is positioned
+	 */
+	int recordOffset();
+
+	/**
+	 * Move the decoder to the record at the given offset, as previously returned by {@link #recordOffset()}
+	 */
+	void moveTo(int recordOffset);
+
+}
@@ -2,15 +2,29 @@ package net.xeona.sampled;
 
 import static java.util.Objects.requireNonNull;
 
+import java.util.AbstractCollection;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
+import java.util.NavigableSet;
 import java.util.Optional;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
 
+import com.google.common.collect.Maps;
+
+import net.xeona.sampled.metrics.NoOpReconstructionMetrics;
+import net.xeona.sampled.metrics.ReconstructionMetrics;
+import net.xeona.sampled.metrics.ReconstructionMetrics.SampleOutcome;
 import net.xeona.sampled.value.ValueUpdatePredicate;
+import net.xeona.series.index.RetentionPolicy;
 import net.xeona.series.index.SeriesIndex;
-import net.xeona.series.index.SourceIndexRegistry;
+import net.xeona.series.index.SourceIndexTracker;
 
 /**
  * A class whose purpose is to reconstruct a step series from periodically polled samples.
@@ -19,7 +33,7 @@ import net.xeona.series.index.SourceIndexRegistry;
  * point in the series. This is done according to the following logic:
  * 
  * <ol>
- * <li>Retrieve the current {@link SeriesIndex} for the sample source from the assigned {@link SourceIndexRegistry}</li>
+ * <li>Retrieve the current {@link SeriesIndex} for the sample source from the assigned {@link SourceIndexTracker}</li>
  * <li>If this reconstructor does not yet have any data points for the series, skip to 5
  * <li>Select the index from which to begin the walk across the series so far. This is either:
  * <ul>
@@ -47,9 +61,9 @@ import net.xeona.series.index.SourceIndexRegistry;
  * latest data point, increment the latest data point's index and consider that the source's new index.</li>
  * </ul>
  * </li>
- * <li>Notify the <code>SourceIndexRegistry</code> of the new source index</li>
+ * <li>Notify the <code>SourceIndexTracker</code> of the new source index</li>
  * <li>Remove all data points whose index precedes the least source index stored by the
- * <code>SourceIndexRegistry</code>, excluding the latest series data point if necessary</li>
+ * <code>SourceIndexTracker</code>, excluding the latest series data point if necessary</li>
  * <li>Return to the caller whether the given sample represented a new data point</li>
  * </ol>
  * 
@@ -61,6 +75,27 @@ import net.xeona.series.index.SourceIndexRegistry;
  * space. However, if all available sources are frequently providing samples with little variance between the rate at
  * which they observe updates, the clearing step results in the algorithm approximating <code>O(1)</code> complexity in
  * both time and space, as only the most recent data point needs to be stored and compared.
+ * <p />
+ * Where a lagging source causes many data points to be retained, the walk may instead be replaced by a lookup of the
+ * sample value in an auxiliary index of data point indices by value, enabled by {@link Builder#valueIndexed(boolean)}.
+ * This is only possible for a {@link ValueUpdatePredicate} which is {@link ValueUpdatePredicate#isConsistentWithEquals()
+ * consistent with equals}; for any other predicate the walk is retained.
+ * <p />
+ * Otherwise, if the predicate is {@link ValueUpdatePredicate#isFingerprinted() fingerprinted}, the fingerprint of each
+ * data point is held beside it, and the walk compares the sample's fingerprint, computed once, with that of each data
+ * point in turn, only comparing the values themselves where fingerprints match. This suits values such as large maps
+ * and structures, whose full comparison is expensive even when they obviously differ.
+ * <p />
+ * The number of data points retained may also be capped by the maximum window length of a {@link RetentionPolicy}, in
+ * which case the earliest data points are cleared regardless of source indices once the cap is exceeded. Sources whose
+ * index precedes the remaining data points will then fail to align until they catch up.
+ * <p />
+ * The retained data points may be read by the thread notifying samples through {@link #getLatestValue()},
+ * {@link #getValueAt(SeriesIndex)} and {@link #forEachDataPointBetween}, each of which makes a single lookup of the
+ * retained data points and allocates at most the entry or view of the range it reads. Other threads may instead read
+ * the {@link SeriesWindowSnapshot} published by {@link #getSnapshot()} if enabled by
+ * {@link Builder#snapshotPublishing(boolean)}, in which case the retained data points are also held in a
+ * {@link SeriesWindowLog}, from which a new snapshot is published in constant time whenever they change.
  * 
  * @author Wesley Marsh
  *
@@ -75,16 +110,49 @@ import net.xeona.series.index.SourceIndexRegistry;
 public class SampledStepSeriesReconstructor<V, S, I extends SeriesIndex<? super I>> {
 
 	private final ValueUpdatePredicate<? super V> valueUpdatePredicate;
-	private final SourceIndexRegistry<? super S, I> sourceIndexRegistry;
+	private final SourceIndexTracker<? super S, I> sourceIndexRegistry;
 	private final SeriesIndex.Operations<I> seriesIndexOperations;
 
-	private final NavigableMap<I, V> seriesValuesByIndex = new TreeMap<>();
+	private final NavigableMap<I, RetainedValue<V>> seriesValuesByIndex = new TreeMap<>();
+	private final Map<V, NavigableSet<I>> seriesIndecesByValue;
+	private final boolean fingerprinted;
+	private final DataPointListener<? super V, ? super I> dataPointListener;
+	private final KeyedSampleBatch<?, V, S> sampleBatch;
+	private final int maxWindowLength;
+	private final ReconstructionMetrics metrics;
+
+	private SeriesWindowLog<V, I> snapshotLog;
+	private boolean snapshotLogOutOfOrder;
+	private boolean windowModified;
+	private long modificationCount;
+	private volatile SeriesWindowSnapshot<V, I> publishedSnapshot;
 
 	public SampledStepSeriesReconstructor(ValueUpdatePredicate<? super V> valueUpdatePredicate,
-			SeriesIndex.Operations<I> seriesIndexOperations, SourceIndexRegistry<? super S, I> sourceIndexRegistry) {
-		this.valueUpdatePredicate = requireNonNull(valueUpdatePredicate);
-		this.seriesIndexOperations = requireNonNull(seriesIndexOperations);
-		this.sourceIndexRegistry = requireNonNull(sourceIndexRegistry);
+			SeriesIndex.Operations<I> seriesIndexOperations, SourceIndexTracker<? super S, I> sourceIndexRegistry) {
+		this(builder(valueUpdatePredicate, seriesIndexOperations, sourceIndexRegistry));
+	}
+
+	private SampledStepSeriesReconstructor(Builder<V, S, I> builder) {
+		this.valueUpdatePredicate = builder.valueUpdatePredicate;
+		this.seriesIndexOperations = builder.seriesIndexOperations;
+		this.sourceIndexRegistry = builder.sourceIndexRegistry;
+		this.seriesIndecesByValue = builder.valueIndexed && valueUpdatePredicate.isConsistentWithEquals()
+				? new HashMap<>()
+				: null;
+		this.fingerprinted = seriesIndecesByValue == null && valueUpdatePredicate.isFingerprinted();
+		this.dataPointListener = builder.dataPointListener;
+		this.sampleBatch = builder.sampleBatch;
+		this.maxWindowLength = builder.retentionPolicy.getMaxWindowLength();
+		this.metrics = builder.metrics;
+		if (builder.snapshotPublishing) {
+			enableSnapshotPublishing();
+		}
+	}
+
+	public static <V, S, I extends SeriesIndex<? super I>> Builder<V, S, I> builder(
+			ValueUpdatePredicate<? super V> valueUpdatePredicate, SeriesIndex.Operations<I> seriesIndexOperations,
+			SourceIndexTracker<? super S, I> sourceIndexRegistry) {
+		return new Builder<>(valueUpdatePredicate, seriesIndexOperations, sourceIndexRegistry);
 	}
 
 	/**
@@ -96,23 +164,273 @@ public class SampledStepSeriesReconstructor<V, S, I extends SeriesIndex<? super
 	 * @return Whether the new sample has been accepted into the series
 	 */
 	public boolean notifySample(SeriesSample<V, S> sample) {
+		if (sampleBatch != null) {
+			sampleBatch.notifySamples(Collections.singletonList(sample));
+		}
+		return interpretSample(sample).isNewValue();
+	}
+
+	/**
+	 * Offer a new sample to the series exactly as {@link #notifySample(SeriesSample)} does
+	 * 
+	 * @return The interpretation of the sample, including the index of the data point with which it was aligned
+	 */
+	SeriesWalkInterpretation<I> interpretSample(SeriesSample<V, S> sample) {
+		return interpretSample(sample, null);
+	}
+
+	/**
+	 * Offer a new sample to the series exactly as {@link #notifySample(SeriesSample)} does, reusing the result of a
+	 * walk made for it in advance by {@link #walkSample(Object, SeriesIndex)} if it is still valid.
+	 * <p />
+	 * The advance walk is still valid if the series has not changed since it was made, and the walk for the sample's
+	 * source at its current index would begin at the same data point. Otherwise the series is walked again, so the
+	 * outcome is always identical to that of offering the sample without an advance walk.
+	 *
+	 * @param advanceWalk
+	 *            The walk made for the sample in advance, or <code>null</code> if none was made
+	 * @return The interpretation of the sample, including the index of the data point with which it was aligned
+	 */
+	SeriesWalkInterpretation<I> interpretSample(SeriesSample<V, S> sample, SeriesWalk<I> advanceWalk) {
 		V sampleValue = sample.getValue();
 		S sampleSource = sample.getSource();
 
 		I sourceIndex = sourceIndexRegistry.getCurrentIndexForSource(sampleSource);
 
-		SeriesWalkResult<I> seriesWalkResult = findEarliestMatchingSeriesIndex(sampleValue, sourceIndex);
+		SeriesWalkResult<I> seriesWalkResult = advanceWalk != null && isValid(advanceWalk, sourceIndex)
+				? advanceWalk.seriesWalkResult
+				: findEarliestMatchingSeriesIndex(sampleValue, sourceIndex);
+		SeriesWalkInterpretation<I> seriesWalkInterpretation = applySeriesWalkResult(sampleValue, sourceIndex,
+				seriesWalkResult);
+
+		sourceIndexRegistry.setCurrentIndexForSource(sampleSource, seriesWalkInterpretation.getNewSourceIndex());
+		clearOldDataPoints();
+
+		return seriesWalkInterpretation;
+	}
+
+	/**
+	 * Walk the series for a sample from a source at the given index, without changing the series, the index of the
+	 * source or any listener, so that the walk may be made ahead of offering the sample through
+	 * {@link #interpretSample(SeriesSample, SeriesWalk)}.
+	 * <p />
+	 * As nothing is changed, walks of different series may be made on different threads at once, provided that none of
+	 * those series is changed meanwhile. The length of the walk is recorded to the metrics of this reconstructor,
+	 * which must then be thread-safe.
+	 */
+	SeriesWalk<I> walkSample(V sampleValue, I sourceIndex) {
+		return new SeriesWalk<>(findEarliestMatchingSeriesIndex(sampleValue, sourceIndex),
+				seriesValuesByIndex.isEmpty() ? null : walkStartIndex(sourceIndex), modificationCount);
+	}
+
+	/**
+	 * Whether the walk for a sample from a source at the given index would begin at the data point with the given
+	 * index.
+	 * <p />
+	 * If a sample has previously been aligned with a data point, either by matching it or by being accepted as it, and
+	 * the walk for the sample would still begin at that data point, then offering the sample again would align it with
+	 * the same data point without changing the series or the index of its source, and so only
+	 * {@link #clearOldDataPoints()} need be repeated.
+	 */
+	boolean isWalkStartIndex(I dataPointIndex, I sourceIndex) {
+		return walkStartIndex(sourceIndex).compareTo(dataPointIndex) == 0;
+	}
+
+	private boolean isValid(SeriesWalk<I> advanceWalk, I sourceIndex) {
+		if (advanceWalk.modificationCount != modificationCount) {
+			return false;
+		}
+		return advanceWalk.walkStartIndex == null ? seriesValuesByIndex.isEmpty()
+				: walkStartIndex(sourceIndex).compareTo(advanceWalk.walkStartIndex) == 0;
+	}
+
+	/**
+	 * @return The index of the data point from which to walk the non-empty series for a sample from a source at the
+	 *         given index
+	 */
+	private I walkStartIndex(I sourceIndex) {
+		I walkStartIndex = seriesValuesByIndex.floorKey(sourceIndex);
+		return walkStartIndex == null ? seriesValuesByIndex.firstKey() : walkStartIndex;
+	}
+
+	/**
+	 * Offer an ordered batch of samples, all provided by the same source, to the series being reconstructed by this
+	 * instance, and decide for each whether it represents a new data point
+	 * <p />
+	 * The outcome for each sample is identical to that of offering the samples one at a time to
+	 * {@link #notifySample(SeriesSample)}. However, the source index is only read from and written to the
+	 * {@link SourceIndexTracker} once for the whole batch, with the source's progress through the batch tracked locally,
+	 * and old data points are only cleared once the whole batch has been applied. As only the batch's own source can
+	 * advance while it is applied, and it can only do so to the index of a data point it has matched or introduced, no
+	 * data point which would have been cleared part way through the batch can be reached by a later sample in it.
+	 * 
+	 * @param samples
+	 *            The samples to test, in the order in which they were taken
+	 * @return A bit set in which the bit at each sample's position in the batch is set if that sample has been accepted
+	 *         into the series
+	 * @throws IllegalArgumentException
+	 *             If the samples were not all provided by the same source
+	 */
+	public BitSet notifySamples(List<? extends SeriesSample<V, S>> samples) {
+		if (sampleBatch != null) {
+			sampleBatch.notifySamples(samples);
+		}
+		BitSet newValues = new BitSet(samples.size());
+		if (!samples.isEmpty()) {
+			S batchSource = samples.get(0).getSource();
+
+			I sourceIndex = sourceIndexRegistry.getCurrentIndexForSource(batchSource);
+			int samplePosition = 0;
+			for (SeriesSample<V, S> sample : samples) {
+				if (!batchSource.equals(sample.getSource())) {
+					throw new IllegalArgumentException("Sample batch contains samples from more than one source: "
+							+ batchSource + ", " + sample.getSource());
+				}
+				SeriesWalkInterpretation<I> seriesWalkInterpretation = applySample(sample.getValue(), sourceIndex);
+				if (seriesWalkInterpretation.isNewValue()) {
+					newValues.set(samplePosition);
+				}
+				sourceIndex = max(sourceIndex, seriesWalkInterpretation.getNewSourceIndex());
+				samplePosition++;
+			}
+
+			sourceIndexRegistry.setCurrentIndexForSource(batchSource, sourceIndex);
+			clearOldDataPoints();
+		}
+		return newValues;
+	}
+
+	/**
+	 * @return The value of the latest data point, or <code>null</code> if the series is empty
+	 */
+	public V getLatestValue() {
+		Map.Entry<I, RetainedValue<V>> latestDataPoint = seriesValuesByIndex.lastEntry();
+		return latestDataPoint == null ? null : latestDataPoint.getValue().value;
+	}
+
+	/**
+	 * @return The value of the series as of the given index, being that of the latest retained data point at or before
+	 *         it, or <code>null</code> if every retained data point follows it
+	 */
+	public V getValueAt(I index) {
+		Map.Entry<I, RetainedValue<V>> dataPoint = seriesValuesByIndex.floorEntry(index);
+		return dataPoint == null ? null : dataPoint.getValue().value;
+	}
+
+	/**
+	 * Visit, in ascending index order, the retained data point current at <code>from</code>, if any, and every later
+	 * data point whose index is at most <code>to</code>
+	 *
+	 * @throws IllegalArgumentException
+	 *             If <code>from</code> follows <code>to</code>
+	 */
+	public void forEachDataPointBetween(I from, I to, BiConsumer<? super I, ? super V> dataPointConsumer) {
+		I dataPointIndex = seriesValuesByIndex.floorKey(from);
+		for (Map.Entry<I, RetainedValue<V>> entry : seriesValuesByIndex
+				.subMap(dataPointIndex == null ? from : dataPointIndex, true, to, true).entrySet()) {
+			dataPointConsumer.accept(entry.getKey(), entry.getValue().value);
+		}
+	}
+
+	/**
+	 * @return The snapshot of the retained data points most recently published, which may be read from any thread
+	 * @throws IllegalStateException
+	 *             If snapshot publishing has not been enabled
+	 */
+	public SeriesWindowSnapshot<V, I> getSnapshot() {
+		SeriesWindowSnapshot<V, I> snapshot = publishedSnapshot;
+		if (snapshot == null) {
+			throw new IllegalStateException("Snapshot publishing is not enabled");
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Begin publishing a snapshot of the retained data points whenever they change, starting with those currently
+	 * retained
+	 */
+	void enableSnapshotPublishing() {
+		snapshotLog = new SeriesWindowLog<>();
+		snapshotLog.rebuild(Maps.transformValues(seriesValuesByIndex, RetainedValue::getValue));
+		publishedSnapshot = snapshotLog.snapshot();
+	}
+
+	/**
+	 * Remove every data point which had already been superseded by the given horizon, retaining the data point current
+	 * at the horizon and all that follow it, such as to bound the age of retained data points when using a
+	 * {@link net.xeona.series.index.TimestampSeriesIndex}
+	 * <p />
+	 * The data points are removed as a single range of the series, regardless of the indices of sources. As when a
+	 * series exceeds the maximum window length, a source lagging behind the horizon can only be aligned again by
+	 * matching a retained data point.
+	 *
+	 * @param horizon
+	 *            The index before which data points are old
+	 */
+	public void clearDataPointsBefore(I horizon) {
+		I currentDataPointIndex = seriesValuesByIndex.floorKey(horizon);
+		if (currentDataPointIndex != null && seriesValuesByIndex.firstKey().compareTo(currentDataPointIndex) < 0) {
+			int retainedDataPointsBeforeClear = seriesValuesByIndex.size();
+			NavigableMap<I, RetainedValue<V>> oldDataPoints = seriesValuesByIndex.headMap(currentDataPointIndex,
+					false);
+			if (seriesIndecesByValue != null) {
+				oldDataPoints.forEach(this::removeIndexedValue);
+			}
+			oldDataPoints.clear();
+			int retainedDataPoints = seriesValuesByIndex.size();
+			metrics.recordPrune(retainedDataPointsBeforeClear - retainedDataPoints, retainedDataPoints);
+			windowModified = true;
+			modificationCount++;
+			publishSnapshotIfModified();
+		}
+	}
+
+	private SeriesWalkInterpretation<I> applySample(V sampleValue, I sourceIndex) {
+		return applySeriesWalkResult(sampleValue, sourceIndex, findEarliestMatchingSeriesIndex(sampleValue, sourceIndex));
+	}
+
+	private SeriesWalkInterpretation<I> applySeriesWalkResult(V sampleValue, I sourceIndex,
+			SeriesWalkResult<I> seriesWalkResult) {
 		SeriesWalkInterpretation<I> seriesWalkInterpretation = interpretSeriesWalkResult(sourceIndex, seriesWalkResult);
+		if (seriesWalkInterpretation.isNewValue()) {
+			I dataPointIndex = seriesWalkInterpretation.getNewSourceIndex();
+			addDataPoint(dataPointIndex, sampleValue);
+			if (dataPointListener != null) {
+				dataPointListener.onDataPoint(dataPointIndex, sampleValue);
+			}
+		}
+		return seriesWalkInterpretation;
+	}
 
-		boolean isNewValue = seriesWalkInterpretation.isNewValue();
-		I newSourceIndex = seriesWalkInterpretation.getNewSourceIndex();
-		if (isNewValue) {
-			seriesValuesByIndex.put(newSourceIndex, sampleValue);
+	/**
+	 * @return The index of the most recent data point of the series, which is that of the most recently accepted sample
+	 */
+	I getLatestSeriesIndex() {
+		return seriesValuesByIndex.lastKey();
+	}
+
+	/**
+	 * Visit each data point currently retained, in ascending index order
+	 */
+	void forEachDataPoint(BiConsumer<? super I, ? super V> dataPointConsumer) {
+		for (Map.Entry<I, RetainedValue<V>> entry : seriesValuesByIndex.entrySet()) {
+			dataPointConsumer.accept(entry.getKey(), entry.getValue().value);
 		}
-		sourceIndexRegistry.setCurrentIndexForSource(sampleSource, newSourceIndex);
-		clearOldDataPoints();
+	}
 
-		return isNewValue;
+	/**
+	 * Reinstate a previously retained data point, without notifying any listener or clearing old data points. No
+	 * snapshot is published until {@link #completeRestore()} is called.
+	 */
+	void restoreDataPoint(I index, V value) {
+		addDataPoint(index, value);
+	}
+
+	/**
+	 * Publish a snapshot of the data points reinstated since this was last called, if any
+	 */
+	void completeRestore() {
+		publishSnapshotIfModified();
 	}
 
 	private SeriesWalkResult<I> findEarliestMatchingSeriesIndex(V sampleValue, I sourceIndex) {
@@ -120,42 +438,90 @@ public class SampledStepSeriesReconstructor<V, S, I extends SeriesIndex<? super
 		if (seriesValuesByIndex.isEmpty()) {
 			seriesWalkResult = SeriesWalkResult.seriesEmptyResult();
 		} else {
-			I walkStartIndex = Optional.ofNullable(seriesValuesByIndex.floorKey(sourceIndex))
-					.orElseGet(seriesValuesByIndex::firstKey);
-			NavigableMap<I, V> seriesSubsetToWalk = seriesValuesByIndex.tailMap(walkStartIndex, true);
-			Optional<I> optWalkEndIndex = Optional.empty();
-			for (Iterator<Map.Entry<I, V>> it = seriesSubsetToWalk.entrySet().iterator(); !optWalkEndIndex.isPresent()
-					&& it.hasNext();) {
-				Map.Entry<I, V> entry = it.next();
-				if (valueUpdatePredicate.isValueEquivalent(entry.getValue(), sampleValue)) {
-					optWalkEndIndex = Optional.of(entry.getKey());
-				}
+			I walkStartIndex = walkStartIndex(sourceIndex);
+			if (seriesIndecesByValue != null) {
+				seriesWalkResult = lookUpSeries(sampleValue, walkStartIndex);
+			} else if (fingerprinted) {
+				seriesWalkResult = walkFingerprintedSeries(sampleValue, walkStartIndex);
+			} else {
+				seriesWalkResult = walkSeries(sampleValue, walkStartIndex);
 			}
-			seriesWalkResult = optWalkEndIndex.map(SeriesWalkResult::matchedExistingIndexResult)
-					.orElseGet(SeriesWalkResult::noIndecesMatchedResult);
 		}
 		return seriesWalkResult;
 	}
 
+	private SeriesWalkResult<I> walkSeries(V sampleValue, I walkStartIndex) {
+		NavigableMap<I, RetainedValue<V>> seriesSubsetToWalk = seriesValuesByIndex.tailMap(walkStartIndex, true);
+		Optional<I> optWalkEndIndex = Optional.empty();
+		int walkLength = 0;
+		for (Iterator<Map.Entry<I, RetainedValue<V>>> it = seriesSubsetToWalk.entrySet().iterator(); !optWalkEndIndex
+				.isPresent() && it.hasNext();) {
+			Map.Entry<I, RetainedValue<V>> entry = it.next();
+			walkLength++;
+			if (valueUpdatePredicate.isValueEquivalent(entry.getValue().value, sampleValue)) {
+				optWalkEndIndex = Optional.of(entry.getKey());
+			}
+		}
+		metrics.recordWalkLength(walkLength);
+		return optWalkEndIndex.map(SeriesWalkResult::matchedExistingIndexResult)
+				.orElseGet(SeriesWalkResult::noIndecesMatchedResult);
+	}
+
+	/**
+	 * Walk the series comparing the fingerprint held beside each value with that of the sample, comparing values only
+	 * where their fingerprints match
+	 */
+	private SeriesWalkResult<I> walkFingerprintedSeries(V sampleValue, I walkStartIndex) {
+		long sampleFingerprint = valueUpdatePredicate.fingerprint(sampleValue);
+		Iterator<Map.Entry<I, RetainedValue<V>>> it = seriesValuesByIndex.tailMap(walkStartIndex, true).entrySet()
+				.iterator();
+		I walkEndIndex = null;
+		int walkLength = 0;
+		while (walkEndIndex == null && it.hasNext()) {
+			Map.Entry<I, RetainedValue<V>> entry = it.next();
+			RetainedValue<V> retainedValue = entry.getValue();
+			walkLength++;
+			if (retainedValue.fingerprint == sampleFingerprint
+					&& valueUpdatePredicate.isValueEquivalent(retainedValue.value, sampleValue)) {
+				walkEndIndex = entry.getKey();
+			}
+		}
+		metrics.recordWalkLength(walkLength);
+		return walkEndIndex == null ? SeriesWalkResult.noIndecesMatchedResult()
+				: SeriesWalkResult.matchedExistingIndexResult(walkEndIndex);
+	}
+
+	private SeriesWalkResult<I> lookUpSeries(V sampleValue, I walkStartIndex) {
+		NavigableSet<I> matchingSeriesIndeces = seriesIndecesByValue.get(sampleValue);
+		I matchedSeriesIndex = matchingSeriesIndeces == null ? null : matchingSeriesIndeces.ceiling(walkStartIndex);
+		metrics.recordWalkLength(matchedSeriesIndex == null ? 0 : 1);
+		return matchedSeriesIndex == null ? SeriesWalkResult.noIndecesMatchedResult()
+				: SeriesWalkResult.matchedExistingIndexResult(matchedSeriesIndex);
+	}
+
 	private SeriesWalkInterpretation<I> interpretSeriesWalkResult(I sourceIndex, SeriesWalkResult<I> seriesWalkResult) {
 		SeriesWalkInterpretation<I> seriesWalkInterpretation;
 		SeriesWalkResult.Type seriesWalkResultType = seriesWalkResult.getType();
 		switch (seriesWalkResultType) {
 		case SERIES_EMPTY:
 			seriesWalkInterpretation = SeriesWalkInterpretation.seriesIntroductionResult(sourceIndex);
+			metrics.recordSampleOutcome(SampleOutcome.ACCEPTED);
 			break;
 		case MATCHED_EXISTING_INDEX:
 			seriesWalkInterpretation = SeriesWalkInterpretation
 					.matchedExistingIndexResult(seriesWalkResult.getMatchedSeriesIndex());
+			metrics.recordSampleOutcome(SampleOutcome.REJECTED);
 			break;
 		case NO_INDECES_MATCHED:
 			if (seriesValuesByIndex.firstKey().isGreaterThan(sourceIndex)) {
 				seriesWalkInterpretation = SeriesWalkInterpretation.failedSeriesAlignmentResult(sourceIndex);
+				metrics.recordSampleOutcome(SampleOutcome.FAILED_ALIGNMENT);
 			} else {
 				I latestSeriesIndex = seriesValuesByIndex.lastKey();
 				I newDataPointIndex = sourceIndex.isGreaterThan(latestSeriesIndex) ? sourceIndex
 						: seriesIndexOperations.increment(latestSeriesIndex);
 				seriesWalkInterpretation = SeriesWalkInterpretation.newDataPointResult(newDataPointIndex);
+				metrics.recordSampleOutcome(SampleOutcome.ACCEPTED);
 			}
 			break;
 		default:
@@ -164,17 +530,268 @@ public class SampledStepSeriesReconstructor<V, S, I extends SeriesIndex<? super
 		return seriesWalkInterpretation;
 	}
 
-	private void clearOldDataPoints() {
+	/**
+	 * Remove all data points whose index precedes the least source index, excluding the latest data point, and any
+	 * beyond the maximum window length
+	 */
+	void clearOldDataPoints() {
+		int retainedDataPointsBeforeClear = seriesValuesByIndex.size();
 		I leastSourceIndex = sourceIndexRegistry.getLeastCurrentIndex();
 		I greatestSeriesIndex = seriesValuesByIndex.lastKey();
 		I seriesOldDataThreshold = min(leastSourceIndex, greatestSeriesIndex);
-		seriesValuesByIndex.headMap(seriesOldDataThreshold).clear();
+		if (seriesValuesByIndex.firstKey().compareTo(seriesOldDataThreshold) < 0) {
+			NavigableMap<I, RetainedValue<V>> oldDataPoints = seriesValuesByIndex.headMap(seriesOldDataThreshold,
+					false);
+			if (seriesIndecesByValue != null) {
+				oldDataPoints.forEach(this::removeIndexedValue);
+			}
+			oldDataPoints.clear();
+		}
+
+		while (seriesValuesByIndex.size() > maxWindowLength) {
+			Map.Entry<I, RetainedValue<V>> excessDataPoint = seriesValuesByIndex.pollFirstEntry();
+			if (seriesIndecesByValue != null) {
+				removeIndexedValue(excessDataPoint.getKey(), excessDataPoint.getValue());
+			}
+		}
+
+		int retainedDataPoints = seriesValuesByIndex.size();
+		metrics.recordPrune(retainedDataPointsBeforeClear - retainedDataPoints, retainedDataPoints);
+		if (retainedDataPoints != retainedDataPointsBeforeClear) {
+			windowModified = true;
+			modificationCount++;
+		}
+		publishSnapshotIfModified();
+	}
+
+	/**
+	 * As data points are only ever cleared from the earliest onwards, the retained data points are the latest
+	 * appended to the log, unless a data point has been restored out of order, in which case the log is rebuilt
+	 */
+	private void publishSnapshotIfModified() {
+		if (windowModified && snapshotLog != null) {
+			if (snapshotLogOutOfOrder) {
+				snapshotLog.rebuild(Maps.transformValues(seriesValuesByIndex, RetainedValue::getValue));
+				snapshotLogOutOfOrder = false;
+			} else {
+				snapshotLog.retainLatest(seriesValuesByIndex.size());
+			}
+			publishedSnapshot = snapshotLog.snapshot();
+		}
+		windowModified = false;
+	}
+
+	private void addDataPoint(I index, V value) {
+		windowModified = true;
+		modificationCount++;
+		if (snapshotLog != null) {
+			if (seriesValuesByIndex.isEmpty() || index.isGreaterThan(seriesValuesByIndex.lastKey())) {
+				snapshotLog.append(index, value);
+			} else {
+				snapshotLogOutOfOrder = true;
+			}
+		}
+		seriesValuesByIndex.put(index,
+				new RetainedValue<>(value, fingerprinted ? valueUpdatePredicate.fingerprint(value) : 0L));
+		if (seriesIndecesByValue != null) {
+			seriesIndecesByValue.computeIfAbsent(value, absentValue -> new TreeSet<>()).add(index);
+		}
+	}
+
+	private void removeIndexedValue(I index, RetainedValue<V> retainedValue) {
+		NavigableSet<I> valueSeriesIndeces = seriesIndecesByValue.get(retainedValue.value);
+		valueSeriesIndeces.remove(index);
+		if (valueSeriesIndeces.isEmpty()) {
+			seriesIndecesByValue.remove(retainedValue.value);
+		}
 	}
 
 	private static <C extends Comparable<? super C>> C min(C first, C second) {
 		return first.compareTo(second) < 0 ? first : second;
 	}
 
+	private static <C extends Comparable<? super C>> C max(C first, C second) {
+		return first.compareTo(second) < 0 ? second : first;
+	}
+
+	public static class Builder<V, S, I extends SeriesIndex<? super I>> {
+
+		private final ValueUpdatePredicate<? super V> valueUpdatePredicate;
+		private final SeriesIndex.Operations<I> seriesIndexOperations;
+		private final SourceIndexTracker<? super S, I> sourceIndexRegistry;
+
+		private boolean valueIndexed;
+		private DataPointListener<? super V, ? super I> dataPointListener;
+		private KeyedSampleBatch<?, V, S> sampleBatch;
+		private RetentionPolicy retentionPolicy = RetentionPolicy.unbounded();
+		private ReconstructionMetrics metrics = NoOpReconstructionMetrics.instance();
+		private boolean snapshotPublishing;
+
+		private Builder(ValueUpdatePredicate<? super V> valueUpdatePredicate,
+				SeriesIndex.Operations<I> seriesIndexOperations, SourceIndexTracker<? super S, I> sourceIndexRegistry) {
+			this.valueUpdatePredicate = requireNonNull(valueUpdatePredicate);
+			this.seriesIndexOperations = requireNonNull(seriesIndexOperations);
+			this.sourceIndexRegistry = requireNonNull(sourceIndexRegistry);
+		}
+
+		/**
+		 * Set whether the reconstructor should keep an index of its data points by value, so that matching data points
+		 * are looked up rather than walked. Ignored if the value update predicate is not consistent with equals.
+		 */
+		public Builder<V, S, I> valueIndexed(boolean valueIndexed) {
+			this.valueIndexed = valueIndexed;
+			return this;
+		}
+
+		/**
+		 * Set a listener to be notified of each new data point as it is accepted into the series
+		 */
+		public Builder<V, S, I> dataPointListener(DataPointListener<? super V, ? super I> dataPointListener) {
+			this.dataPointListener = requireNonNull(dataPointListener);
+			return this;
+		}
+
+		/**
+		 * Set a listener to be notified of each sample offered through
+		 * {@link SampledStepSeriesReconstructor#notifySample(SeriesSample)} and each batch offered through
+		 * {@link SampledStepSeriesReconstructor#notifySamples(List)}, as samples of the series with the given key,
+		 * before they are reconstructed. This allows a {@link net.xeona.sampled.journal.SampleJournal} to record the
+		 * samples of a single series just as it records those given to a {@link MultiSampledSeriesReconstructor},
+		 * whose own listener is notified instead of samples it offers to the reconstructors of its series.
+		 * <p />
+		 * The listener is notified with a view of the batch whose iterators each return a single reused sample, and so
+		 * must not retain the samples it iterates over.
+		 */
+		public <K> Builder<V, S, I> sampleBatchListener(K seriesKey, SampleBatchListener<K, V, S> sampleBatchListener) {
+			this.sampleBatch = new KeyedSampleBatch<>(requireNonNull(seriesKey), requireNonNull(sampleBatchListener));
+			return this;
+		}
+
+		/**
+		 * Set the retention policy whose maximum window length caps the data points retained for the series
+		 */
+		public Builder<V, S, I> retentionPolicy(RetentionPolicy retentionPolicy) {
+			this.retentionPolicy = requireNonNull(retentionPolicy);
+			return this;
+		}
+
+		/**
+		 * Set the metrics to which walk lengths, sample outcomes and the clearing of old data points are recorded
+		 */
+		public Builder<V, S, I> metrics(ReconstructionMetrics metrics) {
+			this.metrics = requireNonNull(metrics);
+			return this;
+		}
+
+		/**
+		 * Set whether the reconstructor should publish a {@link SeriesWindowSnapshot} of its retained data points
+		 * whenever they change, for reading from other threads. Each publication allocates only the snapshot itself,
+		 * while the retained data points are also held in a log whose arrays the snapshots share.
+		 */
+		public Builder<V, S, I> snapshotPublishing(boolean snapshotPublishing) {
+			this.snapshotPublishing = snapshotPublishing;
+			return this;
+		}
+
+		public SampledStepSeriesReconstructor<V, S, I> build() {
+			return new SampledStepSeriesReconstructor<>(this);
+		}
+
+	}
+
+	/**
+	 * A view of each batch of samples offered to the reconstructor as samples of the series with a fixed key, through
+	 * which a {@link SampleBatchListener} is notified
+	 */
+	private static final class KeyedSampleBatch<K, V, S> extends AbstractCollection<KeyedSeriesSample<K, V, S>> {
+
+		private final K seriesKey;
+		private final SampleBatchListener<K, V, S> sampleBatchListener;
+
+		private List<? extends SeriesSample<V, S>> samples;
+
+		private KeyedSampleBatch(K seriesKey, SampleBatchListener<K, V, S> sampleBatchListener) {
+			this.seriesKey = seriesKey;
+			this.sampleBatchListener = sampleBatchListener;
+		}
+
+		private void notifySamples(List<? extends SeriesSample<V, S>> samples) {
+			this.samples = samples;
+			try {
+				sampleBatchListener.onSamples(this);
+			} finally {
+				this.samples = null;
+			}
+		}
+
+		@Override
+		public int size() {
+			return samples.size();
+		}
+
+		@Override
+		public Iterator<KeyedSeriesSample<K, V, S>> iterator() {
+			return new KeyedSampleIterator();
+		}
+
+		/**
+		 * An iterator over the batch which returns itself as each sample, keyed by the key of the series
+		 */
+		private final class KeyedSampleIterator
+				implements Iterator<KeyedSeriesSample<K, V, S>>, KeyedSeriesSample<K, V, S> {
+
+			private final Iterator<? extends SeriesSample<V, S>> sampleIterator = samples.iterator();
+			private SeriesSample<V, S> sample;
+
+			@Override
+			public boolean hasNext() {
+				return sampleIterator.hasNext();
+			}
+
+			@Override
+			public KeyedSeriesSample<K, V, S> next() {
+				sample = sampleIterator.next();
+				return this;
+			}
+
+			@Override
+			public K getKey() {
+				return seriesKey;
+			}
+
+			@Override
+			public V getValue() {
+				return sample.getValue();
+			}
+
+			@Override
+			public S getSource() {
+				return sample.getSource();
+			}
+
+		}
+
+	}
+
+	/**
+	 * The value of a retained data point, together with its fingerprint if the value update predicate is fingerprinted
+	 */
+	private static final class RetainedValue<V> {
+
+		private final V value;
+		private final long fingerprint;
+
+		private RetainedValue(V value, long fingerprint) {
+			this.value = value;
+			this.fingerprint = fingerprint;
+		}
+
+		private V getValue() {
+			return value;
+		}
+
+	}
+
 	@SuppressWarnings({ "unchecked" })
 	private static class SeriesWalkResult<I extends SeriesIndex<?>> {
 
@@ -218,13 +835,33 @@ public class SampledStepSeriesReconstructor<V, S, I extends SeriesIndex<? super
 
 	}
 
-	private static class SeriesWalkInterpretation<I extends SeriesIndex<?>> {
+	/**
+	 * The result of a walk made ahead of offering a sample, together with what is needed to decide whether it is still
+	 * valid when the sample is offered
+	 */
+	static class SeriesWalk<I extends SeriesIndex<?>> {
+
+		private final SeriesWalkResult<I> seriesWalkResult;
+		private final I walkStartIndex;
+		private final long modificationCount;
+
+		private SeriesWalk(SeriesWalkResult<I> seriesWalkResult, I walkStartIndex, long modificationCount) {
+			this.seriesWalkResult = seriesWalkResult;
+			this.walkStartIndex = walkStartIndex;
+			this.modificationCount = modificationCount;
+		}
+
+	}
+
+	static class SeriesWalkInterpretation<I extends SeriesIndex<?>> {
 
 		private final boolean newValue;
+		private final boolean aligned;
 		private final I newSourceIndex;
 
-		private SeriesWalkInterpretation(boolean newValue, I newSourceIndex) {
+		private SeriesWalkInterpretation(boolean newValue, boolean aligned, I newSourceIndex) {
 			this.newValue = newValue;
+			this.aligned = aligned;
 			this.newSourceIndex = newSourceIndex;
 		}
 
@@ -232,26 +869,34 @@ public class SampledStepSeriesReconstructor<V, S, I extends SeriesIndex<? super
 			return newValue;
 		}
 
+		/**
+		 * @return Whether the sample was aligned with a data point of the series, in which case the new source index is
+		 *         the index of that data point
+		 */
+		public boolean isAligned() {
+			return aligned;
+		}
+
 		public I getNewSourceIndex() {
 			return newSourceIndex;
 		}
 
 		public static <I extends SeriesIndex<?>> SeriesWalkInterpretation<I> seriesIntroductionResult(I sourceIndex) {
-			return new SeriesWalkInterpretation<>(true, sourceIndex);
+			return new SeriesWalkInterpretation<>(true, true, sourceIndex);
 		}
 
 		public static <I extends SeriesIndex<?>> SeriesWalkInterpretation<I> matchedExistingIndexResult(
 				I matchedIndex) {
-			return new SeriesWalkInterpretation<>(false, matchedIndex);
+			return new SeriesWalkInterpretation<>(false, true, matchedIndex);
 		}
 
 		public static <I extends SeriesIndex<?>> SeriesWalkInterpretation<I> newDataPointResult(I dataPointIndex) {
-			return new SeriesWalkInterpretation<>(true, dataPointIndex);
+			return new SeriesWalkInterpretation<>(true, true, dataPointIndex);
 		}
 
 		public static <I extends SeriesIndex<?>> SeriesWalkInterpretation<I> failedSeriesAlignmentResult(
 				I sourceIndex) {
-			return new SeriesWalkInterpretation<I>(false, sourceIndex);
+			return new SeriesWalkInterpretation<I>(false, false, sourceIndex);
 		}
 
 	}
@@ -0,0 +1,70 @@
+package net.xeona.sampled;
+
+/**
+ * Assigns each distinct series key a dense <code>int</code> identifier, starting from <code>0</code> in order of first
+ * appearance.
+ * <p />
+ * Keys and identifiers are held in a pair of parallel arrays using open addressing with linear probing, so that no
+ * entry object is allocated for each key.
+ *
+ * @param <K>
+ *            The type of keys to intern
+ */
+final class SeriesKeyInterner<K> {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private Object[] keys = new Object[INITIAL_CAPACITY];
+	private int[] ids = new int[INITIAL_CAPACITY];
+	private int size;
+
+	/**
+	 * @return The identifier of the given key, assigning the next identifier if the key has not been seen before
+	 */
+	int intern(K key) {
+		int mask = keys.length - 1;
+		int slot = spread(key.hashCode()) & mask;
+		for (Object slotKey = keys[slot]; slotKey != null; slotKey = keys[slot]) {
+			if (slotKey.equals(key)) {
+				return ids[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		int id = size++;
+		keys[slot] = key;
+		ids[slot] = id;
+		if (size << 1 > keys.length) {
+			grow();
+		}
+		return id;
+	}
+
+	int size() {
+		return size;
+	}
+
+	private void grow() {
+		Object[] previousKeys = keys;
+		int[] previousIds = ids;
+		keys = new Object[previousKeys.length << 1];
+		ids = new int[previousIds.length << 1];
+		int mask = keys.length - 1;
+		for (int previousSlot = 0; previousSlot < previousKeys.length; previousSlot++) {
+			Object key = previousKeys[previousSlot];
+			if (key != null) {
+				int slot = spread(key.hashCode()) & mask;
+				while (keys[slot] != null) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = key;
+				ids[slot] = previousIds[previousSlot];
+			}
+		}
+	}
+
+	private static int spread(int hash) {
+		return (hash ^ (hash >>> 16));
+	}
+
+}
@@ -0,0 +1,84 @@
+package net.xeona.sampled;
+
+import java.util.Map;
+import java.util.NavigableMap;
+
+import net.xeona.series.index.SeriesIndex;
+
+/**
+ * The data points retained by a {@link SampledStepSeriesReconstructor} which publishes snapshots, held in a pair of
+ * append-only arrays from which each {@link SeriesWindowSnapshot} is published as a range in constant time.
+ * <p />
+ * A reconstructor only ever appends data points whose index follows that of every retained data point, and only ever
+ * clears data points from the earliest onwards, so its retained data points are always the latest appended to the log.
+ * Slots are never written once appended, so a published range never changes. When the arrays are full, the retained
+ * data points are copied into new arrays of twice their number, so that appending costs amortised constant time, and
+ * the values of cleared data points are held until then.
+ *
+ * @param <V>
+ *            The type of values of the series
+ * @param <I>
+ *            The type of <code>SeriesIndex</code> of the data points
+ */
+final class SeriesWindowLog<V, I extends SeriesIndex<? super I>> {
+
+	private static final int INITIAL_CAPACITY = 4;
+
+	private Object[] indices = new Object[INITIAL_CAPACITY];
+	private Object[] values = new Object[INITIAL_CAPACITY];
+	private int head;
+	private int tail;
+
+	/**
+	 * Append a data point whose index follows that of every data point in the log
+	 */
+	void append(I index, V value) {
+		if (tail == indices.length) {
+			reallocate(Math.max(INITIAL_CAPACITY, (tail - head + 1) << 1));
+		}
+		indices[tail] = index;
+		values[tail] = value;
+		tail++;
+	}
+
+	/**
+	 * Clear the earliest data points, retaining only the given number of the latest
+	 */
+	void retainLatest(int retainedDataPoints) {
+		head = tail - retainedDataPoints;
+	}
+
+	/**
+	 * Replace the data points of the log with the given ones, such as when they have not been appended in index order
+	 */
+	void rebuild(NavigableMap<I, V> valuesByIndex) {
+		head = 0;
+		tail = 0;
+		indices = new Object[Math.max(INITIAL_CAPACITY, valuesByIndex.size() << 1)];
+		values = new Object[indices.length];
+		for (Map.Entry<I, V> entry : valuesByIndex.entrySet()) {
+			append(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * @return A snapshot of the data points currently retained by the log
+	 */
+	SeriesWindowSnapshot<V, I> snapshot() {
+		return head == tail ? SeriesWindowSnapshot.empty()
+				: new SeriesWindowSnapshot<>(indices, values, head, tail - head);
+	}
+
+	private void reallocate(int capacity) {
+		int size = tail - head;
+		Object[] reallocatedIndices = new Object[capacity];
+		Object[] reallocatedValues = new Object[capacity];
+		System.arraycopy(indices, head, reallocatedIndices, 0, size);
+		System.arraycopy(values, head, reallocatedValues, 0, size);
+		indices = reallocatedIndices;
+		values = reallocatedValues;
+		head = 0;
+		tail = size;
+	}
+
+}
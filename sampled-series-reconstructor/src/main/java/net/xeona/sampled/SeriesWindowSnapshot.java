@@ -0,0 +1,126 @@
+package net.xeona.sampled;
+
+import java.util.function.BiConsumer;
+
+import net.xeona.series.index.SeriesIndex;
+
+/**
+ * An immutable copy of the data points retained by a {@link SampledStepSeriesReconstructor} at the time it was
+ * published, which may be read from any thread without locking while the reconstructor continues to be notified.
+ * <p />
+ * Data points are held in a range of a pair of arrays in ascending index order, so every lookup is a binary search
+ * which allocates nothing. The arrays may be shared with later snapshots of the same series, each of which sees its
+ * own range of them, and are never changed within any range already published.
+ *
+ * @author Wesley Marsh
+ *
+ * @param <V>
+ *            The type of values of the series
+ * @param <I>
+ *            The type of <code>SeriesIndex</code> of the data points
+ */
+public final class SeriesWindowSnapshot<V, I extends SeriesIndex<? super I>> {
+
+	private static final Object[] NO_ELEMENTS = new Object[0];
+	private static final SeriesWindowSnapshot<?, ?> EMPTY = new SeriesWindowSnapshot<>(NO_ELEMENTS, NO_ELEMENTS, 0, 0);
+
+	private final Object[] indices;
+	private final Object[] values;
+	private final int offset;
+	private final int size;
+
+	/**
+	 * @param offset
+	 *            The position in the arrays of the earliest data point
+	 * @param size
+	 *            The number of data points, held from the offset onwards
+	 */
+	SeriesWindowSnapshot(Object[] indices, Object[] values, int offset, int size) {
+		this.indices = indices;
+		this.values = values;
+		this.offset = offset;
+		this.size = size;
+	}
+
+	@SuppressWarnings("unchecked")
+	static <V, I extends SeriesIndex<? super I>> SeriesWindowSnapshot<V, I> empty() {
+		return (SeriesWindowSnapshot<V, I>) EMPTY;
+	}
+
+	/**
+	 * @return The number of data points in this snapshot
+	 */
+	public int size() {
+		return size;
+	}
+
+	@SuppressWarnings("unchecked")
+	public I indexAt(int position) {
+		return (I) indices[offset + checkPosition(position)];
+	}
+
+	@SuppressWarnings("unchecked")
+	public V valueAt(int position) {
+		return (V) values[offset + checkPosition(position)];
+	}
+
+	/**
+	 * @return The index of the latest data point, or <code>null</code> if the series was empty
+	 */
+	public I getLatestIndex() {
+		return size == 0 ? null : indexAt(size - 1);
+	}
+
+	/**
+	 * @return The value of the latest data point, or <code>null</code> if the series was empty
+	 */
+	public V getLatestValue() {
+		return size == 0 ? null : valueAt(size - 1);
+	}
+
+	/**
+	 * @return The value of the series as of the given index, being that of the latest data point at or before it, or
+	 *         <code>null</code> if every data point follows it
+	 */
+	public V getValueAt(I index) {
+		int position = floorPosition(index);
+		return position < 0 ? null : valueAt(position);
+	}
+
+	/**
+	 * Visit, in ascending index order, the data point current at <code>from</code>, if any, and every later data point
+	 * whose index is at most <code>to</code>
+	 */
+	public void forEachDataPointBetween(I from, I to, BiConsumer<? super I, ? super V> dataPointConsumer) {
+		for (int position = Math.max(floorPosition(from), 0); position < size
+				&& indexAt(position).compareTo(to) <= 0; position++) {
+			dataPointConsumer.accept(indexAt(position), valueAt(position));
+		}
+	}
+
+	/**
+	 * @return The position of the latest data point whose index is at most the given index, or <code>-1</code> if there
+	 *         is none
+	 */
+	private int floorPosition(I index) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (indexAt(middle).compareTo(index) <= 0) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return high;
+	}
+
+	private int checkPosition(int position) {
+		if (position < 0 || position >= size) {
+			throw new IndexOutOfBoundsException("Position " + position + " outside snapshot of size " + size);
+		}
+		return position;
+	}
+
+}
@@ -0,0 +1,395 @@
+package net.xeona.sampled.async;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import net.xeona.sampled.KeyedDataPointListener;
+import net.xeona.sampled.KeyedSeriesSample;
+import net.xeona.sampled.MultiSampledSeriesReconstructor;
+import net.xeona.sampled.MultiSampledSeriesReconstructor.SampledSeriesReconstructorFactory;
+import net.xeona.series.index.ConcurrentSourceIndexRegistry;
+import net.xeona.series.index.SeriesIndex;
+
+/**
+ * An asynchronous front end to {@link MultiSampledSeriesReconstructor}, decoupling the threads which poll sources for
+ * samples from the cost of reconstructing them.
+ * <p />
+ * Series keys are partitioned into a fixed number of shards, each owned by a single worker thread which alone holds the
+ * reconstructors for its keys. Each batch of samples submitted is split by shard, and each part is placed on the
+ * bounded, lock-free queue of its shard, from which the shard's worker takes batches in order and applies them. All
+ * samples for any one key are therefore applied in the order in which they were submitted, by a single thread, without
+ * locking. Source indices are shared between all shards through a {@link ConcurrentSourceIndexRegistry}, so, as when
+ * reconstructing in parallel, samples in different shards may observe advances of a source's index in a different
+ * order to serial reconstruction, as described by {@link Builder#shards(int)}. Batches from the same source should be
+ * submitted from a single thread at a time.
+ * <p />
+ * When a shard's queue is full, submission responds according to the configured {@link BackpressurePolicy}. Any
+ * {@link KeyedDataPointListener} is notified on the worker threads, and so must be thread-safe. Submitted samples are
+ * handed to the workers as they are, and so must not be modified once submitted.
+ * <p />
+ * If reconstruction fails on any worker, that worker stops and the failure is thrown, wrapped in an
+ * {@link IllegalStateException}, from subsequent submissions, flushes and from {@link #close()}.
+ *
+ * @author Wesley Marsh
+ *
+ * @param <K>
+ *            The type of keys identifying each series
+ * @param <V>
+ *            The type of values to be received as part of samples from the series to be reconstructed
+ * @param <S>
+ *            The type of source identifiers to be received as part of the samples
+ * @param <I>
+ *            The type of <code>SeriesIndex</code> to be used to compare the relative freshness of both data points and
+ *            sources
+ */
+public class AsyncSampledSeriesReconstructor<K, V, S, I extends SeriesIndex<? super I>> implements AutoCloseable {
+
+	private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+	private static final int SPINS_BEFORE_PARKING = 64;
+	private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	private final BackpressurePolicy backpressurePolicy;
+	private final Shard<K, V, S, I>[] shards;
+
+	private final AtomicLong droppedBatchCount = new AtomicLong();
+	private final AtomicLong rejectedBatchCount = new AtomicLong();
+
+	private volatile boolean closed;
+	private volatile Throwable failure;
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private AsyncSampledSeriesReconstructor(Builder<K, V, S, I> builder) {
+		this.backpressurePolicy = builder.backpressurePolicy;
+		this.shards = new Shard[builder.shardCount];
+		for (int i = 0; i < shards.length; i++) {
+			MultiSampledSeriesReconstructor.Builder<K, V, S, I> shardReconstructorBuilder = MultiSampledSeriesReconstructor
+					.builder(builder.sourceIndexRegistry, builder.seriesReconstructorFactory);
+			if (builder.dataPointListener != null) {
+				shardReconstructorBuilder.dataPointListener(builder.dataPointListener);
+			}
+			shards[i] = new Shard<>(shardReconstructorBuilder.build(), new BoundedRingQueue<>(builder.queueCapacity));
+		}
+		for (Shard<K, V, S, I> shard : shards) {
+			shard.worker = builder.threadFactory.newThread(() -> runWorker(shard));
+			shard.worker.start();
+		}
+	}
+
+	public static <K, V, S, I extends SeriesIndex<? super I>> Builder<K, V, S, I> builder(
+			ConcurrentSourceIndexRegistry<S, I> sourceIndexRegistry,
+			SampledSeriesReconstructorFactory<V, S, I> seriesReconstructorFactory) {
+		return new Builder<>(sourceIndexRegistry, seriesReconstructorFactory);
+	}
+
+	/**
+	 * Submit a batch of samples to be reconstructed by the workers owning their series keys
+	 *
+	 * @return Whether every part of the batch was queued. Only under {@link BackpressurePolicy#REJECT} can this be
+	 *         <code>false</code>, in which case the parts destined for full shards have been discarded, while the
+	 *         remainder will still be reconstructed.
+	 * @throws IllegalStateException
+	 *             If this reconstructor has been closed, or reconstruction has failed
+	 */
+	public boolean submit(Collection<? extends KeyedSeriesSample<K, V, S>> samples) {
+		checkRunning();
+		List<KeyedSeriesSample<K, V, S>>[] shardBatches = partitionByShard(samples);
+		boolean queued = true;
+		for (int i = 0; i < shards.length; i++) {
+			if (shardBatches[i] != null) {
+				queued &= enqueue(shards[i], shardBatches[i]);
+			}
+		}
+		return queued;
+	}
+
+	/**
+	 * Wait until every batch submitted before this call has either been reconstructed or discarded
+	 *
+	 * @throws IllegalStateException
+	 *             If reconstruction has failed
+	 * @throws InterruptedException
+	 *             If interrupted while waiting
+	 */
+	public void flush() throws InterruptedException {
+		for (Shard<K, V, S, I> shard : shards) {
+			long submittedBatchCount = shard.submittedBatchCount.get();
+			while (shard.completedBatchCount.get() < submittedBatchCount) {
+				checkFailure();
+				idle();
+			}
+		}
+		checkFailure();
+	}
+
+	/**
+	 * Stop accepting submissions, and wait for the workers to reconstruct every batch already queued before stopping.
+	 * Batches submitted concurrently with closing may be discarded.
+	 * <p />
+	 * If interrupted while waiting, the wait continues, and the thread's interrupt status is restored once the workers
+	 * have stopped.
+	 *
+	 * @throws IllegalStateException
+	 *             If reconstruction has failed
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		for (Shard<K, V, S, I> shard : shards) {
+			LockSupport.unpark(shard.worker);
+		}
+		boolean interrupted = false;
+		for (Shard<K, V, S, I> shard : shards) {
+			while (shard.worker.isAlive()) {
+				try {
+					shard.worker.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		checkFailure();
+	}
+
+	/**
+	 * @return The number of queued batches discarded under {@link BackpressurePolicy#DROP_OLDEST} to make room for
+	 *         newer ones
+	 */
+	public long getDroppedBatchCount() {
+		return droppedBatchCount.get();
+	}
+
+	/**
+	 * @return The number of submitted batches discarded under {@link BackpressurePolicy#REJECT} because their shard's
+	 *         queue was full
+	 */
+	public long getRejectedBatchCount() {
+		return rejectedBatchCount.get();
+	}
+
+	private List<KeyedSeriesSample<K, V, S>>[] partitionByShard(
+			Collection<? extends KeyedSeriesSample<K, V, S>> samples) {
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		List<KeyedSeriesSample<K, V, S>>[] shardBatches = new List[shards.length];
+		for (KeyedSeriesSample<K, V, S> sample : samples) {
+			int hash = sample.getKey().hashCode();
+			int shard = Math.floorMod(hash ^ (hash >>> 16), shards.length);
+			if (shardBatches[shard] == null) {
+				shardBatches[shard] = new ArrayList<>();
+			}
+			shardBatches[shard].add(sample);
+		}
+		return shardBatches;
+	}
+
+	private boolean enqueue(Shard<K, V, S, I> shard, List<KeyedSeriesSample<K, V, S>> batch) {
+		int spins = 0;
+		while (!shard.queue.offer(batch)) {
+			switch (backpressurePolicy) {
+			case BLOCK:
+				checkRunning();
+				if (++spins < SPINS_BEFORE_PARKING) {
+					Thread.yield();
+				} else {
+					LockSupport.parkNanos(this, PARK_NANOS);
+				}
+				break;
+			case DROP_OLDEST:
+				if (shard.queue.poll() != null) {
+					droppedBatchCount.incrementAndGet();
+					shard.completedBatchCount.incrementAndGet();
+				}
+				break;
+			case REJECT:
+				rejectedBatchCount.incrementAndGet();
+				return false;
+			default:
+				throw new AssertionError("Unknown backpressure policy: " + backpressurePolicy);
+			}
+		}
+		shard.submittedBatchCount.incrementAndGet();
+		if (shard.parked) {
+			LockSupport.unpark(shard.worker);
+		}
+		return true;
+	}
+
+	/**
+	 * Apply the batches queued for a shard until this reconstructor is closed and the queue is drained. The worker
+	 * announces that it is about to park before checking the queue a final time, and each producer checks for that
+	 * announcement after queueing a batch, so a batch is never left waiting for the worker's park to time out.
+	 */
+	private void runWorker(Shard<K, V, S, I> shard) {
+		try {
+			int spins = 0;
+			while (true) {
+				List<KeyedSeriesSample<K, V, S>> batch = shard.queue.poll();
+				if (batch != null) {
+					shard.seriesReconstructor.notifySamples(batch);
+					shard.completedBatchCount.incrementAndGet();
+					spins = 0;
+				} else if (closed) {
+					if (shard.queue.isEmpty()) {
+						return;
+					}
+				} else if (++spins < SPINS_BEFORE_PARKING) {
+					Thread.yield();
+				} else {
+					shard.parked = true;
+					if (shard.queue.isEmpty() && !closed) {
+						LockSupport.parkNanos(this, PARK_NANOS);
+					}
+					shard.parked = false;
+				}
+			}
+		} catch (RuntimeException | Error e) {
+			failure = e;
+		}
+	}
+
+	private void checkRunning() {
+		if (closed) {
+			throw new IllegalStateException("Reconstructor is closed");
+		}
+		checkFailure();
+	}
+
+	private void checkFailure() {
+		Throwable currentFailure = failure;
+		if (currentFailure != null) {
+			throw new IllegalStateException("Reconstruction failed on a shard worker", currentFailure);
+		}
+	}
+
+	private static void idle() throws InterruptedException {
+		LockSupport.parkNanos(PARK_NANOS);
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+	}
+
+	private static class Shard<K, V, S, I extends SeriesIndex<? super I>> {
+
+		private final MultiSampledSeriesReconstructor<K, V, S, I> seriesReconstructor;
+		private final BoundedRingQueue<List<KeyedSeriesSample<K, V, S>>> queue;
+
+		private final AtomicLong submittedBatchCount = new AtomicLong();
+		private final AtomicLong completedBatchCount = new AtomicLong();
+
+		private Thread worker;
+		private volatile boolean parked;
+
+		private Shard(MultiSampledSeriesReconstructor<K, V, S, I> seriesReconstructor,
+				BoundedRingQueue<List<KeyedSeriesSample<K, V, S>>> queue) {
+			this.seriesReconstructor = seriesReconstructor;
+			this.queue = queue;
+		}
+
+	}
+
+	public static class Builder<K, V, S, I extends SeriesIndex<? super I>> {
+
+		private final ConcurrentSourceIndexRegistry<S, I> sourceIndexRegistry;
+		private final SampledSeriesReconstructorFactory<V, S, I> seriesReconstructorFactory;
+
+		private int shardCount = 1;
+		private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+		private BackpressurePolicy backpressurePolicy = BackpressurePolicy.BLOCK;
+		private ThreadFactory threadFactory = new WorkerThreadFactory();
+		private KeyedDataPointListener<? super K, ? super V, ? super I> dataPointListener;
+
+		private Builder(ConcurrentSourceIndexRegistry<S, I> sourceIndexRegistry,
+				SampledSeriesReconstructorFactory<V, S, I> seriesReconstructorFactory) {
+			this.sourceIndexRegistry = requireNonNull(sourceIndexRegistry);
+			this.seriesReconstructorFactory = requireNonNull(seriesReconstructorFactory);
+		}
+
+		/**
+		 * Set the number of shards, and so of worker threads, across which series keys are partitioned. Defaults to a
+		 * single shard, which reconstructs exactly the data points that synchronous reconstruction would.
+		 * <p />
+		 * With more than one shard, each shard applies its part of a batch when it reaches it, so a source's index may
+		 * already have been advanced by a later batch in another shard, and old data points may be cleared against a
+		 * least source index other than the one synchronous reconstruction would see. Unless each source only provides
+		 * samples for keys within a single shard, the data points reconstructed may then differ from those of
+		 * synchronous reconstruction wherever sources lag: lagging values are duplicated at different points, and,
+		 * rarely, a value sampled only once is not accepted. The shards can drift apart by no more than their queue
+		 * capacities, which therefore also bound the difference.
+		 */
+		public Builder<K, V, S, I> shards(int shardCount) {
+			if (shardCount < 1) {
+				throw new IllegalArgumentException("Shard count must be positive: " + shardCount);
+			}
+			this.shardCount = shardCount;
+			return this;
+		}
+
+		/**
+		 * Set the least number of batches each shard's queue can hold, which is rounded up to a power of two of at least
+		 * two
+		 */
+		public Builder<K, V, S, I> queueCapacity(int queueCapacity) {
+			if (queueCapacity < 1 || queueCapacity > 1 << 30) {
+				throw new IllegalArgumentException("Queue capacity must be between 1 and 2^30: " + queueCapacity);
+			}
+			this.queueCapacity = queueCapacity;
+			return this;
+		}
+
+		public Builder<K, V, S, I> backpressurePolicy(BackpressurePolicy backpressurePolicy) {
+			this.backpressurePolicy = requireNonNull(backpressurePolicy);
+			return this;
+		}
+
+		/**
+		 * Set the factory from which to create the worker thread of each shard. By default, workers are daemon threads.
+		 */
+		public Builder<K, V, S, I> threadFactory(ThreadFactory threadFactory) {
+			this.threadFactory = requireNonNull(threadFactory);
+			return this;
+		}
+
+		/**
+		 * Set a thread-safe listener to be notified, on the worker threads, of each new data point as it is accepted
+		 * into any series
+		 */
+		public Builder<K, V, S, I> dataPointListener(
+				KeyedDataPointListener<? super K, ? super V, ? super I> dataPointListener) {
+			this.dataPointListener = requireNonNull(dataPointListener);
+			return this;
+		}
+
+		/**
+		 * Build the reconstructor and start the worker thread of each shard
+		 */
+		public AsyncSampledSeriesReconstructor<K, V, S, I> start() {
+			return new AsyncSampledSeriesReconstructor<>(this);
+		}
+
+	}
+
+	private static class WorkerThreadFactory implements ThreadFactory {
+
+		private static final AtomicInteger WORKER_COUNT = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread worker = new Thread(runnable,
+					"sampled-series-reconstructor-worker-" + WORKER_COUNT.getAndIncrement());
+			worker.setDaemon(true);
+			return worker;
+		}
+
+	}
+
+}
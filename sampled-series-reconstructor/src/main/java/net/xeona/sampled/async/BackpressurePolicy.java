@@ -0,0 +1,28 @@
+package net.xeona.sampled.async;
+
+/**
+ * How an {@link AsyncSampledSeriesReconstructor} responds when a batch of samples is submitted for a shard whose queue
+ * is already full, trading the latency of submission against the loss of samples
+ *
+ * @author Wesley Marsh
+ */
+public enum BackpressurePolicy {
+
+	/**
+	 * Wait until the shard's worker has made room in the queue, so that no sample is lost but a slow shard stalls the
+	 * submitting thread
+	 */
+	BLOCK,
+
+	/**
+	 * Discard the oldest batch waiting in the shard's queue to make room, so that submission never waits and the
+	 * freshest samples are always reconstructed
+	 */
+	DROP_OLDEST,
+
+	/**
+	 * Discard the submitted batch, so that submission never waits and the samples already queued are reconstructed
+	 */
+	REJECT
+
+}
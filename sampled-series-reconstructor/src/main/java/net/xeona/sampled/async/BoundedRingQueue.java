@@ -0,0 +1,102 @@
+package net.xeona.sampled.async;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free queue backed by a ring of slots, each stamped with a sequence number recording whether it is
+ * ready to be written or read on the current lap of the ring.
+ * <p />
+ * Producers and consumers each claim a slot by advancing a shared position with a single compare-and-set, and publish
+ * it by stamping its sequence, so neither ever blocks the other. Although an {@link AsyncSampledSeriesReconstructor}
+ * has a single consuming worker per queue, polling is also safe from multiple threads, which allows a producer to
+ * discard the oldest element of a full queue to make room.
+ *
+ * @param <E>
+ *            The type of elements held in the queue
+ */
+final class BoundedRingQueue<E> {
+
+	private final int mask;
+	private final AtomicLongArray sequences;
+	private final Object[] elements;
+
+	private final AtomicLong tailPosition = new AtomicLong();
+	private final AtomicLong headPosition = new AtomicLong();
+
+	/**
+	 * @param minimumCapacity
+	 *            The least number of elements the queue must hold, which is rounded up to a power of two of at least
+	 *            two, as the sequence stamped on the only slot of a ring of one could not tell a full slot from an
+	 *            empty one
+	 */
+	BoundedRingQueue(int minimumCapacity) {
+		if (minimumCapacity < 1 || minimumCapacity > 1 << 30) {
+			throw new IllegalArgumentException("Queue capacity must be between 1 and 2^30: " + minimumCapacity);
+		}
+		int capacity = 2;
+		while (capacity < minimumCapacity) {
+			capacity <<= 1;
+		}
+		this.mask = capacity - 1;
+		this.sequences = new AtomicLongArray(capacity);
+		this.elements = new Object[capacity];
+		for (int slot = 0; slot < capacity; slot++) {
+			sequences.set(slot, slot);
+		}
+	}
+
+	/**
+	 * @return Whether the element was added, or <code>false</code> if the queue is full
+	 */
+	boolean offer(E element) {
+		long position = tailPosition.get();
+		while (true) {
+			int slot = (int) position & mask;
+			long lag = sequences.get(slot) - position;
+			if (lag == 0) {
+				if (tailPosition.compareAndSet(position, position + 1)) {
+					elements[slot] = element;
+					sequences.set(slot, position + 1);
+					return true;
+				}
+				position = tailPosition.get();
+			} else if (lag < 0) {
+				return false;
+			} else {
+				position = tailPosition.get();
+			}
+		}
+	}
+
+	/**
+	 * @return The element at the head of the queue, which is removed, or <code>null</code> if the queue is empty
+	 */
+	@SuppressWarnings("unchecked")
+	E poll() {
+		long position = headPosition.get();
+		while (true) {
+			int slot = (int) position & mask;
+			long lag = sequences.get(slot) - (position + 1);
+			if (lag == 0) {
+				if (headPosition.compareAndSet(position, position + 1)) {
+					E element = (E) elements[slot];
+					elements[slot] = null;
+					sequences.set(slot, position + mask + 1);
+					return element;
+				}
+				position = headPosition.get();
+			} else if (lag < 0) {
+				return null;
+			} else {
+				position = headPosition.get();
+			}
+		}
+	}
+
+	boolean isEmpty() {
+		long position = headPosition.get();
+		return sequences.get((int) position & mask) - (position + 1) < 0;
+	}
+
+}
@@ -0,0 +1,27 @@
+package net.xeona.sampled.journal;
+
+/**
+ * When a {@link SampleJournal} forces appended samples to be written through to the storage device, trading the
+ * throughput of appends against the number of samples which may be lost if the host fails
+ *
+ * @author Wesley Marsh
+ */
+public enum FsyncPolicy {
+
+	/**
+	 * Write and force every batch of samples before the append returns, so that no acknowledged sample can be lost
+	 */
+	EVERY_APPEND,
+
+	/**
+	 * Write samples once enough have been buffered, and force them whenever a segment is rolled, or the journal is
+	 * flushed or closed
+	 */
+	ON_SEGMENT_ROLL,
+
+	/**
+	 * Write samples once enough have been buffered, and leave forcing them to the operating system
+	 */
+	NEVER
+
+}
@@ -0,0 +1,35 @@
+package net.xeona.sampled.journal;
+
+import net.xeona.sampled.KeyedSeriesSample;
+
+/**
+ * A mutable sample, reused for each sample decoded from a journal during replay
+ */
+final class JournalledSample<K, V, S> implements KeyedSeriesSample<K, V, S> {
+
+	private K key;
+	private V value;
+	private S source;
+
+	void set(K key, V value, S source) {
+		this.key = key;
+		this.value = value;
+		this.source = source;
+	}
+
+	@Override
+	public K getKey() {
+		return key;
+	}
+
+	@Override
+	public V getValue() {
+		return value;
+	}
+
+	@Override
+	public S getSource() {
+		return source;
+	}
+
+}
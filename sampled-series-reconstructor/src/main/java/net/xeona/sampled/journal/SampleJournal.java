@@ -0,0 +1,316 @@
+package net.xeona.sampled.journal;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import net.xeona.sampled.KeyedSeriesSample;
+import net.xeona.sampled.MultiSampledSeriesReconstructor;
+import net.xeona.sampled.SampleBatchListener;
+import net.xeona.sampled.SampledStepSeriesReconstructor;
+import net.xeona.sampled.snapshot.BinaryCodec;
+
+/**
+ * An append-only log of every batch of samples given to a {@link MultiSampledSeriesReconstructor}, from which the
+ * reconstructed series can later be rebuilt by a {@link SampleJournalReader}.
+ * <p />
+ * The journal is a directory of segment files, each named by its sequence number. Each batch of samples is appended
+ * as a single record, prefixed by its length and a CRC32 checksum so that a record torn by a crash is detected and
+ * discarded on replay. Records are encoded into a direct buffer and written through a {@link FileChannel} once the
+ * buffer fills, and forced to the storage device according to the journal's {@link FsyncPolicy}. Once a segment has
+ * grown to at least the configured segment size it is rolled, and appends continue in a new segment. Opening a journal
+ * over an existing directory always begins a new segment, having first truncated any record torn by a crash from the
+ * end of the last existing segment, so that only the segment being appended to can end in a torn record.
+ * <p />
+ * The journal may be registered with {@link MultiSampledSeriesReconstructor.Builder#sampleBatchListener}, or for a
+ * single series with {@link SampledStepSeriesReconstructor.Builder#sampleBatchListener}, in which case each batch is
+ * appended before it is reconstructed, and any failure to append is thrown as an {@link UncheckedIOException}. Appends
+ * are thread-safe.
+ *
+ * @author Wesley Marsh
+ *
+ * @param <K>
+ *            The type of keys identifying each series
+ * @param <V>
+ *            The type of values of the series
+ * @param <S>
+ *            The type of source identifiers
+ */
+public class SampleJournal<K, V, S> implements SampleBatchListener<K, V, S>, Closeable {
+
+	static final String SEGMENT_SUFFIX = ".journal";
+	static final int RECORD_HEADER_LENGTH = 2 * Integer.BYTES;
+
+	private static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+	private static final int DEFAULT_BUFFER_CAPACITY = 1 << 20;
+
+	private final Path directory;
+	private final BinaryCodec<K> keyCodec;
+	private final BinaryCodec<V> valueCodec;
+	private final BinaryCodec<S> sourceCodec;
+	private final int segmentSize;
+	private final FsyncPolicy fsyncPolicy;
+
+	private final CRC32 checksum = new CRC32();
+	private ByteBuffer buffer;
+
+	private long nextSegmentNumber;
+	private FileChannel segmentChannel;
+	private long segmentLength;
+
+	private SampleJournal(Builder<K, V, S> builder) throws IOException {
+		this.directory = builder.directory;
+		this.keyCodec = builder.keyCodec;
+		this.valueCodec = builder.valueCodec;
+		this.sourceCodec = builder.sourceCodec;
+		this.segmentSize = builder.segmentSize;
+		this.fsyncPolicy = builder.fsyncPolicy;
+		this.buffer = ByteBuffer.allocateDirect(builder.bufferCapacity);
+
+		Files.createDirectories(directory);
+		List<Path> segments = listSegments(directory);
+		if (!segments.isEmpty()) {
+			truncateTornRecord(segments.get(segments.size() - 1));
+		}
+		this.nextSegmentNumber = segments.isEmpty() ? 0 : segmentNumber(segments.get(segments.size() - 1)) + 1;
+		openNextSegment();
+	}
+
+	public static <K, V, S> Builder<K, V, S> builder(Path directory, BinaryCodec<K> keyCodec,
+			BinaryCodec<V> valueCodec, BinaryCodec<S> sourceCodec) {
+		return new Builder<>(directory, keyCodec, valueCodec, sourceCodec);
+	}
+
+	/**
+	 * Append a batch of samples to the journal as a single record
+	 */
+	public synchronized void append(Collection<? extends KeyedSeriesSample<K, V, S>> samples) throws IOException {
+		int recordLength = encodeRecord(samples);
+		segmentLength += recordLength;
+
+		if (fsyncPolicy == FsyncPolicy.EVERY_APPEND) {
+			writeBuffer();
+			segmentChannel.force(false);
+		}
+		if (segmentLength >= segmentSize) {
+			rollSegment();
+		}
+	}
+
+	@Override
+	public void onSamples(Collection<? extends KeyedSeriesSample<K, V, S>> samples) {
+		try {
+			append(samples);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to append samples to journal in " + directory, e);
+		}
+	}
+
+	/**
+	 * Write any buffered samples to the current segment, and force them unless the policy is {@link FsyncPolicy#NEVER}
+	 */
+	public synchronized void flush() throws IOException {
+		writeBuffer();
+		if (fsyncPolicy != FsyncPolicy.NEVER) {
+			segmentChannel.force(false);
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			segmentChannel.close();
+		}
+	}
+
+	private int encodeRecord(Collection<? extends KeyedSeriesSample<K, V, S>> samples) throws IOException {
+		while (true) {
+			int recordStart = buffer.position();
+			try {
+				if (buffer.remaining() < RECORD_HEADER_LENGTH + Integer.BYTES) {
+					throw new BufferOverflowException();
+				}
+				buffer.position(recordStart + RECORD_HEADER_LENGTH);
+				buffer.putInt(samples.size());
+				for (KeyedSeriesSample<K, V, S> sample : samples) {
+					keyCodec.encode(sample.getKey(), buffer);
+					sourceCodec.encode(sample.getSource(), buffer);
+					valueCodec.encode(sample.getValue(), buffer);
+				}
+			} catch (BufferOverflowException e) {
+				buffer.position(recordStart);
+				if (recordStart == 0) {
+					buffer = ByteBuffer.allocateDirect(buffer.capacity() << 1);
+				} else {
+					writeBuffer();
+				}
+				continue;
+			}
+
+			int payloadStart = recordStart + RECORD_HEADER_LENGTH;
+			int payloadLength = buffer.position() - payloadStart;
+			ByteBuffer payload = buffer.duplicate();
+			payload.limit(buffer.position()).position(payloadStart);
+			checksum.reset();
+			checksum.update(payload);
+			buffer.putInt(recordStart, payloadLength);
+			buffer.putInt(recordStart + Integer.BYTES, (int) checksum.getValue());
+			return RECORD_HEADER_LENGTH + payloadLength;
+		}
+	}
+
+	private void writeBuffer() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			segmentChannel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private void rollSegment() throws IOException {
+		writeBuffer();
+		if (fsyncPolicy != FsyncPolicy.NEVER) {
+			segmentChannel.force(false);
+		}
+		segmentChannel.close();
+		openNextSegment();
+	}
+
+	private void openNextSegment() throws IOException {
+		Path segment = directory.resolve(String.format("%020d%s", nextSegmentNumber++, SEGMENT_SUFFIX));
+		segmentChannel = FileChannel.open(segment, CREATE_NEW, WRITE);
+		segmentLength = 0;
+	}
+
+	/**
+	 * Truncate the given segment after its last valid record, discarding any record torn by a crash while it was being
+	 * written
+	 */
+	private void truncateTornRecord(Path segment) throws IOException {
+		try (FileChannel channel = FileChannel.open(segment, READ, WRITE)) {
+			ByteBuffer segmentBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			int validLength = 0;
+			for (int recordLength; (recordLength = validRecordLength(segmentBuffer, validLength, checksum)) > 0;) {
+				validLength += recordLength;
+			}
+			if (validLength < segmentBuffer.limit()) {
+				channel.truncate(validLength);
+				channel.force(true);
+			}
+		}
+	}
+
+	/**
+	 * @return The length, including its header, of the record at the given position of the buffer, or <code>0</code>
+	 *         if there is no complete record there whose checksum matches its payload
+	 */
+	static int validRecordLength(ByteBuffer buffer, int recordStart, CRC32 checksum) {
+		if (buffer.limit() - recordStart < RECORD_HEADER_LENGTH) {
+			return 0;
+		}
+		int payloadLength = buffer.getInt(recordStart);
+		int expectedChecksum = buffer.getInt(recordStart + Integer.BYTES);
+		int payloadStart = recordStart + RECORD_HEADER_LENGTH;
+		if (payloadLength < Integer.BYTES || payloadLength > buffer.limit() - payloadStart) {
+			return 0;
+		}
+
+		ByteBuffer payload = buffer.duplicate();
+		payload.limit(payloadStart + payloadLength).position(payloadStart);
+		checksum.reset();
+		checksum.update(payload);
+		return (int) checksum.getValue() == expectedChecksum ? RECORD_HEADER_LENGTH + payloadLength : 0;
+	}
+
+	/**
+	 * @return The segments of the journal in the given directory, in the order in which they were written
+	 */
+	static List<Path> listSegments(Path directory) throws IOException {
+		List<Path> segments = new ArrayList<>();
+		try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+			directoryStream.forEach(segments::add);
+		}
+		Collections.sort(segments);
+		return segments;
+	}
+
+	private static long segmentNumber(Path segment) {
+		String fileName = segment.getFileName().toString();
+		return Long.parseLong(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+	}
+
+	public static class Builder<K, V, S> {
+
+		private final Path directory;
+		private final BinaryCodec<K> keyCodec;
+		private final BinaryCodec<V> valueCodec;
+		private final BinaryCodec<S> sourceCodec;
+
+		private int segmentSize = DEFAULT_SEGMENT_SIZE;
+		private int bufferCapacity = DEFAULT_BUFFER_CAPACITY;
+		private FsyncPolicy fsyncPolicy = FsyncPolicy.ON_SEGMENT_ROLL;
+
+		private Builder(Path directory, BinaryCodec<K> keyCodec, BinaryCodec<V> valueCodec,
+				BinaryCodec<S> sourceCodec) {
+			this.directory = requireNonNull(directory);
+			this.keyCodec = requireNonNull(keyCodec);
+			this.valueCodec = requireNonNull(valueCodec);
+			this.sourceCodec = requireNonNull(sourceCodec);
+		}
+
+		/**
+		 * Set the size in bytes at which each segment is rolled
+		 */
+		public Builder<K, V, S> segmentSize(int segmentSize) {
+			if (segmentSize < 1) {
+				throw new IllegalArgumentException("Segment size must be positive: " + segmentSize);
+			}
+			this.segmentSize = segmentSize;
+			return this;
+		}
+
+		/**
+		 * Set the initial capacity in bytes of the buffer in which records are batched before being written. The buffer
+		 * grows if a single record does not fit.
+		 */
+		public Builder<K, V, S> bufferCapacity(int bufferCapacity) {
+			if (bufferCapacity < RECORD_HEADER_LENGTH + Integer.BYTES) {
+				throw new IllegalArgumentException("Buffer capacity too small: " + bufferCapacity);
+			}
+			this.bufferCapacity = bufferCapacity;
+			return this;
+		}
+
+		public Builder<K, V, S> fsyncPolicy(FsyncPolicy fsyncPolicy) {
+			this.fsyncPolicy = requireNonNull(fsyncPolicy);
+			return this;
+		}
+
+		/**
+		 * Open the journal, creating its directory if necessary and beginning a new segment
+		 */
+		public SampleJournal<K, V, S> open() throws IOException {
+			return new SampleJournal<>(this);
+		}
+
+	}
+
+}
@@ -0,0 +1,136 @@
+package net.xeona.sampled.journal;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import net.xeona.sampled.MultiSampledSeriesReconstructor;
+import net.xeona.sampled.SampleBatchListener;
+import net.xeona.sampled.snapshot.BinaryCodec;
+
+/**
+ * Replays the batches of samples recorded by a {@link SampleJournal}, in the order in which they were appended.
+ * <p />
+ * Each segment is memory-mapped and its records decoded directly from the mapping into a pool of mutable samples which
+ * is reused for every batch, so replay proceeds at close to the speed at which the segments can be read. Batches may
+ * be replayed into any {@link MultiSampledSeriesReconstructor} by passing its
+ * {@link MultiSampledSeriesReconstructor#notifySamples notifySamples} method as the listener, whether to recover the
+ * series reconstructed before a crash, or to reconstruct them again using a different value update predicate. The
+ * reconstructor replayed into should not itself be journalling to the same directory.
+ * <p />
+ * As the samples of each batch are reused for the next, listeners must not retain them once notified.
+ * <p />
+ * A record whose length or checksum is invalid at the end of the final segment is taken to have been torn by a crash
+ * while it was being written, and is discarded. Reopening a {@link SampleJournal} truncates such a record before
+ * beginning a new segment, so an invalid record anywhere else is reported as corruption.
+ *
+ * @author Wesley Marsh
+ *
+ * @param <K>
+ *            The type of keys identifying each series
+ * @param <V>
+ *            The type of values of the series
+ * @param <S>
+ *            The type of source identifiers
+ */
+public class SampleJournalReader<K, V, S> {
+
+	private final Path directory;
+	private final BinaryCodec<K> keyCodec;
+	private final BinaryCodec<V> valueCodec;
+	private final BinaryCodec<S> sourceCodec;
+
+	private final CRC32 checksum = new CRC32();
+	private final List<JournalledSample<K, V, S>> samplePool = new ArrayList<>();
+
+	public SampleJournalReader(Path directory, BinaryCodec<K> keyCodec, BinaryCodec<V> valueCodec,
+			BinaryCodec<S> sourceCodec) {
+		this.directory = requireNonNull(directory);
+		this.keyCodec = requireNonNull(keyCodec);
+		this.valueCodec = requireNonNull(valueCodec);
+		this.sourceCodec = requireNonNull(sourceCodec);
+	}
+
+	/**
+	 * Notify the given listener of every batch of samples recorded in the journal, in the order in which they were
+	 * appended
+	 *
+	 * @return The number of samples replayed
+	 * @throws IOException
+	 *             If the journal cannot be read, or a record other than the last is invalid
+	 */
+	public long replay(SampleBatchListener<K, V, S> sampleBatchListener) throws IOException {
+		List<Path> segments = SampleJournal.listSegments(directory);
+		long sampleCount = 0;
+		for (int i = 0; i < segments.size(); i++) {
+			sampleCount += replaySegment(segments.get(i), i == segments.size() - 1, sampleBatchListener);
+		}
+		return sampleCount;
+	}
+
+	private long replaySegment(Path segment, boolean finalSegment, SampleBatchListener<K, V, S> sampleBatchListener)
+			throws IOException {
+		ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(segment, READ)) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+
+		long sampleCount = 0;
+		while (buffer.hasRemaining()) {
+			ByteBuffer payload = nextRecordPayload(buffer);
+			if (payload == null) {
+				if (finalSegment) {
+					break;
+				}
+				throw new IOException("Corrupt journal record in " + segment + " at position " + buffer.position());
+			}
+			List<JournalledSample<K, V, S>> samples = decodeSamples(payload, segment);
+			sampleBatchListener.onSamples(samples);
+			sampleCount += samples.size();
+		}
+		return sampleCount;
+	}
+
+	/**
+	 * @return The payload of the record at the buffer's position, advancing the buffer past it, or <code>null</code> if
+	 *         the record is incomplete or fails its checksum
+	 */
+	private ByteBuffer nextRecordPayload(ByteBuffer buffer) {
+		int recordStart = buffer.position();
+		int recordLength = SampleJournal.validRecordLength(buffer, recordStart, checksum);
+		if (recordLength == 0) {
+			return null;
+		}
+		ByteBuffer payload = buffer.duplicate();
+		payload.limit(recordStart + recordLength).position(recordStart + SampleJournal.RECORD_HEADER_LENGTH);
+		buffer.position(recordStart + recordLength);
+		return payload;
+	}
+
+	private List<JournalledSample<K, V, S>> decodeSamples(ByteBuffer payload, Path segment) throws IOException {
+		try {
+			int sampleCount = payload.getInt();
+			while (samplePool.size() < sampleCount) {
+				samplePool.add(new JournalledSample<>());
+			}
+			for (int i = 0; i < sampleCount; i++) {
+				K key = keyCodec.decode(payload);
+				S source = sourceCodec.decode(payload);
+				V value = valueCodec.decode(payload);
+				samplePool.get(i).set(key, value, source);
+			}
+			return samplePool.subList(0, sampleCount);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Journal record in " + segment + " does not match its codecs", e);
+		}
+	}
+
+}
@@ -0,0 +1,25 @@
+package net.xeona.sampled.metrics;
+
+public class NoOpReconstructionMetrics implements ReconstructionMetrics {
+
+	private static final NoOpReconstructionMetrics INSTANCE = new NoOpReconstructionMetrics();
+
+	NoOpReconstructionMetrics() {}
+
+	@Override
+	public void recordSampleOutcome(SampleOutcome sampleOutcome) {}
+
+	@Override
+	public void recordWalkLength(int walkLength) {}
+
+	@Override
+	public void recordPrune(int prunedDataPoints, int retainedDataPoints) {}
+
+	@Override
+	public void recordSourceIndexLag(long sourceIndexLag) {}
+
+	public static NoOpReconstructionMetrics instance() {
+		return INSTANCE;
+	}
+
+}
@@ -0,0 +1,54 @@
+package net.xeona.sampled.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of non-negative values, counted in buckets whose bounds are successive powers of two.
+ * <p />
+ * Bucket <code>0</code> counts the value <code>0</code>, and bucket <code>b</code> counts values in the range
+ * <code>[2<sup>b-1</sup>, 2<sup>b</sup>)</code>. Each bucket is a {@link LongAdder}, so concurrent recording does not
+ * contend on a single counter. Negative values are counted in bucket <code>0</code>.
+ *
+ * @author Wesley Marsh
+ */
+public class PowerOfTwoHistogram {
+
+	private static final int BUCKET_COUNT = Long.SIZE;
+
+	private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+
+	public PowerOfTwoHistogram() {
+		for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+			buckets[bucket] = new LongAdder();
+		}
+	}
+
+	public void record(long value) {
+		buckets[value <= 0 ? 0 : BUCKET_COUNT - Long.numberOfLeadingZeros(value)].increment();
+	}
+
+	/**
+	 * @return The count of values recorded in each bucket, indexed by bucket
+	 */
+	public long[] getBucketCounts() {
+		long[] bucketCounts = new long[BUCKET_COUNT];
+		for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+			bucketCounts[bucket] = buckets[bucket].sum();
+		}
+		return bucketCounts;
+	}
+
+	/**
+	 * @return The exclusive upper bound of values counted by the given bucket, saturating at {@link Long#MAX_VALUE}
+	 */
+	public static long getBucketUpperBound(int bucket) {
+		return bucket >= BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << bucket;
+	}
+
+	public void reset() {
+		for (LongAdder bucket : buckets) {
+			bucket.reset();
+		}
+	}
+
+}
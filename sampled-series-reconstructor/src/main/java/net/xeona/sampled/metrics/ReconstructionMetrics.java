@@ -0,0 +1,47 @@
+package net.xeona.sampled.metrics;
+
+/**
+ * Receives measurements from the hot path of series reconstruction.
+ * <p />
+ * Implementations are invoked for every sample, potentially from many threads at once, so must be thread-safe and
+ * should do as little work as possible. Reconstructors default to {@link NoOpReconstructionMetrics}.
+ *
+ * @author Wesley Marsh
+ */
+public interface ReconstructionMetrics {
+
+	/**
+	 * Record the outcome of offering a sample to a reconstructor
+	 */
+	void recordSampleOutcome(SampleOutcome sampleOutcome);
+
+	/**
+	 * Record the number of data points compared against a sample while walking a series
+	 */
+	void recordWalkLength(int walkLength);
+
+	/**
+	 * Record that old data points have been cleared from a series
+	 * 
+	 * @param prunedDataPoints
+	 *            The number of data points cleared
+	 * @param retainedDataPoints
+	 *            The number of data points retained by the series afterwards
+	 */
+	void recordPrune(int prunedDataPoints, int retainedDataPoints);
+
+	/**
+	 * Record how far the index of a source lags behind the greatest source index, each time it is updated
+	 */
+	void recordSourceIndexLag(long sourceIndexLag);
+
+	enum SampleOutcome {
+		/** The sample was accepted as a new data point */
+		ACCEPTED,
+		/** The sample matched an existing data point */
+		REJECTED,
+		/** The sample's source could not be aligned with the series, as its index precedes every data point */
+		FAILED_ALIGNMENT
+	}
+
+}
@@ -0,0 +1,81 @@
+package net.xeona.sampled.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link ReconstructionMetrics} which accumulates measurements in striped counters, so that recording from many
+ * threads at once remains cheap. Counts and distributions are summed only when read.
+ *
+ * @author Wesley Marsh
+ */
+public class StripedReconstructionMetrics implements ReconstructionMetrics {
+
+	private final LongAdder[] sampleOutcomeCounts = new LongAdder[SampleOutcome.values().length];
+	private final LongAdder pruneCount = new LongAdder();
+	private final LongAdder prunedDataPointCount = new LongAdder();
+
+	private final PowerOfTwoHistogram walkLengths = new PowerOfTwoHistogram();
+	private final PowerOfTwoHistogram retainedDataPoints = new PowerOfTwoHistogram();
+	private final PowerOfTwoHistogram sourceIndexLags = new PowerOfTwoHistogram();
+
+	public StripedReconstructionMetrics() {
+		for (int i = 0; i < sampleOutcomeCounts.length; i++) {
+			sampleOutcomeCounts[i] = new LongAdder();
+		}
+	}
+
+	@Override
+	public void recordSampleOutcome(SampleOutcome sampleOutcome) {
+		sampleOutcomeCounts[sampleOutcome.ordinal()].increment();
+	}
+
+	@Override
+	public void recordWalkLength(int walkLength) {
+		walkLengths.record(walkLength);
+	}
+
+	@Override
+	public void recordPrune(int prunedDataPoints, int retainedDataPoints) {
+		if (prunedDataPoints > 0) {
+			pruneCount.increment();
+			prunedDataPointCount.add(prunedDataPoints);
+		}
+		this.retainedDataPoints.record(retainedDataPoints);
+	}
+
+	@Override
+	public void recordSourceIndexLag(long sourceIndexLag) {
+		sourceIndexLags.record(sourceIndexLag);
+	}
+
+	public long getSampleOutcomeCount(SampleOutcome sampleOutcome) {
+		return sampleOutcomeCounts[sampleOutcome.ordinal()].sum();
+	}
+
+	/**
+	 * @return The number of times at least one data point has been cleared from a series
+	 */
+	public long getPruneCount() {
+		return pruneCount.sum();
+	}
+
+	public long getPrunedDataPointCount() {
+		return prunedDataPointCount.sum();
+	}
+
+	public PowerOfTwoHistogram getWalkLengths() {
+		return walkLengths;
+	}
+
+	/**
+	 * @return The distribution of the number of data points retained by each series after every sample
+	 */
+	public PowerOfTwoHistogram getRetainedDataPoints() {
+		return retainedDataPoints;
+	}
+
+	public PowerOfTwoHistogram getSourceIndexLags() {
+		return sourceIndexLags;
+	}
+
+}
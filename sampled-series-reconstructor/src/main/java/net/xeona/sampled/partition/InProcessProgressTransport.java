@@ -0,0 +1,57 @@
+package net.xeona.sampled.partition;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import net.xeona.series.index.SeriesIndex;
+
+/**
+ * A {@link ProgressTransport} between partitions within a single process, standing in for a network transport when
+ * testing or when every partition of a reconstruction fits in one process.
+ * <p />
+ * Each registered partition has a mailbox into which progress published by every other partition is merged as it is
+ * published, so a mailbox never holds more than one entry per source however often progress is published before it is
+ * polled. Publication and polling are thread-safe and lock-free.
+ *
+ * @author Wesley Marsh
+ *
+ * @param <S>
+ *            The type of source identifiers
+ * @param <I>
+ *            The type of <code>SeriesIndex</code> reached by each source
+ */
+public class InProcessProgressTransport<S, I extends SeriesIndex<? super I>> implements ProgressTransport<S, I> {
+
+	private final ConcurrentMap<String, AtomicReference<SourceProgress<S, I>>> mailboxesByPartition = new ConcurrentHashMap<>();
+
+	/**
+	 * Register a partition to receive progress published from now on by every other partition
+	 */
+	public void register(String partitionId) {
+		mailboxesByPartition.putIfAbsent(partitionId, new AtomicReference<>(SourceProgress.empty()));
+	}
+
+	@Override
+	public void publish(String partitionId, SourceProgress<S, I> progress) {
+		mailboxesByPartition.forEach((mailboxPartitionId, mailbox) -> {
+			if (!mailboxPartitionId.equals(partitionId)) {
+				mailbox.accumulateAndGet(progress, SourceProgress::merge);
+			}
+		});
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             If the partition has not been registered
+	 */
+	@Override
+	public SourceProgress<S, I> poll(String partitionId) {
+		AtomicReference<SourceProgress<S, I>> mailbox = mailboxesByPartition.get(partitionId);
+		if (mailbox == null) {
+			throw new IllegalArgumentException("Partition not registered with transport: " + partitionId);
+		}
+		return mailbox.getAndSet(SourceProgress.empty());
+	}
+
+}
@@ -0,0 +1,105 @@
+package net.xeona.sampled.partition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A consistent hash ring assigning series keys to partitions.
+ * <p />
+ * Each partition is placed on the ring at a number of points derived from its identifier, and each key is assigned to
+ * the partition at the first point at or after the key's hash. Adding or removing a partition therefore reassigns only
+ * the keys on the arcs adjacent to that partition's points, about <code>1/n</code> of all keys, and the assignment of
+ * a key depends only on its hash and the set of partition identifiers, so every node computes the same assignment.
+ * <p />
+ * Points are held in a sorted array searched by bisection, so assigning a key allocates nothing.
+ *
+ * @author Wesley Marsh
+ */
+public final class PartitionRing {
+
+	private static final int DEFAULT_POINTS_PER_PARTITION = 128;
+
+	private final List<String> partitionIds;
+	private final int[] pointHashes;
+	private final int[] pointPartitions;
+
+	public PartitionRing(Collection<String> partitionIds) {
+		this(partitionIds, DEFAULT_POINTS_PER_PARTITION);
+	}
+
+	/**
+	 * @param partitionIds
+	 *            The distinct identifiers of the partitions on the ring
+	 * @param pointsPerPartition
+	 *            The number of points at which each partition is placed, more of which spread keys more evenly
+	 */
+	public PartitionRing(Collection<String> partitionIds, int pointsPerPartition) {
+		if (partitionIds.isEmpty()) {
+			throw new IllegalArgumentException("Ring must have at least one partition");
+		}
+		if (pointsPerPartition < 1) {
+			throw new IllegalArgumentException("Points per partition must be positive: " + pointsPerPartition);
+		}
+		this.partitionIds = Collections.unmodifiableList(new ArrayList<>(partitionIds));
+		if (this.partitionIds.stream().distinct().count() != this.partitionIds.size()) {
+			throw new IllegalArgumentException("Partition identifiers must be distinct: " + partitionIds);
+		}
+
+		int pointCount = this.partitionIds.size() * pointsPerPartition;
+		long[] points = new long[pointCount];
+		for (int partition = 0; partition < this.partitionIds.size(); partition++) {
+			String partitionId = this.partitionIds.get(partition);
+			for (int point = 0; point < pointsPerPartition; point++) {
+				int pointHash = mix((partitionId + '#' + point).hashCode());
+				points[partition * pointsPerPartition + point] = ((long) pointHash << 32) | partition;
+			}
+		}
+		Arrays.sort(points);
+		this.pointHashes = new int[pointCount];
+		this.pointPartitions = new int[pointCount];
+		for (int i = 0; i < pointCount; i++) {
+			pointHashes[i] = (int) (points[i] >> 32);
+			pointPartitions[i] = (int) points[i];
+		}
+	}
+
+	/**
+	 * @return The identifier of the partition to which the given key is assigned
+	 */
+	public String partitionFor(Object key) {
+		return partitionIds.get(partitionIndexFor(key));
+	}
+
+	/**
+	 * @return The position, among the identifiers with which this ring was constructed, of the partition to which the
+	 *         given key is assigned
+	 */
+	public int partitionIndexFor(Object key) {
+		int position = Arrays.binarySearch(pointHashes, mix(key.hashCode()));
+		if (position < 0) {
+			position = -position - 1;
+		}
+		return pointPartitions[position == pointHashes.length ? 0 : position];
+	}
+
+	public List<String> getPartitionIds() {
+		return partitionIds;
+	}
+
+	/**
+	 * The finalisation step of MurmurHash3, spreading the often clustered hash codes of keys and partition points
+	 * evenly around the ring
+	 */
+	private static int mix(int hash) {
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		hash *= 0xc2b2ae35;
+		hash ^= hash >>> 16;
+		return hash;
+	}
+
+}
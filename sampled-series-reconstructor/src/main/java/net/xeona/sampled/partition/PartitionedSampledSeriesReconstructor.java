@@ -0,0 +1,105 @@
+package net.xeona.sampled.partition;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import net.xeona.sampled.KeyedSeriesSample;
+import net.xeona.series.index.SeriesIndex;
+
+/**
+ * Reconstructs series whose keys are spread by a {@link PartitionRing} across several independent
+ * {@link SeriesPartition}s, each with its own view of source progress.
+ * <p />
+ * Each batch of samples is split by the partition to which each sample's key is assigned, and each part is notified
+ * to its partition. Progress is exchanged between partitions whenever {@link #exchangeProgress()} is called, such as
+ * once per polling cycle, after which every partition's view of each source is at least as advanced as any partition's
+ * view was before the exchange. Between exchanges, a partition retains data points for any source which has since
+ * moved on in other partitions, so exchanging less often costs memory rather than blocking reconstruction.
+ * <p />
+ * All partitions given to this reconstructor are hosted in this process, communicating through any transport, such as
+ * an {@link InProcessProgressTransport}. To spread partitions across processes, each process instead hosts its own
+ * partitions directly, with samples routed to it by the same ring. This class is not thread-safe.
+ *
+ * @author Wesley Marsh
+ *
+ * @param <K>
+ *            The type of keys identifying each series
+ * @param <V>
+ *            The type of values to be received as part of samples from the series to be reconstructed
+ * @param <S>
+ *            The type of source identifiers to be received as part of the samples
+ * @param <I>
+ *            The type of <code>SeriesIndex</code> to be used to compare the relative freshness of both data points and
+ *            sources
+ */
+public class PartitionedSampledSeriesReconstructor<K, V, S, I extends SeriesIndex<? super I>> {
+
+	private final PartitionRing partitionRing;
+	private final List<SeriesPartition<K, V, S, I>> partitions;
+
+	/**
+	 * @param partitionRing
+	 *            The ring assigning series keys to partitions
+	 * @param partitionsById
+	 *            The partition for each identifier on the ring
+	 * @throws IllegalArgumentException
+	 *             If any partition on the ring is missing
+	 */
+	public PartitionedSampledSeriesReconstructor(PartitionRing partitionRing,
+			Map<String, SeriesPartition<K, V, S, I>> partitionsById) {
+		this.partitionRing = requireNonNull(partitionRing);
+		this.partitions = new ArrayList<>();
+		for (String partitionId : partitionRing.getPartitionIds()) {
+			SeriesPartition<K, V, S, I> partition = partitionsById.get(partitionId);
+			if (partition == null) {
+				throw new IllegalArgumentException("No partition given for ring partition: " + partitionId);
+			}
+			partitions.add(partition);
+		}
+	}
+
+	public void notifySamples(Collection<? extends KeyedSeriesSample<K, V, S>> samples) {
+		List<List<KeyedSeriesSample<K, V, S>>> partitionBatches = new ArrayList<>(partitions.size());
+		for (int i = 0; i < partitions.size(); i++) {
+			partitionBatches.add(null);
+		}
+		for (KeyedSeriesSample<K, V, S> sample : samples) {
+			int partition = partitionRing.partitionIndexFor(sample.getKey());
+			List<KeyedSeriesSample<K, V, S>> partitionBatch = partitionBatches.get(partition);
+			if (partitionBatch == null) {
+				partitionBatch = new ArrayList<>();
+				partitionBatches.set(partition, partitionBatch);
+			}
+			partitionBatch.add(sample);
+		}
+		for (int i = 0; i < partitions.size(); i++) {
+			if (partitionBatches.get(i) != null) {
+				partitions.get(i).notifySamples(partitionBatches.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Publish the progress of every partition, then apply to each the progress published by the others
+	 */
+	public void exchangeProgress() {
+		for (SeriesPartition<K, V, S, I> partition : partitions) {
+			partition.publishProgress();
+		}
+		for (SeriesPartition<K, V, S, I> partition : partitions) {
+			partition.applyReceivedProgress();
+		}
+	}
+
+	/**
+	 * @return The partition to which the given series key is assigned
+	 */
+	public SeriesPartition<K, V, S, I> getPartition(K seriesKey) {
+		return partitions.get(partitionRing.partitionIndexFor(seriesKey));
+	}
+
+}
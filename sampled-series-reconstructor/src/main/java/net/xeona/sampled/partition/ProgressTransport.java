@@ -0,0 +1,33 @@
+package net.xeona.sampled.partition;
+
+import net.xeona.series.index.SeriesIndex;
+
+/**
+ * Carries {@link SourceProgress} between the partitions of a partitioned reconstruction, which may be in the same
+ * process or spread across several.
+ * <p />
+ * Delivery need not be ordered or exactly-once: as progress merges idempotently by taking the greatest index of each
+ * source, a transport may coalesce, duplicate or reorder progress, and only progress which is never delivered at all
+ * is lost, delaying the pruning it would have allowed until later progress from the same partition arrives.
+ *
+ * @author Wesley Marsh
+ *
+ * @param <S>
+ *            The type of source identifiers
+ * @param <I>
+ *            The type of <code>SeriesIndex</code> reached by each source
+ */
+public interface ProgressTransport<S, I extends SeriesIndex<? super I>> {
+
+	/**
+	 * Send the progress of the given partition to every other partition
+	 */
+	void publish(String partitionId, SourceProgress<S, I> progress);
+
+	/**
+	 * @return The merged progress published by other partitions for the given partition since it last polled, which is
+	 *         empty if there is none
+	 */
+	SourceProgress<S, I> poll(String partitionId);
+
+}
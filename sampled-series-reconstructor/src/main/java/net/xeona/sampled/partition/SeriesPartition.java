@@ -0,0 +1,116 @@
+package net.xeona.sampled.partition;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Collection;
+
+import net.xeona.sampled.KeyedDataPointListener;
+import net.xeona.sampled.KeyedSeriesSample;
+import net.xeona.sampled.MultiSampledSeriesReconstructor;
+import net.xeona.sampled.MultiSampledSeriesReconstructor.SampledSeriesReconstructorFactory;
+import net.xeona.series.index.SeriesIndex;
+import net.xeona.series.index.SourceIndexTracker;
+
+/**
+ * One partition of a partitioned reconstruction: a {@link MultiSampledSeriesReconstructor} for the series keys
+ * assigned to the partition, with its own view of the index of every source.
+ * <p />
+ * Left to itself, a partition only sees a source advance when that source reports keys assigned to it, so a source
+ * whose recent samples have all been for keys in other partitions would hold back the pruning of every series in this
+ * one. Partitions therefore periodically exchange their {@link SourceProgress} through a {@link ProgressTransport},
+ * advancing each source in every partition's view to the greatest index it has reached in any partition, just as a
+ * single shared registry would have advanced it. Partitions may be hosted in different processes, so long as each
+ * series key is only ever notified to the partition to which it is assigned.
+ * <p />
+ * As progress registers any source it names, a source evicted from one partition's registry is reinstated by progress
+ * from partitions which have not evicted it. Partitions using an evicting registry should therefore evict sources on
+ * the same criteria. Progress only refreshes a source's activity in such a registry where it advances the source, so a
+ * stalled source is still evicted as idle however often its index is exchanged.
+ *
+ * @author Wesley Marsh
+ *
+ * @param <K>
+ *            The type of keys identifying each series
+ * @param <V>
+ *            The type of values to be received as part of samples from the series to be reconstructed
+ * @param <S>
+ *            The type of source identifiers to be received as part of the samples
+ * @param <I>
+ *            The type of <code>SeriesIndex</code> to be used to compare the relative freshness of both data points and
+ *            sources
+ */
+public class SeriesPartition<K, V, S, I extends SeriesIndex<? super I>> {
+
+	private final String partitionId;
+	private final SourceIndexTracker<S, I> sourceIndexRegistry;
+	private final ProgressTransport<S, I> progressTransport;
+	private final MultiSampledSeriesReconstructor<K, V, S, I> seriesReconstructor;
+
+	public SeriesPartition(String partitionId, SourceIndexTracker<S, I> sourceIndexRegistry,
+			SampledSeriesReconstructorFactory<V, S, I> seriesReconstructorFactory,
+			ProgressTransport<S, I> progressTransport) {
+		this(partitionId, sourceIndexRegistry, seriesReconstructorFactory, progressTransport, null);
+	}
+
+	/**
+	 * @param dataPointListener
+	 *            A listener to be notified of each new data point as it is accepted into any series of this partition.
+	 *            May be <code>null</code>.
+	 */
+	public SeriesPartition(String partitionId, SourceIndexTracker<S, I> sourceIndexRegistry,
+			SampledSeriesReconstructorFactory<V, S, I> seriesReconstructorFactory,
+			ProgressTransport<S, I> progressTransport,
+			KeyedDataPointListener<? super K, ? super V, ? super I> dataPointListener) {
+		this.partitionId = requireNonNull(partitionId);
+		this.sourceIndexRegistry = requireNonNull(sourceIndexRegistry);
+		this.progressTransport = requireNonNull(progressTransport);
+		MultiSampledSeriesReconstructor.Builder<K, V, S, I> seriesReconstructorBuilder = MultiSampledSeriesReconstructor
+				.builder(sourceIndexRegistry, seriesReconstructorFactory);
+		if (dataPointListener != null) {
+			seriesReconstructorBuilder.dataPointListener(dataPointListener);
+		}
+		this.seriesReconstructor = seriesReconstructorBuilder.build();
+	}
+
+	/**
+	 * Reconstruct a batch of samples, all of whose keys are assigned to this partition
+	 */
+	public void notifySamples(Collection<? extends KeyedSeriesSample<K, V, S>> samples) {
+		seriesReconstructor.notifySamples(samples);
+	}
+
+	/**
+	 * Publish the progress of every source in this partition's view to the other partitions
+	 */
+	public void publishProgress() {
+		progressTransport.publish(partitionId, SourceProgress.capture(sourceIndexRegistry));
+	}
+
+	/**
+	 * Advance this partition's view of each source to the progress received from the other partitions since this was
+	 * last called. Data points which this makes old are cleared as samples are next notified to their series.
+	 */
+	public void applyReceivedProgress() {
+		progressTransport.poll(partitionId).applyTo(sourceIndexRegistry);
+	}
+
+	/**
+	 * Publish this partition's progress, then apply any progress received from other partitions
+	 */
+	public void exchangeProgress() {
+		publishProgress();
+		applyReceivedProgress();
+	}
+
+	public String getPartitionId() {
+		return partitionId;
+	}
+
+	/**
+	 * @return The reconstructor of the series assigned to this partition, through which they may be read
+	 */
+	public MultiSampledSeriesReconstructor<K, V, S, I> getSeriesReconstructor() {
+		return seriesReconstructor;
+	}
+
+}
@@ -0,0 +1,149 @@
+package net.xeona.sampled.partition;
+
+import static java.util.Objects.requireNonNull;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import net.xeona.sampled.snapshot.BinaryCodec;
+import net.xeona.series.index.SeriesIndex;
+import net.xeona.series.index.SourceIndexTracker;
+
+/**
+ * An immutable record of the greatest index reached by each of a set of sources, exchanged between partitions so that
+ * each partition's view of every source reflects the progress made by that source in all partitions.
+ * <p />
+ * Progress merges by taking the greater index of each source, so merging is commutative, associative and idempotent:
+ * progress may be exchanged in any order, repeatedly and through any number of intermediaries, and every partition
+ * which has received the same progress holds the same view of it. As source indices only ever move forward, applying
+ * progress to a {@link SourceIndexTracker} never moves a source backwards.
+ *
+ * @author Wesley Marsh
+ *
+ * @param <S>
+ *            The type of source identifiers
+ * @param <I>
+ *            The type of <code>SeriesIndex</code> reached by each source
+ */
+public final class SourceProgress<S, I extends SeriesIndex<? super I>> {
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static final SourceProgress<?, ?> EMPTY = new SourceProgress(Collections.emptyMap());
+
+	private final Map<S, I> indexBySource;
+
+	private SourceProgress(Map<S, I> indexBySource) {
+		this.indexBySource = indexBySource;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <S, I extends SeriesIndex<? super I>> SourceProgress<S, I> empty() {
+		return (SourceProgress<S, I>) EMPTY;
+	}
+
+	/**
+	 * @return The current index of every source tracked by the given tracker
+	 */
+	public static <S, I extends SeriesIndex<? super I>> SourceProgress<S, I> capture(
+			SourceIndexTracker<S, I> sourceIndexRegistry) {
+		Map<S, I> indexBySource = new HashMap<>();
+		sourceIndexRegistry.forEachSource(indexBySource::put);
+		return new SourceProgress<>(indexBySource);
+	}
+
+	/**
+	 * @return The progress of every source in either this or the given progress, at the greater of its indices in each
+	 */
+	public SourceProgress<S, I> merge(SourceProgress<S, I> other) {
+		if (other.indexBySource.isEmpty()) {
+			return this;
+		} else if (indexBySource.isEmpty()) {
+			return other;
+		}
+		Map<S, I> mergedIndexBySource = new HashMap<>(indexBySource);
+		other.indexBySource.forEach((source, index) -> mergedIndexBySource.merge(source, index,
+				(firstIndex, secondIndex) -> firstIndex.compareTo(secondIndex) < 0 ? secondIndex : firstIndex));
+		return new SourceProgress<>(mergedIndexBySource);
+	}
+
+	/**
+	 * Advance each source in the given tracker to its index in this progress, registering any it does not yet track
+	 */
+	public void applyTo(SourceIndexTracker<? super S, I> sourceIndexRegistry) {
+		indexBySource.forEach(sourceIndexRegistry::setCurrentIndexForSource);
+	}
+
+	/**
+	 * @return The index reached by the given source, or <code>null</code> if it has made no recorded progress
+	 */
+	public I getIndexForSource(S source) {
+		return indexBySource.get(source);
+	}
+
+	public int getSourceCount() {
+		return indexBySource.size();
+	}
+
+	/**
+	 * Visit the index reached by every source, in no particular order
+	 */
+	public void forEachSource(BiConsumer<? super S, ? super I> sourceIndexConsumer) {
+		indexBySource.forEach(sourceIndexConsumer);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof SourceProgress && ((SourceProgress<?, ?>) other).indexBySource.equals(indexBySource);
+	}
+
+	@Override
+	public int hashCode() {
+		return indexBySource.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "SourceProgress" + indexBySource;
+	}
+
+	/**
+	 * @return A codec encoding progress as the number of sources followed by each source and its index, for exchange
+	 *         between processes
+	 */
+	public static <S, I extends SeriesIndex<? super I>> BinaryCodec<SourceProgress<S, I>> codec(
+			BinaryCodec<S> sourceCodec, BinaryCodec<I> indexCodec) {
+		requireNonNull(sourceCodec);
+		requireNonNull(indexCodec);
+		return new BinaryCodec<SourceProgress<S, I>>() {
+
+			@Override
+			public void encode(SourceProgress<S, I> progress, ByteBuffer buffer) {
+				if (buffer.remaining() < Integer.BYTES) {
+					throw new BufferOverflowException();
+				}
+				buffer.putInt(progress.indexBySource.size());
+				progress.indexBySource.forEach((source, index) -> {
+					sourceCodec.encode(source, buffer);
+					indexCodec.encode(index, buffer);
+				});
+			}
+
+			@Override
+			public SourceProgress<S, I> decode(ByteBuffer buffer) {
+				int sourceCount = buffer.getInt();
+				Map<S, I> indexBySource = new HashMap<>();
+				for (int i = 0; i < sourceCount; i++) {
+					S source = sourceCodec.decode(buffer);
+					indexBySource.put(source, indexCodec.decode(buffer));
+				}
+				return new SourceProgress<>(indexBySource);
+			}
+
+		};
+	}
+
+}
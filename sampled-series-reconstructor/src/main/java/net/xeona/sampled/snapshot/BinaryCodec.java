@@ -0,0 +1,23 @@
+package net.xeona.sampled.snapshot;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes values of a given type to, and decodes them from, a compact binary form.
+ * <p />
+ * Encoding must write the value at the buffer's position and advance the position past it, failing with a
+ * {@link java.nio.BufferOverflowException} if the buffer has too little remaining to hold the value, in which case it
+ * will be retried with a buffer that has more remaining. Decoding must read exactly the bytes written by encoding.
+ *
+ * @author Wesley Marsh
+ *
+ * @param <T>
+ *            The type of values encoded
+ */
+public interface BinaryCodec<T> {
+
+	void encode(T value, ByteBuffer buffer);
+
+	T decode(ByteBuffer buffer);
+
+}
@@ -0,0 +1,119 @@
+package net.xeona.sampled.snapshot;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import net.xeona.series.index.CounterSeriesIndex;
+import net.xeona.series.index.TimestampSeriesIndex;
+
+/**
+ * {@link BinaryCodec} implementations for commonly used key, value, source and index types
+ *
+ * @author Wesley Marsh
+ */
+public final class BinaryCodecs {
+
+	private static final BinaryCodec<Integer> INTEGER_CODEC = new BinaryCodec<Integer>() {
+
+		@Override
+		public void encode(Integer value, ByteBuffer buffer) {
+			buffer.putInt(value);
+		}
+
+		@Override
+		public Integer decode(ByteBuffer buffer) {
+			return buffer.getInt();
+		}
+
+	};
+
+	private static final BinaryCodec<Long> LONG_CODEC = new BinaryCodec<Long>() {
+
+		@Override
+		public void encode(Long value, ByteBuffer buffer) {
+			buffer.putLong(value);
+		}
+
+		@Override
+		public Long decode(ByteBuffer buffer) {
+			return buffer.getLong();
+		}
+
+	};
+
+	private static final BinaryCodec<String> STRING_CODEC = new BinaryCodec<String>() {
+
+		@Override
+		public void encode(String value, ByteBuffer buffer) {
+			byte[] bytes = value.getBytes(UTF_8);
+			if (buffer.remaining() < Integer.BYTES + bytes.length) {
+				throw new BufferOverflowException();
+			}
+			buffer.putInt(bytes.length).put(bytes);
+		}
+
+		@Override
+		public String decode(ByteBuffer buffer) {
+			byte[] bytes = new byte[buffer.getInt()];
+			buffer.get(bytes);
+			return new String(bytes, UTF_8);
+		}
+
+	};
+
+	private static final BinaryCodec<CounterSeriesIndex> COUNTER_SERIES_INDEX_CODEC = new BinaryCodec<CounterSeriesIndex>() {
+
+		@Override
+		public void encode(CounterSeriesIndex value, ByteBuffer buffer) {
+			buffer.putLong(value.getCount());
+		}
+
+		@Override
+		public CounterSeriesIndex decode(ByteBuffer buffer) {
+			return CounterSeriesIndex.Operations.instance().fromCount(buffer.getLong());
+		}
+
+	};
+
+	private static final BinaryCodec<TimestampSeriesIndex> TIMESTAMP_SERIES_INDEX_CODEC = new BinaryCodec<TimestampSeriesIndex>() {
+
+		@Override
+		public void encode(TimestampSeriesIndex value, ByteBuffer buffer) {
+			buffer.putLong(value.getStamp());
+		}
+
+		@Override
+		public TimestampSeriesIndex decode(ByteBuffer buffer) {
+			return TimestampSeriesIndex.Operations.instance().fromStamp(buffer.getLong());
+		}
+
+	};
+
+	private BinaryCodecs() {}
+
+	public static BinaryCodec<Integer> integers() {
+		return INTEGER_CODEC;
+	}
+
+	public static BinaryCodec<Long> longs() {
+		return LONG_CODEC;
+	}
+
+	/**
+	 * @return A codec for strings, encoded as UTF-8 prefixed by their encoded length
+	 */
+	public static BinaryCodec<String> strings() {
+		return STRING_CODEC;
+	}
+
+	public static BinaryCodec<CounterSeriesIndex> counterSeriesIndices() {
+		return COUNTER_SERIES_INDEX_CODEC;
+	}
+
+	public static BinaryCodec<TimestampSeriesIndex> timestampSeriesIndices() {
+		return TIMESTAMP_SERIES_INDEX_CODEC;
+	}
+
+}
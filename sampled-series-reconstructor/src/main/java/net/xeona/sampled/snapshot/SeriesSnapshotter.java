@@ -0,0 +1,239 @@
+package net.xeona.sampled.snapshot;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import net.xeona.sampled.MultiSampledSeriesReconstructor;
+import net.xeona.series.index.SeriesIndex;
+import net.xeona.series.index.SourceIndexTracker;
+
+/**
+ * Writes snapshots of the state of a {@link MultiSampledSeriesReconstructor} and its {@link SourceIndexTracker} to
+ * file, and restores that state from them, so that a restarted process can resume reconstruction without having to
+ * re-align every source from scratch.
+ * <p />
+ * A snapshot is a compact binary file holding the current index of every source, followed by the retained data points
+ * of every series, each encoded by the {@link BinaryCodec} given for its type. Snapshots are written through a
+ * {@link FileChannel} in large blocks to a temporary file, which is forced to disk and then atomically moved into place,
+ * so a snapshot is either wholly present or absent, and the temporary file is deleted if the snapshot fails to be
+ * written. The directory holding the snapshot is then forced to disk as well, so that the move itself survives a
+ * crash. They are restored by memory-mapping the file and decoding directly from the mapping, which limits a snapshot
+ * to at most {@link Integer#MAX_VALUE} bytes.
+ * <p />
+ * Neither the reconstructor nor the registry may be notified of samples while a snapshot is written or restored, and
+ * both should be newly constructed when a snapshot is restored into them.
+ *
+ * @author Wesley Marsh
+ *
+ * @param <K>
+ *            The type of keys identifying each series
+ * @param <V>
+ *            The type of values of the series
+ * @param <S>
+ *            The type of source identifiers
+ * @param <I>
+ *            The type of <code>SeriesIndex</code> of both data points and sources
+ */
+public class SeriesSnapshotter<K, V, S, I extends SeriesIndex<? super I>> {
+
+	private static final int MAGIC = 0x53535253;
+	private static final int VERSION = 1;
+
+	private static final int OUTPUT_BUFFER_CAPACITY = 1 << 20;
+	private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+	private final BinaryCodec<K> keyCodec;
+	private final BinaryCodec<V> valueCodec;
+	private final BinaryCodec<S> sourceCodec;
+	private final BinaryCodec<I> indexCodec;
+
+	public SeriesSnapshotter(BinaryCodec<K> keyCodec, BinaryCodec<V> valueCodec, BinaryCodec<S> sourceCodec,
+			BinaryCodec<I> indexCodec) {
+		this.keyCodec = requireNonNull(keyCodec);
+		this.valueCodec = requireNonNull(valueCodec);
+		this.sourceCodec = requireNonNull(sourceCodec);
+		this.indexCodec = requireNonNull(indexCodec);
+	}
+
+	/**
+	 * Write a snapshot of the given reconstructor and the source index registry it was built with, replacing any file
+	 * already at the given path
+	 */
+	public void writeSnapshot(Path path, MultiSampledSeriesReconstructor<K, V, S, I> seriesReconstructor,
+			SourceIndexTracker<S, I> sourceIndexRegistry) throws IOException {
+		Path temporaryPath = path.resolveSibling(path.getFileName() + TEMPORARY_FILE_SUFFIX);
+		try {
+			try (FileChannel channel = FileChannel.open(temporaryPath, CREATE, WRITE, TRUNCATE_EXISTING)) {
+				SnapshotOutput output = new SnapshotOutput(channel, OUTPUT_BUFFER_CAPACITY);
+				output.writeInt(MAGIC);
+				output.writeInt(VERSION);
+				try {
+					writeSources(output, sourceIndexRegistry);
+					writeSeries(output, seriesReconstructor);
+				} catch (UncheckedIOException e) {
+					throw e.getCause();
+				}
+				output.flush();
+				channel.force(true);
+			}
+			Files.move(temporaryPath, path, ATOMIC_MOVE, REPLACE_EXISTING);
+		} catch (IOException | RuntimeException e) {
+			try {
+				Files.deleteIfExists(temporaryPath);
+			} catch (IOException deleteException) {
+				e.addSuppressed(deleteException);
+			}
+			throw e;
+		}
+		try (FileChannel directoryChannel = FileChannel.open(path.toAbsolutePath().getParent(), READ)) {
+			directoryChannel.force(true);
+		}
+	}
+
+	/**
+	 * Restore the state held by the snapshot at the given path into the given reconstructor and the source index
+	 * registry it was built with
+	 *
+	 * @throws IOException
+	 *             If the snapshot cannot be read, or is not a valid snapshot
+	 */
+	public void restoreSnapshot(Path path, MultiSampledSeriesReconstructor<K, V, S, I> seriesReconstructor,
+			SourceIndexTracker<S, I> sourceIndexRegistry) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("Snapshot exceeds maximum size of " + Integer.MAX_VALUE + " bytes: " + size);
+			}
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			try {
+				readHeader(buffer);
+				readSources(buffer, sourceIndexRegistry);
+				readSeries(buffer, seriesReconstructor);
+				seriesReconstructor.completeRestore();
+			} catch (BufferUnderflowException e) {
+				throw new IOException("Snapshot is truncated: " + path, e);
+			}
+		}
+	}
+
+	private void writeSources(SnapshotOutput output, SourceIndexTracker<S, I> sourceIndexRegistry)
+			throws IOException {
+		long sourceCountPosition = output.position();
+		output.writeInt(0);
+		int[] sourceCount = new int[1];
+		sourceIndexRegistry.forEachSource((source, index) -> {
+			try {
+				output.write(sourceCodec, source);
+				output.write(indexCodec, index);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			sourceCount[0]++;
+		});
+		output.patchInt(sourceCountPosition, sourceCount[0]);
+	}
+
+	private void writeSeries(SnapshotOutput output, MultiSampledSeriesReconstructor<K, V, S, I> seriesReconstructor)
+			throws IOException {
+		long seriesCountPosition = output.position();
+		output.writeInt(0);
+		SeriesWriter seriesWriter = new SeriesWriter(output);
+		seriesReconstructor.forEachDataPoint(seriesWriter::onDataPoint);
+		seriesWriter.writeSeries();
+		output.patchInt(seriesCountPosition, seriesWriter.seriesCount);
+	}
+
+	private void readHeader(ByteBuffer buffer) throws IOException {
+		int magic = buffer.getInt();
+		if (magic != MAGIC) {
+			throw new IOException("Not a series snapshot: unexpected magic number " + Integer.toHexString(magic));
+		}
+		int version = buffer.getInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported snapshot version: " + version);
+		}
+	}
+
+	private void readSources(ByteBuffer buffer, SourceIndexTracker<S, I> sourceIndexRegistry) {
+		for (int sourceCount = buffer.getInt(); sourceCount > 0; sourceCount--) {
+			S source = sourceCodec.decode(buffer);
+			I index = indexCodec.decode(buffer);
+			sourceIndexRegistry.setCurrentIndexForSource(source, index);
+		}
+	}
+
+	private void readSeries(ByteBuffer buffer, MultiSampledSeriesReconstructor<K, V, S, I> seriesReconstructor) {
+		for (int seriesCount = buffer.getInt(); seriesCount > 0; seriesCount--) {
+			K seriesKey = keyCodec.decode(buffer);
+			for (int dataPointCount = buffer.getInt(); dataPointCount > 0; dataPointCount--) {
+				I index = indexCodec.decode(buffer);
+				V value = valueCodec.decode(buffer);
+				seriesReconstructor.restoreDataPoint(seriesKey, index, value);
+			}
+		}
+	}
+
+	/**
+	 * Gathers the data points of each series as they are visited, and writes each series once all of its data points
+	 * have been gathered, so that the series can be prefixed with its data point count
+	 */
+	private class SeriesWriter {
+
+		private final SnapshotOutput output;
+
+		private final List<I> indices = new ArrayList<>();
+		private final List<V> values = new ArrayList<>();
+		private K seriesKey;
+		private int seriesCount;
+
+		private SeriesWriter(SnapshotOutput output) {
+			this.output = output;
+		}
+
+		private void onDataPoint(K dataPointSeriesKey, I index, V value) {
+			if (!Objects.equals(dataPointSeriesKey, seriesKey)) {
+				writeSeries();
+				seriesKey = dataPointSeriesKey;
+			}
+			indices.add(index);
+			values.add(value);
+		}
+
+		private void writeSeries() {
+			if (!indices.isEmpty()) {
+				try {
+					output.write(keyCodec, seriesKey);
+					output.writeInt(indices.size());
+					for (int i = 0; i < indices.size(); i++) {
+						output.write(indexCodec, indices.get(i));
+						output.write(valueCodec, values.get(i));
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				indices.clear();
+				values.clear();
+				seriesCount++;
+			}
+		}
+
+	}
+
+}
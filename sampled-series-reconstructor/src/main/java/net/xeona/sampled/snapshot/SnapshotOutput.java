@@ -0,0 +1,75 @@
+package net.xeona.sampled.snapshot;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Buffers encoded values in a direct buffer and writes them to a {@link FileChannel} in large blocks
+ */
+final class SnapshotOutput {
+
+	private final FileChannel channel;
+	private ByteBuffer buffer;
+
+	SnapshotOutput(FileChannel channel, int bufferCapacity) {
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocateDirect(bufferCapacity);
+	}
+
+	void writeInt(int value) throws IOException {
+		ensureRemaining(Integer.BYTES);
+		buffer.putInt(value);
+	}
+
+	<T> void write(BinaryCodec<? super T> codec, T value) throws IOException {
+		while (true) {
+			int startPosition = buffer.position();
+			try {
+				codec.encode(value, buffer);
+				return;
+			} catch (BufferOverflowException e) {
+				buffer.position(startPosition);
+				if (startPosition == 0) {
+					buffer = ByteBuffer.allocateDirect(buffer.capacity() << 1);
+				} else {
+					flush();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The position in the file at which the next value will be written
+	 */
+	long position() throws IOException {
+		return channel.position() + buffer.position();
+	}
+
+	/**
+	 * Overwrite an <code>int</code> previously written at the given position in the file
+	 */
+	void patchInt(long position, int value) throws IOException {
+		flush();
+		ByteBuffer patch = ByteBuffer.allocate(Integer.BYTES).putInt(0, value);
+		while (patch.hasRemaining()) {
+			channel.write(patch, position + patch.position());
+		}
+	}
+
+	void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private void ensureRemaining(int length) throws IOException {
+		if (buffer.remaining() < length) {
+			flush();
+		}
+	}
+
+}
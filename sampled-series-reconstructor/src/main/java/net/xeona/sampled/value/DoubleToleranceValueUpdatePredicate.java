@@ -0,0 +1,40 @@
+package net.xeona.sampled.value;
+
+/**
+ * A {@link DoubleValueUpdatePredicate} which considers two values equivalent if they differ by no more than a fixed
+ * absolute tolerance, so that noise in the least significant digits of a gauge is not mistaken for an update.
+ * <p />
+ * Any two <code>NaN</code> values are considered equivalent to each other, and to no other value. Note that equivalence
+ * within a non-zero tolerance is not transitive, so a value may be equivalent to each of two data points which are not
+ * equivalent to each other; as ever, a sample is matched against the earliest equivalent data point walked.
+ *
+ * @author Wesley Marsh
+ */
+public class DoubleToleranceValueUpdatePredicate implements DoubleValueUpdatePredicate {
+
+	private static final DoubleToleranceValueUpdatePredicate EXACT = new DoubleToleranceValueUpdatePredicate(0);
+
+	private final double tolerance;
+
+	public DoubleToleranceValueUpdatePredicate(double tolerance) {
+		if (!(tolerance >= 0)) {
+			throw new IllegalArgumentException("Tolerance must be non-negative: " + tolerance);
+		}
+		this.tolerance = tolerance;
+	}
+
+	@Override
+	public boolean isValueEquivalent(double previousValue, double newValue) {
+		return previousValue == newValue || Math.abs(previousValue - newValue) <= tolerance
+				|| (Double.isNaN(previousValue) && Double.isNaN(newValue));
+	}
+
+	/**
+	 * @return A predicate which considers values equivalent only if they are numerically equal, or both
+	 *         <code>NaN</code>
+	 */
+	public static DoubleToleranceValueUpdatePredicate exact() {
+		return EXACT;
+	}
+
+}
@@ -0,0 +1,12 @@
+package net.xeona.sampled.value;
+
+/**
+ * A {@link ValueUpdatePredicate} specialised for <code>double</code> values, so that they may be compared without
+ * boxing
+ */
+@FunctionalInterface
+public interface DoubleValueUpdatePredicate {
+
+	boolean isValueEquivalent(double previousValue, double newValue);
+
+}
@@ -3,16 +3,55 @@ package net.xeona.sampled.value;
 public class EqualityValueUpdatePredicate implements ValueUpdatePredicate<Object> {
 
 	private static final EqualityValueUpdatePredicate INSTANCE = new EqualityValueUpdatePredicate();
+	private static final EqualityValueUpdatePredicate FINGERPRINTED_INSTANCE = new EqualityValueUpdatePredicate(true);
 
-	EqualityValueUpdatePredicate() {}
+	private final boolean fingerprinted;
+
+	EqualityValueUpdatePredicate() {
+		this(false);
+	}
+
+	private EqualityValueUpdatePredicate(boolean fingerprinted) {
+		this.fingerprinted = fingerprinted;
+	}
 
 	@Override
 	public boolean isValueEquivalent(Object previousValue, Object newValue) {
 		return newValue.equals(previousValue);
 	}
 
+	@Override
+	public boolean isConsistentWithEquals() {
+		return true;
+	}
+
+	@Override
+	public boolean isFingerprinted() {
+		return fingerprinted;
+	}
+
+	/**
+	 * The fingerprint of a value is its hash code, spread across all 64 bits, as equal values always have equal hash
+	 * codes
+	 */
+	@Override
+	public long fingerprint(Object value) {
+		if (!fingerprinted) {
+			return ValueUpdatePredicate.super.fingerprint(value);
+		}
+		return value.hashCode() * 0x9e3779b97f4a7c15L;
+	}
+
 	public static EqualityValueUpdatePredicate instance() {
 		return INSTANCE;
 	}
 
+	/**
+	 * @return A predicate testing equality which also fingerprints values by their hash codes, for values such as large
+	 *         maps and structures whose <code>equals</code> is expensive even when they obviously differ
+	 */
+	public static EqualityValueUpdatePredicate fingerprinted() {
+		return FINGERPRINTED_INSTANCE;
+	}
+
 }
@@ -0,0 +1,18 @@
+package net.xeona.sampled.value;
+
+public class LongEqualityValueUpdatePredicate implements LongValueUpdatePredicate {
+
+	private static final LongEqualityValueUpdatePredicate INSTANCE = new LongEqualityValueUpdatePredicate();
+
+	LongEqualityValueUpdatePredicate() {}
+
+	@Override
+	public boolean isValueEquivalent(long previousValue, long newValue) {
+		return previousValue == newValue;
+	}
+
+	public static LongEqualityValueUpdatePredicate instance() {
+		return INSTANCE;
+	}
+
+}
@@ -0,0 +1,11 @@
+package net.xeona.sampled.value;
+
+/**
+ * A {@link ValueUpdatePredicate} specialised for <code>long</code> values, so that they may be compared without boxing
+ */
+@FunctionalInterface
+public interface LongValueUpdatePredicate {
+
+	boolean isValueEquivalent(long previousValue, long newValue);
+
+}
@@ -3,5 +3,39 @@ package net.xeona.sampled.value;
 public interface ValueUpdatePredicate<V> {
 
 	boolean isValueEquivalent(V previousValue, V newValue);
-	
+
+	/**
+	 * Whether two values are equivalent according to this predicate if and only if they are equal according to
+	 * {@link Object#equals(Object)}, and so may be looked up by hash rather than compared one at a time
+	 * 
+	 * @return <code>true</code> if equivalence is consistent with <code>equals</code> and <code>hashCode</code>
+	 */
+	default boolean isConsistentWithEquals() {
+		return false;
+	}
+
+	/**
+	 * Whether this predicate provides a {@link #fingerprint(Object) fingerprint} of each value, so that a reconstructor
+	 * may store the fingerprint of each data point beside it and compare fingerprints before values during a walk
+	 * 
+	 * @return <code>true</code> if {@link #fingerprint(Object)} is supported
+	 */
+	default boolean isFingerprinted() {
+		return false;
+	}
+
+	/**
+	 * Compute a fingerprint of the given value, such that equivalent values always have equal fingerprints. Values
+	 * with different fingerprints are therefore never equivalent, and only those whose fingerprints are equal need be
+	 * compared by {@link #isValueEquivalent(Object, Object)}. Fingerprints should be computed once per value, so may
+	 * cost as much as a single full comparison.
+	 * 
+	 * @return The fingerprint of the given value
+	 * @throws UnsupportedOperationException
+	 *             If this predicate is not {@link #isFingerprinted() fingerprinted}
+	 */
+	default long fingerprint(V value) {
+		throw new UnsupportedOperationException("Predicate does not fingerprint values: " + this);
+	}
+
 }
@@ -0,0 +1,196 @@
+package net.xeona.series.index;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+
+import com.google.common.collect.Multiset;
+import com.google.common.collect.SortedMultiset;
+import com.google.common.collect.TreeMultiset;
+
+import net.xeona.sampled.metrics.NoOpReconstructionMetrics;
+import net.xeona.sampled.metrics.ReconstructionMetrics;
+
+/**
+ * A thread-safe {@link SourceIndexTracker} for use by reconstructors receiving samples on multiple threads.
+ * <p />
+ * Sources are partitioned across a fixed number of lock stripes, each of which keeps the indices of its own sources in
+ * order and publishes the least of them. Only the registration of a new source or the advancement of an existing one
+ * takes a lock, that of the source's stripe, which in steady state happens at most once per source per polling cycle,
+ * rather than once per sample, and does not contend with sources in other stripes.
+ * <p />
+ * Reads of a source's index and of the least current index never block. The least current index is the least of the
+ * indices published by each stripe, and so costs a read per stripe. If read while sources in several stripes are
+ * being updated, it may reflect some stripes as they were before their updates and others as they are after them.
+ * A source's index is published by its stripe before it becomes visible to readers of the source, so a thread which
+ * has read the index of any source always finds a least current index.
+ * <p />
+ * If metrics are given, the lag of a source behind the greatest index published by any stripe is recorded each time the
+ * source is updated, which likewise costs a read per stripe.
+ *
+ * @author Wesley Marsh
+ *
+ * @param <S>
+ *            The type of source identifiers tracked by this registry
+ * @param <I>
+ *            The type of <code>SeriesIndex</code> tracked for each source
+ */
+public class ConcurrentSourceIndexRegistry<S, I extends SeriesIndex<? super I>> implements SourceIndexTracker<S, I> {
+
+	private static final int DEFAULT_STRIPES_PER_PROCESSOR = 2;
+
+	private final SeriesIndex.Operations<I> seriesIndexOperations;
+	private final ReconstructionMetrics metrics;
+	private final boolean sourceIndexLagRecorded;
+
+	private final ConcurrentMap<S, I> seriesIndexBySource = new ConcurrentHashMap<>();
+	private final Stripe<I>[] stripes;
+
+	public ConcurrentSourceIndexRegistry(SeriesIndex.Operations<I> seriesIndexOperations) {
+		this(seriesIndexOperations, Runtime.getRuntime().availableProcessors() * DEFAULT_STRIPES_PER_PROCESSOR);
+	}
+
+	public ConcurrentSourceIndexRegistry(SeriesIndex.Operations<I> seriesIndexOperations, int minimumStripeCount) {
+		this(seriesIndexOperations, minimumStripeCount, NoOpReconstructionMetrics.instance());
+	}
+
+	/**
+	 * @param metrics
+	 *            Metrics to which the lag of each source behind the greatest source index is recorded as the source is
+	 *            updated. Unless no-op metrics are given, the series index operations must support
+	 *            {@link SeriesIndex.Operations#distance(SeriesIndex, SeriesIndex) distance}.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public ConcurrentSourceIndexRegistry(SeriesIndex.Operations<I> seriesIndexOperations, int minimumStripeCount,
+			ReconstructionMetrics metrics) {
+		if (minimumStripeCount < 1) {
+			throw new IllegalArgumentException("Stripe count must be positive: " + minimumStripeCount);
+		}
+		this.seriesIndexOperations = requireNonNull(seriesIndexOperations);
+		this.metrics = requireNonNull(metrics);
+		this.sourceIndexLagRecorded = metrics != NoOpReconstructionMetrics.instance();
+
+		int stripeCount = 1;
+		while (stripeCount < minimumStripeCount) {
+			stripeCount <<= 1;
+		}
+		this.stripes = new Stripe[stripeCount];
+		for (int i = 0; i < stripeCount; i++) {
+			stripes[i] = new Stripe<>();
+		}
+	}
+
+	@Override
+	public I getLeastCurrentIndex() {
+		I currentLeastIndex = null;
+		for (Stripe<I> stripe : stripes) {
+			I stripeLeastIndex = stripe.leastCurrentIndex;
+			if (stripeLeastIndex != null
+					&& (currentLeastIndex == null || stripeLeastIndex.compareTo(currentLeastIndex) < 0)) {
+				currentLeastIndex = stripeLeastIndex;
+			}
+		}
+		if (currentLeastIndex == null) {
+			throw new IllegalStateException("No sources currently registered");
+		}
+		return currentLeastIndex;
+	}
+
+	@Override
+	public I getCurrentIndexForSource(S source) {
+		I currentIndex = seriesIndexBySource.get(source);
+		if (currentIndex == null) {
+			Stripe<I> stripe = stripeFor(source);
+			synchronized (stripe) {
+				currentIndex = seriesIndexBySource.get(source);
+				if (currentIndex == null) {
+					currentIndex = seriesIndexOperations.initialValue();
+					stripe.currentSourceIndeces.add(currentIndex);
+					stripe.publishCurrentIndices();
+					seriesIndexBySource.put(source, currentIndex);
+				}
+			}
+		}
+		return currentIndex;
+	}
+
+	@Override
+	public void setCurrentIndexForSource(S source, I index) {
+		I currentIndex = seriesIndexBySource.get(source);
+		if (currentIndex == null || index.isGreaterThan(currentIndex)) {
+			Stripe<I> stripe = stripeFor(source);
+			synchronized (stripe) {
+				currentIndex = seriesIndexBySource.get(source);
+				if (currentIndex == null || index.isGreaterThan(currentIndex)) {
+					if (currentIndex != null) {
+						stripe.currentSourceIndeces.remove(currentIndex);
+					}
+					stripe.currentSourceIndeces.add(index);
+					stripe.publishCurrentIndices();
+					seriesIndexBySource.put(source, index);
+					currentIndex = index;
+				}
+			}
+		}
+		if (sourceIndexLagRecorded) {
+			metrics.recordSourceIndexLag(
+					seriesIndexOperations.distance(currentIndex, greatestCurrentIndex(currentIndex)));
+		}
+	}
+
+	@Override
+	public void clearCurrentIndexForSource(S source) {
+		Stripe<I> stripe = stripeFor(source);
+		synchronized (stripe) {
+			I sourceIndex = seriesIndexBySource.remove(source);
+			if (sourceIndex != null) {
+				stripe.currentSourceIndeces.remove(sourceIndex);
+				stripe.publishCurrentIndices();
+			}
+		}
+	}
+
+	@Override
+	public void forEachSource(BiConsumer<? super S, ? super I> sourceIndexConsumer) {
+		seriesIndexBySource.forEach(sourceIndexConsumer);
+	}
+
+	/**
+	 * @return The greatest index published by any stripe, or the given index of an updated source if greater, as the
+	 *         source may have been cleared concurrently
+	 */
+	private I greatestCurrentIndex(I sourceIndex) {
+		I currentGreatestIndex = sourceIndex;
+		for (Stripe<I> stripe : stripes) {
+			I stripeGreatestIndex = stripe.greatestCurrentIndex;
+			if (stripeGreatestIndex != null && stripeGreatestIndex.isGreaterThan(currentGreatestIndex)) {
+				currentGreatestIndex = stripeGreatestIndex;
+			}
+		}
+		return currentGreatestIndex;
+	}
+
+	private Stripe<I> stripeFor(S source) {
+		int hash = source.hashCode();
+		return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+	}
+
+	private static class Stripe<I extends SeriesIndex<? super I>> {
+
+		private final SortedMultiset<I> currentSourceIndeces = TreeMultiset.create();
+
+		private volatile I leastCurrentIndex;
+		private volatile I greatestCurrentIndex;
+
+		private void publishCurrentIndices() {
+			Multiset.Entry<I> leastEntry = currentSourceIndeces.firstEntry();
+			leastCurrentIndex = leastEntry == null ? null : leastEntry.getElement();
+			Multiset.Entry<I> greatestEntry = currentSourceIndeces.lastEntry();
+			greatestCurrentIndex = greatestEntry == null ? null : greatestEntry.getElement();
+		}
+
+	}
+
+}
@@ -10,6 +10,10 @@ public class CounterSeriesIndex implements SeriesIndex<CounterSeriesIndex> {
 		this.count = count;
 	}
 
+	public long getCount() {
+		return count;
+	}
+
 	@Override
 	public int compareTo(CounterSeriesIndex other) {
 		return Long.compare(count, other.count);
@@ -46,6 +50,20 @@ public class CounterSeriesIndex implements SeriesIndex<CounterSeriesIndex> {
 			return new CounterSeriesIndex(index.count + 1);
 		}
 
+		@Override
+		public long distance(CounterSeriesIndex from, CounterSeriesIndex to) {
+			long distance = to.count - from.count;
+			boolean overflowed = ((to.count ^ from.count) & (to.count ^ distance)) < 0;
+			return overflowed ? (to.count < from.count ? Long.MIN_VALUE : Long.MAX_VALUE) : distance;
+		}
+
+		/**
+		 * @return The index with the given count, as previously obtained from {@link CounterSeriesIndex#getCount()}
+		 */
+		public CounterSeriesIndex fromCount(long count) {
+			return new CounterSeriesIndex(count);
+		}
+
 		public static Operations instance() {
 			return INSTANCE;
 		}
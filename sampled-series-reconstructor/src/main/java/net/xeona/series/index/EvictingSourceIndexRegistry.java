@@ -0,0 +1,253 @@
+package net.xeona.series.index;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.LongSupplier;
+
+import net.xeona.sampled.metrics.NoOpReconstructionMetrics;
+import net.xeona.sampled.metrics.ReconstructionMetrics;
+
+/**
+ * A {@link SourceIndexTracker} which evicts sources breaching a {@link RetentionPolicy} from the tracker it decorates,
+ * so that a stalled or lagging source cannot prevent old data points being cleared indefinitely.
+ * <p />
+ * Sources are checked for eviction whenever the least current index is queried, which reconstructors do after every
+ * sample. A source is evicted if its index has fallen further behind the greatest current index than the policy's
+ * maximum index lag, or if it is behind the greatest current index and has not reported for longer than the policy's
+ * idle timeout. The sources are only scanned when the least current index breaches the maximum lag after the greatest
+ * current index has advanced or a source has been aligned, or at most twice per idle timeout, so a source may remain
+ * idle for up to one and a half times the timeout before it is evicted. A source at the greatest current index is
+ * never evicted, so at least one source always remains.
+ * <p />
+ * A source reports by having its index read, as reconstructors do for each sample. Updating a source's index only
+ * counts as a report if the index advances, so that progress applied from elsewhere, such as a
+ * {@link net.xeona.sampled.partition.SourceProgress} repeating a stalled source's index, cannot keep it from being
+ * evicted as idle.
+ * <p />
+ * A new source which has yet to align with any series sits at the initial index, however far the other sources have
+ * advanced, so its lag is only measured once it has first been aligned, by advancing beyond the initial index. Until
+ * then it may only be evicted as idle. An evicted source is treated as new if it subsequently reports again. Every
+ * eviction is reported to the assigned {@link SourceEvictionListener}. Like {@link SourceIndexRegistry}, this class is
+ * not thread-safe.
+ * <p />
+ * If metrics are given, the lag of each source behind the greatest current index is recorded as the source is updated,
+ * in which case the decorated tracker should be given no metrics of its own, lest each update be recorded twice.
+ *
+ * @author Wesley Marsh
+ *
+ * @param <S>
+ *            The type of source identifiers tracked by this registry
+ * @param <I>
+ *            The type of <code>SeriesIndex</code> tracked for each source, whose operations must support
+ *            {@link SeriesIndex.Operations#distance(SeriesIndex, SeriesIndex) distance} if a maximum index lag is set
+ */
+public class EvictingSourceIndexRegistry<S, I extends SeriesIndex<? super I>> implements SourceIndexTracker<S, I> {
+
+	private final SourceIndexTracker<S, I> sourceIndexRegistry;
+	private final SeriesIndex.Operations<I> seriesIndexOperations;
+	private final long maxIndexLag;
+	private final long idleTimeoutNanos;
+	private final SourceEvictionListener<? super S, ? super I> evictionListener;
+	private final ReconstructionMetrics metrics;
+	private final boolean sourceIndexLagRecorded;
+	private final LongSupplier nanoClock;
+	private final I initialIndex;
+
+	private final Map<S, SourceActivity<I>> activityBySource = new HashMap<>();
+
+	private I greatestCurrentIndex;
+	private boolean lagCheckPending;
+	private long nextIdleCheckNanos;
+
+	public EvictingSourceIndexRegistry(SourceIndexTracker<S, I> sourceIndexRegistry,
+			SeriesIndex.Operations<I> seriesIndexOperations, RetentionPolicy retentionPolicy,
+			SourceEvictionListener<? super S, ? super I> evictionListener) {
+		this(sourceIndexRegistry, seriesIndexOperations, retentionPolicy, evictionListener,
+				NoOpReconstructionMetrics.instance());
+	}
+
+	/**
+	 * @param metrics
+	 *            Metrics to which the lag of each source behind the greatest current index is recorded as the source is
+	 *            updated. Unless no-op metrics are given, the series index operations must support
+	 *            {@link SeriesIndex.Operations#distance(SeriesIndex, SeriesIndex) distance}.
+	 */
+	public EvictingSourceIndexRegistry(SourceIndexTracker<S, I> sourceIndexRegistry,
+			SeriesIndex.Operations<I> seriesIndexOperations, RetentionPolicy retentionPolicy,
+			SourceEvictionListener<? super S, ? super I> evictionListener, ReconstructionMetrics metrics) {
+		this(sourceIndexRegistry, seriesIndexOperations, retentionPolicy, evictionListener, metrics, System::nanoTime);
+	}
+
+	EvictingSourceIndexRegistry(SourceIndexTracker<S, I> sourceIndexRegistry,
+			SeriesIndex.Operations<I> seriesIndexOperations, RetentionPolicy retentionPolicy,
+			SourceEvictionListener<? super S, ? super I> evictionListener, LongSupplier nanoClock) {
+		this(sourceIndexRegistry, seriesIndexOperations, retentionPolicy, evictionListener,
+				NoOpReconstructionMetrics.instance(), nanoClock);
+	}
+
+	EvictingSourceIndexRegistry(SourceIndexTracker<S, I> sourceIndexRegistry,
+			SeriesIndex.Operations<I> seriesIndexOperations, RetentionPolicy retentionPolicy,
+			SourceEvictionListener<? super S, ? super I> evictionListener, ReconstructionMetrics metrics,
+			LongSupplier nanoClock) {
+		this.sourceIndexRegistry = requireNonNull(sourceIndexRegistry);
+		this.seriesIndexOperations = requireNonNull(seriesIndexOperations);
+		this.maxIndexLag = retentionPolicy.getMaxIndexLag();
+		Duration idleTimeout = retentionPolicy.getIdleTimeout();
+		this.idleTimeoutNanos = idleTimeout == null ? 0 : idleTimeout.toNanos();
+		this.evictionListener = requireNonNull(evictionListener);
+		this.metrics = requireNonNull(metrics);
+		this.sourceIndexLagRecorded = metrics != NoOpReconstructionMetrics.instance();
+		this.nanoClock = requireNonNull(nanoClock);
+		this.initialIndex = seriesIndexOperations.initialValue();
+		this.nextIdleCheckNanos = idleTimeoutNanos == 0 ? 0 : nanoClock.getAsLong() + idleTimeoutNanos;
+	}
+
+	@Override
+	public I getLeastCurrentIndex() {
+		evictLaggingSources();
+		return sourceIndexRegistry.getLeastCurrentIndex();
+	}
+
+	@Override
+	public I getCurrentIndexForSource(S source) {
+		I currentIndex = sourceIndexRegistry.getCurrentIndexForSource(source);
+		recordActivity(source, currentIndex, false, true);
+		return currentIndex;
+	}
+
+	@Override
+	public void setCurrentIndexForSource(S source, I index) {
+		sourceIndexRegistry.setCurrentIndexForSource(source, index);
+		SourceActivity<I> sourceActivity = recordActivity(source, index, index.isGreaterThan(initialIndex), false);
+		if (sourceIndexLagRecorded) {
+			metrics.recordSourceIndexLag(seriesIndexOperations.distance(sourceActivity.index, greatestCurrentIndex));
+		}
+	}
+
+	@Override
+	public void clearCurrentIndexForSource(S source) {
+		sourceIndexRegistry.clearCurrentIndexForSource(source);
+		SourceActivity<I> sourceActivity = activityBySource.remove(source);
+		if (sourceActivity != null && sourceActivity.index.compareTo(greatestCurrentIndex) == 0) {
+			recalculateGreatestCurrentIndex();
+		}
+	}
+
+	@Override
+	public void forEachSource(BiConsumer<? super S, ? super I> sourceIndexConsumer) {
+		sourceIndexRegistry.forEachSource(sourceIndexConsumer);
+	}
+
+	/**
+	 * @param reported
+	 *            Whether the source has reported, rather than merely been updated, in which case it is only seen to be
+	 *            active if it is new or its index advances
+	 */
+	private SourceActivity<I> recordActivity(S source, I index, boolean aligned, boolean reported) {
+		boolean active = reported;
+		SourceActivity<I> sourceActivity = activityBySource.get(source);
+		if (sourceActivity == null) {
+			sourceActivity = new SourceActivity<>(index);
+			activityBySource.put(source, sourceActivity);
+			active = true;
+		} else if (index.isGreaterThan(sourceActivity.index)) {
+			sourceActivity.index = index;
+			active = true;
+		}
+		if (aligned && !sourceActivity.aligned) {
+			sourceActivity.aligned = true;
+			lagCheckPending = true;
+		}
+		if (greatestCurrentIndex == null || index.isGreaterThan(greatestCurrentIndex)) {
+			greatestCurrentIndex = index;
+			lagCheckPending = true;
+		}
+		if (active && idleTimeoutNanos != 0) {
+			sourceActivity.lastReportNanos = nanoClock.getAsLong();
+		}
+		return sourceActivity;
+	}
+
+	private void evictLaggingSources() {
+		if (activityBySource.isEmpty()) {
+			return;
+		}
+
+		boolean lagCheckDue = lagCheckPending && maxIndexLag != Long.MAX_VALUE && seriesIndexOperations
+				.distance(sourceIndexRegistry.getLeastCurrentIndex(), greatestCurrentIndex) > maxIndexLag;
+		lagCheckPending = false;
+		long nowNanos = idleTimeoutNanos == 0 ? 0 : nanoClock.getAsLong();
+		boolean idleCheckDue = idleTimeoutNanos != 0 && nowNanos - nextIdleCheckNanos >= 0;
+		if (idleCheckDue) {
+			nextIdleCheckNanos = nowNanos + idleTimeoutNanos / 2;
+		}
+
+		if (lagCheckDue || idleCheckDue) {
+			List<Eviction<S, I>> evictions = new ArrayList<>();
+			for (Iterator<Map.Entry<S, SourceActivity<I>>> it = activityBySource.entrySet().iterator(); it
+					.hasNext();) {
+				Map.Entry<S, SourceActivity<I>> entry = it.next();
+				SourceActivity<I> sourceActivity = entry.getValue();
+				SourceEvictionListener.Reason evictionReason = null;
+				if (lagCheckDue && sourceActivity.aligned
+						&& seriesIndexOperations.distance(sourceActivity.index, greatestCurrentIndex) > maxIndexLag) {
+					evictionReason = SourceEvictionListener.Reason.INDEX_LAG;
+				} else if (idleCheckDue && greatestCurrentIndex.isGreaterThan(sourceActivity.index)
+						&& nowNanos - sourceActivity.lastReportNanos > idleTimeoutNanos) {
+					evictionReason = SourceEvictionListener.Reason.IDLE;
+				}
+				if (evictionReason != null) {
+					it.remove();
+					sourceIndexRegistry.clearCurrentIndexForSource(entry.getKey());
+					evictions.add(new Eviction<>(entry.getKey(), sourceActivity.index, evictionReason));
+				}
+			}
+			for (Eviction<S, I> eviction : evictions) {
+				evictionListener.onSourceEvicted(eviction.source, eviction.lastIndex, eviction.reason);
+			}
+		}
+	}
+
+	private void recalculateGreatestCurrentIndex() {
+		greatestCurrentIndex = null;
+		for (SourceActivity<I> sourceActivity : activityBySource.values()) {
+			if (greatestCurrentIndex == null || sourceActivity.index.isGreaterThan(greatestCurrentIndex)) {
+				greatestCurrentIndex = sourceActivity.index;
+			}
+		}
+	}
+
+	private static class SourceActivity<I> {
+
+		private I index;
+		private boolean aligned;
+		private long lastReportNanos;
+
+		private SourceActivity(I index) {
+			this.index = index;
+		}
+
+	}
+
+	private static class Eviction<S, I> {
+
+		private final S source;
+		private final I lastIndex;
+		private final SourceEvictionListener.Reason reason;
+
+		private Eviction(S source, I lastIndex, SourceEvictionListener.Reason reason) {
+			this.source = source;
+			this.lastIndex = lastIndex;
+			this.reason = reason;
+		}
+
+	}
+
+}
@@ -0,0 +1,90 @@
+package net.xeona.series.index;
+
+import static java.util.Objects.requireNonNull;
+
+import net.xeona.sampled.metrics.NoOpReconstructionMetrics;
+import net.xeona.sampled.metrics.ReconstructionMetrics;
+
+/**
+ * A {@link SourceIndexRegistry} equivalent for series whose indices are plain <code>long</code> counters.
+ * <p />
+ * As for {@link MonotonicSourceIndexRegistry}, indices are held in mutable per-source slots of a
+ * {@link SourceIndexHeap}, so the least current index is queried in constant time, updates take <code>O(log n)</code>
+ * time in the number of sources, and nothing is allocated once a source has been registered.
+ *
+ * @author Wesley Marsh
+ *
+ * @param <S>
+ *            The type of source identifiers tracked by this registry
+ */
+public class LongSourceIndexRegistry<S> {
+
+	private final long initialIndex;
+	private final ReconstructionMetrics metrics;
+	private final boolean sourceIndexLagRecorded;
+
+	private final SourceIndexHeap<S, SourceIndex> sourceIndices = new SourceIndexHeap<>(
+			(first, second) -> Long.compare(first.value, second.value));
+
+	public LongSourceIndexRegistry() {
+		this(Long.MIN_VALUE);
+	}
+
+	public LongSourceIndexRegistry(long initialIndex) {
+		this(initialIndex, NoOpReconstructionMetrics.instance());
+	}
+
+	/**
+	 * @param metrics
+	 *            Metrics to which the lag of each source behind the greatest source index is recorded as the source is
+	 *            updated, saturating at {@link Long#MAX_VALUE}
+	 */
+	public LongSourceIndexRegistry(long initialIndex, ReconstructionMetrics metrics) {
+		this.initialIndex = initialIndex;
+		this.metrics = requireNonNull(metrics);
+		this.sourceIndexLagRecorded = metrics != NoOpReconstructionMetrics.instance();
+	}
+
+	public long getLeastCurrentIndex() {
+		return sourceIndices.least().value;
+	}
+
+	public long getCurrentIndexForSource(S source) {
+		SourceIndex sourceIndex = sourceIndices.get(source);
+		if (sourceIndex == null) {
+			sourceIndex = new SourceIndex(initialIndex);
+			sourceIndices.add(source, sourceIndex);
+		}
+		return sourceIndex.value;
+	}
+
+	public void setCurrentIndexForSource(S source, long index) {
+		SourceIndex sourceIndex = sourceIndices.get(source);
+		if (sourceIndex == null) {
+			sourceIndex = new SourceIndex(index);
+			sourceIndices.add(source, sourceIndex);
+		} else if (index > sourceIndex.value) {
+			sourceIndex.value = index;
+			sourceIndices.advanced(sourceIndex);
+		}
+		if (sourceIndexLagRecorded) {
+			long sourceIndexLag = sourceIndices.greatest().value - sourceIndex.value;
+			metrics.recordSourceIndexLag(sourceIndexLag < 0 ? Long.MAX_VALUE : sourceIndexLag);
+		}
+	}
+
+	public void clearCurrentIndexForSource(S source) {
+		sourceIndices.remove(source);
+	}
+
+	private static class SourceIndex extends SourceIndexHeap.Slot {
+
+		private long value;
+
+		private SourceIndex(long value) {
+			this.value = value;
+		}
+
+	}
+
+}
@@ -0,0 +1,103 @@
+package net.xeona.series.index;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.function.BiConsumer;
+
+import net.xeona.sampled.metrics.NoOpReconstructionMetrics;
+import net.xeona.sampled.metrics.ReconstructionMetrics;
+
+/**
+ * A {@link SourceIndexTracker} tuned for sources whose indices only ever move forward, which is the case for every
+ * source in normal operation.
+ * <p />
+ * Rather than replacing an entry of a sorted collection whenever a source advances, this registry holds each source's
+ * index in a mutable slot of a {@link SourceIndexHeap}, ordered so that the least current index is always at its root.
+ * Querying the least current index takes constant time, and updating a source takes <code>O(log n)</code> time in the
+ * number of sources, however their indices are staggered. Updates to a registered source do not allocate.
+ *
+ * @author Wesley Marsh
+ *
+ * @param <S>
+ *            The type of source identifiers tracked by this registry
+ * @param <I>
+ *            The type of <code>SeriesIndex</code> tracked for each source
+ */
+public class MonotonicSourceIndexRegistry<S, I extends SeriesIndex<? super I>> implements SourceIndexTracker<S, I> {
+
+	private final SeriesIndex.Operations<I> seriesIndexOperations;
+	private final ReconstructionMetrics metrics;
+	private final boolean sourceIndexLagRecorded;
+
+	private final SourceIndexHeap<S, SourceIndex<I>> sourceIndices = new SourceIndexHeap<>(
+			(first, second) -> first.value.compareTo(second.value));
+
+	public MonotonicSourceIndexRegistry(SeriesIndex.Operations<I> seriesIndexOperations) {
+		this(seriesIndexOperations, NoOpReconstructionMetrics.instance());
+	}
+
+	/**
+	 * @param metrics
+	 *            Metrics to which the lag of each source behind the greatest source index is recorded as the source is
+	 *            updated. Unless no-op metrics are given, the series index operations must support
+	 *            {@link SeriesIndex.Operations#distance(SeriesIndex, SeriesIndex) distance}.
+	 */
+	public MonotonicSourceIndexRegistry(SeriesIndex.Operations<I> seriesIndexOperations,
+			ReconstructionMetrics metrics) {
+		this.seriesIndexOperations = requireNonNull(seriesIndexOperations);
+		this.metrics = requireNonNull(metrics);
+		this.sourceIndexLagRecorded = metrics != NoOpReconstructionMetrics.instance();
+	}
+
+	@Override
+	public I getLeastCurrentIndex() {
+		return sourceIndices.least().value;
+	}
+
+	@Override
+	public I getCurrentIndexForSource(S source) {
+		SourceIndex<I> sourceIndex = sourceIndices.get(source);
+		if (sourceIndex == null) {
+			sourceIndex = new SourceIndex<>(seriesIndexOperations.initialValue());
+			sourceIndices.add(source, sourceIndex);
+		}
+		return sourceIndex.value;
+	}
+
+	@Override
+	public void setCurrentIndexForSource(S source, I index) {
+		SourceIndex<I> sourceIndex = sourceIndices.get(source);
+		if (sourceIndex == null) {
+			sourceIndex = new SourceIndex<>(index);
+			sourceIndices.add(source, sourceIndex);
+		} else if (index.isGreaterThan(sourceIndex.value)) {
+			sourceIndex.value = index;
+			sourceIndices.advanced(sourceIndex);
+		}
+		if (sourceIndexLagRecorded) {
+			metrics.recordSourceIndexLag(
+					seriesIndexOperations.distance(sourceIndex.value, sourceIndices.greatest().value));
+		}
+	}
+
+	@Override
+	public void clearCurrentIndexForSource(S source) {
+		sourceIndices.remove(source);
+	}
+
+	@Override
+	public void forEachSource(BiConsumer<? super S, ? super I> sourceIndexConsumer) {
+		sourceIndices.forEach((source, sourceIndex) -> sourceIndexConsumer.accept(source, sourceIndex.value));
+	}
+
+	private static class SourceIndex<I> extends SourceIndexHeap.Slot {
+
+		private I value;
+
+		private SourceIndex(I value) {
+			this.value = value;
+		}
+
+	}
+
+}
@@ -0,0 +1,97 @@
+package net.xeona.series.index;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+
+/**
+ * Limits on the data retained while reconstructing series, bounding memory use when sources lag behind or stall.
+ * <p />
+ * The maximum window length is applied by each reconstructor to its own series, while the maximum index lag and idle
+ * timeout are applied to sources by an {@link EvictingSourceIndexRegistry}. Every limit is unbounded unless set.
+ *
+ * @author Wesley Marsh
+ */
+public final class RetentionPolicy {
+
+	private static final RetentionPolicy UNBOUNDED = builder().build();
+
+	private final int maxWindowLength;
+	private final long maxIndexLag;
+	private final Duration idleTimeout;
+
+	private RetentionPolicy(Builder builder) {
+		this.maxWindowLength = builder.maxWindowLength;
+		this.maxIndexLag = builder.maxIndexLag;
+		this.idleTimeout = builder.idleTimeout;
+	}
+
+	/**
+	 * @return The greatest number of data points any one series may retain
+	 */
+	public int getMaxWindowLength() {
+		return maxWindowLength;
+	}
+
+	/**
+	 * @return The greatest distance a source's index may fall behind the greatest source index before it is evicted
+	 */
+	public long getMaxIndexLag() {
+		return maxIndexLag;
+	}
+
+	/**
+	 * @return The longest time a source lagging behind the greatest source index may go without reporting before it is
+	 *         evicted, or <code>null</code> if sources are never evicted for being idle
+	 */
+	public Duration getIdleTimeout() {
+		return idleTimeout;
+	}
+
+	public static RetentionPolicy unbounded() {
+		return UNBOUNDED;
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public static class Builder {
+
+		private int maxWindowLength = Integer.MAX_VALUE;
+		private long maxIndexLag = Long.MAX_VALUE;
+		private Duration idleTimeout;
+
+		private Builder() {}
+
+		public Builder maxWindowLength(int maxWindowLength) {
+			if (maxWindowLength < 1) {
+				throw new IllegalArgumentException("Maximum window length must be positive: " + maxWindowLength);
+			}
+			this.maxWindowLength = maxWindowLength;
+			return this;
+		}
+
+		public Builder maxIndexLag(long maxIndexLag) {
+			if (maxIndexLag < 0) {
+				throw new IllegalArgumentException("Maximum index lag must not be negative: " + maxIndexLag);
+			}
+			this.maxIndexLag = maxIndexLag;
+			return this;
+		}
+
+		public Builder idleTimeout(Duration idleTimeout) {
+			if (idleTimeout.isNegative() || idleTimeout.isZero()) {
+				throw new IllegalArgumentException("Idle timeout must be positive: " + idleTimeout);
+			}
+			this.idleTimeout = requireNonNull(idleTimeout);
+			return this;
+		}
+
+		public RetentionPolicy build() {
+			return new RetentionPolicy(this);
+		}
+
+	}
+
+}
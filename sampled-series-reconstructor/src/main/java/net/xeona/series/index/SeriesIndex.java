@@ -12,5 +12,17 @@ public interface SeriesIndex<I extends SeriesIndex<? super I>> extends Comparabl
 
 		I increment(I index);
 
+		/**
+		 * Measure how far one index is beyond another
+		 * 
+		 * @return The number of steps from <code>from</code> to <code>to</code>, saturating at
+		 *         {@link Long#MAX_VALUE}, or a negative value if <code>to</code> precedes <code>from</code>
+		 * @throws UnsupportedOperationException
+		 *             If this type of index cannot be measured
+		 */
+		default long distance(I from, I to) {
+			throw new UnsupportedOperationException("Series index distance not supported by " + getClass().getName());
+		}
+
 	}
 }
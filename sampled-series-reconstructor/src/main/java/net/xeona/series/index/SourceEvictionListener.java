@@ -0,0 +1,24 @@
+package net.xeona.series.index;
+
+/**
+ * A listener notified by an {@link EvictingSourceIndexRegistry} whenever a source is evicted for breaching its
+ * {@link RetentionPolicy}
+ *
+ * @param <S>
+ *            The type of source identifiers
+ * @param <I>
+ *            The type of <code>SeriesIndex</code> tracked for each source
+ */
+@FunctionalInterface
+public interface SourceEvictionListener<S, I> {
+
+	void onSourceEvicted(S source, I lastIndex, Reason reason);
+
+	enum Reason {
+		/** The source's index fell further behind the greatest source index than the maximum index lag */
+		INDEX_LAG,
+		/** The source lagged behind the greatest source index and did not report for longer than the idle timeout */
+		IDLE
+	}
+
+}
@@ -0,0 +1,189 @@
+package net.xeona.series.index;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * The mutable index slots of a set of sources, kept in a binary min-heap ordered by index so that the least current
+ * index is always at its root, shared by the registries which hold each source's index in a slot rather than in an
+ * immutable entry.
+ * <p />
+ * Each slot records its own position in the heap, so a source whose index has advanced is sifted down from where it
+ * lies, and a source is removed, in <code>O(log n)</code> time in the number of sources, however their indices are
+ * staggered. The least current index is read in constant time. The slot holding the greatest index is also kept, for
+ * measuring how far each source lags, and is only searched for again when that slot is removed. Nothing is allocated
+ * once a source has been added, beyond occasionally growing the heap.
+ *
+ * @param <S>
+ *            The type of source identifiers
+ * @param <T>
+ *            The type of slot holding each source's index
+ */
+final class SourceIndexHeap<S, T extends SourceIndexHeap.Slot> {
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	private final Comparator<? super T> slotOrder;
+
+	private final Map<S, T> slotsBySource = new HashMap<>();
+	private Slot[] heap = new Slot[INITIAL_CAPACITY];
+	private int size;
+	private T greatestSlot;
+
+	/**
+	 * @param slotOrder
+	 *            The ascending order of slots by the index each holds
+	 */
+	SourceIndexHeap(Comparator<? super T> slotOrder) {
+		this.slotOrder = requireNonNull(slotOrder);
+	}
+
+	/**
+	 * @return The slot of the given source, or <code>null</code> if it has not been added
+	 */
+	T get(S source) {
+		return slotsBySource.get(source);
+	}
+
+	/**
+	 * Add the slot of a source not already present
+	 */
+	void add(S source, T slot) {
+		slotsBySource.put(source, slot);
+		if (size == heap.length) {
+			heap = Arrays.copyOf(heap, size << 1);
+		}
+		place(slot, size++);
+		siftUp(slot);
+		noteIfGreatest(slot);
+	}
+
+	/**
+	 * Restore the order of the heap once the index held by the given slot has advanced
+	 */
+	void advanced(T slot) {
+		siftDown(slot);
+		noteIfGreatest(slot);
+	}
+
+	/**
+	 * @return The removed slot of the given source, or <code>null</code> if it had not been added
+	 */
+	T remove(S source) {
+		T slot = slotsBySource.remove(source);
+		if (slot != null) {
+			int position = slot.heapPosition;
+			T lastSlot = slotAt(--size);
+			heap[size] = null;
+			if (lastSlot != slot) {
+				place(lastSlot, position);
+				siftDown(lastSlot);
+				siftUp(lastSlot);
+			}
+			if (slot == greatestSlot) {
+				findGreatestSlot();
+			}
+		}
+		return slot;
+	}
+
+	/**
+	 * @return The slot holding the least index
+	 * @throws IllegalStateException
+	 *             If no sources have been added
+	 */
+	T least() {
+		if (size == 0) {
+			throw new IllegalStateException("No sources currently registered");
+		}
+		return slotAt(0);
+	}
+
+	/**
+	 * @return The slot holding the greatest index
+	 * @throws IllegalStateException
+	 *             If no sources have been added
+	 */
+	T greatest() {
+		if (size == 0) {
+			throw new IllegalStateException("No sources currently registered");
+		}
+		return greatestSlot;
+	}
+
+	void forEach(BiConsumer<? super S, ? super T> slotConsumer) {
+		slotsBySource.forEach(slotConsumer);
+	}
+
+	private void noteIfGreatest(T slot) {
+		if (greatestSlot == null || slotOrder.compare(slot, greatestSlot) > 0) {
+			greatestSlot = slot;
+		}
+	}
+
+	private void findGreatestSlot() {
+		greatestSlot = null;
+		for (int position = size >>> 1; position < size; position++) {
+			noteIfGreatest(slotAt(position));
+		}
+	}
+
+	private void siftUp(T slot) {
+		int position = slot.heapPosition;
+		while (position > 0) {
+			int parentPosition = (position - 1) >>> 1;
+			T parent = slotAt(parentPosition);
+			if (slotOrder.compare(slot, parent) >= 0) {
+				break;
+			}
+			place(parent, position);
+			position = parentPosition;
+		}
+		place(slot, position);
+	}
+
+	private void siftDown(T slot) {
+		int position = slot.heapPosition;
+		int firstLeafPosition = size >>> 1;
+		while (position < firstLeafPosition) {
+			int childPosition = (position << 1) + 1;
+			T child = slotAt(childPosition);
+			int rightChildPosition = childPosition + 1;
+			if (rightChildPosition < size && slotOrder.compare(slotAt(rightChildPosition), child) < 0) {
+				childPosition = rightChildPosition;
+				child = slotAt(childPosition);
+			}
+			if (slotOrder.compare(slot, child) <= 0) {
+				break;
+			}
+			place(child, position);
+			position = childPosition;
+		}
+		place(slot, position);
+	}
+
+	private void place(Slot slot, int position) {
+		heap[position] = slot;
+		slot.heapPosition = position;
+	}
+
+	@SuppressWarnings("unchecked")
+	private T slotAt(int position) {
+		return (T) heap[position];
+	}
+
+	/**
+	 * A source's mutable index, which knows its own position in the heap
+	 */
+	static class Slot {
+
+		int heapPosition;
+
+	}
+
+}
@@ -5,26 +5,46 @@ import static java.util.Objects.requireNonNull;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.BiConsumer;
 
 import com.google.common.collect.SortedMultiset;
 import com.google.common.collect.TreeMultiset;
 
-public class SourceIndexRegistry<S, I extends SeriesIndex<? super I>> {
+import net.xeona.sampled.metrics.NoOpReconstructionMetrics;
+import net.xeona.sampled.metrics.ReconstructionMetrics;
+
+public class SourceIndexRegistry<S, I extends SeriesIndex<? super I>> implements SourceIndexTracker<S, I> {
 
 	private final SeriesIndex.Operations<I> seriesIndexOperations;
+	private final ReconstructionMetrics metrics;
+	private final boolean sourceIndexLagRecorded;
 
 	private final Map<S, I> seriesIndexBySource = new HashMap<>();
 	private final SortedMultiset<I> currentSourceIndeces = TreeMultiset.create();
 
 	public SourceIndexRegistry(SeriesIndex.Operations<I> seriesIndexOperations) {
+		this(seriesIndexOperations, NoOpReconstructionMetrics.instance());
+	}
+
+	/**
+	 * @param metrics
+	 *            Metrics to which the lag of each source behind the greatest source index is recorded as the source is
+	 *            updated. Unless no-op metrics are given, the series index operations must support
+	 *            {@link SeriesIndex.Operations#distance(SeriesIndex, SeriesIndex) distance}.
+	 */
+	public SourceIndexRegistry(SeriesIndex.Operations<I> seriesIndexOperations, ReconstructionMetrics metrics) {
 		this.seriesIndexOperations = requireNonNull(seriesIndexOperations);
+		this.metrics = requireNonNull(metrics);
+		this.sourceIndexLagRecorded = metrics != NoOpReconstructionMetrics.instance();
 	}
 
+	@Override
 	public I getLeastCurrentIndex() {
 		return Optional.ofNullable(currentSourceIndeces.firstEntry())
 				.orElseThrow(() -> new IllegalStateException("No sources currently registered")).getElement();
 	}
 
+	@Override
 	public I getCurrentIndexForSource(S source) {
 		return seriesIndexBySource.computeIfAbsent(source, absentSource -> {
 			I initialSeriesIndex = seriesIndexOperations.initialValue();
@@ -33,6 +53,7 @@ public class SourceIndexRegistry<S, I extends SeriesIndex<? super I>> {
 		});
 	}
 
+	@Override
 	public void setCurrentIndexForSource(S source, I index) {
 		seriesIndexBySource.compute(source, (key, nullableCurrentIndex) -> {
 			Optional<I> optCurrentIndex = Optional.ofNullable(nullableCurrentIndex);
@@ -45,13 +66,23 @@ public class SourceIndexRegistry<S, I extends SeriesIndex<? super I>> {
 			} else {
 				newIndex = optCurrentIndex.get();
 			}
+			if (sourceIndexLagRecorded) {
+				metrics.recordSourceIndexLag(
+						seriesIndexOperations.distance(newIndex, currentSourceIndeces.lastEntry().getElement()));
+			}
 			return newIndex;
 		});
 	}
 
+	@Override
 	public void clearCurrentIndexForSource(S source) {
 		I sourceIndex = seriesIndexBySource.remove(source);
 		currentSourceIndeces.remove(sourceIndex);
 	}
 
+	@Override
+	public void forEachSource(BiConsumer<? super S, ? super I> sourceIndexConsumer) {
+		seriesIndexBySource.forEach(sourceIndexConsumer);
+	}
+
 }
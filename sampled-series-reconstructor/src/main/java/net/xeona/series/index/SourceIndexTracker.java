@@ -0,0 +1,33 @@
+package net.xeona.series.index;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Tracks the current {@link SeriesIndex} of each source contributing samples to one or more reconstructed series.
+ * <p />
+ * Source indices only ever move forward: attempts to set a source's index to one not greater than its current index
+ * are ignored. Sources seen for the first time are assigned the initial index of the series.
+ *
+ * @author Wesley Marsh
+ *
+ * @param <S>
+ *            The type of source identifiers tracked
+ * @param <I>
+ *            The type of <code>SeriesIndex</code> tracked for each source
+ */
+public interface SourceIndexTracker<S, I extends SeriesIndex<? super I>> {
+
+	I getLeastCurrentIndex();
+
+	I getCurrentIndexForSource(S source);
+
+	void setCurrentIndexForSource(S source, I index);
+
+	void clearCurrentIndexForSource(S source);
+
+	/**
+	 * Visit the current index of every source tracked, in no particular order
+	 */
+	void forEachSource(BiConsumer<? super S, ? super I> sourceIndexConsumer);
+
+}
@@ -0,0 +1,168 @@
+package net.xeona.series.index;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * A series index carrying the wall-clock time at which it was issued, so that data points can be pruned by age and
+ * looked up by time.
+ * <p />
+ * Each index is a single <code>long</code> stamp: the time in nanoseconds since the epoch, truncated to a tick of
+ * {@value #SEQUENCE_TICK_NANOS} nanoseconds, with the low {@value #SEQUENCE_BITS} bits replaced by a sequence number
+ * which breaks ties between indices issued within the same tick. Stamps therefore order as plain <code>long</code>s,
+ * first by time and then by sequence, and cover every time representable in signed epoch nanoseconds.
+ * <p />
+ * {@link Operations#increment(TimestampSeriesIndex)} issues the later of the current tick, at sequence zero, and the
+ * next sequence after the given index, so new data points are stamped with the time at which they were accepted while
+ * remaining strictly increasing even if the clock stalls or steps backwards. As with {@link CounterSeriesIndex}, the
+ * initial index precedes every other, so the first data point of a series reconstructed from a source which has not
+ * yet been aligned with any data point is stamped at the start of time, meaning only that its value was current
+ * before every later data point.
+ *
+ * @author Wesley Marsh
+ */
+public class TimestampSeriesIndex implements SeriesIndex<TimestampSeriesIndex> {
+
+	public static final int SEQUENCE_BITS = 10;
+	public static final long SEQUENCE_TICK_NANOS = 1L << SEQUENCE_BITS;
+
+	private static final long SEQUENCE_MASK = SEQUENCE_TICK_NANOS - 1;
+
+	private final long stamp;
+
+	TimestampSeriesIndex(long stamp) {
+		this.stamp = stamp;
+	}
+
+	/**
+	 * @return The packed time and sequence of this index
+	 */
+	public long getStamp() {
+		return stamp;
+	}
+
+	/**
+	 * @return The time at which this index was issued, in nanoseconds since the epoch, truncated to the start of its
+	 *         tick
+	 */
+	public long getEpochNanos() {
+		return stamp & ~SEQUENCE_MASK;
+	}
+
+	/**
+	 * @return The position of this index among those issued within the same tick
+	 */
+	public int getSequence() {
+		return (int) (stamp & SEQUENCE_MASK);
+	}
+
+	@Override
+	public int compareTo(TimestampSeriesIndex other) {
+		return Long.compare(stamp, other.stamp);
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(stamp);
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof TimestampSeriesIndex && ((TimestampSeriesIndex) other).stamp == stamp;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("epochNanos", getEpochNanos()).add("sequence", getSequence())
+				.toString();
+	}
+
+	public static class Operations implements SeriesIndex.Operations<TimestampSeriesIndex> {
+
+		private static final Operations INSTANCE = new Operations(systemEpochNanosClock());
+
+		private final LongSupplier epochNanosClock;
+
+		/**
+		 * @param epochNanosClock
+		 *            The clock from which to read the current time, in nanoseconds since the epoch
+		 */
+		public Operations(LongSupplier epochNanosClock) {
+			this.epochNanosClock = requireNonNull(epochNanosClock);
+		}
+
+		@Override
+		public TimestampSeriesIndex initialValue() {
+			return new TimestampSeriesIndex(Long.MIN_VALUE);
+		}
+
+		@Override
+		public TimestampSeriesIndex increment(TimestampSeriesIndex index) {
+			long currentTickStamp = epochNanosClock.getAsLong() & ~SEQUENCE_MASK;
+			return new TimestampSeriesIndex(currentTickStamp > index.stamp ? currentTickStamp : index.stamp + 1);
+		}
+
+		/**
+		 * @return The time in nanoseconds from the tick of <code>from</code> to that of <code>to</code>, saturating at
+		 *         {@link Long#MAX_VALUE}, and ignoring the sequences of both
+		 */
+		@Override
+		public long distance(TimestampSeriesIndex from, TimestampSeriesIndex to) {
+			long fromNanos = from.getEpochNanos();
+			long toNanos = to.getEpochNanos();
+			long distance = toNanos - fromNanos;
+			boolean overflowed = ((toNanos ^ fromNanos) & (toNanos ^ distance)) < 0;
+			return overflowed ? (toNanos < fromNanos ? Long.MIN_VALUE : Long.MAX_VALUE) : distance;
+		}
+
+		/**
+		 * @return The earliest index which could be issued at the given time, which follows every index issued before it
+		 */
+		public TimestampSeriesIndex earliestAt(long epochNanos) {
+			return new TimestampSeriesIndex(epochNanos & ~SEQUENCE_MASK);
+		}
+
+		/**
+		 * @return The latest index which could be issued at the given time, and so the index at which to look up the
+		 *         value of a series as of that time
+		 */
+		public TimestampSeriesIndex latestAt(long epochNanos) {
+			return new TimestampSeriesIndex(epochNanos | SEQUENCE_MASK);
+		}
+
+		/**
+		 * @return The earliest index which could be issued the given age ago by this instance's clock, beyond which data
+		 *         points may be pruned
+		 */
+		public TimestampSeriesIndex horizon(Duration maxAge) {
+			return earliestAt(epochNanosClock.getAsLong() - maxAge.toNanos());
+		}
+
+		/**
+		 * @return The index with the given stamp, as previously obtained from {@link TimestampSeriesIndex#getStamp()}
+		 */
+		public TimestampSeriesIndex fromStamp(long stamp) {
+			return new TimestampSeriesIndex(stamp);
+		}
+
+		/**
+		 * @return Operations reading the system clock, which is sampled in milliseconds once and advanced thereafter by
+		 *         the high-resolution monotonic timer
+		 */
+		public static Operations instance() {
+			return INSTANCE;
+		}
+
+		private static LongSupplier systemEpochNanosClock() {
+			long originEpochNanos = System.currentTimeMillis() * 1_000_000L;
+			long originNanoTime = System.nanoTime();
+			return () -> originEpochNanos + (System.nanoTime() - originNanoTime);
+		}
+
+	}
+
+}
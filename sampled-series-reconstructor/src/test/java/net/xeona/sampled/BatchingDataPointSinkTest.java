@@ -0,0 +1,122 @@
+package net.xeona.sampled;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.xeona.sampled.value.EqualityValueUpdatePredicate;
+import net.xeona.series.index.CounterSeriesIndex;
+import net.xeona.series.index.SourceIndexRegistry;
+
+public class BatchingDataPointSinkTest {
+
+	@Test
+	public void handsChunkDownstreamOnceFull() {
+		List<String> chunks = new ArrayList<>();
+		BatchingDataPointSink<String, Integer, Long> subjectUnderTest = new BatchingDataPointSink<>(2,
+				chunk -> chunks.add(String.join(" ", copyOf(chunk))));
+
+		subjectUnderTest.onDataPoint("a", 1L, 10);
+
+		assertThat(chunks, is(empty()));
+
+		subjectUnderTest.onDataPoint("b", 2L, 20);
+		subjectUnderTest.onDataPoint("c", 3L, 30);
+
+		assertThat(chunks, contains("a@1=10 b@2=20"));
+	}
+
+	@Test
+	public void flushHandsPartialChunkDownstream() {
+		List<String> chunks = new ArrayList<>();
+		BatchingDataPointSink<String, Integer, Long> subjectUnderTest = new BatchingDataPointSink<>(4,
+				chunk -> chunks.addAll(copyOf(chunk)));
+
+		subjectUnderTest.flush();
+
+		assertThat(chunks, is(empty()));
+
+		subjectUnderTest.onDataPoint("a", 1L, 10);
+		subjectUnderTest.flush();
+		subjectUnderTest.flush();
+		subjectUnderTest.onDataPoint("b", 2L, 20);
+		subjectUnderTest.flush();
+
+		assertThat(chunks, contains("a@1=10", "b@2=20"));
+	}
+
+	@Test
+	public void clearsChunkWhenDownstreamFails() {
+		List<String> chunks = new ArrayList<>();
+		BatchingDataPointSink<String, Integer, Long> subjectUnderTest = new BatchingDataPointSink<>(4, chunk -> {
+			if (chunk.getKey(0).equals("a")) {
+				throw new IllegalStateException("Downstream failure");
+			}
+			chunks.addAll(copyOf(chunk));
+		});
+
+		subjectUnderTest.onDataPoint("a", 1L, 10);
+		try {
+			subjectUnderTest.flush();
+		} catch (IllegalStateException expected) {
+		}
+		subjectUnderTest.onDataPoint("b", 2L, 20);
+		subjectUnderTest.flush();
+
+		assertThat(chunks, contains("b@2=20"));
+	}
+
+	@Test
+	public void handsDownstreamEveryDataPointOfReconstructorInOrder() {
+		List<String> expectedDataPoints = new ArrayList<>();
+		MultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> reconstructor = buildReconstructor(
+				(key, index, value) -> expectedDataPoints.add(dataPoint(key, index, value)));
+		List<String> actualDataPoints = new ArrayList<>();
+		BatchingDataPointSink<Integer, Integer, CounterSeriesIndex> subjectUnderTest = new BatchingDataPointSink<>(7,
+				chunk -> actualDataPoints.addAll(copyOf(chunk)));
+		MultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> batchedReconstructor = buildReconstructor(
+				subjectUnderTest);
+
+		Random random = new Random(0);
+		for (int i = 0; i < 1_000; i++) {
+			List<IntegerKeyedSeriesSample> batch = new ArrayList<>();
+			for (int key = random.nextInt(8); key < 8; key += 1 + random.nextInt(3)) {
+				batch.add(new IntegerKeyedSeriesSample(key, random.nextInt(3), random.nextInt(3)));
+			}
+			reconstructor.notifySamples(batch);
+			batchedReconstructor.notifySamples(batch);
+		}
+		subjectUnderTest.flush();
+
+		assertThat(actualDataPoints, is(expectedDataPoints));
+	}
+
+	private static MultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> buildReconstructor(
+			KeyedDataPointListener<Integer, Integer, CounterSeriesIndex> dataPointListener) {
+		return MultiSampledSeriesReconstructor.<Integer, Integer, Object, CounterSeriesIndex> builder(
+				new SourceIndexRegistry<>(CounterSeriesIndex.Operations.instance()),
+				sourceIndexRegistry -> new SampledStepSeriesReconstructor<>(EqualityValueUpdatePredicate.instance(),
+						CounterSeriesIndex.Operations.instance(), sourceIndexRegistry))
+				.dataPointListener(dataPointListener).build();
+	}
+
+	private static List<String> copyOf(BatchingDataPointSink.DataPointChunk<?, ?, ?> chunk) {
+		List<String> dataPoints = new ArrayList<>();
+		for (int position = 0; position < chunk.size(); position++) {
+			dataPoints.add(dataPoint(chunk.getKey(position), chunk.getIndex(position), chunk.getValue(position)));
+		}
+		return dataPoints;
+	}
+
+	private static String dataPoint(Object key, Object index, Object value) {
+		return key + "@" + index + "=" + value;
+	}
+
+}
@@ -0,0 +1,97 @@
+package net.xeona.sampled;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.xeona.sampled.value.EqualityValueUpdatePredicate;
+import net.xeona.series.index.CounterSeriesIndex;
+import net.xeona.series.index.LongSourceIndexRegistry;
+import net.xeona.series.index.SourceIndexRegistry;
+
+public class CompactMultiSampledSeriesReconstructorTest {
+
+	@Test
+	public void rejectsRepeatedValueFromDifferentSource() {
+		List<Integer> acceptedValues = new ArrayList<>();
+		CompactMultiSampledSeriesReconstructor<Integer, Integer, Object> subjectUnderTest = new CompactMultiSampledSeriesReconstructor<>(
+				EqualityValueUpdatePredicate.instance(), new LongSourceIndexRegistry<>(),
+				(key, index, value) -> acceptedValues.add(value));
+
+		Object firstSource = new Object();
+		Object secondSource = new Object();
+		subjectUnderTest.notifySamples(Arrays.asList(new IntegerKeyedSeriesSample(0, 0, firstSource),
+				new IntegerKeyedSeriesSample(1, 5, firstSource)));
+		subjectUnderTest.notifySamples(Arrays.asList(new IntegerKeyedSeriesSample(0, 0, secondSource),
+				new IntegerKeyedSeriesSample(1, 6, secondSource)));
+
+		assertThat(acceptedValues, contains(0, 5, 6));
+		assertThat(subjectUnderTest.getSeriesCount(), is(2));
+	}
+
+	@Test
+	public void introducesKeysInternedBeforeListenerFailedOnceTheyAreNextSampled() {
+		List<String> dataPoints = new ArrayList<>();
+		boolean[] listenerFailed = new boolean[1];
+		CompactMultiSampledSeriesReconstructor<Integer, Integer, Object> subjectUnderTest = new CompactMultiSampledSeriesReconstructor<>(
+				EqualityValueUpdatePredicate.instance(), new LongSourceIndexRegistry<>(0), (key, index, value) -> {
+					if (!listenerFailed[0]) {
+						listenerFailed[0] = true;
+						throw new IllegalStateException("Listener failure");
+					}
+					dataPoints.add(key + "@" + index + "=" + value);
+				});
+
+		Object source = new Object();
+		try {
+			subjectUnderTest.notifySamples(Arrays.asList(new IntegerKeyedSeriesSample(0, 0, source),
+					new IntegerKeyedSeriesSample(1, 5, source), new IntegerKeyedSeriesSample(2, 7, source)));
+		} catch (IllegalStateException expected) {
+		}
+		subjectUnderTest.notifySamples(Arrays.asList(new IntegerKeyedSeriesSample(3, 1, source)));
+		subjectUnderTest.notifySamples(Arrays.asList(new IntegerKeyedSeriesSample(1, 5, source)));
+		subjectUnderTest.notifySamples(Arrays.asList(new IntegerKeyedSeriesSample(2, 7, source)));
+		subjectUnderTest.notifySamples(Arrays.asList(new IntegerKeyedSeriesSample(1, 5, source)));
+
+		assertThat(listenerFailed[0], is(true));
+		assertThat(dataPoints, contains("3@0=1", "1@0=5", "2@0=7"));
+	}
+
+	@Test
+	public void agreesWithMultiSampledSeriesReconstructorAcrossLaggingSources() {
+		List<List<Integer>> expectedDataPoints = new ArrayList<>();
+		MultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> genericReconstructor = MultiSampledSeriesReconstructor
+				.<Integer, Integer, Object, CounterSeriesIndex> builder(
+						new SourceIndexRegistry<>(CounterSeriesIndex.Operations.instance()),
+						sourceIndexRegistry -> new SampledStepSeriesReconstructor<>(
+								EqualityValueUpdatePredicate.instance(), CounterSeriesIndex.Operations.instance(),
+								sourceIndexRegistry))
+				.dataPointListener((key, index, value) -> expectedDataPoints.add(Arrays.asList(key, value))).build();
+		List<List<Integer>> actualDataPoints = new ArrayList<>();
+		CompactMultiSampledSeriesReconstructor<Integer, Integer, Object> subjectUnderTest = new CompactMultiSampledSeriesReconstructor<>(
+				EqualityValueUpdatePredicate.instance(), new LongSourceIndexRegistry<>(),
+				(key, index, value) -> actualDataPoints.add(Arrays.asList(key, value)));
+
+		Object[] sources = { new Object(), new Object(), new Object() };
+		Random random = new Random(0);
+		for (int i = 0; i < 2_000; i++) {
+			Object source = sources[random.nextInt(sources.length)];
+			List<IntegerKeyedSeriesSample> batch = new ArrayList<>();
+			for (int key = random.nextInt(8); key < 8; key += 1 + random.nextInt(3)) {
+				batch.add(new IntegerKeyedSeriesSample(key, random.nextInt(3), source));
+			}
+			genericReconstructor.notifySamples(batch);
+			subjectUnderTest.notifySamples(batch);
+		}
+
+		assertThat(actualDataPoints, is(expectedDataPoints));
+	}
+
+}
@@ -0,0 +1,137 @@
+package net.xeona.sampled;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import net.xeona.sampled.value.EqualityValueUpdatePredicate;
+import net.xeona.series.index.ConcurrentSourceIndexRegistry;
+import net.xeona.series.index.CounterSeriesIndex;
+import net.xeona.series.index.SourceIndexRegistry;
+import net.xeona.series.index.SourceIndexTracker;
+
+public class ConcurrentMultiSampledSeriesReconstructorTest {
+
+	private static final int THREAD_COUNT = 4;
+	private static final int KEYS_PER_THREAD = 8;
+	private static final int SOURCES_PER_THREAD = 3;
+
+	private static final Object ANCHOR_SOURCE = new Object();
+
+	/**
+	 * Each thread notifies samples for its own keys from its own sources, so that the series it reconstructs do not
+	 * depend on how the threads interleave. A silent source holds the least current index at its initial value until
+	 * every thread has finished, so that no thread's pruning depends on the progress of the others, and is then cleared
+	 * so that further samples notified from a single thread prune the series.
+	 */
+	@Test
+	public void concurrentReconstructionAgreesWithSerialReconstruction() throws Exception {
+		List<List<List<IntegerKeyedSeriesSample>>> batchesByThread = new ArrayList<>();
+		for (int thread = 0; thread < THREAD_COUNT; thread++) {
+			batchesByThread.add(randomBatches(new Random(thread), 1_000, thread * KEYS_PER_THREAD, KEYS_PER_THREAD,
+					thread * SOURCES_PER_THREAD, SOURCES_PER_THREAD));
+		}
+		List<List<IntegerKeyedSeriesSample>> finalBatches = randomBatches(new Random(THREAD_COUNT), 200, 0,
+				THREAD_COUNT * KEYS_PER_THREAD, 0, THREAD_COUNT * SOURCES_PER_THREAD);
+
+		Map<Integer, List<Object>> expectedDataPoints = new TreeMap<>();
+		SourceIndexRegistry<Object, CounterSeriesIndex> serialSourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		serialSourceIndexRegistry.getCurrentIndexForSource(ANCHOR_SOURCE);
+		MultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> serialReconstructor = MultiSampledSeriesReconstructor
+				.<Integer, Integer, Object, CounterSeriesIndex> builder(serialSourceIndexRegistry,
+						ConcurrentMultiSampledSeriesReconstructorTest::buildSeriesReconstructor)
+				.dataPointListener((key, index, value) -> expectedDataPoints
+						.computeIfAbsent(key, absentKey -> new ArrayList<>()).add(Arrays.asList(index, value)))
+				.build();
+		batchesByThread.forEach(batches -> batches.forEach(serialReconstructor::notifySamples));
+
+		Map<Integer, List<Object>> actualDataPoints = new ConcurrentHashMap<>();
+		ConcurrentSourceIndexRegistry<Object, CounterSeriesIndex> sourceIndexRegistry = new ConcurrentSourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance(), THREAD_COUNT);
+		sourceIndexRegistry.getCurrentIndexForSource(ANCHOR_SOURCE);
+		ConcurrentMultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> subjectUnderTest = new ConcurrentMultiSampledSeriesReconstructor<>(
+				sourceIndexRegistry, ConcurrentMultiSampledSeriesReconstructorTest::buildSeriesReconstructor,
+				THREAD_COUNT, (key, index, value) -> actualDataPoints
+						.computeIfAbsent(key, absentKey -> new ArrayList<>()).add(Arrays.asList(index, value)));
+		ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+		try {
+			CountDownLatch startLatch = new CountDownLatch(1);
+			List<Future<?>> completions = new ArrayList<>();
+			for (List<List<IntegerKeyedSeriesSample>> batches : batchesByThread) {
+				completions.add(executor.submit(() -> {
+					startLatch.await();
+					batches.forEach(subjectUnderTest::notifySamples);
+					return null;
+				}));
+			}
+			startLatch.countDown();
+			for (Future<?> completion : completions) {
+				completion.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		assertThat(new TreeMap<>(actualDataPoints), is(expectedDataPoints));
+		assertThat(retainedDataPoints(subjectUnderTest), is(retainedDataPoints(serialReconstructor)));
+
+		serialSourceIndexRegistry.clearCurrentIndexForSource(ANCHOR_SOURCE);
+		sourceIndexRegistry.clearCurrentIndexForSource(ANCHOR_SOURCE);
+		finalBatches.forEach(serialReconstructor::notifySamples);
+		finalBatches.forEach(subjectUnderTest::notifySamples);
+
+		assertThat(new TreeMap<>(actualDataPoints), is(expectedDataPoints));
+		assertThat(retainedDataPoints(subjectUnderTest), is(retainedDataPoints(serialReconstructor)));
+	}
+
+	private static SampledStepSeriesReconstructor<Integer, Object, CounterSeriesIndex> buildSeriesReconstructor(
+			SourceIndexTracker<Object, CounterSeriesIndex> sourceIndexRegistry) {
+		return new SampledStepSeriesReconstructor<>(EqualityValueUpdatePredicate.instance(),
+				CounterSeriesIndex.Operations.instance(), sourceIndexRegistry);
+	}
+
+	private static List<List<IntegerKeyedSeriesSample>> randomBatches(Random random, int batchCount, int firstKey,
+			int keyCount, int firstSource, int sourceCount) {
+		List<List<IntegerKeyedSeriesSample>> batches = new ArrayList<>();
+		for (int i = 0; i < batchCount; i++) {
+			List<IntegerKeyedSeriesSample> batch = new ArrayList<>();
+			for (int key = random.nextInt(keyCount); key < keyCount; key += 1 + random.nextInt(3)) {
+				batch.add(new IntegerKeyedSeriesSample(firstKey + key, random.nextInt(3),
+						firstSource + random.nextInt(sourceCount)));
+			}
+			batches.add(batch);
+		}
+		return batches;
+	}
+
+	private static Map<Integer, List<Object>> retainedDataPoints(
+			MultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> seriesReconstructor) {
+		Map<Integer, List<Object>> retainedDataPoints = new TreeMap<>();
+		seriesReconstructor.forEachDataPoint((key, index, value) -> retainedDataPoints
+				.computeIfAbsent(key, absentKey -> new ArrayList<>()).add(Arrays.asList(index, value)));
+		return retainedDataPoints;
+	}
+
+	private static Map<Integer, List<Object>> retainedDataPoints(
+			ConcurrentMultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> seriesReconstructor) {
+		Map<Integer, List<Object>> retainedDataPoints = new TreeMap<>();
+		seriesReconstructor.forEachDataPoint((key, index, value) -> retainedDataPoints
+				.computeIfAbsent(key, absentKey -> new ArrayList<>()).add(Arrays.asList(index, value)));
+		return retainedDataPoints;
+	}
+
+}
@@ -0,0 +1,54 @@
+package net.xeona.sampled;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.xeona.sampled.metrics.NoOpReconstructionMetrics;
+import net.xeona.sampled.value.DoubleToleranceValueUpdatePredicate;
+import net.xeona.series.index.LongSourceIndexRegistry;
+
+public class DoubleSampledStepSeriesReconstructorTest {
+
+	@Test
+	public void rejectsValueWithinToleranceFromDifferentSource() {
+		DoubleSampledStepSeriesReconstructor<Object> subjectUnderTest = new DoubleSampledStepSeriesReconstructor<>(
+				new DoubleToleranceValueUpdatePredicate(1e-6), new LongSourceIndexRegistry<>());
+
+		subjectUnderTest.notifySample(0.1 + 0.2, new Object());
+
+		assertThat(subjectUnderTest.notifySample(0.3, new Object()), is(false));
+	}
+
+	@Test
+	public void acceptsValueBeyondToleranceFromSameSource() {
+		DoubleSampledStepSeriesReconstructor<Object> subjectUnderTest = new DoubleSampledStepSeriesReconstructor<>(
+				new DoubleToleranceValueUpdatePredicate(1e-6), new LongSourceIndexRegistry<>());
+
+		Object source = new Object();
+		subjectUnderTest.notifySample(0.3, source);
+
+		assertThat(subjectUnderTest.notifySample(0.4, source), is(true));
+	}
+
+	@Test
+	public void notifiesListenerOfEachAcceptedValue() {
+		List<String> dataPoints = new ArrayList<>();
+		DoubleSampledStepSeriesReconstructor<Object> subjectUnderTest = new DoubleSampledStepSeriesReconstructor<>(
+				new DoubleToleranceValueUpdatePredicate(1e-6), new LongSourceIndexRegistry<>(0),
+				NoOpReconstructionMetrics.instance(), (index, value) -> dataPoints.add(index + "=" + value));
+
+		Object source = new Object();
+		subjectUnderTest.notifySample(0.5, source);
+		subjectUnderTest.notifySample(0.5 + 1e-9, source);
+		subjectUnderTest.notifySample(1.5, source);
+
+		assertThat(dataPoints, contains("0=0.5", "1=1.5"));
+	}
+
+}
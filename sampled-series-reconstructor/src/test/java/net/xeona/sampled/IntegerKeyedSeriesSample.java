@@ -0,0 +1,17 @@
+package net.xeona.sampled;
+
+public class IntegerKeyedSeriesSample extends IntegerSeriesSample implements KeyedSeriesSample<Integer, Integer, Object> {
+
+	private final int key;
+
+	public IntegerKeyedSeriesSample(int key, int value, Object source) {
+		super(value, source);
+		this.key = key;
+	}
+
+	@Override
+	public Integer getKey() {
+		return key;
+	}
+
+}
@@ -0,0 +1,114 @@
+package net.xeona.sampled;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.xeona.sampled.value.EqualityValueUpdatePredicate;
+import net.xeona.series.index.CounterSeriesIndex;
+import net.xeona.series.index.LongSourceIndexRegistry;
+import net.xeona.series.index.SourceIndexRegistry;
+
+public class LongIndexedSampledStepSeriesReconstructorTest {
+
+	@Test
+	public void acceptsFirstProvidedValue() {
+		LongSourceIndexRegistry<Object> sourceIndexRegistry = new LongSourceIndexRegistry<>();
+		LongIndexedSampledStepSeriesReconstructor<Integer, Object> subjectUnderTest = new LongIndexedSampledStepSeriesReconstructor<>(
+				EqualityValueUpdatePredicate.instance(), sourceIndexRegistry);
+
+		Object source = new Object();
+		IntegerSeriesSample sample = new IntegerSeriesSample(0, source);
+
+		assertThat(subjectUnderTest.notifySample(sample), is(true));
+	}
+
+	@Test
+	public void firstSampleInitialisesSourceIndexRegistry() {
+		LongSourceIndexRegistry<Object> sourceIndexRegistry = new LongSourceIndexRegistry<>();
+		LongIndexedSampledStepSeriesReconstructor<Integer, Object> subjectUnderTest = new LongIndexedSampledStepSeriesReconstructor<>(
+				EqualityValueUpdatePredicate.instance(), sourceIndexRegistry);
+
+		Object source = new Object();
+		IntegerSeriesSample sample = new IntegerSeriesSample(0, source);
+
+		subjectUnderTest.notifySample(sample);
+
+		assertThat(sourceIndexRegistry.getCurrentIndexForSource(source), is(Long.MIN_VALUE));
+	}
+
+	@Test
+	public void rejectsRepeatedValueFromDifferentSource() {
+		LongSourceIndexRegistry<Object> sourceIndexRegistry = new LongSourceIndexRegistry<>();
+		LongIndexedSampledStepSeriesReconstructor<Integer, Object> subjectUnderTest = new LongIndexedSampledStepSeriesReconstructor<>(
+				EqualityValueUpdatePredicate.instance(), sourceIndexRegistry);
+
+		Object firstSource = new Object();
+		IntegerSeriesSample firstSample = new IntegerSeriesSample(0, firstSource);
+
+		subjectUnderTest.notifySample(firstSample);
+
+		Object secondSource = new Object();
+		IntegerSeriesSample secondSample = new IntegerSeriesSample(0, secondSource);
+
+		assertThat(subjectUnderTest.notifySample(secondSample), is(false));
+	}
+
+	@Test
+	public void acceptsUpdatedValueFromSameSource() {
+		LongSourceIndexRegistry<Object> sourceIndexRegistry = new LongSourceIndexRegistry<>();
+		LongIndexedSampledStepSeriesReconstructor<Integer, Object> subjectUnderTest = new LongIndexedSampledStepSeriesReconstructor<>(
+				EqualityValueUpdatePredicate.instance(), sourceIndexRegistry);
+
+		Object source = new Object();
+		IntegerSeriesSample firstSample = new IntegerSeriesSample(0, source);
+		subjectUnderTest.notifySample(firstSample);
+
+		IntegerSeriesSample secondSample = new IntegerSeriesSample(1, source);
+		assertThat(subjectUnderTest.notifySample(secondSample), is(true));
+	}
+
+	@Test
+	public void agreesWithGenericReconstructorAcrossLaggingSources() {
+		SourceIndexRegistry<Object, CounterSeriesIndex> genericSourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		SampledStepSeriesReconstructor<Integer, Object, CounterSeriesIndex> genericReconstructor = new SampledStepSeriesReconstructor<>(
+				EqualityValueUpdatePredicate.instance(), CounterSeriesIndex.Operations.instance(),
+				genericSourceIndexRegistry);
+		LongSourceIndexRegistry<Object> sourceIndexRegistry = new LongSourceIndexRegistry<>();
+		LongIndexedSampledStepSeriesReconstructor<Integer, Object> subjectUnderTest = new LongIndexedSampledStepSeriesReconstructor<>(
+				EqualityValueUpdatePredicate.instance(), sourceIndexRegistry);
+
+		Object[] sources = { new Object(), new Object(), new Object() };
+		Random random = new Random(0);
+		for (int i = 0; i < 10_000; i++) {
+			IntegerSeriesSample sample = new IntegerSeriesSample(random.nextInt(4),
+					sources[random.nextInt(sources.length)]);
+			assertThat(subjectUnderTest.notifySample(sample), is(genericReconstructor.notifySample(sample)));
+		}
+	}
+
+	@Test
+	public void fingerprintedReconstructorAgreesWithGenericReconstructor() {
+		SourceIndexRegistry<Object, CounterSeriesIndex> genericSourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		SampledStepSeriesReconstructor<Integer, Object, CounterSeriesIndex> genericReconstructor = new SampledStepSeriesReconstructor<>(
+				EqualityValueUpdatePredicate.instance(), CounterSeriesIndex.Operations.instance(),
+				genericSourceIndexRegistry);
+		LongSourceIndexRegistry<Object> sourceIndexRegistry = new LongSourceIndexRegistry<>();
+		LongIndexedSampledStepSeriesReconstructor<Integer, Object> subjectUnderTest = new LongIndexedSampledStepSeriesReconstructor<>(
+				EqualityValueUpdatePredicate.fingerprinted(), sourceIndexRegistry);
+
+		Object[] sources = { new Object(), new Object(), new Object() };
+		Random random = new Random(0);
+		for (int i = 0; i < 10_000; i++) {
+			IntegerSeriesSample sample = new IntegerSeriesSample(random.nextInt(8),
+					sources[random.nextInt(sources.length)]);
+			assertThat(subjectUnderTest.notifySample(sample), is(genericReconstructor.notifySample(sample)));
+		}
+	}
+
+}
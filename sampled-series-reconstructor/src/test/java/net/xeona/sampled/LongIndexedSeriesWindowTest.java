@@ -0,0 +1,39 @@
+package net.xeona.sampled;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LongIndexedSeriesWindowTest {
+
+	@Test
+	public void floorPositionAgreesWithLinearSearchWhetherFloorsLieNearTailOrNot() {
+		LongIndexedSeriesWindow<Object> subjectUnderTest = new LongIndexedSeriesWindow<>();
+		Random random = new Random(0);
+		long nextIndex = 0;
+		for (int round = 0; round < 2000; round++) {
+			nextIndex += 1 + random.nextInt(3);
+			subjectUnderTest.append(nextIndex, round);
+			if (random.nextInt(4) == 0) {
+				subjectUnderTest.clearBefore(subjectUnderTest.firstIndex() + random.nextInt(6));
+			}
+			boolean nearTail = round % 500 < 250;
+			long span = nearTail ? 8 : nextIndex - subjectUnderTest.firstIndex() + 8;
+			long soughtIndex = nextIndex + 2 - (long) (random.nextDouble() * span);
+
+			assertThat(subjectUnderTest.floorPosition(soughtIndex), is(linearFloorPosition(subjectUnderTest, soughtIndex)));
+		}
+	}
+
+	private static int linearFloorPosition(LongIndexedSeriesWindow<?> window, long index) {
+		int position = -1;
+		while (position + 1 < window.size() && window.indexAt(position + 1) <= index) {
+			position++;
+		}
+		return position;
+	}
+
+}
@@ -0,0 +1,92 @@
+package net.xeona.sampled;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.xeona.sampled.metrics.RecordingReconstructionMetrics;
+import net.xeona.sampled.metrics.ReconstructionMetrics.SampleOutcome;
+import net.xeona.sampled.value.EqualityValueUpdatePredicate;
+import net.xeona.sampled.value.LongEqualityValueUpdatePredicate;
+import net.xeona.series.index.CounterSeriesIndex;
+import net.xeona.series.index.LongSourceIndexRegistry;
+import net.xeona.series.index.SourceIndexRegistry;
+
+public class LongSampledStepSeriesReconstructorTest {
+
+	@Test
+	public void agreesWithGenericReconstructorAcrossLaggingSources() {
+		SourceIndexRegistry<Object, CounterSeriesIndex> genericSourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		SampledStepSeriesReconstructor<Integer, Object, CounterSeriesIndex> genericReconstructor = new SampledStepSeriesReconstructor<>(
+				EqualityValueUpdatePredicate.instance(), CounterSeriesIndex.Operations.instance(),
+				genericSourceIndexRegistry);
+		LongSampledStepSeriesReconstructor<Object> subjectUnderTest = new LongSampledStepSeriesReconstructor<>(
+				LongEqualityValueUpdatePredicate.instance(), new LongSourceIndexRegistry<>());
+
+		Object[] sources = { new Object(), new Object(), new Object() };
+		Random random = new Random(0);
+		for (int i = 0; i < 10_000; i++) {
+			IntegerSeriesSample sample = new IntegerSeriesSample(random.nextInt(4),
+					sources[random.nextInt(sources.length)]);
+			assertThat(subjectUnderTest.notifySample(sample.getValue(), sample.getSource()),
+					is(genericReconstructor.notifySample(sample)));
+		}
+	}
+
+	@Test
+	public void realignsLaggingSourceWithLaterDataPointAndPrunesThoseBeforeIt() {
+		LongSourceIndexRegistry<Object> sourceIndexRegistry = new LongSourceIndexRegistry<>(0);
+		RecordingReconstructionMetrics metrics = new RecordingReconstructionMetrics();
+		List<String> dataPoints = new ArrayList<>();
+		LongSampledStepSeriesReconstructor<Object> subjectUnderTest = new LongSampledStepSeriesReconstructor<>(
+				LongEqualityValueUpdatePredicate.instance(), sourceIndexRegistry, metrics,
+				(index, value) -> dataPoints.add(index + "=" + value));
+
+		Object laggingSource = new Object();
+		Object leadingSource = new Object();
+		subjectUnderTest.notifySample(0, laggingSource);
+		subjectUnderTest.notifySample(0, leadingSource);
+		subjectUnderTest.notifySample(1, leadingSource);
+		subjectUnderTest.notifySample(2, leadingSource);
+
+		assertThat(subjectUnderTest.notifySample(2, laggingSource), is(false));
+		assertThat(sourceIndexRegistry.getCurrentIndexForSource(laggingSource), is(2L));
+		assertThat(dataPoints, contains("0=0", "1=1", "2=2"));
+		assertThat(metrics.getSampleOutcomes(), contains(SampleOutcome.ACCEPTED, SampleOutcome.REJECTED,
+				SampleOutcome.ACCEPTED, SampleOutcome.ACCEPTED, SampleOutcome.REJECTED));
+		assertThat(metrics.getWalkLengths(), contains(1, 1, 1, 3));
+		assertThat(metrics.getPrunedDataPoints(), contains(0, 0, 0, 0, 2));
+	}
+
+	@Test
+	public void failsToAlignNewSourceBehindRetainedDataPointsUntilItMatchesOne() {
+		LongSourceIndexRegistry<Object> sourceIndexRegistry = new LongSourceIndexRegistry<>(0);
+		RecordingReconstructionMetrics metrics = new RecordingReconstructionMetrics();
+		List<String> dataPoints = new ArrayList<>();
+		LongSampledStepSeriesReconstructor<Object> subjectUnderTest = new LongSampledStepSeriesReconstructor<>(
+				LongEqualityValueUpdatePredicate.instance(), sourceIndexRegistry, metrics,
+				(index, value) -> dataPoints.add(index + "=" + value));
+
+		Object establishedSource = new Object();
+		Object newSource = new Object();
+		subjectUnderTest.notifySample(0, establishedSource);
+		subjectUnderTest.notifySample(1, establishedSource);
+
+		assertThat(subjectUnderTest.notifySample(5, newSource), is(false));
+		assertThat(sourceIndexRegistry.getCurrentIndexForSource(newSource), is(0L));
+		assertThat(subjectUnderTest.notifySample(1, newSource), is(false));
+		assertThat(sourceIndexRegistry.getCurrentIndexForSource(newSource), is(1L));
+		assertThat(dataPoints, contains("0=0", "1=1"));
+		assertThat(metrics.getSampleOutcomes(), contains(SampleOutcome.ACCEPTED, SampleOutcome.ACCEPTED,
+				SampleOutcome.FAILED_ALIGNMENT, SampleOutcome.REJECTED));
+		assertThat(metrics.getPrunedDataPoints(), contains(0, 1, 0, 0));
+	}
+
+}
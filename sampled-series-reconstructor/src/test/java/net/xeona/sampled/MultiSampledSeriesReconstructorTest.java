@@ -0,0 +1,242 @@
+package net.xeona.sampled;
+
+import static java.util.stream.Collectors.groupingBy;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import net.xeona.sampled.value.EqualityValueUpdatePredicate;
+import net.xeona.series.index.CounterSeriesIndex;
+import net.xeona.series.index.SourceIndexRegistry;
+
+public class MultiSampledSeriesReconstructorTest {
+
+	private static final int POISONED_KEY = 99;
+
+	@Test
+	public void framedSamplesAgreeWithSampleCollections() {
+		List<List<Object>> expectedDataPoints = new ArrayList<>();
+		MultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> collectionReconstructor = buildReconstructor(
+				expectedDataPoints);
+		List<List<Object>> actualDataPoints = new ArrayList<>();
+		MultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> subjectUnderTest = buildReconstructor(
+				actualDataPoints);
+
+		IntegerFrameDecoder sampleDecoder = new IntegerFrameDecoder();
+		ByteBuffer frame = ByteBuffer.allocate(1024);
+		Random random = new Random(0);
+		for (int i = 0; i < 1_000; i++) {
+			List<IntegerKeyedSeriesSample> batch = new ArrayList<>();
+			frame.clear();
+			for (int key = random.nextInt(8); key < 8; key += 1 + random.nextInt(3)) {
+				int source = random.nextInt(3);
+				int value = random.nextInt(3);
+				batch.add(new IntegerKeyedSeriesSample(key, value, source));
+				frame.putInt(key).putInt(source).putInt(value);
+			}
+			frame.flip();
+
+			collectionReconstructor.notifySamples(batch);
+			subjectUnderTest.notifySamples(frame, sampleDecoder);
+		}
+
+		assertThat(actualDataPoints, is(expectedDataPoints));
+	}
+
+	@Test
+	public void failedFrameLeavesNoRecordsForNextFrame() {
+		List<List<Object>> dataPoints = new ArrayList<>();
+		MultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> subjectUnderTest = MultiSampledSeriesReconstructor
+				.<Integer, Integer, Object, CounterSeriesIndex> builder(
+						new SourceIndexRegistry<>(CounterSeriesIndex.Operations.instance()),
+						registry -> new SampledStepSeriesReconstructor<>(EqualityValueUpdatePredicate.instance(),
+								CounterSeriesIndex.Operations.instance(), registry))
+				.dataPointListener((key, index, value) -> {
+					if (key == POISONED_KEY) {
+						throw new IllegalStateException("Poisoned key");
+					}
+					dataPoints.add(Arrays.asList(key, value));
+				}).build();
+		IntegerFrameDecoder sampleDecoder = new IntegerFrameDecoder();
+
+		ByteBuffer failingFrame = ByteBuffer.allocate(1024);
+		failingFrame.putInt(POISONED_KEY).putInt(0).putInt(1).putInt(1).putInt(1).putInt(1).flip();
+		try {
+			subjectUnderTest.notifySamples(failingFrame, sampleDecoder);
+		} catch (IllegalStateException expected) {
+			dataPoints.clear();
+		}
+		ByteBuffer frame = ByteBuffer.allocate(1024);
+		frame.putInt(2).putInt(1).putInt(5).flip();
+		subjectUnderTest.notifySamples(frame, sampleDecoder);
+
+		assertThat(dataPoints, is(Arrays.asList(Arrays.<Object> asList(2, 5))));
+	}
+
+	@Test
+	public void realignmentAgreesWithReapplyingEverySample() {
+		List<List<Object>> actualDataPoints = new ArrayList<>();
+		MultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> subjectUnderTest = buildReconstructor(
+				actualDataPoints);
+
+		List<List<Object>> expectedDataPoints = new ArrayList<>();
+		SourceIndexRegistry<Object, CounterSeriesIndex> referenceSourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		Map<Integer, SampledStepSeriesReconstructor<Integer, Object, CounterSeriesIndex>> referenceReconstructors = new HashMap<>();
+
+		Random random = new Random(1);
+		for (int i = 0; i < 1_000; i++) {
+			List<IntegerKeyedSeriesSample> batch = new ArrayList<>();
+			for (int key = random.nextInt(8); key < 8; key += 1 + random.nextInt(3)) {
+				batch.add(new IntegerKeyedSeriesSample(key, random.nextInt(3), random.nextInt(4)));
+			}
+
+			subjectUnderTest.notifySamples(batch);
+
+			Map<Object, List<IntegerKeyedSeriesSample>> batchBySource = batch.stream()
+					.collect(groupingBy(IntegerKeyedSeriesSample::getSource));
+			for (Map.Entry<Object, List<IntegerKeyedSeriesSample>> entry : batchBySource.entrySet()) {
+				CounterSeriesIndex initialSourceIndex;
+				do {
+					initialSourceIndex = referenceSourceIndexRegistry.getCurrentIndexForSource(entry.getKey());
+					for (IntegerKeyedSeriesSample sample : entry.getValue()) {
+						SampledStepSeriesReconstructor<Integer, Object, CounterSeriesIndex> seriesReconstructor = referenceReconstructors
+								.computeIfAbsent(sample.getKey(), key -> new SampledStepSeriesReconstructor<>(
+										EqualityValueUpdatePredicate.instance(),
+										CounterSeriesIndex.Operations.instance(), referenceSourceIndexRegistry));
+						if (seriesReconstructor.notifySample(sample)) {
+							expectedDataPoints.add(Arrays.asList(sample.getKey(),
+									seriesReconstructor.getLatestSeriesIndex(), sample.getValue()));
+						}
+					}
+				} while (referenceSourceIndexRegistry.getCurrentIndexForSource(entry.getKey())
+						.compareTo(initialSourceIndex) > 0);
+			}
+		}
+
+		assertThat(actualDataPoints, is(expectedDataPoints));
+		assertThat(retainedDataPoints(subjectUnderTest), is(retainedDataPoints(referenceReconstructors)));
+	}
+
+	@Test
+	public void parallelReconstructionAgreesWithSerialReconstruction() {
+		List<List<Object>> expectedDataPoints = new ArrayList<>();
+		MultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> serialReconstructor = buildReconstructor(
+				expectedDataPoints);
+		List<List<Object>> actualDataPoints = new ArrayList<>();
+		ForkJoinPool parallelExecutor = new ForkJoinPool(4);
+		try {
+			MultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> subjectUnderTest = MultiSampledSeriesReconstructor
+					.<Integer, Integer, Object, CounterSeriesIndex> builder(
+							new SourceIndexRegistry<>(CounterSeriesIndex.Operations.instance()),
+							registry -> new SampledStepSeriesReconstructor<>(EqualityValueUpdatePredicate.instance(),
+									CounterSeriesIndex.Operations.instance(), registry))
+					.parallel(parallelExecutor, 4)
+					.dataPointListener((key, index, value) -> actualDataPoints.add(Arrays.asList(key, index, value)))
+					.build();
+
+			Random random = new Random(2);
+			for (int i = 0; i < 2_000; i++) {
+				List<IntegerKeyedSeriesSample> batch = new ArrayList<>();
+				for (int key = random.nextInt(32); key < 32; key += 1 + random.nextInt(3)) {
+					batch.add(new IntegerKeyedSeriesSample(key, random.nextInt(3), random.nextInt(4)));
+				}
+				serialReconstructor.notifySamples(batch);
+				subjectUnderTest.notifySamples(batch);
+			}
+
+			assertThat(actualDataPoints, is(expectedDataPoints));
+			assertThat(retainedDataPoints(subjectUnderTest), is(retainedDataPoints(serialReconstructor)));
+		} finally {
+			parallelExecutor.shutdown();
+		}
+	}
+
+	private static Map<Integer, List<Object>> retainedDataPoints(
+			MultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> seriesReconstructor) {
+		Map<Integer, List<Object>> retainedDataPoints = new TreeMap<>();
+		seriesReconstructor.forEachDataPoint((key, index, value) -> retainedDataPoints
+				.computeIfAbsent(key, absentKey -> new ArrayList<>()).add(Arrays.asList(index, value)));
+		return retainedDataPoints;
+	}
+
+	private static Map<Integer, List<Object>> retainedDataPoints(
+			Map<Integer, SampledStepSeriesReconstructor<Integer, Object, CounterSeriesIndex>> seriesReconstructors) {
+		Map<Integer, List<Object>> retainedDataPoints = new TreeMap<>();
+		seriesReconstructors.forEach((key, seriesReconstructor) -> seriesReconstructor.forEachDataPoint(
+				(index, value) -> retainedDataPoints.computeIfAbsent(key, absentKey -> new ArrayList<>())
+						.add(Arrays.asList(index, value))));
+		return retainedDataPoints;
+	}
+
+	private static MultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> buildReconstructor(
+			List<List<Object>> dataPoints) {
+		return MultiSampledSeriesReconstructor
+				.<Integer, Integer, Object, CounterSeriesIndex> builder(
+						new SourceIndexRegistry<>(CounterSeriesIndex.Operations.instance()),
+						registry -> new SampledStepSeriesReconstructor<>(EqualityValueUpdatePredicate.instance(),
+								CounterSeriesIndex.Operations.instance(), registry))
+				.dataPointListener((key, index, value) -> dataPoints.add(Arrays.asList(key, index, value))).build();
+	}
+
+	/**
+	 * Decodes records of three <code>int</code>s: the key, source and value of each sample
+	 */
+	private static class IntegerFrameDecoder implements SampleFrameDecoder<Integer, Integer, Object> {
+
+		private static final int RECORD_LENGTH = 3 * Integer.BYTES;
+
+		private ByteBuffer frame;
+		private int recordOffset;
+
+		@Override
+		public void wrap(ByteBuffer frame) {
+			this.frame = frame;
+			this.recordOffset = -RECORD_LENGTH;
+		}
+
+		@Override
+		public boolean next() {
+			recordOffset += RECORD_LENGTH;
+			return frame.position() + recordOffset + RECORD_LENGTH <= frame.limit();
+		}
+
+		@Override
+		public int recordOffset() {
+			return recordOffset;
+		}
+
+		@Override
+		public void moveTo(int recordOffset) {
+			this.recordOffset = recordOffset;
+		}
+
+		@Override
+		public Integer getKey() {
+			return frame.getInt(frame.position() + recordOffset);
+		}
+
+		@Override
+		public Object getSource() {
+			return frame.getInt(frame.position() + recordOffset + Integer.BYTES);
+		}
+
+		@Override
+		public Integer getValue() {
+			return frame.getInt(frame.position() + recordOffset + 2 * Integer.BYTES);
+		}
+
+	}
+
+}
@@ -1,13 +1,25 @@
 package net.xeona.sampled;
 
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
 import org.junit.Test;
 
+import net.xeona.sampled.metrics.RecordingReconstructionMetrics;
+import net.xeona.sampled.metrics.ReconstructionMetrics.SampleOutcome;
+import net.xeona.sampled.metrics.StripedReconstructionMetrics;
 import net.xeona.sampled.value.EqualityValueUpdatePredicate;
+import net.xeona.sampled.value.ValueUpdatePredicate;
 import net.xeona.series.index.CounterSeriesIndex;
+import net.xeona.series.index.RetentionPolicy;
 import net.xeona.series.index.SourceIndexRegistry;
+import net.xeona.series.index.TimestampSeriesIndex;
 
 public class SampledStepSeriesReconstructorTest {
 
@@ -73,4 +85,340 @@ public class SampledStepSeriesReconstructorTest {
 		assertThat(subjectUnderTest.notifySample(secondSample), is(true));
 	}
 
+	@Test
+	public void valueIndexedReconstructorAgreesWithWalkingReconstructor() {
+		SourceIndexRegistry<Object, CounterSeriesIndex> walkingSourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		SampledStepSeriesReconstructor<Integer, Object, CounterSeriesIndex> walkingReconstructor = new SampledStepSeriesReconstructor<>(
+				EqualityValueUpdatePredicate.instance(), CounterSeriesIndex.Operations.instance(),
+				walkingSourceIndexRegistry);
+		SourceIndexRegistry<Object, CounterSeriesIndex> sourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		SampledStepSeriesReconstructor<Integer, Object, CounterSeriesIndex> subjectUnderTest = SampledStepSeriesReconstructor
+				.<Integer, Object, CounterSeriesIndex> builder(EqualityValueUpdatePredicate.instance(),
+						CounterSeriesIndex.Operations.instance(), sourceIndexRegistry)
+				.valueIndexed(true).build();
+
+		Object[] sources = { new Object(), new Object(), new Object() };
+		Random random = new Random(0);
+		for (int i = 0; i < 10_000; i++) {
+			IntegerSeriesSample sample = new IntegerSeriesSample(random.nextInt(4),
+					sources[random.nextInt(sources.length)]);
+			assertThat(subjectUnderTest.notifySample(sample), is(walkingReconstructor.notifySample(sample)));
+		}
+	}
+
+	@Test
+	public void fingerprintedReconstructorAgreesWithWalkingReconstructorComparingFewerValues() {
+		CountingValueUpdatePredicate walkingPredicate = new CountingValueUpdatePredicate(false);
+		SourceIndexRegistry<Object, CounterSeriesIndex> walkingSourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		SampledStepSeriesReconstructor<Integer, Object, CounterSeriesIndex> walkingReconstructor = SampledStepSeriesReconstructor
+				.<Integer, Object, CounterSeriesIndex> builder(walkingPredicate,
+						CounterSeriesIndex.Operations.instance(), walkingSourceIndexRegistry)
+				.retentionPolicy(RetentionPolicy.builder().maxWindowLength(4).build()).build();
+		CountingValueUpdatePredicate fingerprintedPredicate = new CountingValueUpdatePredicate(true);
+		SourceIndexRegistry<Object, CounterSeriesIndex> sourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		SampledStepSeriesReconstructor<Integer, Object, CounterSeriesIndex> subjectUnderTest = SampledStepSeriesReconstructor
+				.<Integer, Object, CounterSeriesIndex> builder(fingerprintedPredicate,
+						CounterSeriesIndex.Operations.instance(), sourceIndexRegistry)
+				.retentionPolicy(RetentionPolicy.builder().maxWindowLength(4).build()).build();
+
+		Object[] sources = { new Object(), new Object(), new Object() };
+		Random random = new Random(0);
+		for (int i = 0; i < 10_000; i++) {
+			IntegerSeriesSample sample = new IntegerSeriesSample(random.nextInt(8),
+					sources[random.nextInt(sources.length)]);
+			assertThat(subjectUnderTest.notifySample(sample), is(walkingReconstructor.notifySample(sample)));
+		}
+		assertThat(fingerprintedPredicate.comparisonCount < walkingPredicate.comparisonCount, is(true));
+	}
+
+	@Test
+	public void batchedSamplesAgreeWithIndividualSamples() {
+		SourceIndexRegistry<Object, CounterSeriesIndex> individualSourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		SampledStepSeriesReconstructor<Integer, Object, CounterSeriesIndex> individualReconstructor = new SampledStepSeriesReconstructor<>(
+				EqualityValueUpdatePredicate.instance(), CounterSeriesIndex.Operations.instance(),
+				individualSourceIndexRegistry);
+		SourceIndexRegistry<Object, CounterSeriesIndex> sourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		SampledStepSeriesReconstructor<Integer, Object, CounterSeriesIndex> subjectUnderTest = new SampledStepSeriesReconstructor<>(
+				EqualityValueUpdatePredicate.instance(), CounterSeriesIndex.Operations.instance(), sourceIndexRegistry);
+
+		Object[] sources = { new Object(), new Object(), new Object() };
+		Random random = new Random(0);
+		for (int i = 0; i < 1_000; i++) {
+			Object source = sources[random.nextInt(sources.length)];
+			List<IntegerSeriesSample> batch = new ArrayList<>();
+			BitSet expectedNewValues = new BitSet();
+			for (int j = random.nextInt(8); j >= 0; j--) {
+				IntegerSeriesSample sample = new IntegerSeriesSample(random.nextInt(4), source);
+				expectedNewValues.set(batch.size(), individualReconstructor.notifySample(sample));
+				batch.add(sample);
+			}
+			assertThat(subjectUnderTest.notifySamples(batch), is(expectedNewValues));
+		}
+	}
+
+	@Test
+	public void notifiesListenerOfAcceptedDataPointsOnly() {
+		SourceIndexRegistry<Object, CounterSeriesIndex> sourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		List<Integer> acceptedValues = new ArrayList<>();
+		SampledStepSeriesReconstructor<Integer, Object, CounterSeriesIndex> subjectUnderTest = SampledStepSeriesReconstructor
+				.<Integer, Object, CounterSeriesIndex> builder(EqualityValueUpdatePredicate.instance(),
+						CounterSeriesIndex.Operations.instance(), sourceIndexRegistry)
+				.dataPointListener((index, value) -> acceptedValues.add(value)).build();
+
+		Object firstSource = new Object();
+		Object secondSource = new Object();
+		subjectUnderTest.notifySample(new IntegerSeriesSample(0, firstSource));
+		subjectUnderTest.notifySample(new IntegerSeriesSample(0, secondSource));
+		subjectUnderTest.notifySample(new IntegerSeriesSample(1, firstSource));
+
+		assertThat(acceptedValues, contains(0, 1));
+	}
+
+	@Test
+	public void maximumWindowLengthClearsDataPointsRetainedForLaggingSource() {
+		SourceIndexRegistry<Object, CounterSeriesIndex> sourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		SampledStepSeriesReconstructor<Integer, Object, CounterSeriesIndex> subjectUnderTest = SampledStepSeriesReconstructor
+				.<Integer, Object, CounterSeriesIndex> builder(EqualityValueUpdatePredicate.instance(),
+						CounterSeriesIndex.Operations.instance(), sourceIndexRegistry)
+				.retentionPolicy(RetentionPolicy.builder().maxWindowLength(2).build()).build();
+
+		Object laggingSource = new Object();
+		Object leadingSource = new Object();
+		subjectUnderTest.notifySample(new IntegerSeriesSample(0, laggingSource));
+		subjectUnderTest.notifySample(new IntegerSeriesSample(0, leadingSource));
+		subjectUnderTest.notifySample(new IntegerSeriesSample(1, leadingSource));
+		subjectUnderTest.notifySample(new IntegerSeriesSample(2, leadingSource));
+
+		assertThat(subjectUnderTest.notifySample(new IntegerSeriesSample(3, laggingSource)), is(false));
+		assertThat(sourceIndexRegistry.getCurrentIndexForSource(laggingSource),
+				is(CounterSeriesIndex.Operations.instance().initialValue()));
+	}
+
+	@Test
+	public void clearingBeforeHorizonRetainsDataPointCurrentAtHorizon() {
+		long[] epochNanos = { 0 };
+		TimestampSeriesIndex.Operations seriesIndexOperations = new TimestampSeriesIndex.Operations(
+				() -> epochNanos[0]);
+		SourceIndexRegistry<Object, TimestampSeriesIndex> sourceIndexRegistry = new SourceIndexRegistry<>(
+				seriesIndexOperations);
+		SampledStepSeriesReconstructor<Integer, Object, TimestampSeriesIndex> subjectUnderTest = new SampledStepSeriesReconstructor<>(
+				EqualityValueUpdatePredicate.instance(), seriesIndexOperations, sourceIndexRegistry);
+
+		Object laggingSource = new Object();
+		Object leadingSource = new Object();
+		subjectUnderTest.notifySample(new IntegerSeriesSample(0, laggingSource));
+		subjectUnderTest.notifySample(new IntegerSeriesSample(0, leadingSource));
+		for (int value = 1; value <= 3; value++) {
+			epochNanos[0] = value * 1_000_000L;
+			subjectUnderTest.notifySample(new IntegerSeriesSample(value, leadingSource));
+		}
+
+		subjectUnderTest.clearDataPointsBefore(seriesIndexOperations.earliestAt(2_500_000L));
+
+		List<Integer> retainedValues = new ArrayList<>();
+		subjectUnderTest.forEachDataPoint((index, value) -> retainedValues.add(value));
+		assertThat(retainedValues, contains(2, 3));
+	}
+
+	@Test
+	public void readsRetainedDataPointsDirectlyAndThroughPublishedSnapshots() {
+		CounterSeriesIndex.Operations seriesIndexOperations = CounterSeriesIndex.Operations.instance();
+		SourceIndexRegistry<Object, CounterSeriesIndex> sourceIndexRegistry = new SourceIndexRegistry<>(
+				seriesIndexOperations);
+		SampledStepSeriesReconstructor<Integer, Object, CounterSeriesIndex> subjectUnderTest = SampledStepSeriesReconstructor
+				.<Integer, Object, CounterSeriesIndex> builder(EqualityValueUpdatePredicate.instance(),
+						seriesIndexOperations, sourceIndexRegistry)
+				.snapshotPublishing(true).build();
+
+		Object laggingSource = new Object();
+		Object leadingSource = new Object();
+		subjectUnderTest.notifySample(new IntegerSeriesSample(0, laggingSource));
+		subjectUnderTest.notifySample(new IntegerSeriesSample(0, leadingSource));
+		subjectUnderTest.notifySample(new IntegerSeriesSample(1, leadingSource));
+		SeriesWindowSnapshot<Integer, CounterSeriesIndex> earlierSnapshot = subjectUnderTest.getSnapshot();
+		subjectUnderTest.notifySample(new IntegerSeriesSample(2, leadingSource));
+		subjectUnderTest.notifySample(new IntegerSeriesSample(3, leadingSource));
+
+		CounterSeriesIndex firstIndex = seriesIndexOperations.fromCount(Long.MIN_VALUE + 1);
+		CounterSeriesIndex secondIndex = seriesIndexOperations.fromCount(Long.MIN_VALUE + 2);
+		List<Integer> rangeValues = new ArrayList<>();
+		subjectUnderTest.forEachDataPointBetween(firstIndex, secondIndex, (index, value) -> rangeValues.add(value));
+		List<Integer> snapshotRangeValues = new ArrayList<>();
+		subjectUnderTest.getSnapshot().forEachDataPointBetween(firstIndex, secondIndex,
+				(index, value) -> snapshotRangeValues.add(value));
+
+		assertThat(subjectUnderTest.getLatestValue(), is(3));
+		assertThat(subjectUnderTest.getValueAt(firstIndex), is(1));
+		assertThat(rangeValues, contains(1, 2));
+		assertThat(subjectUnderTest.getSnapshot().getLatestValue(), is(3));
+		assertThat(subjectUnderTest.getSnapshot().getValueAt(firstIndex), is(1));
+		assertThat(snapshotRangeValues, contains(1, 2));
+		assertThat(earlierSnapshot.getLatestValue(), is(1));
+	}
+
+	@Test
+	public void publishedSnapshotsMatchRetainedDataPointsAndNeverChange() {
+		SourceIndexRegistry<Object, CounterSeriesIndex> sourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		SampledStepSeriesReconstructor<Integer, Object, CounterSeriesIndex> subjectUnderTest = SampledStepSeriesReconstructor
+				.<Integer, Object, CounterSeriesIndex> builder(EqualityValueUpdatePredicate.instance(),
+						CounterSeriesIndex.Operations.instance(), sourceIndexRegistry)
+				.retentionPolicy(RetentionPolicy.builder().maxWindowLength(16).build()).snapshotPublishing(true)
+				.build();
+
+		List<SeriesWindowSnapshot<Integer, CounterSeriesIndex>> snapshots = new ArrayList<>();
+		List<List<String>> snapshotDataPoints = new ArrayList<>();
+		Object[] sources = { new Object(), new Object(), new Object() };
+		Random random = new Random(0);
+		for (int i = 0; i < 5_000; i++) {
+			int sourceCount = i % 1_000 < 500 ? 1 : sources.length;
+			subjectUnderTest.notifySample(
+					new IntegerSeriesSample(random.nextInt(8), sources[random.nextInt(sourceCount)]));
+			List<String> retainedDataPoints = new ArrayList<>();
+			subjectUnderTest.forEachDataPoint(
+					(index, value) -> retainedDataPoints.add(index.getCount() + "=" + value));
+			SeriesWindowSnapshot<Integer, CounterSeriesIndex> snapshot = subjectUnderTest.getSnapshot();
+
+			assertThat(dataPointsOf(snapshot), is(retainedDataPoints));
+
+			snapshots.add(snapshot);
+			snapshotDataPoints.add(retainedDataPoints);
+		}
+
+		for (int i = 0; i < snapshots.size(); i++) {
+			assertThat(dataPointsOf(snapshots.get(i)), is(snapshotDataPoints.get(i)));
+		}
+	}
+
+	@Test
+	public void publishesSnapshotOfRestoredDataPointsOnceRestoreCompletes() {
+		CounterSeriesIndex.Operations seriesIndexOperations = CounterSeriesIndex.Operations.instance();
+		SampledStepSeriesReconstructor<Integer, Object, CounterSeriesIndex> subjectUnderTest = SampledStepSeriesReconstructor
+				.<Integer, Object, CounterSeriesIndex> builder(EqualityValueUpdatePredicate.instance(),
+						seriesIndexOperations, new SourceIndexRegistry<>(seriesIndexOperations))
+				.snapshotPublishing(true).build();
+		SeriesWindowSnapshot<Integer, CounterSeriesIndex> initialSnapshot = subjectUnderTest.getSnapshot();
+
+		subjectUnderTest.restoreDataPoint(seriesIndexOperations.fromCount(2), 2);
+		subjectUnderTest.restoreDataPoint(seriesIndexOperations.fromCount(0), 0);
+		subjectUnderTest.restoreDataPoint(seriesIndexOperations.fromCount(1), 1);
+
+		assertThat(subjectUnderTest.getSnapshot(), is(initialSnapshot));
+
+		subjectUnderTest.completeRestore();
+
+		assertThat(dataPointsOf(subjectUnderTest.getSnapshot()), contains("0=0", "1=1", "2=2"));
+	}
+
+	@Test
+	public void recordsSampleOutcomesToMetrics() {
+		SourceIndexRegistry<Object, CounterSeriesIndex> sourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		StripedReconstructionMetrics metrics = new StripedReconstructionMetrics();
+		SampledStepSeriesReconstructor<Integer, Object, CounterSeriesIndex> subjectUnderTest = SampledStepSeriesReconstructor
+				.<Integer, Object, CounterSeriesIndex> builder(EqualityValueUpdatePredicate.instance(),
+						CounterSeriesIndex.Operations.instance(), sourceIndexRegistry)
+				.metrics(metrics).build();
+
+		Object firstSource = new Object();
+		Object secondSource = new Object();
+		subjectUnderTest.notifySample(new IntegerSeriesSample(0, firstSource));
+		subjectUnderTest.notifySample(new IntegerSeriesSample(0, secondSource));
+		subjectUnderTest.notifySample(new IntegerSeriesSample(1, firstSource));
+
+		assertThat(metrics.getSampleOutcomeCount(SampleOutcome.ACCEPTED), is(2L));
+		assertThat(metrics.getSampleOutcomeCount(SampleOutcome.REJECTED), is(1L));
+		assertThat(metrics.getSampleOutcomeCount(SampleOutcome.FAILED_ALIGNMENT), is(0L));
+	}
+
+	@Test
+	public void recordsWalkLengthsAndPrunesToMetrics() {
+		SourceIndexRegistry<Object, CounterSeriesIndex> sourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		RecordingReconstructionMetrics metrics = new RecordingReconstructionMetrics();
+		SampledStepSeriesReconstructor<Integer, Object, CounterSeriesIndex> subjectUnderTest = SampledStepSeriesReconstructor
+				.<Integer, Object, CounterSeriesIndex> builder(EqualityValueUpdatePredicate.instance(),
+						CounterSeriesIndex.Operations.instance(), sourceIndexRegistry)
+				.metrics(metrics).build();
+
+		Object firstSource = new Object();
+		Object secondSource = new Object();
+		subjectUnderTest.notifySample(new IntegerSeriesSample(0, secondSource));
+		subjectUnderTest.notifySample(new IntegerSeriesSample(0, firstSource));
+		subjectUnderTest.notifySample(new IntegerSeriesSample(1, firstSource));
+		subjectUnderTest.notifySample(new IntegerSeriesSample(2, firstSource));
+		subjectUnderTest.notifySample(new IntegerSeriesSample(2, secondSource));
+
+		assertThat(metrics.getWalkLengths(), contains(1, 1, 1, 3));
+		assertThat(metrics.getPrunedDataPoints(), contains(0, 0, 0, 0, 2));
+	}
+
+	@Test
+	public void recordsLookupOfValueIndexedSeriesAsWalkOfMatchedDataPointOnly() {
+		SourceIndexRegistry<Object, CounterSeriesIndex> sourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		RecordingReconstructionMetrics metrics = new RecordingReconstructionMetrics();
+		SampledStepSeriesReconstructor<Integer, Object, CounterSeriesIndex> subjectUnderTest = SampledStepSeriesReconstructor
+				.<Integer, Object, CounterSeriesIndex> builder(EqualityValueUpdatePredicate.instance(),
+						CounterSeriesIndex.Operations.instance(), sourceIndexRegistry)
+				.valueIndexed(true).metrics(metrics).build();
+
+		Object firstSource = new Object();
+		Object secondSource = new Object();
+		subjectUnderTest.notifySample(new IntegerSeriesSample(0, secondSource));
+		subjectUnderTest.notifySample(new IntegerSeriesSample(0, firstSource));
+		subjectUnderTest.notifySample(new IntegerSeriesSample(1, firstSource));
+		subjectUnderTest.notifySample(new IntegerSeriesSample(2, firstSource));
+		subjectUnderTest.notifySample(new IntegerSeriesSample(2, secondSource));
+
+		assertThat(metrics.getWalkLengths(), contains(1, 0, 0, 1));
+	}
+
+	/**
+	 * Compares values by equality, counting each comparison, and fingerprints them by their residue modulo three so
+	 * that unequal values share fingerprints
+	 */
+	private static class CountingValueUpdatePredicate implements ValueUpdatePredicate<Integer> {
+
+		private final boolean fingerprinted;
+		private int comparisonCount;
+
+		CountingValueUpdatePredicate(boolean fingerprinted) {
+			this.fingerprinted = fingerprinted;
+		}
+
+		@Override
+		public boolean isValueEquivalent(Integer previousValue, Integer newValue) {
+			comparisonCount++;
+			return newValue.equals(previousValue);
+		}
+
+		@Override
+		public boolean isFingerprinted() {
+			return fingerprinted;
+		}
+
+		@Override
+		public long fingerprint(Integer value) {
+			return value % 3;
+		}
+
+	}
+
+	private static List<String> dataPointsOf(SeriesWindowSnapshot<Integer, CounterSeriesIndex> snapshot) {
+		List<String> dataPoints = new ArrayList<>();
+		for (int position = 0; position < snapshot.size(); position++) {
+			dataPoints.add(snapshot.indexAt(position).getCount() + "=" + snapshot.valueAt(position));
+		}
+		return dataPoints;
+	}
+
 }
@@ -0,0 +1,329 @@
+package net.xeona.sampled.async;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import net.xeona.sampled.IntegerKeyedSeriesSample;
+import net.xeona.sampled.MultiSampledSeriesReconstructor;
+import net.xeona.sampled.SampledStepSeriesReconstructor;
+import net.xeona.sampled.value.EqualityValueUpdatePredicate;
+import net.xeona.series.index.ConcurrentSourceIndexRegistry;
+import net.xeona.series.index.CounterSeriesIndex;
+import net.xeona.series.index.SourceIndexRegistry;
+import net.xeona.series.index.SourceIndexTracker;
+
+public class AsyncSampledSeriesReconstructorTest {
+
+	@Test
+	public void singleShardAgreesWithSynchronousReconstruction() throws Exception {
+		List<List<Object>> expectedDataPoints = new ArrayList<>();
+		MultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> synchronousReconstructor = MultiSampledSeriesReconstructor
+				.<Integer, Integer, Object, CounterSeriesIndex> builder(
+						new SourceIndexRegistry<>(CounterSeriesIndex.Operations.instance()),
+						AsyncSampledSeriesReconstructorTest::buildSeriesReconstructor)
+				.dataPointListener((key, index, value) -> expectedDataPoints.add(Arrays.asList(key, index, value)))
+				.build();
+
+		List<List<Object>> actualDataPoints = new ArrayList<>();
+		AsyncSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> subjectUnderTest = AsyncSampledSeriesReconstructor
+				.<Integer, Integer, Object, CounterSeriesIndex> builder(
+						new ConcurrentSourceIndexRegistry<>(CounterSeriesIndex.Operations.instance()),
+						AsyncSampledSeriesReconstructorTest::buildSeriesReconstructor)
+				.shards(1).queueCapacity(4)
+				.dataPointListener((key, index, value) -> actualDataPoints.add(Arrays.asList(key, index, value)))
+				.start();
+
+		Random random = new Random(0);
+		for (int i = 0; i < 1_000; i++) {
+			List<IntegerKeyedSeriesSample> batch = new ArrayList<>();
+			for (int key = random.nextInt(8); key < 8; key += 1 + random.nextInt(3)) {
+				batch.add(new IntegerKeyedSeriesSample(key, random.nextInt(3), random.nextInt(3)));
+			}
+			synchronousReconstructor.notifySamples(batch);
+			assertThat(subjectUnderTest.submit(batch), is(true));
+		}
+		subjectUnderTest.close();
+
+		assertThat(actualDataPoints, is(expectedDataPoints));
+	}
+
+	/**
+	 * Each source only provides samples for keys of a single shard, and a silent source holds the least current index
+	 * at its initial value, so that no shard's reconstruction depends on the progress of any other
+	 */
+	@Test
+	public void multipleShardsAgreeWithSynchronousReconstruction() throws Exception {
+		Object anchorSource = new Object();
+		Map<Integer, List<Object>> expectedDataPoints = new TreeMap<>();
+		SourceIndexRegistry<Object, CounterSeriesIndex> synchronousSourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		synchronousSourceIndexRegistry.getCurrentIndexForSource(anchorSource);
+		MultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> synchronousReconstructor = MultiSampledSeriesReconstructor
+				.<Integer, Integer, Object, CounterSeriesIndex> builder(synchronousSourceIndexRegistry,
+						AsyncSampledSeriesReconstructorTest::buildSeriesReconstructor)
+				.dataPointListener((key, index, value) -> expectedDataPoints
+						.computeIfAbsent(key, absentKey -> new ArrayList<>()).add(Arrays.asList(index, value)))
+				.build();
+
+		Map<Integer, List<Object>> actualDataPoints = new ConcurrentHashMap<>();
+		ConcurrentSourceIndexRegistry<Object, CounterSeriesIndex> sourceIndexRegistry = new ConcurrentSourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		sourceIndexRegistry.getCurrentIndexForSource(anchorSource);
+		AsyncSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> subjectUnderTest = AsyncSampledSeriesReconstructor
+				.<Integer, Integer, Object, CounterSeriesIndex> builder(sourceIndexRegistry,
+						AsyncSampledSeriesReconstructorTest::buildSeriesReconstructor)
+				.shards(4).queueCapacity(4)
+				.dataPointListener((key, index, value) -> actualDataPoints
+						.computeIfAbsent(key, absentKey -> new ArrayList<>()).add(Arrays.asList(index, value)))
+				.start();
+
+		Random random = new Random(0);
+		for (int i = 0; i < 1_000; i++) {
+			List<IntegerKeyedSeriesSample> batch = new ArrayList<>();
+			for (int key = random.nextInt(16); key < 16; key += 1 + random.nextInt(3)) {
+				batch.add(new IntegerKeyedSeriesSample(key, random.nextInt(3), key % 4 + 4 * random.nextInt(2)));
+			}
+			synchronousReconstructor.notifySamples(batch);
+			assertThat(subjectUnderTest.submit(batch), is(true));
+		}
+		subjectUnderTest.close();
+
+		assertThat(new TreeMap<>(actualDataPoints), is(expectedDataPoints));
+	}
+
+	/**
+	 * Every source samples every key, as when polling a whole table, so that each shard depends on the progress other
+	 * shards make with the same sources, and some sources lag, so that reconstruction depends on the order in which
+	 * their indices advance
+	 */
+	@Test
+	public void multipleShardsBoundDeviationFromSynchronousReconstructionForSourcesSpanningShards() throws Exception {
+		int keyCount = 16;
+		int[] sourceLags = { 0, 0, 1, 2 };
+		Map<Integer, List<Object>> expectedDataPoints = new TreeMap<>();
+		MultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> synchronousReconstructor = MultiSampledSeriesReconstructor
+				.<Integer, Integer, Object, CounterSeriesIndex> builder(
+						new SourceIndexRegistry<>(CounterSeriesIndex.Operations.instance()),
+						AsyncSampledSeriesReconstructorTest::buildSeriesReconstructor)
+				.dataPointListener((key, index, value) -> expectedDataPoints
+						.computeIfAbsent(key, absentKey -> new ArrayList<>()).add(value))
+				.build();
+
+		Map<Integer, List<Object>> actualDataPoints = new ConcurrentHashMap<>();
+		AsyncSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> subjectUnderTest = AsyncSampledSeriesReconstructor
+				.<Integer, Integer, Object, CounterSeriesIndex> builder(
+						new ConcurrentSourceIndexRegistry<>(CounterSeriesIndex.Operations.instance()),
+						AsyncSampledSeriesReconstructorTest::buildSeriesReconstructor)
+				.shards(4).queueCapacity(4)
+				.dataPointListener((key, index, value) -> actualDataPoints
+						.computeIfAbsent(key, absentKey -> new CopyOnWriteArrayList<>()).add(value))
+				.start();
+
+		Random random = new Random(0);
+		List<int[]> valuesByCycle = new ArrayList<>();
+		int[] values = new int[keyCount];
+		Map<Integer, Set<Object>> sampledValues = new TreeMap<>();
+		for (int cycle = 0; cycle < 500; cycle++) {
+			for (int key = 0; key < keyCount; key++) {
+				values[key] += random.nextInt(10) == 0 ? 1 : 0;
+			}
+			valuesByCycle.add(values.clone());
+			for (int source = 0; source < sourceLags.length; source++) {
+				int[] observedValues = valuesByCycle.get(Math.max(cycle - sourceLags[source], 0));
+				List<IntegerKeyedSeriesSample> batch = new ArrayList<>();
+				for (int key = 0; key < keyCount; key++) {
+					batch.add(new IntegerKeyedSeriesSample(key, observedValues[key], source));
+					sampledValues.computeIfAbsent(key, absentKey -> new TreeSet<>()).add(observedValues[key]);
+				}
+				synchronousReconstructor.notifySamples(batch);
+				assertThat(subjectUnderTest.submit(batch), is(true));
+			}
+		}
+		subjectUnderTest.close();
+
+		int expectedDataPointCount = 0;
+		int actualDataPointCount = 0;
+		int sampledValueCount = 0;
+		int missedValueCount = 0;
+		for (int key = 0; key < keyCount; key++) {
+			expectedDataPointCount += expectedDataPoints.get(key).size();
+			actualDataPointCount += actualDataPoints.get(key).size();
+			sampledValueCount += sampledValues.get(key).size();
+			for (Object sampledValue : sampledValues.get(key)) {
+				if (!actualDataPoints.get(key).contains(sampledValue)) {
+					missedValueCount++;
+				}
+			}
+			assertThat(sampledValues.get(key).containsAll(actualDataPoints.get(key)), is(true));
+		}
+		assertThat(missedValueCount * 50 <= sampledValueCount, is(true));
+		assertThat(Math.abs(actualDataPointCount - expectedDataPointCount) * 4 <= expectedDataPointCount, is(true));
+	}
+
+	@Test(timeout = 10_000)
+	public void blocksSubmissionToFullShardUntilWorkerMakesRoom() throws Exception {
+		CountDownLatch workerBusy = new CountDownLatch(1);
+		CountDownLatch workerReleased = new CountDownLatch(1);
+		List<Integer> dataPointKeys = new CopyOnWriteArrayList<>();
+		AsyncSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> subjectUnderTest = startBlockableReconstructor(
+				BackpressurePolicy.BLOCK, workerBusy, workerReleased, dataPointKeys);
+
+		subjectUnderTest.submit(Collections.singletonList(new IntegerKeyedSeriesSample(0, 0, 0)));
+		workerBusy.await();
+		subjectUnderTest.submit(Collections.singletonList(new IntegerKeyedSeriesSample(1, 0, 0)));
+		subjectUnderTest.submit(Collections.singletonList(new IntegerKeyedSeriesSample(2, 0, 0)));
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Boolean> blockedSubmission = executor.submit(
+					() -> subjectUnderTest.submit(Collections.singletonList(new IntegerKeyedSeriesSample(3, 0, 0))));
+			try {
+				blockedSubmission.get(100, TimeUnit.MILLISECONDS);
+				fail("Submission to a full shard should block");
+			} catch (TimeoutException expected) {
+			}
+			workerReleased.countDown();
+
+			assertThat(blockedSubmission.get(), is(true));
+		} finally {
+			executor.shutdown();
+		}
+		subjectUnderTest.close();
+
+		assertThat(dataPointKeys, contains(0, 1, 2, 3));
+	}
+
+	@Test(timeout = 10_000)
+	public void dropsOldestBatchesOfFullShardAndCountsThemAsFlushed() throws Exception {
+		CountDownLatch workerBusy = new CountDownLatch(1);
+		CountDownLatch workerReleased = new CountDownLatch(1);
+		List<Integer> dataPointKeys = new CopyOnWriteArrayList<>();
+		AsyncSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> subjectUnderTest = startBlockableReconstructor(
+				BackpressurePolicy.DROP_OLDEST, workerBusy, workerReleased, dataPointKeys);
+
+		subjectUnderTest.submit(Collections.singletonList(new IntegerKeyedSeriesSample(0, 0, 0)));
+		workerBusy.await();
+		for (int key = 1; key <= 4; key++) {
+			assertThat(subjectUnderTest.submit(Collections.singletonList(new IntegerKeyedSeriesSample(key, 0, 0))),
+					is(true));
+		}
+		workerReleased.countDown();
+		subjectUnderTest.flush();
+
+		assertThat(subjectUnderTest.getDroppedBatchCount(), is(2L));
+		assertThat(dataPointKeys, contains(0, 3, 4));
+		subjectUnderTest.close();
+	}
+
+	@Test(timeout = 10_000)
+	public void propagatesWorkerFailure() throws Exception {
+		IllegalArgumentException workerFailure = new IllegalArgumentException("Listener failure");
+		AsyncSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> subjectUnderTest = AsyncSampledSeriesReconstructor
+				.<Integer, Integer, Object, CounterSeriesIndex> builder(
+						new ConcurrentSourceIndexRegistry<>(CounterSeriesIndex.Operations.instance()),
+						AsyncSampledSeriesReconstructorTest::buildSeriesReconstructor)
+				.shards(2).dataPointListener((key, index, value) -> {
+					throw workerFailure;
+				}).start();
+
+		subjectUnderTest.submit(Collections.singletonList(new IntegerKeyedSeriesSample(0, 0, 0)));
+		try {
+			subjectUnderTest.flush();
+			fail("Flush should fail once a worker has failed");
+		} catch (IllegalStateException e) {
+			assertThat(e.getCause(), is(workerFailure));
+		}
+		try {
+			subjectUnderTest.submit(Collections.singletonList(new IntegerKeyedSeriesSample(1, 0, 0)));
+			fail("Submission should fail once a worker has failed");
+		} catch (IllegalStateException e) {
+			assertThat(e.getCause(), is(workerFailure));
+		}
+		try {
+			subjectUnderTest.close();
+			fail("Closing should fail once a worker has failed");
+		} catch (IllegalStateException e) {
+			assertThat(e.getCause(), is(workerFailure));
+		}
+	}
+
+	@Test
+	public void rejectsBatchesForFullShard() throws Exception {
+		CountDownLatch workerBusy = new CountDownLatch(1);
+		CountDownLatch workerReleased = new CountDownLatch(1);
+		AsyncSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> subjectUnderTest = AsyncSampledSeriesReconstructor
+				.<Integer, Integer, Object, CounterSeriesIndex> builder(
+						new ConcurrentSourceIndexRegistry<>(CounterSeriesIndex.Operations.instance()),
+						AsyncSampledSeriesReconstructorTest::buildSeriesReconstructor)
+				.shards(1).queueCapacity(2).backpressurePolicy(BackpressurePolicy.REJECT)
+				.dataPointListener((key, index, value) -> {
+					workerBusy.countDown();
+					try {
+						workerReleased.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}).start();
+
+		assertThat(subjectUnderTest.submit(Collections.singletonList(new IntegerKeyedSeriesSample(0, 0, 0))), is(true));
+		workerBusy.await();
+		assertThat(subjectUnderTest.submit(Collections.singletonList(new IntegerKeyedSeriesSample(1, 0, 0))), is(true));
+		assertThat(subjectUnderTest.submit(Collections.singletonList(new IntegerKeyedSeriesSample(2, 0, 0))), is(true));
+		assertThat(subjectUnderTest.submit(Collections.singletonList(new IntegerKeyedSeriesSample(3, 0, 0))), is(false));
+		workerReleased.countDown();
+		subjectUnderTest.close();
+
+		assertThat(subjectUnderTest.getRejectedBatchCount(), is(1L));
+	}
+
+	/**
+	 * Start a single shard reconstructor with room for two queued batches, whose worker blocks on the first data point
+	 * until released
+	 */
+	private static AsyncSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> startBlockableReconstructor(
+			BackpressurePolicy backpressurePolicy, CountDownLatch workerBusy, CountDownLatch workerReleased,
+			List<Integer> dataPointKeys) {
+		return AsyncSampledSeriesReconstructor
+				.<Integer, Integer, Object, CounterSeriesIndex> builder(
+						new ConcurrentSourceIndexRegistry<>(CounterSeriesIndex.Operations.instance()),
+						AsyncSampledSeriesReconstructorTest::buildSeriesReconstructor)
+				.shards(1).queueCapacity(2).backpressurePolicy(backpressurePolicy)
+				.dataPointListener((key, index, value) -> {
+					workerBusy.countDown();
+					try {
+						workerReleased.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					dataPointKeys.add(key);
+				}).start();
+	}
+
+	private static SampledStepSeriesReconstructor<Integer, Object, CounterSeriesIndex> buildSeriesReconstructor(
+			SourceIndexTracker<Object, CounterSeriesIndex> sourceIndexRegistry) {
+		return new SampledStepSeriesReconstructor<>(EqualityValueUpdatePredicate.instance(),
+				CounterSeriesIndex.Operations.instance(), sourceIndexRegistry);
+	}
+
+}
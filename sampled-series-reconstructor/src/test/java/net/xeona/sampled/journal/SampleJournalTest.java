@@ -0,0 +1,178 @@
+package net.xeona.sampled.journal;
+
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.xeona.sampled.IntegerKeyedSeriesSample;
+import net.xeona.sampled.IntegerSeriesSample;
+import net.xeona.sampled.MultiSampledSeriesReconstructor;
+import net.xeona.sampled.SampledStepSeriesReconstructor;
+import net.xeona.sampled.snapshot.BinaryCodec;
+import net.xeona.sampled.snapshot.BinaryCodecs;
+import net.xeona.sampled.value.EqualityValueUpdatePredicate;
+import net.xeona.series.index.CounterSeriesIndex;
+import net.xeona.series.index.SourceIndexRegistry;
+
+public class SampleJournalTest {
+
+	private static final Object[] SOURCES = { new Object(), new Object(), new Object() };
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void replayReconstructsIdenticalSeriesDespiteTornFinalRecord() throws Exception {
+		Path journalDirectory = temporaryFolder.getRoot().toPath();
+		List<List<Object>> originalDataPoints = new ArrayList<>();
+		try (SampleJournal<Integer, Integer, Object> subjectUnderTest = SampleJournal
+				.builder(journalDirectory, BinaryCodecs.integers(), BinaryCodecs.integers(), new SourcePositionCodec())
+				.segmentSize(4096).bufferCapacity(256).open()) {
+			MultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> originalReconstructor = buildReconstructor(
+					originalDataPoints).sampleBatchListener(subjectUnderTest).build();
+			Random random = new Random(0);
+			for (int i = 0; i < 1_000; i++) {
+				originalReconstructor.notifySamples(randomBatch(random));
+			}
+		}
+
+		List<Path> segments = SampleJournal.listSegments(journalDirectory);
+		assertThat(segments.size() > 1, is(true));
+		Files.write(segments.get(segments.size() - 1), new byte[] { 0, 0, 1 }, APPEND);
+
+		List<List<Object>> replayedDataPoints = new ArrayList<>();
+		MultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> replayedReconstructor = buildReconstructor(
+				replayedDataPoints).build();
+		new SampleJournalReader<>(journalDirectory, BinaryCodecs.integers(), BinaryCodecs.integers(),
+				new SourcePositionCodec()).replay(replayedReconstructor::notifySamples);
+
+		assertThat(replayedDataPoints, is(originalDataPoints));
+	}
+
+	@Test
+	public void replayAfterReopeningDiscardsRecordTornBeforeRestart() throws Exception {
+		Path journalDirectory = temporaryFolder.getRoot().toPath();
+		List<IntegerKeyedSeriesSample> firstBatch = Arrays.asList(new IntegerKeyedSeriesSample(0, 0, SOURCES[0]));
+		List<IntegerKeyedSeriesSample> tornBatch = Arrays.asList(new IntegerKeyedSeriesSample(1, 1, SOURCES[1]));
+		List<IntegerKeyedSeriesSample> restartedBatch = Arrays.asList(new IntegerKeyedSeriesSample(2, 2, SOURCES[2]));
+		try (SampleJournal<Integer, Integer, Object> subjectUnderTest = openJournal(journalDirectory)) {
+			subjectUnderTest.onSamples(firstBatch);
+			subjectUnderTest.onSamples(tornBatch);
+		}
+		Path tornSegment = SampleJournal.listSegments(journalDirectory).get(0);
+		try (FileChannel channel = FileChannel.open(tornSegment, WRITE)) {
+			channel.truncate(channel.size() - 3);
+		}
+
+		try (SampleJournal<Integer, Integer, Object> subjectUnderTest = openJournal(journalDirectory)) {
+			subjectUnderTest.onSamples(restartedBatch);
+		}
+
+		List<List<Object>> replayedSamples = new ArrayList<>();
+		new SampleJournalReader<>(journalDirectory, BinaryCodecs.integers(), BinaryCodecs.integers(),
+				new SourcePositionCodec()).replay(batch -> batch.forEach(sample -> replayedSamples
+						.add(Arrays.asList(sample.getKey(), sample.getValue(), sample.getSource()))));
+
+		assertThat(SampleJournal.listSegments(journalDirectory).size(), is(2));
+		assertThat(replayedSamples, is(Arrays.asList(Arrays.asList(0, 0, SOURCES[0]),
+				Arrays.asList(2, 2, SOURCES[2]))));
+	}
+
+	@Test
+	public void replayReconstructsIdenticalSingleSeriesJournalledThroughItsBuilder() throws Exception {
+		Path journalDirectory = temporaryFolder.getRoot().toPath();
+		List<String> originalDataPoints = new ArrayList<>();
+		try (SampleJournal<Integer, Integer, Object> subjectUnderTest = openJournal(journalDirectory)) {
+			SampledStepSeriesReconstructor<Integer, Object, CounterSeriesIndex> originalReconstructor = buildSeriesReconstructor(
+					originalDataPoints).sampleBatchListener(7, subjectUnderTest).build();
+			Random random = new Random(0);
+			for (int i = 0; i < 1_000; i++) {
+				Object source = SOURCES[random.nextInt(SOURCES.length)];
+				if (random.nextBoolean()) {
+					originalReconstructor.notifySample(new IntegerSeriesSample(random.nextInt(3), source));
+				} else {
+					originalReconstructor.notifySamples(
+							Arrays.asList(new IntegerSeriesSample(random.nextInt(3), source),
+									new IntegerSeriesSample(random.nextInt(3), source)));
+				}
+			}
+		}
+
+		List<String> replayedSamples = new ArrayList<>();
+		List<String> replayedDataPoints = new ArrayList<>();
+		SampledStepSeriesReconstructor<Integer, Object, CounterSeriesIndex> replayedReconstructor = buildSeriesReconstructor(
+				replayedDataPoints).build();
+		new SampleJournalReader<>(journalDirectory, BinaryCodecs.integers(), BinaryCodecs.integers(),
+				new SourcePositionCodec()).replay(batch -> batch.forEach(sample -> {
+					replayedSamples.add(String.valueOf(sample.getKey()));
+					replayedReconstructor.notifySample(sample);
+				}));
+
+		assertThat(replayedSamples.size() > 1_000, is(true));
+		assertThat(replayedSamples.stream().allMatch("7"::equals), is(true));
+		assertThat(replayedDataPoints, is(originalDataPoints));
+	}
+
+	private static SampledStepSeriesReconstructor.Builder<Integer, Object, CounterSeriesIndex> buildSeriesReconstructor(
+			List<String> dataPoints) {
+		return SampledStepSeriesReconstructor
+				.<Integer, Object, CounterSeriesIndex> builder(EqualityValueUpdatePredicate.instance(),
+						CounterSeriesIndex.Operations.instance(),
+						new SourceIndexRegistry<>(CounterSeriesIndex.Operations.instance()))
+				.dataPointListener((index, value) -> dataPoints.add(index.getCount() + "=" + value));
+	}
+
+	private static SampleJournal<Integer, Integer, Object> openJournal(Path journalDirectory) throws Exception {
+		return SampleJournal
+				.builder(journalDirectory, BinaryCodecs.integers(), BinaryCodecs.integers(), new SourcePositionCodec())
+				.open();
+	}
+
+	private static MultiSampledSeriesReconstructor.Builder<Integer, Integer, Object, CounterSeriesIndex> buildReconstructor(
+			List<List<Object>> dataPoints) {
+		return MultiSampledSeriesReconstructor
+				.<Integer, Integer, Object, CounterSeriesIndex> builder(
+						new SourceIndexRegistry<>(CounterSeriesIndex.Operations.instance()),
+						registry -> new SampledStepSeriesReconstructor<>(EqualityValueUpdatePredicate.instance(),
+								CounterSeriesIndex.Operations.instance(), registry))
+				.dataPointListener((key, index, value) -> dataPoints.add(Arrays.asList(key, index, value)));
+	}
+
+	private static List<IntegerKeyedSeriesSample> randomBatch(Random random) {
+		Object source = SOURCES[random.nextInt(SOURCES.length)];
+		List<IntegerKeyedSeriesSample> batch = new ArrayList<>();
+		for (int key = random.nextInt(8); key < 8; key += 1 + random.nextInt(3)) {
+			batch.add(new IntegerKeyedSeriesSample(key, random.nextInt(3), source));
+		}
+		return batch;
+	}
+
+	private static class SourcePositionCodec implements BinaryCodec<Object> {
+
+		@Override
+		public void encode(Object value, ByteBuffer buffer) {
+			buffer.putInt(Arrays.asList(SOURCES).indexOf(value));
+		}
+
+		@Override
+		public Object decode(ByteBuffer buffer) {
+			return SOURCES[buffer.getInt()];
+		}
+
+	}
+
+}
@@ -0,0 +1,52 @@
+package net.xeona.sampled.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records every measurement in the order received, for tests to assert on exact values
+ */
+public class RecordingReconstructionMetrics implements ReconstructionMetrics {
+
+	private final List<SampleOutcome> sampleOutcomes = new ArrayList<>();
+	private final List<Integer> walkLengths = new ArrayList<>();
+	private final List<Integer> prunedDataPoints = new ArrayList<>();
+	private final List<Long> sourceIndexLags = new ArrayList<>();
+
+	@Override
+	public void recordSampleOutcome(SampleOutcome sampleOutcome) {
+		sampleOutcomes.add(sampleOutcome);
+	}
+
+	@Override
+	public void recordWalkLength(int walkLength) {
+		walkLengths.add(walkLength);
+	}
+
+	@Override
+	public void recordPrune(int prunedDataPoints, int retainedDataPoints) {
+		this.prunedDataPoints.add(prunedDataPoints);
+	}
+
+	@Override
+	public void recordSourceIndexLag(long sourceIndexLag) {
+		sourceIndexLags.add(sourceIndexLag);
+	}
+
+	public List<SampleOutcome> getSampleOutcomes() {
+		return sampleOutcomes;
+	}
+
+	public List<Integer> getWalkLengths() {
+		return walkLengths;
+	}
+
+	public List<Integer> getPrunedDataPoints() {
+		return prunedDataPoints;
+	}
+
+	public List<Long> getSourceIndexLags() {
+		return sourceIndexLags;
+	}
+
+}
@@ -0,0 +1,111 @@
+package net.xeona.sampled.partition;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import net.xeona.sampled.IntegerKeyedSeriesSample;
+import net.xeona.sampled.SampledStepSeriesReconstructor;
+import net.xeona.sampled.snapshot.BinaryCodec;
+import net.xeona.sampled.snapshot.BinaryCodecs;
+import net.xeona.sampled.value.EqualityValueUpdatePredicate;
+import net.xeona.series.index.CounterSeriesIndex;
+import net.xeona.series.index.SourceIndexRegistry;
+
+public class PartitionedSampledSeriesReconstructorTest {
+
+	private static final List<String> PARTITION_IDS = Arrays.asList("first", "second");
+
+	@Test
+	public void exchangedProgressAllowsPartitionToPruneSourcesActiveElsewhere() {
+		PartitionRing partitionRing = new PartitionRing(PARTITION_IDS);
+		InProcessProgressTransport<Object, CounterSeriesIndex> progressTransport = new InProcessProgressTransport<>();
+		Map<String, SeriesPartition<Integer, Integer, Object, CounterSeriesIndex>> partitionsById = new HashMap<>();
+		for (String partitionId : PARTITION_IDS) {
+			progressTransport.register(partitionId);
+			partitionsById.put(partitionId, new SeriesPartition<>(partitionId,
+					new SourceIndexRegistry<>(CounterSeriesIndex.Operations.instance()),
+					sourceIndexRegistry -> new SampledStepSeriesReconstructor<>(EqualityValueUpdatePredicate.instance(),
+							CounterSeriesIndex.Operations.instance(), sourceIndexRegistry),
+					progressTransport));
+		}
+		PartitionedSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> subjectUnderTest = new PartitionedSampledSeriesReconstructor<>(
+				partitionRing, partitionsById);
+
+		int firstKey = keyAssignedTo(partitionRing, "first");
+		int secondKey = keyAssignedTo(partitionRing, "second");
+		Object laggingSource = 1;
+		Object leadingSource = 2;
+		notifySample(subjectUnderTest, firstKey, 0, leadingSource);
+		notifySample(subjectUnderTest, firstKey, 0, laggingSource);
+		notifySample(subjectUnderTest, firstKey, 1, leadingSource);
+		notifySample(subjectUnderTest, secondKey, 5, laggingSource);
+		notifySample(subjectUnderTest, secondKey, 5, leadingSource);
+		notifySample(subjectUnderTest, secondKey, 6, leadingSource);
+		notifySample(subjectUnderTest, secondKey, 6, laggingSource);
+		notifySample(subjectUnderTest, firstKey, 1, leadingSource);
+
+		assertThat(retainedDataPointCount(subjectUnderTest, firstKey), is(2));
+
+		subjectUnderTest.exchangeProgress();
+		notifySample(subjectUnderTest, firstKey, 1, leadingSource);
+
+		assertThat(retainedDataPointCount(subjectUnderTest, firstKey), is(1));
+	}
+
+	@Test
+	public void mergedProgressSurvivesEncoding() {
+		SourceIndexRegistry<Integer, CounterSeriesIndex> firstRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		SourceIndexRegistry<Integer, CounterSeriesIndex> secondRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		firstRegistry.setCurrentIndexForSource(1, CounterSeriesIndex.Operations.instance().fromCount(5));
+		firstRegistry.setCurrentIndexForSource(2, CounterSeriesIndex.Operations.instance().fromCount(3));
+		secondRegistry.setCurrentIndexForSource(2, CounterSeriesIndex.Operations.instance().fromCount(7));
+		secondRegistry.setCurrentIndexForSource(3, CounterSeriesIndex.Operations.instance().fromCount(1));
+
+		SourceProgress<Integer, CounterSeriesIndex> mergedProgress = SourceProgress.capture(firstRegistry)
+				.merge(SourceProgress.capture(secondRegistry));
+		BinaryCodec<SourceProgress<Integer, CounterSeriesIndex>> codec = SourceProgress
+				.codec(BinaryCodecs.integers(), BinaryCodecs.counterSeriesIndices());
+		ByteBuffer buffer = ByteBuffer.allocate(256);
+		codec.encode(mergedProgress, buffer);
+		buffer.flip();
+
+		assertThat(codec.decode(buffer), is(mergedProgress));
+		assertThat(mergedProgress.getIndexForSource(2), is(CounterSeriesIndex.Operations.instance().fromCount(7)));
+		assertThat(mergedProgress.getSourceCount(), is(3));
+	}
+
+	private static int keyAssignedTo(PartitionRing partitionRing, String partitionId) {
+		int key = 0;
+		while (!partitionRing.partitionFor(key).equals(partitionId)) {
+			key++;
+		}
+		return key;
+	}
+
+	private static void notifySample(
+			PartitionedSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> seriesReconstructor,
+			int key, int value, Object source) {
+		seriesReconstructor.notifySamples(Collections.singletonList(new IntegerKeyedSeriesSample(key, value, source)));
+	}
+
+	private static int retainedDataPointCount(
+			PartitionedSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> seriesReconstructor,
+			int key) {
+		int[] dataPointCount = new int[1];
+		seriesReconstructor.getPartition(key).getSeriesReconstructor().forEachDataPoint((dataPointKey, index,
+				value) -> dataPointCount[0] += dataPointKey.equals(key) ? 1 : 0);
+		return dataPointCount[0];
+	}
+
+}
@@ -0,0 +1,141 @@
+package net.xeona.sampled.snapshot;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.xeona.sampled.IntegerKeyedSeriesSample;
+import net.xeona.sampled.MultiSampledSeriesReconstructor;
+import net.xeona.sampled.SampledStepSeriesReconstructor;
+import net.xeona.sampled.value.EqualityValueUpdatePredicate;
+import net.xeona.series.index.CounterSeriesIndex;
+import net.xeona.series.index.SourceIndexRegistry;
+
+public class SeriesSnapshotterTest {
+
+	private static final Object[] SOURCES = { new Object(), new Object(), new Object() };
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void restoredReconstructorAgreesWithOriginal() throws Exception {
+		SeriesSnapshotter<Integer, Integer, Object, CounterSeriesIndex> subjectUnderTest = new SeriesSnapshotter<>(
+				BinaryCodecs.integers(), BinaryCodecs.integers(), new SourcePositionCodec(),
+				BinaryCodecs.counterSeriesIndices());
+
+		SourceIndexRegistry<Object, CounterSeriesIndex> originalSourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		List<List<Object>> originalDataPoints = new ArrayList<>();
+		MultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> originalReconstructor = buildReconstructor(
+				originalSourceIndexRegistry, originalDataPoints);
+
+		Random random = new Random(0);
+		for (int i = 0; i < 1_000; i++) {
+			originalReconstructor.notifySamples(randomBatch(random));
+		}
+
+		Path snapshotPath = temporaryFolder.getRoot().toPath().resolve("series.snapshot");
+		subjectUnderTest.writeSnapshot(snapshotPath, originalReconstructor, originalSourceIndexRegistry);
+
+		SourceIndexRegistry<Object, CounterSeriesIndex> restoredSourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		List<List<Object>> restoredDataPoints = new ArrayList<>();
+		MultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> restoredReconstructor = buildReconstructor(
+				restoredSourceIndexRegistry, restoredDataPoints);
+		subjectUnderTest.restoreSnapshot(snapshotPath, restoredReconstructor, restoredSourceIndexRegistry);
+
+		originalDataPoints.clear();
+		for (int i = 0; i < 1_000; i++) {
+			List<IntegerKeyedSeriesSample> batch = randomBatch(random);
+			originalReconstructor.notifySamples(batch);
+			restoredReconstructor.notifySamples(batch);
+		}
+
+		assertThat(restoredDataPoints, is(originalDataPoints));
+	}
+
+	@Test
+	public void deletesTemporaryFileAndKeepsPreviousSnapshotWhenEncodingFails() throws Exception {
+		SourceIndexRegistry<Object, CounterSeriesIndex> sourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		MultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> reconstructor = buildReconstructor(
+				sourceIndexRegistry, new ArrayList<>());
+		reconstructor.notifySamples(randomBatch(new Random(0)));
+		Path snapshotPath = temporaryFolder.getRoot().toPath().resolve("series.snapshot");
+		new SeriesSnapshotter<>(BinaryCodecs.integers(), BinaryCodecs.integers(), new SourcePositionCodec(),
+				BinaryCodecs.counterSeriesIndices()).writeSnapshot(snapshotPath, reconstructor, sourceIndexRegistry);
+		byte[] previousSnapshot = Files.readAllBytes(snapshotPath);
+
+		IllegalStateException encodingFailure = new IllegalStateException("Unencodable value");
+		SeriesSnapshotter<Integer, Integer, Object, CounterSeriesIndex> subjectUnderTest = new SeriesSnapshotter<>(
+				BinaryCodecs.integers(), new BinaryCodec<Integer>() {
+
+					@Override
+					public void encode(Integer value, ByteBuffer buffer) {
+						throw encodingFailure;
+					}
+
+					@Override
+					public Integer decode(ByteBuffer buffer) {
+						throw new UnsupportedOperationException();
+					}
+
+				}, new SourcePositionCodec(), BinaryCodecs.counterSeriesIndices());
+		try {
+			subjectUnderTest.writeSnapshot(snapshotPath, reconstructor, sourceIndexRegistry);
+			fail("Expected encoding to fail");
+		} catch (IllegalStateException e) {
+			assertThat(e, is(encodingFailure));
+		}
+
+		assertThat(Arrays.asList(temporaryFolder.getRoot().list()), contains("series.snapshot"));
+		assertThat(Arrays.equals(Files.readAllBytes(snapshotPath), previousSnapshot), is(true));
+	}
+
+	private static MultiSampledSeriesReconstructor<Integer, Integer, Object, CounterSeriesIndex> buildReconstructor(
+			SourceIndexRegistry<Object, CounterSeriesIndex> sourceIndexRegistry, List<List<Object>> dataPoints) {
+		return MultiSampledSeriesReconstructor
+				.<Integer, Integer, Object, CounterSeriesIndex> builder(sourceIndexRegistry,
+						registry -> new SampledStepSeriesReconstructor<>(EqualityValueUpdatePredicate.instance(),
+								CounterSeriesIndex.Operations.instance(), registry))
+				.dataPointListener((key, index, value) -> dataPoints.add(Arrays.asList(key, index, value))).build();
+	}
+
+	private static List<IntegerKeyedSeriesSample> randomBatch(Random random) {
+		Object source = SOURCES[random.nextInt(SOURCES.length)];
+		List<IntegerKeyedSeriesSample> batch = new ArrayList<>();
+		for (int key = random.nextInt(8); key < 8; key += 1 + random.nextInt(3)) {
+			batch.add(new IntegerKeyedSeriesSample(key, random.nextInt(3), source));
+		}
+		return batch;
+	}
+
+	private static class SourcePositionCodec implements BinaryCodec<Object> {
+
+		@Override
+		public void encode(Object value, ByteBuffer buffer) {
+			buffer.putInt(Arrays.asList(SOURCES).indexOf(value));
+		}
+
+		@Override
+		public Object decode(ByteBuffer buffer) {
+			return SOURCES[buffer.getInt()];
+		}
+
+	}
+
+}
@@ -0,0 +1,106 @@
+package net.xeona.series.index;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import net.xeona.sampled.metrics.RecordingReconstructionMetrics;
+
+public class ConcurrentSourceIndexRegistryTest {
+
+	private static final int THREAD_COUNT = 4;
+	private static final int SOURCES_PER_THREAD = 16;
+
+	@Test
+	public void agreesWithSourceIndexRegistryAcrossStripes() {
+		RecordingReconstructionMetrics expectedMetrics = new RecordingReconstructionMetrics();
+		SourceIndexRegistry<Integer, CounterSeriesIndex> sourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance(), expectedMetrics);
+		RecordingReconstructionMetrics actualMetrics = new RecordingReconstructionMetrics();
+		ConcurrentSourceIndexRegistry<Integer, CounterSeriesIndex> subjectUnderTest = new ConcurrentSourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance(), 4, actualMetrics);
+
+		Random random = new Random(0);
+		for (int i = 0; i < 10_000; i++) {
+			Integer source = random.nextInt(16);
+			if (random.nextInt(50) == 0) {
+				sourceIndexRegistry.getCurrentIndexForSource(source);
+				subjectUnderTest.getCurrentIndexForSource(source);
+				sourceIndexRegistry.clearCurrentIndexForSource(source);
+				subjectUnderTest.clearCurrentIndexForSource(source);
+			} else {
+				CounterSeriesIndex index = new CounterSeriesIndex(random.nextInt(i + 1));
+				sourceIndexRegistry.setCurrentIndexForSource(source, index);
+				subjectUnderTest.setCurrentIndexForSource(source, index);
+			}
+			sourceIndexRegistry.getCurrentIndexForSource(source);
+			subjectUnderTest.getCurrentIndexForSource(source);
+			assertThat(subjectUnderTest.getLeastCurrentIndex(), is(sourceIndexRegistry.getLeastCurrentIndex()));
+		}
+		assertThat(actualMetrics.getSourceIndexLags(), is(expectedMetrics.getSourceIndexLags()));
+	}
+
+	@Test
+	public void concurrentUpdatesAgreeWithSourceIndexRegistry() throws Exception {
+		ConcurrentSourceIndexRegistry<Integer, CounterSeriesIndex> subjectUnderTest = new ConcurrentSourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance(), THREAD_COUNT);
+
+		Map<Integer, CounterSeriesIndex> expectedSourceIndices = new HashMap<>();
+		ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+		try {
+			CountDownLatch startLatch = new CountDownLatch(1);
+			List<Future<Map<Integer, CounterSeriesIndex>>> completions = new ArrayList<>();
+			for (int thread = 0; thread < THREAD_COUNT; thread++) {
+				int firstSource = thread * SOURCES_PER_THREAD;
+				Random random = new Random(thread);
+				completions.add(executor.submit(() -> {
+					Map<Integer, CounterSeriesIndex> threadSourceIndices = new HashMap<>();
+					startLatch.await();
+					threadSourceIndices.put(firstSource, subjectUnderTest.getCurrentIndexForSource(firstSource));
+					for (int i = 0; i < 20_000; i++) {
+						Integer source = firstSource + random.nextInt(SOURCES_PER_THREAD);
+						if (source != firstSource && random.nextInt(50) == 0) {
+							subjectUnderTest.clearCurrentIndexForSource(source);
+							threadSourceIndices.remove(source);
+						} else {
+							CounterSeriesIndex index = new CounterSeriesIndex(i + random.nextInt(8));
+							subjectUnderTest.setCurrentIndexForSource(source, index);
+							threadSourceIndices.merge(source, index,
+									(currentIndex, newIndex) -> newIndex.isGreaterThan(currentIndex) ? newIndex
+											: currentIndex);
+						}
+						subjectUnderTest.getLeastCurrentIndex();
+					}
+					return threadSourceIndices;
+				}));
+			}
+			startLatch.countDown();
+			for (Future<Map<Integer, CounterSeriesIndex>> completion : completions) {
+				expectedSourceIndices.putAll(completion.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		SourceIndexRegistry<Integer, CounterSeriesIndex> sourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+		expectedSourceIndices.forEach(sourceIndexRegistry::setCurrentIndexForSource);
+		Map<Integer, CounterSeriesIndex> actualSourceIndices = new HashMap<>();
+		subjectUnderTest.forEachSource(actualSourceIndices::put);
+
+		assertThat(actualSourceIndices, is(expectedSourceIndices));
+		assertThat(subjectUnderTest.getLeastCurrentIndex(), is(sourceIndexRegistry.getLeastCurrentIndex()));
+	}
+
+}
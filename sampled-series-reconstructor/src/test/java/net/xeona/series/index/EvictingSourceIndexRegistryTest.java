@@ -0,0 +1,176 @@
+package net.xeona.series.index;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import net.xeona.sampled.metrics.RecordingReconstructionMetrics;
+import net.xeona.sampled.partition.SourceProgress;
+
+public class EvictingSourceIndexRegistryTest {
+
+	@Test
+	public void evictsSourceLaggingBeyondMaximumIndexLag() {
+		List<Object> evictedSources = new ArrayList<>();
+		EvictingSourceIndexRegistry<Object, CounterSeriesIndex> subjectUnderTest = new EvictingSourceIndexRegistry<>(
+				new MonotonicSourceIndexRegistry<>(CounterSeriesIndex.Operations.instance()),
+				CounterSeriesIndex.Operations.instance(), RetentionPolicy.builder().maxIndexLag(10).build(),
+				(source, lastIndex, reason) -> evictedSources.add(source));
+
+		Object laggingSource = new Object();
+		Object leadingSource = new Object();
+		subjectUnderTest.setCurrentIndexForSource(laggingSource, new CounterSeriesIndex(0));
+		subjectUnderTest.setCurrentIndexForSource(leadingSource, new CounterSeriesIndex(10));
+
+		assertThat(subjectUnderTest.getLeastCurrentIndex(), is(new CounterSeriesIndex(0)));
+
+		subjectUnderTest.setCurrentIndexForSource(leadingSource, new CounterSeriesIndex(11));
+
+		assertThat(subjectUnderTest.getLeastCurrentIndex(), is(new CounterSeriesIndex(11)));
+		assertThat(evictedSources, contains(laggingSource));
+	}
+
+	@Test
+	public void measuresLagOfNewSourceOnlyOnceAligned() {
+		List<Object> evictedSources = new ArrayList<>();
+		EvictingSourceIndexRegistry<Object, CounterSeriesIndex> subjectUnderTest = new EvictingSourceIndexRegistry<>(
+				new MonotonicSourceIndexRegistry<>(CounterSeriesIndex.Operations.instance()),
+				CounterSeriesIndex.Operations.instance(), RetentionPolicy.builder().maxIndexLag(10).build(),
+				(source, lastIndex, reason) -> evictedSources.add(source));
+
+		Object newSource = new Object();
+		Object leadingSource = new Object();
+		subjectUnderTest.setCurrentIndexForSource(leadingSource, new CounterSeriesIndex(100));
+		subjectUnderTest.getCurrentIndexForSource(newSource);
+
+		assertThat(subjectUnderTest.getLeastCurrentIndex(), is(CounterSeriesIndex.Operations.instance().initialValue()));
+		assertThat(evictedSources, is(empty()));
+
+		subjectUnderTest.setCurrentIndexForSource(newSource, new CounterSeriesIndex(95));
+
+		assertThat(subjectUnderTest.getLeastCurrentIndex(), is(new CounterSeriesIndex(95)));
+		assertThat(evictedSources, is(empty()));
+
+		subjectUnderTest.setCurrentIndexForSource(leadingSource, new CounterSeriesIndex(106));
+
+		assertThat(subjectUnderTest.getLeastCurrentIndex(), is(new CounterSeriesIndex(106)));
+		assertThat(evictedSources, contains(newSource));
+	}
+
+	@Test
+	public void recordsSameSourceIndexLagsAsSourceIndexRegistry() {
+		RecordingReconstructionMetrics expectedMetrics = new RecordingReconstructionMetrics();
+		SourceIndexRegistry<Integer, CounterSeriesIndex> sourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance(), expectedMetrics);
+		RecordingReconstructionMetrics actualMetrics = new RecordingReconstructionMetrics();
+		EvictingSourceIndexRegistry<Integer, CounterSeriesIndex> subjectUnderTest = new EvictingSourceIndexRegistry<>(
+				new MonotonicSourceIndexRegistry<>(CounterSeriesIndex.Operations.instance()),
+				CounterSeriesIndex.Operations.instance(), RetentionPolicy.unbounded(),
+				(source, lastIndex, reason) -> {
+				}, actualMetrics);
+
+		Random random = new Random(0);
+		for (int i = 0; i < 10_000; i++) {
+			Integer source = random.nextInt(8);
+			if (random.nextInt(50) == 0) {
+				sourceIndexRegistry.getCurrentIndexForSource(source);
+				subjectUnderTest.getCurrentIndexForSource(source);
+				sourceIndexRegistry.clearCurrentIndexForSource(source);
+				subjectUnderTest.clearCurrentIndexForSource(source);
+			} else {
+				CounterSeriesIndex index = new CounterSeriesIndex(random.nextInt(i + 1));
+				sourceIndexRegistry.setCurrentIndexForSource(source, index);
+				subjectUnderTest.setCurrentIndexForSource(source, index);
+			}
+			sourceIndexRegistry.getCurrentIndexForSource(source);
+			subjectUnderTest.getCurrentIndexForSource(source);
+			assertThat(subjectUnderTest.getLeastCurrentIndex(), is(sourceIndexRegistry.getLeastCurrentIndex()));
+		}
+		assertThat(actualMetrics.getSourceIndexLags(), is(expectedMetrics.getSourceIndexLags()));
+	}
+
+	@Test
+	public void evictsLaggingSourceIdleBeyondTimeout() {
+		AtomicLong nanoClock = new AtomicLong();
+		List<Object> evictedSources = new ArrayList<>();
+		EvictingSourceIndexRegistry<Object, CounterSeriesIndex> subjectUnderTest = new EvictingSourceIndexRegistry<>(
+				new MonotonicSourceIndexRegistry<>(CounterSeriesIndex.Operations.instance()),
+				CounterSeriesIndex.Operations.instance(),
+				RetentionPolicy.builder().idleTimeout(Duration.ofSeconds(10)).build(),
+				(source, lastIndex, reason) -> evictedSources.add(source), nanoClock::get);
+
+		Object idleSource = new Object();
+		Object activeSource = new Object();
+		subjectUnderTest.setCurrentIndexForSource(idleSource, new CounterSeriesIndex(0));
+		subjectUnderTest.setCurrentIndexForSource(activeSource, new CounterSeriesIndex(1));
+
+		nanoClock.set(TimeUnit.SECONDS.toNanos(10));
+		subjectUnderTest.getCurrentIndexForSource(activeSource);
+		assertThat(subjectUnderTest.getLeastCurrentIndex(), is(new CounterSeriesIndex(0)));
+		assertThat(evictedSources, is(empty()));
+
+		nanoClock.set(TimeUnit.SECONDS.toNanos(16));
+		subjectUnderTest.getCurrentIndexForSource(activeSource);
+		assertThat(subjectUnderTest.getLeastCurrentIndex(), is(new CounterSeriesIndex(1)));
+		assertThat(evictedSources, contains(idleSource));
+	}
+
+	/**
+	 * Each partition's registry sees the stalled source's index repeated by the progress exchanged from the other,
+	 * which must not count as the source reporting
+	 */
+	@Test
+	public void evictsIdleSourceFromPartitionsExchangingItsStalledIndex() {
+		AtomicLong nanoClock = new AtomicLong();
+		List<Object> evictedSources = new ArrayList<>();
+		List<EvictingSourceIndexRegistry<Object, CounterSeriesIndex>> partitionRegistries = new ArrayList<>();
+		for (int partition = 0; partition < 2; partition++) {
+			partitionRegistries.add(new EvictingSourceIndexRegistry<>(
+					new MonotonicSourceIndexRegistry<>(CounterSeriesIndex.Operations.instance()),
+					CounterSeriesIndex.Operations.instance(),
+					RetentionPolicy.builder().idleTimeout(Duration.ofSeconds(10)).build(),
+					(source, lastIndex, reason) -> evictedSources.add(source), nanoClock::get));
+		}
+		EvictingSourceIndexRegistry<Object, CounterSeriesIndex> activePartitionRegistry = partitionRegistries.get(0);
+
+		Object stalledSource = new Object();
+		Object activeSource = new Object();
+		for (EvictingSourceIndexRegistry<Object, CounterSeriesIndex> partitionRegistry : partitionRegistries) {
+			partitionRegistry.getCurrentIndexForSource(stalledSource);
+			partitionRegistry.setCurrentIndexForSource(stalledSource, new CounterSeriesIndex(1));
+		}
+
+		for (int second = 1; second <= 16; second++) {
+			nanoClock.set(TimeUnit.SECONDS.toNanos(second));
+			activePartitionRegistry.getCurrentIndexForSource(activeSource);
+			activePartitionRegistry.setCurrentIndexForSource(activeSource, new CounterSeriesIndex(1 + second));
+			SourceProgress<Object, CounterSeriesIndex> progress = SourceProgress.empty();
+			for (EvictingSourceIndexRegistry<Object, CounterSeriesIndex> partitionRegistry : partitionRegistries) {
+				partitionRegistry.getLeastCurrentIndex();
+				progress = progress.merge(SourceProgress.capture(partitionRegistry));
+			}
+			for (EvictingSourceIndexRegistry<Object, CounterSeriesIndex> partitionRegistry : partitionRegistries) {
+				progress.applyTo(partitionRegistry);
+			}
+		}
+
+		assertThat(evictedSources, contains(stalledSource, stalledSource));
+		for (EvictingSourceIndexRegistry<Object, CounterSeriesIndex> partitionRegistry : partitionRegistries) {
+			List<Object> remainingSources = new ArrayList<>();
+			partitionRegistry.forEachSource((source, index) -> remainingSources.add(source));
+			assertThat(remainingSources, contains(activeSource));
+			assertThat(partitionRegistry.getLeastCurrentIndex(), is(new CounterSeriesIndex(17)));
+		}
+	}
+
+}
@@ -0,0 +1,119 @@
+package net.xeona.series.index;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import net.xeona.sampled.metrics.RecordingReconstructionMetrics;
+
+public class MonotonicSourceIndexRegistryTest {
+
+	@Test
+	public void leastCurrentIndexFollowsSlowestSource() {
+		MonotonicSourceIndexRegistry<Object, CounterSeriesIndex> subjectUnderTest = new MonotonicSourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+
+		Object slowSource = new Object();
+		Object fastSource = new Object();
+		subjectUnderTest.setCurrentIndexForSource(slowSource, new CounterSeriesIndex(1));
+		subjectUnderTest.setCurrentIndexForSource(fastSource, new CounterSeriesIndex(3));
+
+		assertThat(subjectUnderTest.getLeastCurrentIndex(), is(new CounterSeriesIndex(1)));
+
+		subjectUnderTest.setCurrentIndexForSource(slowSource, new CounterSeriesIndex(5));
+
+		assertThat(subjectUnderTest.getLeastCurrentIndex(), is(new CounterSeriesIndex(3)));
+	}
+
+	@Test
+	public void ignoresIndexRegression() {
+		MonotonicSourceIndexRegistry<Object, CounterSeriesIndex> subjectUnderTest = new MonotonicSourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+
+		Object source = new Object();
+		subjectUnderTest.setCurrentIndexForSource(source, new CounterSeriesIndex(3));
+		subjectUnderTest.setCurrentIndexForSource(source, new CounterSeriesIndex(2));
+
+		assertThat(subjectUnderTest.getCurrentIndexForSource(source), is(new CounterSeriesIndex(3)));
+	}
+
+	@Test
+	public void clearingSlowestSourceAdvancesLeastCurrentIndex() {
+		MonotonicSourceIndexRegistry<Object, CounterSeriesIndex> subjectUnderTest = new MonotonicSourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance());
+
+		Object slowSource = new Object();
+		Object fastSource = new Object();
+		subjectUnderTest.setCurrentIndexForSource(slowSource, new CounterSeriesIndex(1));
+		subjectUnderTest.setCurrentIndexForSource(fastSource, new CounterSeriesIndex(3));
+		subjectUnderTest.clearCurrentIndexForSource(slowSource);
+
+		assertThat(subjectUnderTest.getLeastCurrentIndex(), is(new CounterSeriesIndex(3)));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void rejectsLeastCurrentIndexQueryWithoutSources() {
+		new MonotonicSourceIndexRegistry<>(CounterSeriesIndex.Operations.instance()).getLeastCurrentIndex();
+	}
+
+	@Test
+	public void recordsLagOfEachUpdatedSourceBehindGreatestSourceIndex() {
+		RecordingReconstructionMetrics metrics = new RecordingReconstructionMetrics();
+		MonotonicSourceIndexRegistry<Object, CounterSeriesIndex> subjectUnderTest = new MonotonicSourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance(), metrics);
+
+		Object slowSource = new Object();
+		Object fastSource = new Object();
+		subjectUnderTest.setCurrentIndexForSource(fastSource, new CounterSeriesIndex(5));
+		subjectUnderTest.setCurrentIndexForSource(slowSource, new CounterSeriesIndex(2));
+		subjectUnderTest.setCurrentIndexForSource(slowSource, new CounterSeriesIndex(1));
+		subjectUnderTest.setCurrentIndexForSource(fastSource, new CounterSeriesIndex(8));
+		subjectUnderTest.clearCurrentIndexForSource(fastSource);
+		subjectUnderTest.setCurrentIndexForSource(slowSource, new CounterSeriesIndex(3));
+
+		assertThat(metrics.getSourceIndexLags(), contains(0L, 3L, 3L, 0L, 0L));
+	}
+
+	@Test
+	public void agreesWithSourceIndexRegistry() {
+		assertAgreesWithSourceIndexRegistry(8);
+	}
+
+	@Test
+	public void agreesWithSourceIndexRegistryAcrossManySources() {
+		assertAgreesWithSourceIndexRegistry(200);
+	}
+
+	private static void assertAgreesWithSourceIndexRegistry(int sourceCount) {
+		RecordingReconstructionMetrics expectedMetrics = new RecordingReconstructionMetrics();
+		SourceIndexRegistry<Integer, CounterSeriesIndex> sourceIndexRegistry = new SourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance(), expectedMetrics);
+		RecordingReconstructionMetrics actualMetrics = new RecordingReconstructionMetrics();
+		MonotonicSourceIndexRegistry<Integer, CounterSeriesIndex> subjectUnderTest = new MonotonicSourceIndexRegistry<>(
+				CounterSeriesIndex.Operations.instance(), actualMetrics);
+
+		Random random = new Random(0);
+		for (int i = 0; i < 10_000; i++) {
+			Integer source = random.nextInt(sourceCount);
+			if (random.nextInt(50) == 0) {
+				sourceIndexRegistry.getCurrentIndexForSource(source);
+				subjectUnderTest.getCurrentIndexForSource(source);
+				sourceIndexRegistry.clearCurrentIndexForSource(source);
+				subjectUnderTest.clearCurrentIndexForSource(source);
+			} else {
+				CounterSeriesIndex index = new CounterSeriesIndex(random.nextInt(i + 1));
+				sourceIndexRegistry.setCurrentIndexForSource(source, index);
+				subjectUnderTest.setCurrentIndexForSource(source, index);
+			}
+			sourceIndexRegistry.getCurrentIndexForSource(source);
+			subjectUnderTest.getCurrentIndexForSource(source);
+			assertThat(subjectUnderTest.getLeastCurrentIndex(), is(sourceIndexRegistry.getLeastCurrentIndex()));
+		}
+		assertThat(actualMetrics.getSourceIndexLags(), is(expectedMetrics.getSourceIndexLags()));
+	}
+
+}
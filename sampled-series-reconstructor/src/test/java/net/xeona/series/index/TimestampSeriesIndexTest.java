@@ -0,0 +1,42 @@
+package net.xeona.series.index;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import org.junit.Test;
+
+public class TimestampSeriesIndexTest {
+
+	@Test
+	public void incrementStampsCurrentTickAndBreaksTiesBySequence() {
+		long[] epochNanos = { (5 << TimestampSeriesIndex.SEQUENCE_BITS) + 7 };
+		TimestampSeriesIndex.Operations subjectUnderTest = new TimestampSeriesIndex.Operations(() -> epochNanos[0]);
+
+		TimestampSeriesIndex firstIndex = subjectUnderTest.increment(subjectUnderTest.initialValue());
+		TimestampSeriesIndex secondIndex = subjectUnderTest.increment(firstIndex);
+		epochNanos[0] = 1 << TimestampSeriesIndex.SEQUENCE_BITS;
+		TimestampSeriesIndex thirdIndex = subjectUnderTest.increment(secondIndex);
+
+		assertThat(firstIndex.getEpochNanos(), is(5L << TimestampSeriesIndex.SEQUENCE_BITS));
+		assertThat(firstIndex.getSequence(), is(0));
+		assertThat(secondIndex.getEpochNanos(), is(5L << TimestampSeriesIndex.SEQUENCE_BITS));
+		assertThat(secondIndex.getSequence(), is(1));
+		assertThat(thirdIndex.isGreaterThan(secondIndex), is(true));
+		assertThat(thirdIndex.getSequence(), is(2));
+	}
+
+	@Test
+	public void indicesAtTimeBoundIndicesIssuedAtThatTime() {
+		long[] epochNanos = { 3 << TimestampSeriesIndex.SEQUENCE_BITS };
+		TimestampSeriesIndex.Operations subjectUnderTest = new TimestampSeriesIndex.Operations(() -> epochNanos[0]);
+
+		TimestampSeriesIndex firstIndex = subjectUnderTest.increment(subjectUnderTest.initialValue());
+		TimestampSeriesIndex secondIndex = subjectUnderTest.increment(firstIndex);
+
+		assertThat(subjectUnderTest.earliestAt(epochNanos[0]), is(firstIndex));
+		assertThat(subjectUnderTest.latestAt(epochNanos[0]).isGreaterThan(secondIndex), is(true));
+		assertThat(subjectUnderTest.distance(firstIndex, subjectUnderTest.latestAt(epochNanos[0] + 5_000)),
+				is(4L * TimestampSeriesIndex.SEQUENCE_TICK_NANOS));
+	}
+
+}